@@ -18,7 +18,6 @@ package com.google.android.exoplayer2.ext.vp9;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.os.Handler;
-import android.os.Looper;
 import android.os.SystemClock;
 import android.support.annotation.CallSuper;
 import android.support.annotation.IntDef;
@@ -93,19 +92,23 @@ public class LibvpxVideoRenderer extends BaseRenderer {
   public static final int MSG_SET_OUTPUT_BUFFER_RENDERER = C.MSG_CUSTOM_BASE;
 
   /**
-   * The number of input buffers.
+   * The default number of input buffers.
    */
-  private static final int NUM_INPUT_BUFFERS = 8;
+  private static final int DEFAULT_NUM_INPUT_BUFFERS = 8;
   /**
-   * The number of output buffers. The renderer may limit the minimum possible value due to
+   * The default number of output buffers. The renderer may limit the minimum possible value due to
    * requiring multiple output buffers to be dequeued at a time for it to make progress.
    */
-  private static final int NUM_OUTPUT_BUFFERS = 8;
+  private static final int DEFAULT_NUM_OUTPUT_BUFFERS = 8;
   /** The default input buffer size. */
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 768 * 1024; // Value based on cs/SoftVpx.cpp.
 
   private final boolean scaleToFit;
   private final boolean disableLoopFilter;
+  private final boolean enableRowMultiThreadMode;
+  private final int threads;
+  private final int numInputBuffers;
+  private final int numOutputBuffers;
   private final long allowedJoiningTimeMs;
   private final int maxDroppedFramesToNotify;
   private final boolean playClearSamplesWithoutKeys;
@@ -215,9 +218,72 @@ public class LibvpxVideoRenderer extends BaseRenderer {
       boolean playClearSamplesWithoutKeys,
       boolean disableLoopFilter,
       boolean useSurfaceYuvOutput) {
+    this(
+        scaleToFit,
+        allowedJoiningTimeMs,
+        eventHandler,
+        eventListener,
+        maxDroppedFramesToNotify,
+        drmSessionManager,
+        playClearSamplesWithoutKeys,
+        disableLoopFilter,
+        useSurfaceYuvOutput,
+        /* enableRowMultiThreadMode= */ false,
+        /* threads= */ Runtime.getRuntime().availableProcessors(),
+        DEFAULT_NUM_INPUT_BUFFERS,
+        DEFAULT_NUM_OUTPUT_BUFFERS);
+  }
+
+  /**
+   * @param scaleToFit Whether video frames should be scaled to fit when rendering.
+   * @param allowedJoiningTimeMs The maximum duration in milliseconds for which this video renderer
+   *     can attempt to seamlessly join an ongoing playback.
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
+   *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
+   * @param drmSessionManager For use with encrypted media. May be null if support for encrypted
+   *     media is not required.
+   * @param playClearSamplesWithoutKeys Encrypted media may contain clear (un-encrypted) regions.
+   *     For example a media file may start with a short clear region so as to allow playback to
+   *     begin in parallel with key acquisition. This parameter specifies whether the renderer is
+   *     permitted to play clear regions of encrypted media files before {@code drmSessionManager}
+   *     has obtained the keys necessary to decrypt encrypted regions of the media.
+   * @param disableLoopFilter Disable the libvpx in-loop smoothing filter.
+   * @param useSurfaceYuvOutput Directly output YUV to the Surface via ANativeWindow.
+   * @param enableRowMultiThreadMode Whether libvpx should decode rows of each frame in parallel,
+   *     which lets it use more than one thread for each tile column. Most effective for high
+   *     resolution streams with few tile columns.
+   * @param threads The number of threads libvpx may use to decode each frame.
+   * @param numInputBuffers The number of input buffers.
+   * @param numOutputBuffers The number of output buffers. Decoded frames wait in these buffers
+   *     until they're rendered, so at high frame rates more buffers let the decoder keep working
+   *     ahead of the renderer instead of stalling. Must be at least 2, and at most {@link
+   *     VpxDecoder#MAX_OUTPUT_BUFFERS} if {@code useSurfaceYuvOutput} is true.
+   */
+  public LibvpxVideoRenderer(
+      boolean scaleToFit,
+      long allowedJoiningTimeMs,
+      Handler eventHandler,
+      VideoRendererEventListener eventListener,
+      int maxDroppedFramesToNotify,
+      DrmSessionManager<ExoMediaCrypto> drmSessionManager,
+      boolean playClearSamplesWithoutKeys,
+      boolean disableLoopFilter,
+      boolean useSurfaceYuvOutput,
+      boolean enableRowMultiThreadMode,
+      int threads,
+      int numInputBuffers,
+      int numOutputBuffers) {
     super(C.TRACK_TYPE_VIDEO);
+    Assertions.checkArgument(threads > 0 && numInputBuffers > 0 && numOutputBuffers > 1);
     this.scaleToFit = scaleToFit;
     this.disableLoopFilter = disableLoopFilter;
+    this.enableRowMultiThreadMode = enableRowMultiThreadMode;
+    this.threads = threads;
+    this.numInputBuffers = numInputBuffers;
+    this.numOutputBuffers = numOutputBuffers;
     this.allowedJoiningTimeMs = allowedJoiningTimeMs;
     this.maxDroppedFramesToNotify = maxDroppedFramesToNotify;
     this.drmSessionManager = drmSessionManager;
@@ -462,7 +528,8 @@ public class LibvpxVideoRenderer extends BaseRenderer {
           throw ExoPlaybackException.createForRenderer(
               new IllegalStateException("Media requires a DrmSessionManager"), getIndex());
         }
-        pendingDrmSession = drmSessionManager.acquireSession(Looper.myLooper(), format.drmInitData);
+        pendingDrmSession =
+            drmSessionManager.acquireSession(getPlaybackLooper(), format.drmInitData);
         if (pendingDrmSession == drmSession) {
           drmSessionManager.releaseSession(pendingDrmSession);
         }
@@ -722,12 +789,14 @@ public class LibvpxVideoRenderer extends BaseRenderer {
           format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
       decoder =
           new VpxDecoder(
-              NUM_INPUT_BUFFERS,
-              NUM_OUTPUT_BUFFERS,
+              numInputBuffers,
+              numOutputBuffers,
               initialInputBufferSize,
               mediaCrypto,
               disableLoopFilter,
-              useSurfaceYuvOutput);
+              useSurfaceYuvOutput,
+              enableRowMultiThreadMode,
+              threads);
       decoder.setOutputMode(outputMode);
       TraceUtil.endSection();
       long decoderInitializedTimestamp = SystemClock.elapsedRealtime();
@@ -34,6 +34,13 @@ import java.nio.ByteBuffer;
   public static final int OUTPUT_MODE_RGB = 1;
   public static final int OUTPUT_MODE_SURFACE_YUV = 2;
 
+  /**
+   * The maximum number of output buffers in {@link #OUTPUT_MODE_SURFACE_YUV}. Output buffers hold
+   * references to native frame buffers, which are shared with the frames libvpx is decoding and
+   * referencing, so the number of output buffers is limited.
+   */
+  public static final int MAX_OUTPUT_BUFFERS = 16;
+
   private static final int NO_ERROR = 0;
   private static final int DECODE_ERROR = 1;
   private static final int DRM_ERROR = 2;
@@ -53,6 +60,8 @@ import java.nio.ByteBuffer;
    *     content. Maybe null and can be ignored if decoder does not handle encrypted content.
    * @param disableLoopFilter Disable the libvpx in-loop smoothing filter.
    * @param enableSurfaceYuvOutputMode Whether OUTPUT_MODE_SURFACE_YUV is allowed.
+   * @param enableRowMultiThreadMode Whether libvpx should decode rows of each frame in parallel.
+   * @param threads The number of threads libvpx may use to decode each frame.
    * @throws VpxDecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public VpxDecoder(
@@ -61,9 +70,14 @@ import java.nio.ByteBuffer;
       int initialInputBufferSize,
       ExoMediaCrypto exoMediaCrypto,
       boolean disableLoopFilter,
-      boolean enableSurfaceYuvOutputMode)
+      boolean enableSurfaceYuvOutputMode,
+      boolean enableRowMultiThreadMode,
+      int threads)
       throws VpxDecoderException {
     super(new VpxInputBuffer[numInputBuffers], new VpxOutputBuffer[numOutputBuffers]);
+    if (enableSurfaceYuvOutputMode && numOutputBuffers > MAX_OUTPUT_BUFFERS) {
+      throw new VpxDecoderException("Too many output buffers: " + numOutputBuffers);
+    }
     if (!VpxLibrary.isAvailable()) {
       throw new VpxDecoderException("Failed to load decoder native libraries.");
     }
@@ -71,7 +85,8 @@ import java.nio.ByteBuffer;
     if (exoMediaCrypto != null && !VpxLibrary.vpxIsSecureDecodeSupported()) {
       throw new VpxDecoderException("Vpx decoder does not support secure decode.");
     }
-    vpxDecContext = vpxInit(disableLoopFilter, enableSurfaceYuvOutputMode);
+    vpxDecContext =
+        vpxInit(disableLoopFilter, enableSurfaceYuvOutputMode, enableRowMultiThreadMode, threads);
     if (vpxDecContext == 0) {
       throw new VpxDecoderException("Failed to initialize decoder");
     }
@@ -168,7 +183,11 @@ import java.nio.ByteBuffer;
     }
   }
 
-  private native long vpxInit(boolean disableLoopFilter, boolean enableSurfaceYuvOutputMode);
+  private native long vpxInit(
+      boolean disableLoopFilter,
+      boolean enableSurfaceYuvOutputMode,
+      boolean enableRowMultiThreadMode,
+      int threads);
 
   private native long vpxClose(long context);
   private native long vpxDecode(long context, ByteBuffer encoded, int length);
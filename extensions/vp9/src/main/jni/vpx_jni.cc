@@ -441,11 +441,12 @@ int vpx_release_frame_buffer(void* priv, vpx_codec_frame_buffer_t* fb) {
 }
 
 DECODER_FUNC(jlong, vpxInit, jboolean disableLoopFilter,
-             jboolean enableBufferManager) {
+             jboolean enableBufferManager, jboolean enableRowMultiThreadMode,
+             jint threads) {
   JniCtx* context = new JniCtx(enableBufferManager);
   context->decoder = new vpx_codec_ctx_t();
   vpx_codec_dec_cfg_t cfg = {0, 0, 0};
-  cfg.threads = android_getCpuCount();
+  cfg.threads = threads > 0 ? threads : android_getCpuCount();
   errorCode = 0;
   vpx_codec_err_t err =
       vpx_codec_dec_init(context->decoder, &vpx_codec_vp9_dx_algo, &cfg, 0);
@@ -461,6 +462,14 @@ DECODER_FUNC(jlong, vpxInit, jboolean disableLoopFilter,
       LOGE("ERROR: Failed to shut off libvpx loop filter, error = %d.", err);
     }
   }
+#ifdef VPX_CTRL_VP9D_SET_ROW_MT
+  if (enableRowMultiThreadMode) {
+    err = vpx_codec_control_(context->decoder, VP9D_SET_ROW_MT, true);
+    if (err) {
+      LOGE("ERROR: Failed to enable row multi thread mode, error = %d.", err);
+    }
+  }
+#endif
   if (enableBufferManager) {
     err = vpx_codec_set_frame_buffer_functions(
         context->decoder, vpx_get_frame_buffer, vpx_release_frame_buffer,
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2;
 
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.drm.DrmInitData;
@@ -39,6 +40,8 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
   private long streamOffsetUs;
   private boolean readEndOfStream;
   private boolean streamIsFinal;
+  private @Nullable Looper playbackLooper;
+  private Object sampleStreamLock;
 
   /**
    * @param trackType The track type that the renderer handles. One of the {@link C}
@@ -47,6 +50,7 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
   public BaseRenderer(int trackType) {
     this.trackType = trackType;
     readEndOfStream = true;
+    sampleStreamLock = new Object();
   }
 
   @Override
@@ -80,6 +84,7 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
       throws ExoPlaybackException {
     Assertions.checkState(state == STATE_DISABLED);
     this.configuration = configuration;
+    playbackLooper = Looper.myLooper();
     state = STATE_ENABLED;
     onEnabled(joining);
     replaceStream(formats, stream, offsetUs);
@@ -153,6 +158,17 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     onDisabled();
   }
 
+  /**
+   * Sets the lock held whilst reading from the enabled upstream source. Renderers of a player that
+   * may render concurrently share a lock, since sample streams of the same media period are not
+   * safe to read from several threads at once.
+   *
+   * @param sampleStreamLock The lock.
+   */
+  /* package */ final void setSampleStreamLock(Object sampleStreamLock) {
+    this.sampleStreamLock = sampleStreamLock;
+  }
+
   // RendererCapabilities implementation.
 
   @Override
@@ -268,6 +284,15 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     return index;
   }
 
+  /**
+   * Returns the {@link Looper} of the player's playback thread, or null if the renderer has never
+   * been enabled. This should be used in preference to {@link Looper#myLooper()}, since {@link
+   * #render(long, long)} may be called on a different thread if the player renders in parallel.
+   */
+  protected final @Nullable Looper getPlaybackLooper() {
+    return playbackLooper;
+  }
+
   /**
    * Reads from the enabled upstream source. If the upstream source has been read to the end then
    * {@link C#RESULT_BUFFER_READ} is only returned if {@link #setCurrentStreamFinal()} has been
@@ -285,7 +310,10 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
    */
   protected final int readSource(FormatHolder formatHolder, DecoderInputBuffer buffer,
       boolean formatRequired) {
-    int result = stream.readData(formatHolder, buffer, formatRequired);
+    int result;
+    synchronized (sampleStreamLock) {
+      result = stream.readData(formatHolder, buffer, formatRequired);
+    }
     if (result == C.RESULT_BUFFER_READ) {
       if (buffer.isEndOfStream()) {
         readEndOfStream = true;
@@ -310,14 +338,21 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
    * @return The number of samples that were skipped.
    */
   protected int skipSource(long positionUs) {
-    return stream.skipData(positionUs - streamOffsetUs);
+    synchronized (sampleStreamLock) {
+      return stream.skipData(positionUs - streamOffsetUs);
+    }
   }
 
   /**
    * Returns whether the upstream source is ready.
    */
   protected final boolean isSourceReady() {
-    return readEndOfStream ? streamIsFinal : stream.isReady();
+    if (readEndOfStream) {
+      return streamIsFinal;
+    }
+    synchronized (sampleStreamLock) {
+      return stream.isReady();
+    }
   }
 
   /**
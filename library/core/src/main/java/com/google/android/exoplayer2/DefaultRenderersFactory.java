@@ -26,9 +26,12 @@ import com.google.android.exoplayer2.audio.AudioRendererEventListener;
 import com.google.android.exoplayer2.audio.MediaCodecAudioRenderer;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
+import com.google.android.exoplayer2.mediacodec.MediaCodecPool;
+import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
 import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
 import com.google.android.exoplayer2.metadata.MetadataOutput;
 import com.google.android.exoplayer2.metadata.MetadataRenderer;
+import com.google.android.exoplayer2.text.SubtitleCache;
 import com.google.android.exoplayer2.text.TextOutput;
 import com.google.android.exoplayer2.text.TextRenderer;
 import com.google.android.exoplayer2.trackselection.TrackSelector;
@@ -86,6 +89,10 @@ public class DefaultRenderersFactory implements RenderersFactory {
   private final @Nullable DrmSessionManager<FrameworkMediaCrypto> drmSessionManager;
   private final @ExtensionRendererMode int extensionRendererMode;
   private final long allowedVideoJoiningTimeMs;
+  private @Nullable MediaCodecPool mediaCodecPool;
+  private boolean asynchronousCodecOperationEnabled;
+  private boolean predictiveFrameDroppingEnabled;
+  private @Nullable SubtitleCache subtitleCache;
 
   /**
    * @param context A {@link Context}.
@@ -163,6 +170,56 @@ public class DefaultRenderersFactory implements RenderersFactory {
     this.drmSessionManager = drmSessionManager;
   }
 
+  /**
+   * Sets a {@link MediaCodecPool} to be used by the {@link MediaCodecVideoRenderer} and {@link
+   * MediaCodecAudioRenderer} instances built by this factory. Sharing a pool between players allows
+   * decoders to be reused when switching between them.
+   *
+   * @param mediaCodecPool The pool, or null if decoders shouldn't be pooled.
+   * @return This factory, for convenience.
+   */
+  public DefaultRenderersFactory setMediaCodecPool(@Nullable MediaCodecPool mediaCodecPool) {
+    this.mediaCodecPool = mediaCodecPool;
+    return this;
+  }
+
+  /**
+   * Sets whether the {@link MediaCodecVideoRenderer} and {@link MediaCodecAudioRenderer} instances
+   * built by this factory operate their codecs in asynchronous mode. See {@link
+   * MediaCodecRenderer#setAsynchronousCodecOperationEnabled(boolean)}.
+   *
+   * @param enabled Whether codecs should be operated in asynchronous mode.
+   * @return This factory, for convenience.
+   */
+  public DefaultRenderersFactory setAsynchronousCodecOperationEnabled(boolean enabled) {
+    asynchronousCodecOperationEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Sets whether the {@link MediaCodecVideoRenderer} instances built by this factory drop frames
+   * predictively. See {@link MediaCodecVideoRenderer#setPredictiveFrameDroppingEnabled(boolean)}.
+   *
+   * @param enabled Whether frames should be dropped predictively.
+   * @return This factory, for convenience.
+   */
+  public DefaultRenderersFactory setPredictiveFrameDroppingEnabled(boolean enabled) {
+    predictiveFrameDroppingEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Sets a {@link SubtitleCache} to be used by the {@link TextRenderer} instances built by this
+   * factory. Sharing a cache between players allows decoded subtitles to be reused across them.
+   *
+   * @param subtitleCache The cache, or null if decoded subtitles shouldn't be cached.
+   * @return This factory, for convenience.
+   */
+  public DefaultRenderersFactory setSubtitleCache(@Nullable SubtitleCache subtitleCache) {
+    this.subtitleCache = subtitleCache;
+    return this;
+  }
+
   @Override
   public Renderer[] createRenderers(
       Handler eventHandler,
@@ -206,7 +263,7 @@ public class DefaultRenderersFactory implements RenderersFactory {
       long allowedVideoJoiningTimeMs, Handler eventHandler,
       VideoRendererEventListener eventListener, @ExtensionRendererMode int extensionRendererMode,
       ArrayList<Renderer> out) {
-    out.add(
+    MediaCodecVideoRenderer videoRenderer =
         new MediaCodecVideoRenderer(
             context,
             MediaCodecSelector.DEFAULT,
@@ -215,7 +272,11 @@ public class DefaultRenderersFactory implements RenderersFactory {
             /* playClearSamplesWithoutKeys= */ false,
             eventHandler,
             eventListener,
-            MAX_DROPPED_VIDEO_FRAME_COUNT_TO_NOTIFY));
+            MAX_DROPPED_VIDEO_FRAME_COUNT_TO_NOTIFY);
+    videoRenderer.setCodecPool(mediaCodecPool);
+    videoRenderer.setAsynchronousCodecOperationEnabled(asynchronousCodecOperationEnabled);
+    videoRenderer.setPredictiveFrameDroppingEnabled(predictiveFrameDroppingEnabled);
+    out.add(videoRenderer);
 
     if (extensionRendererMode == EXTENSION_RENDERER_MODE_OFF) {
       return;
@@ -273,7 +334,7 @@ public class DefaultRenderersFactory implements RenderersFactory {
       AudioProcessor[] audioProcessors, Handler eventHandler,
       AudioRendererEventListener eventListener, @ExtensionRendererMode int extensionRendererMode,
       ArrayList<Renderer> out) {
-    out.add(
+    MediaCodecAudioRenderer audioRenderer =
         new MediaCodecAudioRenderer(
             context,
             MediaCodecSelector.DEFAULT,
@@ -282,7 +343,10 @@ public class DefaultRenderersFactory implements RenderersFactory {
             eventHandler,
             eventListener,
             AudioCapabilities.getCapabilities(context),
-            audioProcessors));
+            audioProcessors);
+    audioRenderer.setCodecPool(mediaCodecPool);
+    audioRenderer.setAsynchronousCodecOperationEnabled(asynchronousCodecOperationEnabled);
+    out.add(audioRenderer);
 
     if (extensionRendererMode == EXTENSION_RENDERER_MODE_OFF) {
       return;
@@ -372,7 +436,9 @@ public class DefaultRenderersFactory implements RenderersFactory {
       Looper outputLooper,
       @ExtensionRendererMode int extensionRendererMode,
       ArrayList<Renderer> out) {
-    out.add(new TextRenderer(output, outputLooper));
+    TextRenderer textRenderer = new TextRenderer(output, outputLooper);
+    textRenderer.setSubtitleCache(subtitleCache);
+    out.add(textRenderer);
   }
 
   /**
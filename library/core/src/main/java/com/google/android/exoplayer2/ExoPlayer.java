@@ -252,4 +252,20 @@ public interface ExoPlayer extends Player {
 
   /** Returns the currently active {@link SeekParameters} of the player. */
   SeekParameters getSeekParameters();
+
+  /**
+   * Sets whether the player's renderers render concurrently within each iteration of the playback
+   * loop. If enabled, each enabled renderer that extends {@link BaseRenderer}, other than the
+   * first, renders on its own thread while the remaining renderers render on the playback thread.
+   * All renderers render to the same position, and each iteration waits for every renderer to
+   * finish before the player's state is updated. An iteration therefore takes about as long as the
+   * slowest renderer rather than the sum of their rendering times, but a slow renderer still delays
+   * the next iteration of every renderer, and handing work to the rendering threads adds overhead
+   * to each iteration. Disabled by default.
+   *
+   * <p>The default implementation does nothing, for players that don't support parallel rendering.
+   *
+   * @param parallelRenderingEnabled Whether renderers render in parallel.
+   */
+  default void setParallelRenderingEnabled(boolean parallelRenderingEnabled) {}
 }
@@ -377,6 +377,11 @@ import java.util.concurrent.CopyOnWriteArraySet;
     return seekParameters;
   }
 
+  @Override
+  public void setParallelRenderingEnabled(boolean parallelRenderingEnabled) {
+    internalPlayer.setParallelRenderingEnabled(parallelRenderingEnabled);
+  }
+
   @Override
   public @Nullable Object getCurrentTag() {
     int windowIndex = getCurrentWindowIndex();
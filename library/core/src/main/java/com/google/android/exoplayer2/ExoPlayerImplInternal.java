@@ -79,6 +79,7 @@ import java.util.Collections;
   private static final int MSG_SEND_MESSAGE = 14;
   private static final int MSG_SEND_MESSAGE_TO_TARGET_THREAD = 15;
   private static final int MSG_PLAYBACK_PARAMETERS_CHANGED_INTERNAL = 16;
+  private static final int MSG_SET_PARALLEL_RENDERING_ENABLED = 17;
 
   private static final int PREPARING_SOURCE_INTERVAL_MS = 10;
   private static final int RENDERING_INTERVAL_MS = 10;
@@ -115,6 +116,7 @@ import java.util.Collections;
   private boolean rebuffering;
   @Player.RepeatMode private int repeatMode;
   private boolean shuffleModeEnabled;
+  private @Nullable RenderThreadPool renderThreadPool;
 
   private int pendingPrepareCount;
   private SeekPosition pendingInitialSeekPosition;
@@ -154,9 +156,13 @@ import java.util.Collections;
         PlaybackInfo.createDummy(/* startPositionUs= */ C.TIME_UNSET, emptyTrackSelectorResult);
     playbackInfoUpdate = new PlaybackInfoUpdate();
     rendererCapabilities = new RendererCapabilities[renderers.length];
+    Object sampleStreamLock = new Object();
     for (int i = 0; i < renderers.length; i++) {
       renderers[i].setIndex(i);
       rendererCapabilities[i] = renderers[i].getCapabilities();
+      if (renderers[i] instanceof BaseRenderer) {
+        ((BaseRenderer) renderers[i]).setSampleStreamLock(sampleStreamLock);
+      }
     }
     mediaClock = new DefaultMediaClock(this, clock);
     pendingMessages = new ArrayList<>();
@@ -204,6 +210,12 @@ import java.util.Collections;
     handler.obtainMessage(MSG_SET_SEEK_PARAMETERS, seekParameters).sendToTarget();
   }
 
+  public void setParallelRenderingEnabled(boolean parallelRenderingEnabled) {
+    handler
+        .obtainMessage(MSG_SET_PARALLEL_RENDERING_ENABLED, parallelRenderingEnabled ? 1 : 0, 0)
+        .sendToTarget();
+  }
+
   public void stop(boolean reset) {
     handler.obtainMessage(MSG_STOP, reset ? 1 : 0, 0).sendToTarget();
   }
@@ -311,6 +323,9 @@ import java.util.Collections;
         case MSG_SET_SEEK_PARAMETERS:
           setSeekParametersInternal((SeekParameters) msg.obj);
           break;
+        case MSG_SET_PARALLEL_RENDERING_ENABLED:
+          setParallelRenderingEnabledInternal(msg.arg1 != 0);
+          break;
         case MSG_STOP:
           stopInternal(/* reset= */ msg.arg1 != 0, /* acknowledgeStop= */ true);
           break;
@@ -523,11 +538,17 @@ import java.util.Collections;
 
     boolean renderersEnded = true;
     boolean renderersReadyOrEnded = true;
+    if (renderThreadPool != null) {
+      renderThreadPool.render(
+          enabledRenderers, rendererPositionUs, rendererPositionElapsedRealtimeUs);
+    }
     for (Renderer renderer : enabledRenderers) {
       // TODO: Each renderer should return the maximum delay before which it wishes to be called
       // again. The minimum of these values should then be used as the delay before the next
       // invocation of this method.
-      renderer.render(rendererPositionUs, rendererPositionElapsedRealtimeUs);
+      if (renderThreadPool == null) {
+        renderer.render(rendererPositionUs, rendererPositionElapsedRealtimeUs);
+      }
       renderersEnded = renderersEnded && renderer.isEnded();
       // Determine whether the renderer is ready (or ended). We override to assume the renderer is
       // ready if it needs the next sample stream. This is necessary to avoid getting stuck if
@@ -730,6 +751,15 @@ import java.util.Collections;
     this.seekParameters = seekParameters;
   }
 
+  private void setParallelRenderingEnabledInternal(boolean parallelRenderingEnabled) {
+    if (parallelRenderingEnabled && renderThreadPool == null) {
+      renderThreadPool = new RenderThreadPool(renderers);
+    } else if (!parallelRenderingEnabled && renderThreadPool != null) {
+      renderThreadPool.release();
+      renderThreadPool = null;
+    }
+  }
+
   private void stopInternal(boolean reset, boolean acknowledgeStop) {
     resetInternal(
         /* releaseMediaSource= */ true, /* resetPosition= */ reset, /* resetState= */ reset);
@@ -744,6 +774,7 @@ import java.util.Collections;
     resetInternal(
         /* releaseMediaSource= */ true, /* resetPosition= */ true, /* resetState= */ true);
     loadControl.onReleased();
+    setParallelRenderingEnabledInternal(false);
     setState(Player.STATE_IDLE);
     internalPlaybackThread.quit();
     synchronized (this) {
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import android.os.Process;
+import android.support.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the enabled renderers of a player concurrently, each on its own thread.
+ *
+ * <p>The first enabled renderer is rendered on the calling thread. Each other enabled renderer that
+ * extends {@link BaseRenderer} is rendered on a dedicated thread, and any remaining renderers are
+ * rendered sequentially on the calling thread. {@link #render(Renderer[], long, long)} returns only
+ * once every renderer has finished rendering, so all other interaction with the renderers stays on
+ * the calling thread.
+ *
+ * <p>Each call is a fork/join barrier: the renderers render concurrently within a call, but the
+ * caller can't start its next iteration of the rendering loop until the slowest renderer has
+ * finished. A renderer that is slow to render therefore still delays every other renderer's next
+ * call to {@link Renderer#render(long, long)}, although it no longer adds to their time within the
+ * current call.
+ */
+/* package */ final class RenderThreadPool {
+
+  private static final String THREAD_NAME_PREFIX = "ExoPlayer:Renderer:";
+
+  private final Renderer[] renderers;
+  private final RenderTask[] renderTasks;
+  private final Future<?>[] pendingFutures;
+
+  /**
+   * @param renderers The renderers of the player. Their sample stream locks must be shared, as
+   *     described in {@link BaseRenderer#setSampleStreamLock(Object)}.
+   */
+  public RenderThreadPool(Renderer[] renderers) {
+    this.renderers = renderers;
+    renderTasks = new RenderTask[renderers.length];
+    pendingFutures = new Future<?>[renderers.length];
+  }
+
+  /**
+   * Calls {@link Renderer#render(long, long)} on each of the enabled renderers.
+   *
+   * @param enabledRenderers The enabled renderers.
+   * @param positionUs The current media time in microseconds.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   * @throws ExoPlaybackException If any renderer throws. If several renderers throw, the exception
+   *     thrown by the renderer rendered on the calling thread takes precedence.
+   */
+  public void render(Renderer[] enabledRenderers, long positionUs, long elapsedRealtimeUs)
+      throws ExoPlaybackException {
+    int pendingFutureCount = 0;
+    for (int i = 1; i < enabledRenderers.length; i++) {
+      if (enabledRenderers[i] instanceof BaseRenderer) {
+        RenderTask renderTask = getRenderTask(enabledRenderers[i]);
+        renderTask.positionUs = positionUs;
+        renderTask.elapsedRealtimeUs = elapsedRealtimeUs;
+        pendingFutures[pendingFutureCount++] = renderTask.executorService.submit(renderTask);
+      }
+    }
+
+    Throwable error = null;
+    try {
+      for (int i = 0; i < enabledRenderers.length; i++) {
+        if (i == 0 || !(enabledRenderers[i] instanceof BaseRenderer)) {
+          enabledRenderers[i].render(positionUs, elapsedRealtimeUs);
+        }
+      }
+    } catch (ExoPlaybackException | RuntimeException | Error e) {
+      error = e;
+    }
+
+    // Renderers must not be rendering when this method returns, even if it throws.
+    for (int i = 0; i < pendingFutureCount; i++) {
+      Throwable taskError = awaitCompletion(pendingFutures[i]);
+      pendingFutures[i] = null;
+      if (error == null) {
+        error = taskError;
+      }
+    }
+
+    if (error instanceof ExoPlaybackException) {
+      throw (ExoPlaybackException) error;
+    } else if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      throw new IllegalStateException(error);
+    }
+  }
+
+  /** Stops the threads. Must not be called while {@link #render} is executing. */
+  public void release() {
+    for (RenderTask renderTask : renderTasks) {
+      if (renderTask != null) {
+        renderTask.executorService.shutdown();
+      }
+    }
+  }
+
+  private RenderTask getRenderTask(Renderer renderer) {
+    int index = 0;
+    while (renderers[index] != renderer) {
+      index++;
+    }
+    if (renderTasks[index] == null) {
+      String threadName = THREAD_NAME_PREFIX + index;
+      ExecutorService executorService =
+          Executors.newSingleThreadExecutor(
+              runnable ->
+                  new Thread(
+                      () -> {
+                        // Match the priority of the playback thread.
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+                        runnable.run();
+                      },
+                      threadName));
+      renderTasks[index] = new RenderTask(renderer, executorService);
+    }
+    return renderTasks[index];
+  }
+
+  private static @Nullable Throwable awaitCompletion(Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return null;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          return e.getCause();
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static final class RenderTask implements Callable<Void> {
+
+    public final Renderer renderer;
+    public final ExecutorService executorService;
+
+    // Written before the task is submitted, which makes them visible to the rendering thread.
+    public long positionUs;
+    public long elapsedRealtimeUs;
+
+    public RenderTask(Renderer renderer, ExecutorService executorService) {
+      this.renderer = renderer;
+      this.executorService = executorService;
+    }
+
+    @Override
+    public Void call() throws ExoPlaybackException {
+      renderer.render(positionUs, elapsedRealtimeUs);
+      return null;
+    }
+  }
+}
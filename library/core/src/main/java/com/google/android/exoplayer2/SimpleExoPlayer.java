@@ -979,6 +979,12 @@ public class SimpleExoPlayer
     return player.getSeekParameters();
   }
 
+  @Override
+  public void setParallelRenderingEnabled(boolean parallelRenderingEnabled) {
+    verifyApplicationThread();
+    player.setParallelRenderingEnabled(parallelRenderingEnabled);
+  }
+
   @Override
   public @Nullable Object getCurrentTag() {
     verifyApplicationThread();
@@ -1293,6 +1299,13 @@ public class SimpleExoPlayer
       }
     }
 
+    @Override
+    public void onVideoDecoderInfosQueried(long queryDurationMs) {
+      for (VideoRendererEventListener videoDebugListener : videoDebugListeners) {
+        videoDebugListener.onVideoDecoderInfosQueried(queryDurationMs);
+      }
+    }
+
     @Override
     public void onVideoInputFormatChanged(Format format) {
       videoFormat = format;
@@ -1383,6 +1396,13 @@ public class SimpleExoPlayer
       }
     }
 
+    @Override
+    public void onAudioDecoderInfosQueried(long queryDurationMs) {
+      for (AudioRendererEventListener audioDebugListener : audioDebugListeners) {
+        audioDebugListener.onAudioDecoderInfosQueried(queryDurationMs);
+      }
+    }
+
     @Override
     public void onAudioInputFormatChanged(Format format) {
       audioFormat = format;
@@ -198,6 +198,14 @@ public class AnalyticsCollector
     }
   }
 
+  @Override
+  public final void onAudioDecoderInfosQueried(long queryDurationMs) {
+    EventTime eventTime = generateReadingMediaPeriodEventTime();
+    for (AnalyticsListener listener : listeners) {
+      listener.onDecoderInfosQueried(eventTime, C.TRACK_TYPE_AUDIO, queryDurationMs);
+    }
+  }
+
   @Override
   public final void onAudioInputFormatChanged(Format format) {
     EventTime eventTime = generateReadingMediaPeriodEventTime();
@@ -272,6 +280,14 @@ public class AnalyticsCollector
     }
   }
 
+  @Override
+  public final void onVideoDecoderInfosQueried(long queryDurationMs) {
+    EventTime eventTime = generateReadingMediaPeriodEventTime();
+    for (AnalyticsListener listener : listeners) {
+      listener.onDecoderInfosQueried(eventTime, C.TRACK_TYPE_VIDEO, queryDurationMs);
+    }
+  }
+
   @Override
   public final void onVideoInputFormatChanged(Format format) {
     EventTime eventTime = generateReadingMediaPeriodEventTime();
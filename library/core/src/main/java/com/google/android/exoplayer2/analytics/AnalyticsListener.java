@@ -351,6 +351,18 @@ public interface AnalyticsListener {
   default void onDecoderInitialized(
       EventTime eventTime, int trackType, String decoderName, long initializationDurationMs) {}
 
+  /**
+   * Called when an audio or video decoder has been initialized, immediately before {@link
+   * #onDecoderInitialized(EventTime, int, String, long)}, to report the time spent querying the
+   * available decoders since the previous decoder was initialized.
+   *
+   * @param eventTime The event time.
+   * @param trackType The track type of the initialized decoder. Either {@link
+   *     C#TRACK_TYPE_AUDIO} or {@link C#TRACK_TYPE_VIDEO}.
+   * @param queryDurationMs Time spent querying decoders, in milliseconds.
+   */
+  default void onDecoderInfosQueried(EventTime eventTime, int trackType, long queryDurationMs) {}
+
   /**
    * Called when an audio or video decoder input format changed.
    *
@@ -55,6 +55,15 @@ public interface AudioRendererEventListener {
   void onAudioDecoderInitialized(String decoderName, long initializedTimestampMs,
       long initializationDurationMs);
 
+  /**
+   * Called when a decoder has been initialized, immediately before {@link
+   * #onAudioDecoderInitialized(String, long, long)}, to report the time spent querying the
+   * available decoders since the previous decoder was initialized.
+   *
+   * @param queryDurationMs The time spent querying decoders, in milliseconds.
+   */
+  default void onAudioDecoderInfosQueried(long queryDurationMs) {}
+
   /**
    * Called when the format of the media being consumed by the renderer changes.
    *
@@ -121,6 +130,13 @@ public interface AudioRendererEventListener {
       }
     }
 
+    /** Invokes {@link AudioRendererEventListener#onAudioDecoderInfosQueried(long)}. */
+    public void decoderInfosQueried(long queryDurationMs) {
+      if (listener != null) {
+        handler.post(() -> listener.onAudioDecoderInfosQueried(queryDurationMs));
+      }
+    }
+
     /**
      * Invokes {@link AudioRendererEventListener#onAudioInputFormatChanged(Format)}.
      */
@@ -86,6 +86,16 @@ public final class DefaultAudioSink implements AudioSink {
      */
     AudioProcessor[] getAudioProcessors();
 
+    /**
+     * Returns the audio processors from {@link #getAudioProcessors()} that handle {@link
+     * C#ENCODING_PCM_FLOAT} audio. They are applied instead of the full chain when the sink outputs
+     * high resolution integer PCM as float. If the returned array is empty, playback parameters are
+     * not applied to float output. This method is called once during initialization.
+     */
+    default AudioProcessor[] getFloatAudioProcessors() {
+      return new AudioProcessor[0];
+    }
+
     /**
      * Configures audio processors to apply the specified playback parameters immediately, returning
      * the new parameters, which may differ from those passed in. Only called when processors have
@@ -112,11 +122,19 @@ public final class DefaultAudioSink implements AudioSink {
   /**
    * The default audio processor chain, which applies a (possibly empty) chain of user-defined audio
    * processors followed by {@link SilenceSkippingAudioProcessor} and {@link SonicAudioProcessor}.
+   * When the sink outputs float audio, only {@link SonicAudioProcessor} is applied, so speed and
+   * pitch adjustment remain available but silence is not skipped.
+   *
+   * <p>Optionally, speed changes without a pitch change are applied by a {@link
+   * WsolaAudioProcessor} inserted before the {@link SonicAudioProcessor}, which is then only used
+   * for pitch changes and speeds outside the range supported by WSOLA.
    */
   public static class DefaultAudioProcessorChain implements AudioProcessorChain {
 
     private final AudioProcessor[] audioProcessors;
+    private final AudioProcessor[] floatAudioProcessors;
     private final SilenceSkippingAudioProcessor silenceSkippingAudioProcessor;
+    private final @Nullable WsolaAudioProcessor wsolaAudioProcessor;
     private final SonicAudioProcessor sonicAudioProcessor;
 
     /**
@@ -124,11 +142,32 @@ public final class DefaultAudioSink implements AudioSink {
      * audioProcessors} applied before silence skipping and playback parameters.
      */
     public DefaultAudioProcessorChain(AudioProcessor... audioProcessors) {
-      this.audioProcessors = Arrays.copyOf(audioProcessors, audioProcessors.length + 2);
+      this(/* enableWsolaTimeStretching= */ false, audioProcessors);
+    }
+
+    /**
+     * Creates a new default chain of audio processors, with the user-defined {@code
+     * audioProcessors} applied before silence skipping and playback parameters.
+     *
+     * @param enableWsolaTimeStretching Whether to apply speed changes without a pitch change using
+     *     a {@link WsolaAudioProcessor} rather than the {@link SonicAudioProcessor}.
+     * @param audioProcessors The user-defined audio processors.
+     */
+    public DefaultAudioProcessorChain(
+        boolean enableWsolaTimeStretching, AudioProcessor... audioProcessors) {
+      int processorCount = audioProcessors.length + (enableWsolaTimeStretching ? 3 : 2);
+      this.audioProcessors = Arrays.copyOf(audioProcessors, processorCount);
       silenceSkippingAudioProcessor = new SilenceSkippingAudioProcessor();
+      wsolaAudioProcessor = enableWsolaTimeStretching ? new WsolaAudioProcessor() : null;
       sonicAudioProcessor = new SonicAudioProcessor();
       this.audioProcessors[audioProcessors.length] = silenceSkippingAudioProcessor;
-      this.audioProcessors[audioProcessors.length + 1] = sonicAudioProcessor;
+      if (wsolaAudioProcessor != null) {
+        this.audioProcessors[processorCount - 2] = wsolaAudioProcessor;
+        floatAudioProcessors = new AudioProcessor[] {wsolaAudioProcessor, sonicAudioProcessor};
+      } else {
+        floatAudioProcessors = new AudioProcessor[] {sonicAudioProcessor};
+      }
+      this.audioProcessors[processorCount - 1] = sonicAudioProcessor;
     }
 
     @Override
@@ -136,9 +175,28 @@ public final class DefaultAudioSink implements AudioSink {
       return audioProcessors;
     }
 
+    @Override
+    public AudioProcessor[] getFloatAudioProcessors() {
+      return floatAudioProcessors;
+    }
+
     @Override
     public PlaybackParameters applyPlaybackParameters(PlaybackParameters playbackParameters) {
       silenceSkippingAudioProcessor.setEnabled(playbackParameters.skipSilence);
+      if (wsolaAudioProcessor != null) {
+        float speed = playbackParameters.speed;
+        if (playbackParameters.pitch == 1f
+            && speed >= WsolaAudioProcessor.MINIMUM_SPEED
+            && speed <= WsolaAudioProcessor.MAXIMUM_SPEED) {
+          sonicAudioProcessor.setSpeed(1f);
+          sonicAudioProcessor.setPitch(1f);
+          return new PlaybackParameters(
+              wsolaAudioProcessor.setSpeed(speed),
+              /* pitch= */ 1f,
+              playbackParameters.skipSilence);
+        }
+        wsolaAudioProcessor.setSpeed(1f);
+      }
       return new PlaybackParameters(
           sonicAudioProcessor.setSpeed(playbackParameters.speed),
           sonicAudioProcessor.setPitch(playbackParameters.pitch),
@@ -147,7 +205,10 @@ public final class DefaultAudioSink implements AudioSink {
 
     @Override
     public long getMediaDuration(long playoutDuration) {
-      return sonicAudioProcessor.scaleDurationForSpeedup(playoutDuration);
+      long mediaDuration = sonicAudioProcessor.scaleDurationForSpeedup(playoutDuration);
+      return wsolaAudioProcessor != null
+          ? wsolaAudioProcessor.scaleDurationForSpeedup(mediaDuration)
+          : mediaDuration;
     }
 
     @Override
@@ -234,6 +295,7 @@ public final class DefaultAudioSink implements AudioSink {
   private final TrimmingAudioProcessor trimmingAudioProcessor;
   private final AudioProcessor[] toIntPcmAvailableAudioProcessors;
   private final AudioProcessor[] toFloatPcmAvailableAudioProcessors;
+  private final boolean canApplyPlaybackParametersToFloatPcm;
   private final ConditionVariable releasingConditionVariable;
   private final AudioTrackPositionTracker audioTrackPositionTracker;
   private final ArrayDeque<PlaybackParametersCheckpoint> playbackParametersCheckpoints;
@@ -317,8 +379,8 @@ public final class DefaultAudioSink implements AudioSink {
    *     output. May be empty.
    * @param enableConvertHighResIntPcmToFloat Whether to enable conversion of high resolution
    *     integer PCM to 32-bit float for output, if possible. Functionality that uses 16-bit integer
-   *     audio processing (for example, speed and pitch adjustment) will not be available when float
-   *     output is in use.
+   *     audio processing (for example, silence skipping and the user-defined {@code
+   *     audioProcessors}) will not be available when float output is in use.
    */
   public DefaultAudioSink(
       @Nullable AudioCapabilities audioCapabilities,
@@ -339,9 +401,9 @@ public final class DefaultAudioSink implements AudioSink {
    * @param audioProcessorChain An {@link AudioProcessorChain} which is used to apply playback
    *     parameters adjustments. The instance passed in must not be reused in other sinks.
    * @param enableConvertHighResIntPcmToFloat Whether to enable conversion of high resolution
-   *     integer PCM to 32-bit float for output, if possible. Functionality that uses 16-bit integer
-   *     audio processing (for example, speed and pitch adjustment) will not be available when float
-   *     output is in use.
+   *     integer PCM to 32-bit float for output, if possible. Only the audio processors returned by
+   *     {@link AudioProcessorChain#getFloatAudioProcessors()} are applied when float output is in
+   *     use.
    */
   public DefaultAudioSink(
       @Nullable AudioCapabilities audioCapabilities,
@@ -364,7 +426,16 @@ public final class DefaultAudioSink implements AudioSink {
     Collections.addAll(toIntPcmAudioProcessors, audioProcessorChain.getAudioProcessors());
     toIntPcmAvailableAudioProcessors =
         toIntPcmAudioProcessors.toArray(new AudioProcessor[toIntPcmAudioProcessors.size()]);
-    toFloatPcmAvailableAudioProcessors = new AudioProcessor[] {new FloatResamplingAudioProcessor()};
+    AudioProcessor[] floatAudioProcessors = audioProcessorChain.getFloatAudioProcessors();
+    toFloatPcmAvailableAudioProcessors = new AudioProcessor[floatAudioProcessors.length + 1];
+    toFloatPcmAvailableAudioProcessors[0] = new FloatResamplingAudioProcessor();
+    System.arraycopy(
+        floatAudioProcessors,
+        0,
+        toFloatPcmAvailableAudioProcessors,
+        1,
+        floatAudioProcessors.length);
+    canApplyPlaybackParametersToFloatPcm = floatAudioProcessors.length > 0;
     // AMZN_CHANGE_BEGIN
     log.i("Amazon quirks:"
             + " Latency:" + (isLatencyQuirkEnabled ? "on" : "off")
@@ -447,7 +518,9 @@ public final class DefaultAudioSink implements AudioSink {
     }
     @C.Encoding int encoding = inputEncoding;
     boolean processingEnabled = isInputPcm && inputEncoding != C.ENCODING_PCM_FLOAT;
-    canApplyPlaybackParameters = processingEnabled && !shouldConvertHighResIntPcmToFloat;
+    canApplyPlaybackParameters =
+        processingEnabled
+            && (!shouldConvertHighResIntPcmToFloat || canApplyPlaybackParametersToFloatPcm);
 
     if (Util.SDK_INT < 21 && channelCount == 8 && outputChannels == null) {
       // AudioTrack doesn't support 8 channel output before Android L. Discard the last two (side)
@@ -37,6 +37,7 @@ import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
 import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecPool;
 import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
 import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
 import com.google.android.exoplayer2.mediacodec.MediaCodecUtil.DecoderQueryException;
@@ -276,6 +277,13 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     boolean supportsFormatDrm = supportsFormatDrm(drmSessionManager, format.drmInitData);
     if (supportsFormatDrm && allowPassthrough(mimeType)
         && mediaCodecSelector.getPassthroughDecoderInfo() != null) {
+      // AMZN_CHANGE_BEGIN
+      if (AmazonQuirks.isDolbyPassthroughQuirkEnabled()) {
+        // DolbyPassthroughAudioTrack writes asynchronously, so it can't write the A/V sync headers
+        // that tunneled playback requires.
+        tunnelingSupport = TUNNELING_NOT_SUPPORTED;
+      }
+      // AMZN_CHANGE_END
       return ADAPTIVE_NOT_SEAMLESS | tunnelingSupport | FORMAT_HANDLED;
     }
     if ((MimeTypes.AUDIO_RAW.equals(mimeType) && !audioSink.isEncodingSupported(format.pcmEncoding))
@@ -368,6 +376,42 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   @Override
   protected @KeepCodecResult int canKeepCodec(
       MediaCodec codec, MediaCodecInfo codecInfo, Format oldFormat, Format newFormat) {
+    return canKeepCodec(codecInfo, codecMaxInputSize, oldFormat, newFormat);
+  }
+
+  @Override
+  protected @Nullable MediaCodecPool.PooledCodec createPooledCodec(
+      MediaCodec codec, MediaCodecInfo codecInfo, Format format) {
+    if (passthroughEnabled) {
+      return null;
+    }
+    return new MediaCodecPool.PooledCodec(
+        codec,
+        codecInfo,
+        format,
+        /* maxWidth= */ Format.NO_VALUE,
+        /* maxHeight= */ Format.NO_VALUE,
+        codecMaxInputSize);
+  }
+
+  @Override
+  protected @KeepCodecResult int canKeepPooledCodec(
+      MediaCodecPool.PooledCodec pooledCodec, Format format) {
+    return canKeepCodec(
+        pooledCodec.codecInfo, pooledCodec.maxInputSize, pooledCodec.format, format);
+  }
+
+  @Override
+  protected void onPooledCodecAcquired(MediaCodecPool.PooledCodec pooledCodec) {
+    codecMaxInputSize = pooledCodec.maxInputSize;
+    codecNeedsDiscardChannelsWorkaround =
+        codecNeedsDiscardChannelsWorkaround(pooledCodec.codecInfo.name);
+    passthroughEnabled = false;
+    passthroughMediaFormat = null;
+  }
+
+  private @KeepCodecResult int canKeepCodec(
+      MediaCodecInfo codecInfo, int codecMaxInputSize, Format oldFormat, Format newFormat) {
     if (getCodecMaxInputSize(codecInfo, newFormat) <= codecMaxInputSize
         && codecInfo.isSeamlessAdaptationSupported(
             oldFormat, newFormat, /* isNewFormatComplete= */ true)
@@ -401,6 +445,11 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     return maxSampleRate == -1 ? CODEC_OPERATING_RATE_UNSET : (maxSampleRate * operatingRate);
   }
 
+  @Override
+  protected void onDecoderInfosQueried(long queryDurationMs) {
+    eventDispatcher.decoderInfosQueried(queryDurationMs);
+  }
+
   @Override
   protected void onCodecInitialized(String name, long initializedTimestampMs,
       long initializationDurationMs) {
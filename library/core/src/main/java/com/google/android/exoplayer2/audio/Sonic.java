@@ -17,19 +17,25 @@
 package com.google.android.exoplayer2.audio;
 
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import java.util.Arrays;
 
 /**
  * Sonic audio stream processor for time/pitch stretching.
- * <p>
- * Based on https://github.com/waywardgeek/sonic.
+ *
+ * <p>Audio is processed as normalized float samples, so that 16-bit integer and float input share
+ * the same processing path. 16-bit samples are converted when they are queued and read.
+ *
+ * <p>Based on https://github.com/waywardgeek/sonic.
  */
 /* package */ final class Sonic {
 
   private static final int MINIMUM_PITCH = 65;
   private static final int MAXIMUM_PITCH = 400;
   private static final int AMDF_FREQUENCY = 4000;
+  private static final float SHORT_TO_FLOAT_SCALE = 1f / 32768;
 
   private final int inputSampleRateHz;
   private final int channelCount;
@@ -39,21 +45,22 @@ import java.util.Arrays;
   private final int minPeriod;
   private final int maxPeriod;
   private final int maxRequiredFrameCount;
-  private final short[] downSampleBuffer;
+  private final float[] downSampleBuffer;
 
-  private short[] inputBuffer;
+  private float[] inputBuffer;
   private int inputFrameCount;
-  private short[] outputBuffer;
+  private float[] outputBuffer;
   private int outputFrameCount;
-  private short[] pitchBuffer;
+  private float[] pitchBuffer;
   private int pitchFrameCount;
   private int oldRatePosition;
   private int newRatePosition;
   private int remainingInputToCopyFrameCount;
   private int prevPeriod;
-  private int prevMinDiff;
-  private int minDiff;
-  private int maxDiff;
+  private float prevMinDiff;
+  private float minDiff;
+  private float maxDiff;
+  private short[] conversionBuffer;
 
   /**
    * Creates a new Sonic audio stream processor.
@@ -74,10 +81,11 @@ import java.util.Arrays;
     minPeriod = inputSampleRateHz / MAXIMUM_PITCH;
     maxPeriod = inputSampleRateHz / MINIMUM_PITCH;
     maxRequiredFrameCount = 2 * maxPeriod;
-    downSampleBuffer = new short[maxRequiredFrameCount];
-    inputBuffer = new short[maxRequiredFrameCount * channelCount];
-    outputBuffer = new short[maxRequiredFrameCount * channelCount];
-    pitchBuffer = new short[maxRequiredFrameCount * channelCount];
+    downSampleBuffer = new float[maxRequiredFrameCount];
+    inputBuffer = new float[maxRequiredFrameCount * channelCount];
+    outputBuffer = new float[maxRequiredFrameCount * channelCount];
+    pitchBuffer = new float[maxRequiredFrameCount * channelCount];
+    conversionBuffer = new short[0];
   }
 
   /**
@@ -88,9 +96,29 @@ import java.util.Arrays;
    */
   public void queueInput(ShortBuffer buffer) {
     int framesToWrite = buffer.remaining() / channelCount;
-    int bytesToWrite = framesToWrite * channelCount * 2;
+    int samplesToWrite = framesToWrite * channelCount;
     inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
-    buffer.get(inputBuffer, inputFrameCount * channelCount, bytesToWrite / 2);
+    short[] samples = getConversionBuffer(samplesToWrite);
+    buffer.get(samples, 0, samplesToWrite);
+    int offset = inputFrameCount * channelCount;
+    for (int i = 0; i < samplesToWrite; i++) {
+      inputBuffer[offset + i] = samples[i] * SHORT_TO_FLOAT_SCALE;
+    }
+    inputFrameCount += framesToWrite;
+    processStreamInput();
+  }
+
+  /**
+   * Queues remaining data from {@code buffer}, and advances its position by the number of samples
+   * consumed.
+   *
+   * @param buffer A {@link FloatBuffer} containing normalized input samples between its position
+   *     and limit.
+   */
+  public void queueInput(FloatBuffer buffer) {
+    int framesToWrite = buffer.remaining() / channelCount;
+    inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
+    buffer.get(inputBuffer, inputFrameCount * channelCount, framesToWrite * channelCount);
     inputFrameCount += framesToWrite;
     processStreamInput();
   }
@@ -102,15 +130,27 @@ import java.util.Arrays;
    * @param buffer A {@link ShortBuffer} into which output will be written.
    */
   public void getOutput(ShortBuffer buffer) {
+    int framesToRead = Math.min(buffer.remaining() / channelCount, outputFrameCount);
+    int samplesToRead = framesToRead * channelCount;
+    short[] samples = getConversionBuffer(samplesToRead);
+    for (int i = 0; i < samplesToRead; i++) {
+      int sample = (int) (outputBuffer[i] * 32768);
+      samples[i] = (short) Util.constrainValue(sample, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+    buffer.put(samples, 0, samplesToRead);
+    removeOutputFrames(framesToRead);
+  }
+
+  /**
+   * Gets available output as normalized samples, outputting to the start of {@code buffer}. The
+   * buffer's position will be advanced by the number of samples written.
+   *
+   * @param buffer A {@link FloatBuffer} into which output will be written.
+   */
+  public void getOutput(FloatBuffer buffer) {
     int framesToRead = Math.min(buffer.remaining() / channelCount, outputFrameCount);
     buffer.put(outputBuffer, 0, framesToRead * channelCount);
-    outputFrameCount -= framesToRead;
-    System.arraycopy(
-        outputBuffer,
-        framesToRead * channelCount,
-        outputBuffer,
-        0,
-        outputFrameCount * channelCount);
+    removeOutputFrames(framesToRead);
   }
 
   /**
@@ -128,9 +168,11 @@ import java.util.Arrays;
     inputBuffer =
         ensureSpaceForAdditionalFrames(
             inputBuffer, inputFrameCount, remainingFrameCount + 2 * maxRequiredFrameCount);
-    for (int xSample = 0; xSample < 2 * maxRequiredFrameCount * channelCount; xSample++) {
-      inputBuffer[remainingFrameCount * channelCount + xSample] = 0;
-    }
+    Arrays.fill(
+        inputBuffer,
+        remainingFrameCount * channelCount,
+        (remainingFrameCount + 2 * maxRequiredFrameCount) * channelCount,
+        0f);
     inputFrameCount += 2 * maxRequiredFrameCount;
     processStreamInput();
     // Throw away any extra frames we generated due to the silence we added.
@@ -157,7 +199,10 @@ import java.util.Arrays;
     maxDiff = 0;
   }
 
-  /** Returns the number of output frames that can be read with {@link #getOutput(ShortBuffer)}. */
+  /**
+   * Returns the number of output frames that can be read with {@link #getOutput(ShortBuffer)} or
+   * {@link #getOutput(FloatBuffer)}.
+   */
   public int getFramesAvailable() {
     return outputFrameCount;
   }
@@ -174,8 +219,8 @@ import java.util.Arrays;
    *     buffer.
    * @return A buffer with enough space for the additional frames.
    */
-  private short[] ensureSpaceForAdditionalFrames(
-      short[] buffer, int frameCount, int additionalFrameCount) {
+  private float[] ensureSpaceForAdditionalFrames(
+      float[] buffer, int frameCount, int additionalFrameCount) {
     int currentCapacityFrames = buffer.length / channelCount;
     if (frameCount + additionalFrameCount <= currentCapacityFrames) {
       return buffer;
@@ -185,6 +230,19 @@ import java.util.Arrays;
     }
   }
 
+  private short[] getConversionBuffer(int sampleCount) {
+    if (conversionBuffer.length < sampleCount) {
+      conversionBuffer = new short[sampleCount];
+    }
+    return conversionBuffer;
+  }
+
+  private void removeOutputFrames(int frameCount) {
+    outputFrameCount -= frameCount;
+    System.arraycopy(
+        outputBuffer, frameCount * channelCount, outputBuffer, 0, outputFrameCount * channelCount);
+  }
+
   private void removeProcessedInputFrames(int positionFrames) {
     int remainingFrames = inputFrameCount - positionFrames;
     System.arraycopy(
@@ -192,7 +250,7 @@ import java.util.Arrays;
     inputFrameCount = remainingFrames;
   }
 
-  private void copyToOutput(short[] samples, int positionFrames, int frameCount) {
+  private void copyToOutput(float[] samples, int positionFrames, int frameCount) {
     outputBuffer = ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, frameCount);
     System.arraycopy(
         samples,
@@ -210,40 +268,39 @@ import java.util.Arrays;
     return frameCount;
   }
 
-  private void downSampleInput(short[] samples, int position, int skip) {
+  private void downSampleInput(float[] samples, int position, int skip) {
     // If skip is greater than one, average skip samples together and write them to the down-sample
     // buffer. If channelCount is greater than one, mix the channels together as we down sample.
     int frameCount = maxRequiredFrameCount / skip;
     int samplesPerValue = channelCount * skip;
+    float scale = 1f / samplesPerValue;
     position *= channelCount;
     for (int i = 0; i < frameCount; i++) {
-      int value = 0;
+      int start = position + i * samplesPerValue;
+      float value = 0;
       for (int j = 0; j < samplesPerValue; j++) {
-        value += samples[position + i * samplesPerValue + j];
+        value += samples[start + j];
       }
-      value /= samplesPerValue;
-      downSampleBuffer[i] = (short) value;
+      downSampleBuffer[i] = value * scale;
     }
   }
 
-  private int findPitchPeriodInRange(short[] samples, int position, int minPeriod, int maxPeriod) {
+  private int findPitchPeriodInRange(float[] samples, int position, int minPeriod, int maxPeriod) {
     // Find the best frequency match in the range, and given a sample skip multiple. For now, just
     // find the pitch of the first channel.
     int bestPeriod = 0;
     int worstPeriod = 255;
-    int minDiff = 1;
-    int maxDiff = 0;
+    float minDiff = 1;
+    float maxDiff = 0;
     position *= channelCount;
     for (int period = minPeriod; period <= maxPeriod; period++) {
-      int diff = 0;
+      // The inner loop reads both windows sequentially and has no branches, so it can be
+      // vectorized by the compiler.
+      int periodPosition = position + period;
+      float diff = 0;
       for (int i = 0; i < period; i++) {
-        short sVal = samples[position + i];
-        short pVal = samples[position + period + i];
-        diff += Math.abs(sVal - pVal);
+        diff += Math.abs(samples[position + i] - samples[periodPosition + i]);
       }
-      // Note that the highest number of samples we add into diff will be less than 256, since we
-      // skip samples. Thus, diff is a 24 bit number, and we can safely multiply by numSamples
-      // without overflow.
       if (diff * bestPeriod < minDiff * period) {
         minDiff = diff;
         bestPeriod = period;
@@ -262,7 +319,7 @@ import java.util.Arrays;
    * Returns whether the previous pitch period estimate is a better approximation, which can occur
    * at the abrupt end of voiced words.
    */
-  private boolean previousPeriodBetter(int minDiff, int maxDiff) {
+  private boolean previousPeriodBetter(float minDiff, float maxDiff) {
     if (minDiff == 0 || prevPeriod == 0) {
       return false;
     }
@@ -277,7 +334,7 @@ import java.util.Arrays;
     return true;
   }
 
-  private int findPitchPeriod(short[] samples, int position) {
+  private int findPitchPeriod(float[] samples, int position) {
     // Find the pitch period. This is a critical step, and we may have to try multiple ways to get a
     // good answer. This version uses AMDF. To improve speed, we down sample by an integer factor
     // get in the 11 kHz range, and then do it again with a narrower frequency range without down
@@ -344,15 +401,15 @@ import java.util.Arrays;
     pitchFrameCount -= frameCount;
   }
 
-  private short interpolate(short[] in, int inPos, int oldSampleRate, int newSampleRate) {
-    short left = in[inPos];
-    short right = in[inPos + channelCount];
+  private float interpolate(float[] in, int inPos, int oldSampleRate, int newSampleRate) {
+    float left = in[inPos];
+    float right = in[inPos + channelCount];
     int position = newRatePosition * oldSampleRate;
     int leftPosition = oldRatePosition * newSampleRate;
     int rightPosition = (oldRatePosition + 1) * newSampleRate;
     int ratio = rightPosition - position;
     int width = rightPosition - leftPosition;
-    return (short) ((ratio * left + (width - ratio) * right) / width);
+    return (ratio * left + (width - ratio) * right) / width;
   }
 
   private void adjustRate(float rate, int originalOutputFrameCount) {
@@ -390,7 +447,7 @@ import java.util.Arrays;
     removePitchFrames(pitchFrameCount - 1);
   }
 
-  private int skipPitchPeriod(short[] samples, int position, float speed, int period) {
+  private int skipPitchPeriod(float[] samples, int position, float speed, int period) {
     // Skip over a pitch period, and copy period/speed samples to the output.
     int newFrameCount;
     if (speed >= 2.0f) {
@@ -413,7 +470,7 @@ import java.util.Arrays;
     return newFrameCount;
   }
 
-  private int insertPitchPeriod(short[] samples, int position, float speed, int period) {
+  private int insertPitchPeriod(float[] samples, int position, float speed, int period) {
     // Insert a pitch period, and determine how much input to copy directly.
     int newFrameCount;
     if (speed < 0.5f) {
@@ -483,22 +540,26 @@ import java.util.Arrays;
   private static void overlapAdd(
       int frameCount,
       int channelCount,
-      short[] out,
+      float[] out,
       int outPosition,
-      short[] rampDown,
+      float[] rampDown,
       int rampDownPosition,
-      short[] rampUp,
+      float[] rampUp,
       int rampUpPosition) {
-    for (int i = 0; i < channelCount; i++) {
-      int o = outPosition * channelCount + i;
-      int u = rampUpPosition * channelCount + i;
-      int d = rampDownPosition * channelCount + i;
-      for (int t = 0; t < frameCount; t++) {
-        out[o] = (short) ((rampDown[d] * (frameCount - t) + rampUp[u] * t) / frameCount);
-        o += channelCount;
-        d += channelCount;
-        u += channelCount;
+    // Samples are visited in memory order, with the ramp weights computed once per frame.
+    int o = outPosition * channelCount;
+    int d = rampDownPosition * channelCount;
+    int u = rampUpPosition * channelCount;
+    float step = 1f / frameCount;
+    for (int t = 0; t < frameCount; t++) {
+      float upWeight = t * step;
+      float downWeight = 1f - upWeight;
+      for (int i = 0; i < channelCount; i++) {
+        out[o + i] = rampDown[d + i] * downWeight + rampUp[u + i] * upWeight;
       }
+      o += channelCount;
+      d += channelCount;
+      u += channelCount;
     }
   }
 
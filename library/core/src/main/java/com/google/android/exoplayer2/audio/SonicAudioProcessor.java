@@ -23,10 +23,13 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * An {@link AudioProcessor} that uses the Sonic library to modify audio speed/pitch/sample rate.
+ * Handles {@link C#ENCODING_PCM_16BIT} and {@link C#ENCODING_PCM_FLOAT} audio, and outputs audio
+ * with the same encoding as its input.
  */
 public final class SonicAudioProcessor implements AudioProcessor {
 
@@ -64,6 +67,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   private int channelCount;
   private int sampleRateHz;
+  private @C.PcmEncoding int encoding;
   private float speed;
   private float pitch;
   private int outputSampleRateHz;
@@ -72,6 +76,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
   private @Nullable Sonic sonic;
   private ByteBuffer buffer;
   private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
   private ByteBuffer outputBuffer;
   private long inputBytes;
   private long outputBytes;
@@ -85,9 +90,11 @@ public final class SonicAudioProcessor implements AudioProcessor {
     pitch = 1f;
     channelCount = Format.NO_VALUE;
     sampleRateHz = Format.NO_VALUE;
+    encoding = C.ENCODING_INVALID;
     outputSampleRateHz = Format.NO_VALUE;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
   }
@@ -160,17 +167,18 @@ public final class SonicAudioProcessor implements AudioProcessor {
   @Override
   public boolean configure(int sampleRateHz, int channelCount, @Encoding int encoding)
       throws UnhandledFormatException {
-    if (encoding != C.ENCODING_PCM_16BIT) {
+    if (encoding != C.ENCODING_PCM_16BIT && encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledFormatException(sampleRateHz, channelCount, encoding);
     }
     int outputSampleRateHz = pendingOutputSampleRateHz == SAMPLE_RATE_NO_CHANGE
         ? sampleRateHz : pendingOutputSampleRateHz;
     if (this.sampleRateHz == sampleRateHz && this.channelCount == channelCount
-        && this.outputSampleRateHz == outputSampleRateHz) {
+        && this.encoding == encoding && this.outputSampleRateHz == outputSampleRateHz) {
       return false;
     }
     this.sampleRateHz = sampleRateHz;
     this.channelCount = channelCount;
+    this.encoding = encoding;
     this.outputSampleRateHz = outputSampleRateHz;
     sonic = null;
     return true;
@@ -191,7 +199,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public int getOutputEncoding() {
-    return C.ENCODING_PCM_16BIT;
+    return encoding;
   }
 
   @Override
@@ -202,23 +210,33 @@ public final class SonicAudioProcessor implements AudioProcessor {
   @Override
   public void queueInput(ByteBuffer inputBuffer) {
     Assertions.checkState(sonic != null);
+    boolean isFloat = encoding == C.ENCODING_PCM_FLOAT;
     if (inputBuffer.hasRemaining()) {
-      ShortBuffer shortBuffer = inputBuffer.asShortBuffer();
       int inputSize = inputBuffer.remaining();
       inputBytes += inputSize;
-      sonic.queueInput(shortBuffer);
+      if (isFloat) {
+        sonic.queueInput(inputBuffer.asFloatBuffer());
+      } else {
+        sonic.queueInput(inputBuffer.asShortBuffer());
+      }
       inputBuffer.position(inputBuffer.position() + inputSize);
     }
-    int outputSize = sonic.getFramesAvailable() * channelCount * 2;
+    int outputSize = sonic.getFramesAvailable() * channelCount * (isFloat ? 4 : 2);
     if (outputSize > 0) {
       if (buffer.capacity() < outputSize) {
         buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
         shortBuffer = buffer.asShortBuffer();
+        floatBuffer = buffer.asFloatBuffer();
       } else {
         buffer.clear();
         shortBuffer.clear();
+        floatBuffer.clear();
+      }
+      if (isFloat) {
+        sonic.getOutput(floatBuffer);
+      } else {
+        sonic.getOutput(shortBuffer);
       }
-      sonic.getOutput(shortBuffer);
       outputBytes += outputSize;
       buffer.limit(outputSize);
       outputBuffer = buffer;
@@ -265,9 +283,11 @@ public final class SonicAudioProcessor implements AudioProcessor {
     pitch = 1f;
     channelCount = Format.NO_VALUE;
     sampleRateHz = Format.NO_VALUE;
+    encoding = C.ENCODING_INVALID;
     outputSampleRateHz = Format.NO_VALUE;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
     sonic = null;
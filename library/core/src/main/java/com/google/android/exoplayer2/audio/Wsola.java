@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Waveform similarity overlap-add (WSOLA) audio stream processor for time stretching without
+ * changing pitch.
+ *
+ * <p>Output is generated in fixed length sequences of input audio. Consecutive sequences are
+ * cross-faded over a short overlap, and the input position of each sequence is advanced by the
+ * nominal hop scaled by the speed. The start of each sequence is moved within a small seek window
+ * to the position where the input is most similar to the end of the previous sequence, so that the
+ * cross-fade doesn't introduce audible discontinuities.
+ *
+ * <p>The similarity search uses a mono downmix of the audio, so its cost barely depends on the
+ * channel count. A coarse search over a decimated downmix is followed by a refinement around the
+ * best coarse match. Sequences are longer for speeds close to normal speed, so that fewer searches
+ * are needed. The weights applied to the cross-fade and to the correlation reference are computed
+ * once, when the instance is created.
+ *
+ * <p>Audio is processed as normalized float samples. 16-bit samples are converted when they are
+ * queued and read.
+ */
+/* package */ final class Wsola {
+
+  private static final int MIN_SEQUENCE_DURATION_MS = 50;
+  private static final int MAX_SEQUENCE_DURATION_MS = 125;
+  private static final int OVERLAP_DURATION_MS = 8;
+  private static final int SEEK_WINDOW_DURATION_MS = 15;
+  /** The decimation factor of the downmix used for the coarse search. */
+  private static final int DECIMATION = 4;
+  private static final float SHORT_TO_FLOAT_SCALE = 1f / 32768;
+
+  private final int channelCount;
+  private final float speed;
+  private final int sequenceFrameCount;
+  private final int overlapFrameCount;
+  private final int seekWindowFrameCount;
+  private final float nominalSkipFrameCount;
+  private final float[] fadeInWeights;
+  private final float[] referenceWeights;
+  private final float[] correlationReference;
+  private final float[] monoInput;
+  private final double[] monoInputEnergy;
+  private final float[] decimatedCorrelationReference;
+  private final float[] decimatedMonoInput;
+  private final double[] decimatedMonoInputEnergy;
+  private final float[] overlapBuffer;
+
+  private float[] inputBuffer;
+  private int inputFrameCount;
+  private float[] outputBuffer;
+  private int outputFrameCount;
+  private float skipFrameCountRemainder;
+  private int pendingSkipFrameCount;
+  private boolean hasOverlap;
+  private long queuedInputFrameCount;
+  private long generatedOutputFrameCount;
+  private short[] conversionBuffer;
+
+  /**
+   * Creates a new WSOLA audio stream processor.
+   *
+   * @param sampleRateHz The sample rate of the audio, in hertz.
+   * @param channelCount The number of channels in the audio.
+   * @param speed The speedup factor for output audio.
+   */
+  public Wsola(int sampleRateHz, int channelCount, float speed) {
+    this.channelCount = channelCount;
+    this.speed = speed;
+    // Use sequences from 125 ms at half speed to 50 ms at double speed.
+    float sequenceDurationMs =
+        Util.constrainValue(
+            MAX_SEQUENCE_DURATION_MS - 50 * (speed - 0.5f),
+            MIN_SEQUENCE_DURATION_MS,
+            MAX_SEQUENCE_DURATION_MS);
+    sequenceFrameCount = (int) (sampleRateHz * sequenceDurationMs / 1000);
+    overlapFrameCount = sampleRateHz * OVERLAP_DURATION_MS / 1000 / DECIMATION * DECIMATION;
+    seekWindowFrameCount = sampleRateHz * SEEK_WINDOW_DURATION_MS / 1000 / DECIMATION * DECIMATION;
+    nominalSkipFrameCount = speed * (sequenceFrameCount - overlapFrameCount);
+    fadeInWeights = new float[overlapFrameCount];
+    referenceWeights = new float[overlapFrameCount];
+    float maxReferenceWeight = overlapFrameCount * overlapFrameCount / 4f;
+    for (int i = 0; i < overlapFrameCount; i++) {
+      fadeInWeights[i] = (float) i / overlapFrameCount;
+      // Emphasize the middle of the overlap, where the cross-fade weights are closest.
+      referenceWeights[i] = i * (overlapFrameCount - i) / maxReferenceWeight;
+    }
+    correlationReference = new float[overlapFrameCount];
+    monoInput = new float[seekWindowFrameCount + overlapFrameCount];
+    monoInputEnergy = new double[seekWindowFrameCount + overlapFrameCount + 1];
+    decimatedCorrelationReference = new float[overlapFrameCount / DECIMATION];
+    decimatedMonoInput = new float[monoInput.length / DECIMATION];
+    decimatedMonoInputEnergy = new double[decimatedMonoInput.length + 1];
+    overlapBuffer = new float[overlapFrameCount * channelCount];
+    int maxRequiredFrameCount = getRequiredInputFrameCount();
+    inputBuffer = new float[2 * maxRequiredFrameCount * channelCount];
+    outputBuffer = new float[2 * sequenceFrameCount * channelCount];
+    conversionBuffer = new short[0];
+  }
+
+  /**
+   * Queues remaining data from {@code buffer}, and advances its position by the number of samples
+   * consumed.
+   *
+   * @param buffer A {@link ShortBuffer} containing input data between its position and limit.
+   */
+  public void queueInput(ShortBuffer buffer) {
+    int framesToWrite = buffer.remaining() / channelCount;
+    int samplesToWrite = framesToWrite * channelCount;
+    inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
+    short[] samples = getConversionBuffer(samplesToWrite);
+    buffer.get(samples, 0, samplesToWrite);
+    int offset = inputFrameCount * channelCount;
+    for (int i = 0; i < samplesToWrite; i++) {
+      inputBuffer[offset + i] = samples[i] * SHORT_TO_FLOAT_SCALE;
+    }
+    inputFrameCount += framesToWrite;
+    queuedInputFrameCount += framesToWrite;
+    processStreamInput(/* endOfStream= */ false);
+  }
+
+  /**
+   * Queues remaining data from {@code buffer}, and advances its position by the number of samples
+   * consumed.
+   *
+   * @param buffer A {@link FloatBuffer} containing normalized input samples between its position
+   *     and limit.
+   */
+  public void queueInput(FloatBuffer buffer) {
+    int framesToWrite = buffer.remaining() / channelCount;
+    inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
+    buffer.get(inputBuffer, inputFrameCount * channelCount, framesToWrite * channelCount);
+    inputFrameCount += framesToWrite;
+    queuedInputFrameCount += framesToWrite;
+    processStreamInput(/* endOfStream= */ false);
+  }
+
+  /**
+   * Gets available output, outputting to the start of {@code buffer}. The buffer's position will be
+   * advanced by the number of samples written.
+   *
+   * @param buffer A {@link ShortBuffer} into which output will be written.
+   */
+  public void getOutput(ShortBuffer buffer) {
+    int framesToRead = Math.min(buffer.remaining() / channelCount, outputFrameCount);
+    int samplesToRead = framesToRead * channelCount;
+    short[] samples = getConversionBuffer(samplesToRead);
+    for (int i = 0; i < samplesToRead; i++) {
+      int sample = (int) (outputBuffer[i] * 32768);
+      samples[i] = (short) Util.constrainValue(sample, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+    buffer.put(samples, 0, samplesToRead);
+    removeOutputFrames(framesToRead);
+  }
+
+  /**
+   * Gets available output as normalized samples, outputting to the start of {@code buffer}. The
+   * buffer's position will be advanced by the number of samples written.
+   *
+   * @param buffer A {@link FloatBuffer} into which output will be written.
+   */
+  public void getOutput(FloatBuffer buffer) {
+    int framesToRead = Math.min(buffer.remaining() / channelCount, outputFrameCount);
+    buffer.put(outputBuffer, 0, framesToRead * channelCount);
+    removeOutputFrames(framesToRead);
+  }
+
+  /**
+   * Forces generating output using whatever data has been queued already. The output is trimmed so
+   * that its total duration matches the duration of the input divided by the speed.
+   */
+  public void queueEndOfStream() {
+    long expectedOutputFrameCount = (long) (queuedInputFrameCount / speed + 0.5f);
+    // Add enough silence to flush the input and overlap buffers.
+    int paddingFrameCount = 2 * getRequiredInputFrameCount();
+    inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, paddingFrameCount);
+    Arrays.fill(
+        inputBuffer,
+        inputFrameCount * channelCount,
+        (inputFrameCount + paddingFrameCount) * channelCount,
+        0f);
+    inputFrameCount += paddingFrameCount;
+    processStreamInput(/* endOfStream= */ true);
+    // Throw away any extra frames we generated due to the silence we added.
+    long extraFrameCount = generatedOutputFrameCount - expectedOutputFrameCount;
+    if (extraFrameCount > 0) {
+      outputFrameCount -= (int) Math.min(extraFrameCount, outputFrameCount);
+    }
+    inputFrameCount = 0;
+    pendingSkipFrameCount = 0;
+    hasOverlap = false;
+  }
+
+  /** Clears state in preparation for receiving a new stream of input buffers. */
+  public void flush() {
+    inputFrameCount = 0;
+    outputFrameCount = 0;
+    skipFrameCountRemainder = 0;
+    pendingSkipFrameCount = 0;
+    hasOverlap = false;
+    queuedInputFrameCount = 0;
+    generatedOutputFrameCount = 0;
+  }
+
+  /**
+   * Returns the number of output frames that can be read with {@link #getOutput(ShortBuffer)} or
+   * {@link #getOutput(FloatBuffer)}.
+   */
+  public int getFramesAvailable() {
+    return outputFrameCount;
+  }
+
+  // Internal methods.
+
+  private int getRequiredInputFrameCount() {
+    return seekWindowFrameCount + sequenceFrameCount;
+  }
+
+  private float[] ensureSpaceForAdditionalFrames(
+      float[] buffer, int frameCount, int additionalFrameCount) {
+    int currentCapacityFrames = buffer.length / channelCount;
+    if (frameCount + additionalFrameCount <= currentCapacityFrames) {
+      return buffer;
+    } else {
+      int newCapacityFrames = 3 * currentCapacityFrames / 2 + additionalFrameCount;
+      return Arrays.copyOf(buffer, newCapacityFrames * channelCount);
+    }
+  }
+
+  private short[] getConversionBuffer(int sampleCount) {
+    if (conversionBuffer.length < sampleCount) {
+      conversionBuffer = new short[sampleCount];
+    }
+    return conversionBuffer;
+  }
+
+  private void removeOutputFrames(int frameCount) {
+    outputFrameCount -= frameCount;
+    System.arraycopy(
+        outputBuffer, frameCount * channelCount, outputBuffer, 0, outputFrameCount * channelCount);
+  }
+
+  private void processStreamInput(boolean endOfStream) {
+    int requiredFrameCount = getRequiredInputFrameCount();
+    int newFrameCount = sequenceFrameCount - overlapFrameCount;
+    // At high speeds a sequence can represent more input than is available, so don't generate more
+    // output than the queued input allows, except when flushing the padded input at the end.
+    long maxOutputFrameCount =
+        endOfStream ? Long.MAX_VALUE : (long) (queuedInputFrameCount / speed);
+    // The previous hop may have skipped past the end of the input that was available.
+    int positionFrames = pendingSkipFrameCount;
+    while (inputFrameCount - positionFrames >= requiredFrameCount
+        && generatedOutputFrameCount + newFrameCount <= maxOutputFrameCount) {
+      int offsetFrames = hasOverlap ? findBestOverlapOffset(positionFrames) : 0;
+      processSequence(positionFrames + offsetFrames);
+      float skipFrameCount = nominalSkipFrameCount + skipFrameCountRemainder;
+      int skipFrameCountInt = (int) skipFrameCount;
+      skipFrameCountRemainder = skipFrameCount - skipFrameCountInt;
+      positionFrames += skipFrameCountInt;
+    }
+    if (positionFrames >= inputFrameCount) {
+      pendingSkipFrameCount = positionFrames - inputFrameCount;
+      inputFrameCount = 0;
+      return;
+    }
+    pendingSkipFrameCount = 0;
+    int remainingFrames = inputFrameCount - positionFrames;
+    System.arraycopy(
+        inputBuffer, positionFrames * channelCount, inputBuffer, 0, remainingFrames * channelCount);
+    inputFrameCount = remainingFrames;
+  }
+
+  /**
+   * Outputs the sequence starting at {@code positionFrames}, cross-fading its start with the end of
+   * the previous sequence, and keeps its end for cross-fading with the next sequence.
+   */
+  private void processSequence(int positionFrames) {
+    int newFrameCount = sequenceFrameCount - overlapFrameCount;
+    outputBuffer = ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, newFrameCount);
+    int in = positionFrames * channelCount;
+    int out = outputFrameCount * channelCount;
+    int overlapSampleCount = overlapFrameCount * channelCount;
+    if (hasOverlap) {
+      for (int t = 0, i = 0; t < overlapFrameCount; t++) {
+        float fadeIn = fadeInWeights[t];
+        float fadeOut = 1f - fadeIn;
+        for (int c = 0; c < channelCount; c++, i++) {
+          outputBuffer[out + i] = overlapBuffer[i] * fadeOut + inputBuffer[in + i] * fadeIn;
+        }
+      }
+    } else {
+      System.arraycopy(inputBuffer, in, outputBuffer, out, overlapSampleCount);
+    }
+    int middleSampleCount = (sequenceFrameCount - 2 * overlapFrameCount) * channelCount;
+    System.arraycopy(
+        inputBuffer,
+        in + overlapSampleCount,
+        outputBuffer,
+        out + overlapSampleCount,
+        middleSampleCount);
+    System.arraycopy(
+        inputBuffer,
+        in + overlapSampleCount + middleSampleCount,
+        overlapBuffer,
+        /* destPos= */ 0,
+        overlapSampleCount);
+    hasOverlap = true;
+    outputFrameCount += newFrameCount;
+    generatedOutputFrameCount += newFrameCount;
+  }
+
+  /**
+   * Returns the offset from {@code positionFrames}, within the seek window, at which the input is
+   * most similar to the end of the previous sequence.
+   */
+  private int findBestOverlapOffset(int positionFrames) {
+    // Downmix the correlation reference and the input covered by the seek window to mono, and
+    // decimate both for the coarse search.
+    for (int t = 0, i = 0; t < overlapFrameCount; t++) {
+      float value = 0;
+      for (int c = 0; c < channelCount; c++, i++) {
+        value += overlapBuffer[i];
+      }
+      correlationReference[t] = value * referenceWeights[t];
+    }
+    decimate(correlationReference, decimatedCorrelationReference, /* energy= */ null);
+    int in = positionFrames * channelCount;
+    monoInputEnergy[0] = 0;
+    for (int t = 0; t < monoInput.length; t++) {
+      float value = 0;
+      for (int c = 0; c < channelCount; c++, in++) {
+        value += inputBuffer[in];
+      }
+      monoInput[t] = value;
+      monoInputEnergy[t + 1] = monoInputEnergy[t] + value * value;
+    }
+    decimate(monoInput, decimatedMonoInput, decimatedMonoInputEnergy);
+
+    int coarseBestOffset =
+        DECIMATION
+            * findBestOffset(
+                decimatedCorrelationReference,
+                decimatedMonoInput,
+                decimatedMonoInputEnergy,
+                /* minOffset= */ 0,
+                /* maxOffset= */ seekWindowFrameCount / DECIMATION - 1);
+    return findBestOffset(
+        correlationReference,
+        monoInput,
+        monoInputEnergy,
+        Math.max(0, coarseBestOffset - DECIMATION + 1),
+        Math.min(seekWindowFrameCount - 1, coarseBestOffset + DECIMATION - 1));
+  }
+
+  /**
+   * Writes the sums of each {@link #DECIMATION} consecutive values of {@code input} to {@code
+   * output}, and optionally the cumulative energy of the output to {@code energy}.
+   */
+  private static void decimate(float[] input, float[] output, @Nullable double[] energy) {
+    for (int t = 0, i = 0; t < output.length; t++) {
+      float value = 0;
+      for (int j = 0; j < DECIMATION; j++, i++) {
+        value += input[i];
+      }
+      output[t] = value;
+      if (energy != null) {
+        energy[t + 1] = energy[t] + value * value;
+      }
+    }
+  }
+
+  /**
+   * Returns the offset in the specified range at which {@code input} has the highest normalized
+   * correlation with {@code reference}.
+   *
+   * @param reference The correlation reference.
+   * @param input The input to search.
+   * @param inputEnergy The cumulative energy of {@code input}, starting from zero.
+   * @param minOffset The minimum offset, inclusive.
+   * @param maxOffset The maximum offset, inclusive.
+   */
+  private static int findBestOffset(
+      float[] reference, float[] input, double[] inputEnergy, int minOffset, int maxOffset) {
+    int length = reference.length;
+    int bestOffset = minOffset;
+    double bestCorrelation = -Double.MAX_VALUE;
+    for (int offset = minOffset; offset <= maxOffset; offset++) {
+      float correlation = 0;
+      for (int i = 0; i < length; i++) {
+        correlation += reference[i] * input[offset + i];
+      }
+      double energy = inputEnergy[offset + length] - inputEnergy[offset];
+      double normalizedCorrelation = correlation / Math.sqrt(energy + 1e-9);
+      if (normalizedCorrelation > bestCorrelation) {
+        bestCorrelation = normalizedCorrelation;
+        bestOffset = offset;
+      }
+    }
+    return bestOffset;
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.C.Encoding;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * An {@link AudioProcessor} that changes the speed of audio without changing its pitch, using
+ * waveform similarity overlap-add (WSOLA). Compared to {@link SonicAudioProcessor}, it's cheaper
+ * for speeds close to normal speed, which are used for example to catch up with live streams, and
+ * its cost barely depends on the channel count. It doesn't support pitch or sample rate changes.
+ *
+ * <p>Handles {@link C#ENCODING_PCM_16BIT} and {@link C#ENCODING_PCM_FLOAT} audio, and outputs
+ * audio with the same encoding as its input.
+ */
+public final class WsolaAudioProcessor implements AudioProcessor {
+
+  /**
+   * The maximum allowed playback speed in {@link #setSpeed(float)}.
+   */
+  public static final float MAXIMUM_SPEED = 2.0f;
+  /**
+   * The minimum allowed playback speed in {@link #setSpeed(float)}.
+   */
+  public static final float MINIMUM_SPEED = 0.5f;
+
+  /**
+   * The threshold below which the difference between the speed and normal speed is negligible.
+   */
+  private static final float CLOSE_THRESHOLD = 0.01f;
+
+  /**
+   * The minimum number of output bytes at which the speedup is calculated using the input/output
+   * byte counts, rather than using the current playback parameters speed.
+   */
+  private static final int MIN_BYTES_FOR_SPEEDUP_CALCULATION = 1024;
+
+  private int channelCount;
+  private int sampleRateHz;
+  private @C.PcmEncoding int encoding;
+  private float speed;
+
+  private @Nullable Wsola wsola;
+  private ByteBuffer buffer;
+  private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
+  private ByteBuffer outputBuffer;
+  private long inputBytes;
+  private long outputBytes;
+  private boolean inputEnded;
+
+  /**
+   * Creates a new WSOLA audio processor.
+   */
+  public WsolaAudioProcessor() {
+    speed = 1f;
+    channelCount = Format.NO_VALUE;
+    sampleRateHz = Format.NO_VALUE;
+    encoding = C.ENCODING_INVALID;
+    buffer = EMPTY_BUFFER;
+    shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
+    outputBuffer = EMPTY_BUFFER;
+  }
+
+  /**
+   * Sets the playback speed. Calling this method will discard any data buffered within the
+   * processor, and may update the value returned by {@link #isActive()}.
+   *
+   * @param speed The requested new playback speed.
+   * @return The actual new playback speed.
+   */
+  public float setSpeed(float speed) {
+    speed = Util.constrainValue(speed, MINIMUM_SPEED, MAXIMUM_SPEED);
+    if (this.speed != speed) {
+      this.speed = speed;
+      wsola = null;
+    }
+    flush();
+    return speed;
+  }
+
+  /**
+   * Returns the specified duration scaled to take into account the speedup factor of this instance,
+   * in the same units as {@code duration}.
+   *
+   * @param duration The duration to scale taking into account speedup.
+   * @return The specified duration scaled to take into account speedup, in the same units as
+   *     {@code duration}.
+   */
+  public long scaleDurationForSpeedup(long duration) {
+    if (outputBytes >= MIN_BYTES_FOR_SPEEDUP_CALCULATION) {
+      return Util.scaleLargeTimestamp(duration, inputBytes, outputBytes);
+    } else {
+      return (long) ((double) speed * duration);
+    }
+  }
+
+  @Override
+  public boolean configure(int sampleRateHz, int channelCount, @Encoding int encoding)
+      throws UnhandledFormatException {
+    if (encoding != C.ENCODING_PCM_16BIT && encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledFormatException(sampleRateHz, channelCount, encoding);
+    }
+    if (this.sampleRateHz == sampleRateHz
+        && this.channelCount == channelCount
+        && this.encoding == encoding) {
+      return false;
+    }
+    this.sampleRateHz = sampleRateHz;
+    this.channelCount = channelCount;
+    this.encoding = encoding;
+    wsola = null;
+    return true;
+  }
+
+  @Override
+  public boolean isActive() {
+    return sampleRateHz != Format.NO_VALUE && Math.abs(speed - 1f) >= CLOSE_THRESHOLD;
+  }
+
+  @Override
+  public int getOutputChannelCount() {
+    return channelCount;
+  }
+
+  @Override
+  public int getOutputEncoding() {
+    return encoding;
+  }
+
+  @Override
+  public int getOutputSampleRateHz() {
+    return sampleRateHz;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    Assertions.checkState(wsola != null);
+    boolean isFloat = encoding == C.ENCODING_PCM_FLOAT;
+    if (inputBuffer.hasRemaining()) {
+      int inputSize = inputBuffer.remaining();
+      inputBytes += inputSize;
+      if (isFloat) {
+        wsola.queueInput(inputBuffer.asFloatBuffer());
+      } else {
+        wsola.queueInput(inputBuffer.asShortBuffer());
+      }
+      inputBuffer.position(inputBuffer.position() + inputSize);
+    }
+    int outputSize = wsola.getFramesAvailable() * channelCount * (isFloat ? 4 : 2);
+    if (outputSize > 0) {
+      if (buffer.capacity() < outputSize) {
+        buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
+        shortBuffer = buffer.asShortBuffer();
+        floatBuffer = buffer.asFloatBuffer();
+      } else {
+        buffer.clear();
+        shortBuffer.clear();
+        floatBuffer.clear();
+      }
+      if (isFloat) {
+        wsola.getOutput(floatBuffer);
+      } else {
+        wsola.getOutput(shortBuffer);
+      }
+      outputBytes += outputSize;
+      buffer.limit(outputSize);
+      outputBuffer = buffer;
+    }
+  }
+
+  @Override
+  public void queueEndOfStream() {
+    Assertions.checkState(wsola != null);
+    wsola.queueEndOfStream();
+    inputEnded = true;
+  }
+
+  @Override
+  public ByteBuffer getOutput() {
+    ByteBuffer outputBuffer = this.outputBuffer;
+    this.outputBuffer = EMPTY_BUFFER;
+    return outputBuffer;
+  }
+
+  @Override
+  public boolean isEnded() {
+    return inputEnded && (wsola == null || wsola.getFramesAvailable() == 0);
+  }
+
+  @Override
+  public void flush() {
+    if (isActive()) {
+      if (wsola == null) {
+        wsola = new Wsola(sampleRateHz, channelCount, speed);
+      } else {
+        wsola.flush();
+      }
+    }
+    outputBuffer = EMPTY_BUFFER;
+    inputBytes = 0;
+    outputBytes = 0;
+    inputEnded = false;
+  }
+
+  @Override
+  public void reset() {
+    speed = 1f;
+    channelCount = Format.NO_VALUE;
+    sampleRateHz = Format.NO_VALUE;
+    encoding = C.ENCODING_INVALID;
+    buffer = EMPTY_BUFFER;
+    shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
+    outputBuffer = EMPTY_BUFFER;
+    wsola = null;
+    inputBytes = 0;
+    outputBytes = 0;
+    inputEnded = false;
+  }
+
+}
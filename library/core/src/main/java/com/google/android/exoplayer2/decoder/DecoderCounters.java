@@ -32,6 +32,11 @@ public final class DecoderCounters {
    * The number of times a decoder has been released.
    */
   public int decoderReleaseCount;
+  /**
+   * The number of times a decoder has been returned to a
+   * {@link com.google.android.exoplayer2.mediacodec.MediaCodecPool} rather than being released.
+   */
+  public int decoderPooledCount;
   /**
    * The number of queued input buffers.
    */
@@ -73,6 +78,14 @@ public final class DecoderCounters {
    * dropped from the source to advance to the keyframe.
    */
   public int droppedToKeyframeCount;
+  /**
+   * The number of times input buffers were skipped to a keyframe before being decoded, because they
+   * were predicted to be rendered late.
+   * <p>
+   * Each time input buffers are skipped to a keyframe, this counter is increased by one, and the
+   * dropped buffer counters are increased by the number of buffers skipped in the source.
+   */
+  public int skippedInputToKeyframeCount;
 
   /**
    * Should be called to ensure counter values are made visible across threads. The playback thread
@@ -92,6 +105,7 @@ public final class DecoderCounters {
   public void merge(DecoderCounters other) {
     decoderInitCount += other.decoderInitCount;
     decoderReleaseCount += other.decoderReleaseCount;
+    decoderPooledCount += other.decoderPooledCount;
     inputBufferCount += other.inputBufferCount;
     skippedInputBufferCount += other.skippedInputBufferCount;
     renderedOutputBufferCount += other.renderedOutputBufferCount;
@@ -100,6 +114,7 @@ public final class DecoderCounters {
     maxConsecutiveDroppedBufferCount = Math.max(maxConsecutiveDroppedBufferCount,
         other.maxConsecutiveDroppedBufferCount);
     droppedToKeyframeCount += other.droppedToKeyframeCount;
+    skippedInputToKeyframeCount += other.skippedInputToKeyframeCount;
   }
 
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import com.google.android.exoplayer2.C;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free, first-in first-out queue of non-negative {@code long} entries, which may
+ * be accessed from any number of threads. Entries are stored in preallocated arrays, so queueing
+ * and dequeueing entries doesn't allocate.
+ *
+ * <p>Each slot has a sequence number that tells producers and consumers whether the slot is free
+ * for the current lap around the ring. Producers and consumers claim positions by incrementing
+ * their position counter with a compare-and-set, so neither ever blocks the other.
+ */
+/* package */ final class IndexQueue {
+
+  private final int mask;
+  private final long[] entries;
+  private final AtomicLongArray sequences;
+  private final AtomicLong enqueuePosition;
+  private final AtomicLong dequeuePosition;
+
+  /**
+   * @param minCapacity The minimum number of entries the queue must be able to hold. The capacity
+   *     is rounded up to a power of two.
+   */
+  public IndexQueue(int minCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1;
+    mask = capacity - 1;
+    entries = new long[capacity];
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    enqueuePosition = new AtomicLong();
+    dequeuePosition = new AtomicLong();
+  }
+
+  /**
+   * Adds an entry to the end of the queue.
+   *
+   * @param entry The non-negative entry to add.
+   * @return Whether the entry was added. False if the queue is full.
+   */
+  public boolean offer(long entry) {
+    long position = enqueuePosition.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (enqueuePosition.compareAndSet(position, position + 1)) {
+          entries[slot] = entry;
+          // Publishes the entry to consumers.
+          sequences.set(slot, position + 1);
+          return true;
+        }
+        position = enqueuePosition.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        // Another producer claimed the position.
+        position = enqueuePosition.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the entry at the front of the queue and returns it, or returns {@link C#INDEX_UNSET} if
+   * the queue is empty.
+   */
+  public long poll() {
+    long position = dequeuePosition.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - (position + 1);
+      if (difference == 0) {
+        if (dequeuePosition.compareAndSet(position, position + 1)) {
+          long entry = entries[slot];
+          // Frees the slot for the producer on the next lap.
+          sequences.set(slot, position + mask + 1);
+          return entry;
+        }
+        position = dequeuePosition.get();
+      } else if (difference < 0) {
+        return C.INDEX_UNSET;
+      } else {
+        // Another consumer claimed the position.
+        position = dequeuePosition.get();
+      }
+    }
+  }
+
+  /** Returns whether the queue is empty. The result may be stale if other threads are active. */
+  public boolean isEmpty() {
+    long position = dequeuePosition.get();
+    return sequences.get((int) position & mask) - (position + 1) < 0;
+  }
+
+  /** Returns the number of entries. The result may be stale if other threads are active. */
+  public int size() {
+    return (int) (enqueuePosition.get() - dequeuePosition.get());
+  }
+}
@@ -18,9 +18,18 @@ package com.google.android.exoplayer2.decoder;
 import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
-import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
 
-/** Base class for {@link Decoder}s that use their own decode thread. */
+/**
+ * Base class for {@link Decoder}s that use their own decode thread.
+ *
+ * <p>Buffers are passed between the decode thread and other threads through lock-free queues of
+ * buffer indices, so the playback thread never blocks on the decode thread. When the decode thread
+ * has no work it parks, and it's only woken if it's parked when work arrives. Once woken, it
+ * decodes as many queued input buffers as there are available output buffers before parking again.
+ * A flush increments a generation number. Buffers queued before the flush are tagged with an older
+ * generation, and are discarded rather than decoded or output.
+ */
 @SuppressWarnings("UngroupedOverloads")
 public abstract class SimpleDecoder<
         I extends DecoderInputBuffer, O extends OutputBuffer, E extends Exception>
@@ -28,39 +37,53 @@ public abstract class SimpleDecoder<
 
   private final Thread decodeThread;
 
-  private final Object lock;
-  private final ArrayDeque<I> queuedInputBuffers;
-  private final ArrayDeque<O> queuedOutputBuffers;
-  private final I[] availableInputBuffers;
-  private final O[] availableOutputBuffers;
+  private final I[] inputBuffers;
+  private final O[] outputBuffers;
+  private final IndexQueue availableInputBufferIndices;
+  private final IndexQueue availableOutputBufferIndices;
+  /** Queued input buffer indices, tagged with the generation in which they were queued. */
+  private final IndexQueue queuedInputBuffers;
+  /** Decoded output buffer indices, tagged with the generation of their input buffer. */
+  private final IndexQueue queuedOutputBuffers;
 
-  private int availableInputBufferCount;
-  private int availableOutputBufferCount;
-  private I dequeuedInputBuffer;
+  // Accessed on the playback thread only.
+  private @Nullable I dequeuedInputBuffer;
+  private int dequeuedInputBufferIndex;
 
-  private E exception;
-  private boolean flushed;
-  private boolean released;
+  // Accessed on the decode thread only.
+  private int heldOutputBufferIndex;
+  /** An input buffer with pending output, tagged with its generation, or {@link C#INDEX_UNSET}. */
+  private long heldInputBufferEntry;
+  private int decoderGeneration;
   private int skippedOutputBufferCount;
 
+  private volatile @Nullable E exception;
+  private volatile int flushGeneration;
+  private volatile boolean decodeThreadWaiting;
+  private volatile boolean released;
+
   /**
    * @param inputBuffers An array of nulls that will be used to store references to input buffers.
    * @param outputBuffers An array of nulls that will be used to store references to output buffers.
    */
   protected SimpleDecoder(I[] inputBuffers, O[] outputBuffers) {
-    lock = new Object();
-    queuedInputBuffers = new ArrayDeque<>();
-    queuedOutputBuffers = new ArrayDeque<>();
-    availableInputBuffers = inputBuffers;
-    availableInputBufferCount = inputBuffers.length;
-    for (int i = 0; i < availableInputBufferCount; i++) {
-      availableInputBuffers[i] = createInputBuffer();
+    this.inputBuffers = inputBuffers;
+    this.outputBuffers = outputBuffers;
+    availableInputBufferIndices = new IndexQueue(inputBuffers.length);
+    availableOutputBufferIndices = new IndexQueue(outputBuffers.length);
+    queuedInputBuffers = new IndexQueue(inputBuffers.length);
+    queuedOutputBuffers = new IndexQueue(outputBuffers.length);
+    for (int i = 0; i < inputBuffers.length; i++) {
+      inputBuffers[i] = createInputBuffer();
+      availableInputBufferIndices.offer(i);
     }
-    availableOutputBuffers = outputBuffers;
-    availableOutputBufferCount = outputBuffers.length;
-    for (int i = 0; i < availableOutputBufferCount; i++) {
-      availableOutputBuffers[i] = createOutputBuffer();
+    for (int i = 0; i < outputBuffers.length; i++) {
+      outputBuffers[i] = createOutputBuffer();
+      availableOutputBufferIndices.offer(i);
     }
+    dequeuedInputBufferIndex = C.INDEX_UNSET;
+    heldOutputBufferIndex = C.INDEX_UNSET;
+    heldInputBufferEntry = C.INDEX_UNSET;
     decodeThread = new Thread() {
       @Override
       public void run() {
@@ -79,81 +102,89 @@ public abstract class SimpleDecoder<
    * @param size The required input buffer size.
    */
   protected final void setInitialInputBufferSize(int size) {
-    Assertions.checkState(availableInputBufferCount == availableInputBuffers.length);
-    for (I inputBuffer : availableInputBuffers) {
+    Assertions.checkState(availableInputBufferIndices.size() == inputBuffers.length);
+    for (I inputBuffer : inputBuffers) {
       inputBuffer.ensureSpaceForWrite(size);
     }
   }
 
   @Override
   public final I dequeueInputBuffer() throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      Assertions.checkState(dequeuedInputBuffer == null);
-      dequeuedInputBuffer = availableInputBufferCount == 0 ? null
-          : availableInputBuffers[--availableInputBufferCount];
-      return dequeuedInputBuffer;
+    maybeThrowException();
+    Assertions.checkState(dequeuedInputBuffer == null);
+    long index = availableInputBufferIndices.poll();
+    if (index == C.INDEX_UNSET) {
+      return null;
     }
+    dequeuedInputBufferIndex = (int) index;
+    dequeuedInputBuffer = inputBuffers[dequeuedInputBufferIndex];
+    return dequeuedInputBuffer;
   }
 
   @Override
   public final void queueInputBuffer(I inputBuffer) throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      Assertions.checkArgument(inputBuffer == dequeuedInputBuffer);
-      queuedInputBuffers.addLast(inputBuffer);
-      maybeNotifyDecodeLoop();
-      dequeuedInputBuffer = null;
-    }
+    maybeThrowException();
+    Assertions.checkArgument(inputBuffer == dequeuedInputBuffer);
+    offer(queuedInputBuffers, tag(dequeuedInputBufferIndex, flushGeneration));
+    dequeuedInputBuffer = null;
+    dequeuedInputBufferIndex = C.INDEX_UNSET;
+    maybeWakeDecodeThread();
   }
 
   @Override
   public final O dequeueOutputBuffer() throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      if (queuedOutputBuffers.isEmpty()) {
-        return null;
+    maybeThrowException();
+    long entry;
+    while ((entry = queuedOutputBuffers.poll()) != C.INDEX_UNSET) {
+      O outputBuffer = outputBuffers[getIndex(entry)];
+      if (getGeneration(entry) == flushGeneration) {
+        return outputBuffer;
       }
-      return queuedOutputBuffers.removeFirst();
+      // The buffer was decoded from input queued before a flush.
+      outputBuffer.release();
     }
+    return null;
   }
 
   /**
-   * Releases an output buffer back to the decoder.
+   * Releases an output buffer back to the decoder. May be called from any thread.
    *
    * @param outputBuffer The output buffer being released.
    */
   protected void releaseOutputBuffer(O outputBuffer) {
-    synchronized (lock) {
-      releaseOutputBufferInternal(outputBuffer);
-      maybeNotifyDecodeLoop();
+    int index = 0;
+    while (outputBuffers[index] != outputBuffer) {
+      index++;
     }
+    outputBuffer.clear();
+    offer(availableOutputBufferIndices, index);
+    maybeWakeDecodeThread();
   }
 
   @Override
   public final void flush() {
-    synchronized (lock) {
-      flushed = true;
-      skippedOutputBufferCount = 0;
-      if (dequeuedInputBuffer != null) {
-        releaseInputBufferInternal(dequeuedInputBuffer);
-        dequeuedInputBuffer = null;
-      }
-      while (!queuedInputBuffers.isEmpty()) {
-        releaseInputBufferInternal(queuedInputBuffers.removeFirst());
-      }
-      while (!queuedOutputBuffers.isEmpty()) {
-        queuedOutputBuffers.removeFirst().release();
-      }
+    int generation = (flushGeneration + 1) & Integer.MAX_VALUE;
+    flushGeneration = generation;
+    if (dequeuedInputBuffer != null) {
+      releaseInputBufferInternal(dequeuedInputBufferIndex);
+      dequeuedInputBuffer = null;
+      dequeuedInputBufferIndex = C.INDEX_UNSET;
+    }
+    // The decode thread may take some of these buffers concurrently. It discards them because
+    // their generation is out of date.
+    long entry;
+    while ((entry = queuedInputBuffers.poll()) != C.INDEX_UNSET) {
+      releaseInputBufferInternal(getIndex(entry));
+    }
+    while ((entry = queuedOutputBuffers.poll()) != C.INDEX_UNSET) {
+      outputBuffers[getIndex(entry)].release();
     }
   }
 
   @Override
   public void release() {
-    synchronized (lock) {
-      released = true;
-      lock.notify();
-    }
+    released = true;
+    LockSupport.unpark(decodeThread);
     try {
       decodeThread.join();
     } catch (InterruptedException e) {
@@ -167,52 +198,76 @@ public abstract class SimpleDecoder<
    * @throws E The decode exception.
    */
   private void maybeThrowException() throws E {
+    E exception = this.exception;
     if (exception != null) {
       throw exception;
     }
   }
 
-  /**
-   * Notifies the decode loop if there exists a queued input buffer and an available output buffer
-   * to decode into.
-   * <p>
-   * Should only be called whilst synchronized on the lock object.
-   */
-  private void maybeNotifyDecodeLoop() {
-    if (canDecodeBuffer()) {
-      lock.notify();
+  /** Wakes the decode thread if it's waiting for work. */
+  private void maybeWakeDecodeThread() {
+    // The decode thread sets the flag before checking for work, and work is published before the
+    // flag is read here, so the decode thread either finds the work or is unparked. Clearing the
+    // flag avoids unparking the thread again for each buffer queued before it runs.
+    if (decodeThreadWaiting) {
+      decodeThreadWaiting = false;
+      LockSupport.unpark(decodeThread);
     }
   }
 
   private void run() {
-    try {
-      while (decode()) {
-        // Do nothing.
+    while (!released) {
+      if (!decodeQueuedInputBuffer()) {
+        if (exception != null) {
+          return;
+        }
+        decodeThreadWaiting = true;
+        if (!released && !canDecodeBuffer()) {
+          LockSupport.park(this);
+        }
+        decodeThreadWaiting = false;
       }
-    } catch (InterruptedException e) {
-      // Not expected.
-      throw new IllegalStateException(e);
     }
   }
 
-  private boolean decode() throws InterruptedException {
-    I inputBuffer;
-    O outputBuffer;
-    boolean resetDecoder;
-
-    // Wait until we have an input buffer to decode, and an output buffer to decode into.
-    synchronized (lock) {
-      while (!released && !canDecodeBuffer()) {
-        lock.wait();
+  /**
+   * Decodes the next queued input buffer, if there is one and an output buffer is available.
+   *
+   * @return Whether an input buffer was consumed. False if there was nothing to decode, or if
+   *     decoding failed.
+   */
+  private boolean decodeQueuedInputBuffer() {
+    if (heldOutputBufferIndex == C.INDEX_UNSET) {
+      long index = availableOutputBufferIndices.poll();
+      if (index == C.INDEX_UNSET) {
+        return false;
       }
-      if (released) {
+      heldOutputBufferIndex = (int) index;
+    }
+    long entry = heldInputBufferEntry;
+    heldInputBufferEntry = C.INDEX_UNSET;
+    if (entry == C.INDEX_UNSET) {
+      entry = queuedInputBuffers.poll();
+      if (entry == C.INDEX_UNSET) {
         return false;
       }
-      inputBuffer = queuedInputBuffers.removeFirst();
-      outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
-      resetDecoder = flushed;
-      flushed = false;
     }
+    int inputBufferIndex = getIndex(entry);
+    int generation = getGeneration(entry);
+    if (generation != flushGeneration) {
+      // The buffer was queued before a flush.
+      releaseInputBufferInternal(inputBufferIndex);
+      return true;
+    }
+    boolean resetDecoder = generation != decoderGeneration;
+    if (resetDecoder) {
+      decoderGeneration = generation;
+      skippedOutputBufferCount = 0;
+    }
+    I inputBuffer = inputBuffers[inputBufferIndex];
+    int outputBufferIndex = heldOutputBufferIndex;
+    O outputBuffer = outputBuffers[outputBufferIndex];
+    heldOutputBufferIndex = C.INDEX_UNSET;
 
     if (inputBuffer.isEndOfStream()) {
       outputBuffer.addFlag(C.BUFFER_FLAG_END_OF_STREAM);
@@ -220,6 +275,7 @@ public abstract class SimpleDecoder<
       if (inputBuffer.isDecodeOnly()) {
         outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
       }
+      E exception;
       try {
         exception = decode(inputBuffer, outputBuffer, resetDecoder);
       } catch (RuntimeException e) {
@@ -233,42 +289,57 @@ public abstract class SimpleDecoder<
         exception = createUnexpectedDecodeException(e);
       }
       if (exception != null) {
-        // Memory barrier to ensure that the decoder exception is visible from the playback thread.
-        synchronized (lock) {}
+        // Writing the volatile field makes the exception visible from the playback thread.
+        this.exception = exception;
         return false;
       }
     }
 
-    synchronized (lock) {
-      if (flushed) {
-        outputBuffer.release();
-      } else if (outputBuffer.isDecodeOnly()) {
-        skippedOutputBufferCount++;
-        outputBuffer.release();
-      } else {
-        outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
-        skippedOutputBufferCount = 0;
-        queuedOutputBuffers.addLast(outputBuffer);
-      }
+    if (generation != flushGeneration) {
+      outputBuffer.release();
+    } else if (outputBuffer.isDecodeOnly()) {
+      skippedOutputBufferCount++;
+      outputBuffer.release();
+    } else {
+      outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
+      skippedOutputBufferCount = 0;
+      offer(queuedOutputBuffers, tag(outputBufferIndex, generation));
+    }
+    if (generation == flushGeneration && !inputBuffer.isEndOfStream() && hasPendingOutput()) {
+      // Decode the same input buffer again when the next output buffer is available.
+      heldInputBufferEntry = entry;
+    } else {
       // Make the input buffer available again.
-      releaseInputBufferInternal(inputBuffer);
+      releaseInputBufferInternal(inputBufferIndex);
     }
-
     return true;
   }
 
   private boolean canDecodeBuffer() {
-    return !queuedInputBuffers.isEmpty() && availableOutputBufferCount > 0;
+    return (heldInputBufferEntry != C.INDEX_UNSET || !queuedInputBuffers.isEmpty())
+        && (heldOutputBufferIndex != C.INDEX_UNSET || !availableOutputBufferIndices.isEmpty());
   }
 
-  private void releaseInputBufferInternal(I inputBuffer) {
-    inputBuffer.clear();
-    availableInputBuffers[availableInputBufferCount++] = inputBuffer;
+  private void releaseInputBufferInternal(int index) {
+    inputBuffers[index].clear();
+    offer(availableInputBufferIndices, index);
   }
 
-  private void releaseOutputBufferInternal(O outputBuffer) {
-    outputBuffer.clear();
-    availableOutputBuffers[availableOutputBufferCount++] = outputBuffer;
+  private static void offer(IndexQueue queue, long entry) {
+    // Each queue can hold every buffer, and a buffer is in at most one queue at a time.
+    Assertions.checkState(queue.offer(entry));
+  }
+
+  private static long tag(int index, int generation) {
+    return ((long) generation << 32) | index;
+  }
+
+  private static int getIndex(long entry) {
+    return (int) entry;
+  }
+
+  private static int getGeneration(long entry) {
+    return (int) (entry >>> 32);
   }
 
   /**
@@ -302,4 +373,16 @@ public abstract class SimpleDecoder<
    * @return A decoder exception if an error occurred, or null if decoding was successful.
    */
   protected abstract @Nullable E decode(I inputBuffer, O outputBuffer, boolean reset);
+
+  /**
+   * Returns whether the input buffer passed to the last call to {@link #decode(DecoderInputBuffer,
+   * OutputBuffer, boolean)} has more output to decode. If so, the same input buffer is passed to
+   * {@code decode} again with the next available output buffer, before any other input buffer is
+   * decoded, unless the decoder is flushed first. The default implementation returns false.
+   *
+   * <p>Called on the decode thread.
+   */
+  protected boolean hasPendingOutput() {
+    return false;
+  }
 }
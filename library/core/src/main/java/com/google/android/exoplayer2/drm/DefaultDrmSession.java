@@ -191,6 +191,35 @@ import java.util.UUID;
     return false;
   }
 
+  /** Returns the number of times the session has been acquired and not released. */
+  public int getOpenCount() {
+    return openCount;
+  }
+
+  /**
+   * Requests a new streaming license in the background if the keys of the session will expire
+   * soon. The current keys can still be used while the request is in flight.
+   *
+   * @return False if the keys of the session have expired, true otherwise.
+   */
+  public boolean maybeRenewLicense() {
+    if (state != STATE_OPENED_WITH_KEYS || offlineLicenseKeySetId != null) {
+      // The keys are still being loaded, or are renewed by doLicense.
+      return true;
+    }
+    long licenseDurationRemainingSec = getStreamingLicenseDurationRemainingSec();
+    if (licenseDurationRemainingSec == C.TIME_UNSET) {
+      return true;
+    } else if (licenseDurationRemainingSec <= 0) {
+      return false;
+    }
+    if (licenseDurationRemainingSec <= MAX_LICENSE_DURATION_TO_RENEW && currentKeyRequest == null) {
+      Log.d(TAG, "Renewing license. Remaining seconds: " + licenseDurationRemainingSec);
+      postKeyRequest(ExoMediaDrm.KEY_TYPE_STREAMING, /* allowRetry= */ true);
+    }
+    return true;
+  }
+
   public boolean hasSessionId(byte[] sessionId) {
     return Arrays.equals(this.sessionId, sessionId);
   }
@@ -381,6 +410,25 @@ import java.util.UUID;
     return Math.min(pair.first, pair.second);
   }
 
+  /**
+   * Returns the remaining license or playback duration of a streaming license, whichever is
+   * shorter, or {@link C#TIME_UNSET} if neither is known.
+   */
+  private long getStreamingLicenseDurationRemainingSec() {
+    if (!C.WIDEVINE_UUID.equals(uuid)) {
+      return C.TIME_UNSET;
+    }
+    Pair<Long, Long> pair = WidevineUtil.getLicenseDurationRemainingSec(this);
+    if (pair == null) {
+      return C.TIME_UNSET;
+    } else if (pair.first == C.TIME_UNSET) {
+      return pair.second;
+    } else if (pair.second == C.TIME_UNSET) {
+      return pair.first;
+    }
+    return Math.min(pair.first, pair.second);
+  }
+
   private void postKeyRequest(int type, boolean allowRetry) {
     byte[] scope = type == ExoMediaDrm.KEY_TYPE_RELEASE ? offlineLicenseKeySetId : sessionId;
     try {
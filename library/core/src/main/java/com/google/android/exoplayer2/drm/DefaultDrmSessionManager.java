@@ -22,6 +22,7 @@ import android.os.Looper;
 import android.os.Message;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.drm.DefaultDrmSession.ProvisioningManager;
@@ -35,6 +36,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
@@ -91,6 +93,12 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
 
   private static final String TAG = "DefaultDrmSessionMgr";
 
+  /**
+   * The interval at which the licenses of idle sessions are checked for expiry, in milliseconds.
+   * Shorter than the time before expiry at which sessions renew their licenses.
+   */
+  private static final long IDLE_SESSION_CHECK_INTERVAL_MS = 30000;
+
   private final UUID uuid;
   private final ExoMediaDrm<T> mediaDrm;
   private final MediaDrmCallback callback;
@@ -101,10 +109,18 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
 
   private final List<DefaultDrmSession<T>> sessions;
   private final List<DefaultDrmSession<T>> provisioningSessions;
+  // Released sessions that are kept open, ordered from least to most recently released.
+  private final List<DefaultDrmSession<T>> idleSessions;
+  private final Runnable checkIdleSessionsRunnable;
+  // The scheme datas of coalesced key requests, keyed by the scheme datas they request keys for.
+  // Entries are dropped once no open session holds the coalesced keys.
+  private final HashMap<List<SchemeData>, List<SchemeData>> coalescedSchemeDatas;
 
   private Looper playbackLooper;
   private int mode;
   private byte[] offlineLicenseKeySetId;
+  private int maxIdleSessionCount;
+  private boolean coalesceKeyRequests;
 
   /* package */ volatile MediaDrmHandler mediaDrmHandler;
 
@@ -362,6 +378,9 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     mode = MODE_PLAYBACK;
     sessions = new ArrayList<>();
     provisioningSessions = new ArrayList<>();
+    idleSessions = new ArrayList<>();
+    checkIdleSessionsRunnable = this::checkIdleSessions;
+    coalescedSchemeDatas = new HashMap<>();
     if (multiSession && C.WIDEVINE_UUID.equals(uuid) && Util.SDK_INT >= 19) {
       // TODO: Enabling session sharing probably doesn't do anything useful here. It would only be
       // useful if DefaultDrmSession instances were aware of one another's state, which is not
@@ -461,8 +480,10 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
    * @param mode The mode to be set.
    * @param offlineLicenseKeySetId The key set id of the license to be used with the given mode.
    */
-  public void setMode(@Mode int mode, byte[] offlineLicenseKeySetId) {
+  public synchronized void setMode(@Mode int mode, byte[] offlineLicenseKeySetId) {
+    releaseIdleSessions();
     Assertions.checkState(sessions.isEmpty());
+    coalescedSchemeDatas.clear();
     if (mode == MODE_QUERY || mode == MODE_RELEASE) {
       Assertions.checkNotNull(offlineLicenseKeySetId);
     }
@@ -470,6 +491,109 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     this.offlineLicenseKeySetId = offlineLicenseKeySetId;
   }
 
+  /**
+   * Sets the maximum number of streaming playback sessions that are kept open after they've been
+   * released. A session acquired again for the same {@link DrmInitData} reuses the license of an
+   * idle session, rather than requesting a new one. For example, this avoids a license request
+   * when switching between live channels that share a key. Idle sessions renew their licenses in
+   * the background before they expire.
+   *
+   * <p>The number of sessions that can be open at once is limited by the device, so the count
+   * should be small. Idle sessions are closed when the count is exceeded, and by {@link
+   * #releaseIdleSessions()}, which should be called when the manager is no longer required. The
+   * default is zero, meaning sessions are closed as soon as they're released.
+   *
+   * @param maxIdleSessionCount The maximum number of idle sessions.
+   */
+  public synchronized void setMaxIdleSessionCount(int maxIdleSessionCount) {
+    Assertions.checkArgument(maxIdleSessionCount >= 0);
+    this.maxIdleSessionCount = maxIdleSessionCount;
+    while (idleSessions.size() > maxIdleSessionCount) {
+      closeIdleSession(idleSessions.get(0));
+    }
+  }
+
+  /**
+   * Requests the license for {@link DrmInitData} in the background, so that it's available when
+   * a session is acquired for the same data. For example, the license of the next item in a
+   * playlist can be requested while the current item is playing, and media sources can request
+   * licenses as soon as their manifest is parsed. The session requesting the license is kept as
+   * an idle session. See {@link #setMaxIdleSessionCount(int)}.
+   *
+   * <p>Does nothing if the maximum number of idle sessions is zero, if the manager isn't in
+   * {@link #MODE_PLAYBACK} with a streaming license, or if the license can't be requested from
+   * {@code drmInitData} alone, for example because the scheme specific data is only carried in
+   * the media.
+   *
+   * <p>May be called from any thread. Sessions are only used on the playback thread, so if this
+   * method is called from another thread, the license is requested once the playback thread has
+   * handled a posted message.
+   *
+   * @param playbackLooper The looper associated with the media playback thread.
+   * @param drmInitData DRM initialization data.
+   */
+  public void prefetchLicense(Looper playbackLooper, DrmInitData drmInitData) {
+    if (Looper.myLooper() != playbackLooper) {
+      new Handler(playbackLooper).post(() -> prefetchLicense(playbackLooper, drmInitData));
+      return;
+    }
+    prefetchLicenseInternal(playbackLooper, drmInitData);
+  }
+
+  /**
+   * Sets whether the keys of the {@link DrmInitData} passed together to {@link
+   * #prefetchLicenses(Looper, List)} are requested with a single key request. For example, this
+   * avoids separate license requests for the audio and video tracks of content whose tracks are
+   * encrypted with different keys. Sessions acquired for any of the {@link DrmInitData} then share
+   * the session holding the keys.
+   *
+   * <p>Only Widevine key requests are coalesced, by merging the PSSH data of the requests. See
+   * {@link WidevineUtil#buildMultiKeyPsshAtom(List)}. The license server must issue licenses with
+   * all the keys of a request, so the default is false.
+   *
+   * @param coalesceKeyRequests Whether key requests are coalesced.
+   */
+  public synchronized void setCoalesceKeyRequests(boolean coalesceKeyRequests) {
+    this.coalesceKeyRequests = coalesceKeyRequests;
+  }
+
+  /**
+   * Requests the licenses for several {@link DrmInitData} in the background, as with {@link
+   * #prefetchLicense(Looper, DrmInitData)}. If key requests are coalesced, a single license is
+   * requested for the keys of all the {@link DrmInitData}. See {@link
+   * #setCoalesceKeyRequests(boolean)}.
+   *
+   * @param playbackLooper The looper associated with the media playback thread.
+   * @param drmInitDatas DRM initialization data, for example that of each adaptation set of a
+   *     DASH period.
+   */
+  public void prefetchLicenses(Looper playbackLooper, List<DrmInitData> drmInitDatas) {
+    if (Looper.myLooper() != playbackLooper) {
+      new Handler(playbackLooper).post(() -> prefetchLicenses(playbackLooper, drmInitDatas));
+      return;
+    }
+    synchronized (this) {
+      DrmInitData coalescedDrmInitData =
+          coalesceKeyRequests ? coalesceDrmInitDatas(drmInitDatas) : null;
+      if (coalescedDrmInitData != null) {
+        prefetchLicenseInternal(playbackLooper, coalescedDrmInitData);
+        // No session holds the coalesced keys if the license wasn't requested.
+        maybeRemoveCoalescedSchemeDatas(getSchemeDatas(coalescedDrmInitData, uuid, false));
+      } else {
+        for (int i = 0; i < drmInitDatas.size(); i++) {
+          prefetchLicenseInternal(playbackLooper, drmInitDatas.get(i));
+        }
+      }
+    }
+  }
+
+  /** Closes all idle sessions. See {@link #setMaxIdleSessionCount(int)}. */
+  public synchronized void releaseIdleSessions() {
+    while (!idleSessions.isEmpty()) {
+      closeIdleSession(idleSessions.get(0));
+    }
+  }
+
   // DrmSessionManager implementation.
 
   @Override
@@ -503,8 +627,10 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     return true;
   }
 
+  // Sessions may be acquired and released by renderers rendering concurrently on different threads.
   @Override
-  public DrmSession<T> acquireSession(Looper playbackLooper, DrmInitData drmInitData) {
+  public synchronized DrmSession<T> acquireSession(
+      Looper playbackLooper, DrmInitData drmInitData) {
     Assertions.checkState(this.playbackLooper == null || this.playbackLooper == playbackLooper);
     if (sessions.isEmpty()) {
       this.playbackLooper = playbackLooper;
@@ -521,21 +647,45 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
         eventDispatcher.dispatch(listener -> listener.onDrmSessionManagerError(error));
         return new ErrorStateDrmSession<>(new DrmSessionException(error));
       }
+      List<SchemeData> coalescedSchemeDatas = this.coalescedSchemeDatas.get(schemeDatas);
+      if (coalescedSchemeDatas != null) {
+        schemeDatas = coalescedSchemeDatas;
+      }
     }
 
-    DefaultDrmSession<T> session;
+    DefaultDrmSession<T> session = null;
     if (!multiSession) {
-      session = sessions.isEmpty() ? null : sessions.get(0);
-    } else {
-      // Only use an existing session if it has matching init data.
-      session = null;
       for (DefaultDrmSession<T> existingSession : sessions) {
-        if (Util.areEqual(existingSession.schemeDatas, schemeDatas)) {
+        if (!idleSessions.contains(existingSession)) {
           session = existingSession;
           break;
         }
       }
     }
+    if (session == null) {
+      // Only use an existing session if it has matching init data. If there's no active session
+      // in single session mode, this is an idle session.
+      for (DefaultDrmSession<T> existingSession : sessions) {
+        if ((multiSession || idleSessions.contains(existingSession))
+            && Util.areEqual(existingSession.schemeDatas, schemeDatas)) {
+          session = existingSession;
+          break;
+        }
+      }
+    }
+
+    if (session != null && idleSessions.contains(session)) {
+      if (isIdleSessionUsable(session)) {
+        // The reference held by the manager is handed over to the caller.
+        idleSessions.remove(session);
+        if (idleSessions.isEmpty()) {
+          mediaDrmHandler.removeCallbacks(checkIdleSessionsRunnable);
+        }
+        return session;
+      }
+      closeIdleSession(session);
+      session = null;
+    }
 
     if (session == null) {
       // Create a new session.
@@ -559,15 +709,34 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
   }
 
   @Override
-  public void releaseSession(DrmSession<T> session) {
+  public synchronized void releaseSession(DrmSession<T> session) {
     if (session instanceof ErrorStateDrmSession) {
       // Do nothing.
       return;
     }
 
     DefaultDrmSession<T> drmSession = (DefaultDrmSession<T>) session;
+    if (drmSession.getOpenCount() == 1
+        && maxIdleSessionCount > 0
+        && mode == MODE_PLAYBACK
+        && offlineLicenseKeySetId == null
+        && drmSession.getState() != DrmSession.STATE_ERROR) {
+      // Keep the session open by holding its last reference, so that its license can be reused.
+      idleSessions.add(drmSession);
+      if (idleSessions.size() > maxIdleSessionCount) {
+        closeIdleSession(idleSessions.get(0));
+      } else if (idleSessions.size() == 1) {
+        mediaDrmHandler.postDelayed(checkIdleSessionsRunnable, IDLE_SESSION_CHECK_INTERVAL_MS);
+      }
+      return;
+    }
+    closeSession(drmSession);
+  }
+
+  private void closeSession(DefaultDrmSession<T> drmSession) {
     if (drmSession.release()) {
       sessions.remove(drmSession);
+      maybeRemoveCoalescedSchemeDatas(drmSession.schemeDatas);
       if (provisioningSessions.size() > 1 && provisioningSessions.get(0) == drmSession) {
         // Other sessions were waiting for the released session to complete a provision operation.
         // We need to have one of those sessions perform the provision operation instead.
@@ -606,6 +775,118 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
 
   // Internal methods.
 
+  private synchronized void prefetchLicenseInternal(
+      Looper playbackLooper, DrmInitData drmInitData) {
+    if (maxIdleSessionCount == 0
+        || mode != MODE_PLAYBACK
+        || offlineLicenseKeySetId != null
+        || !canAcquireSession(drmInitData)) {
+      return;
+    }
+    List<SchemeData> schemeDatas = getSchemeDatas(drmInitData, uuid, true);
+    if (schemeDatas.isEmpty()
+        || schemeDatas.size() != getSchemeDatas(drmInitData, uuid, false).size()) {
+      return;
+    }
+    releaseSession(acquireSession(playbackLooper, drmInitData));
+  }
+
+  private boolean isIdleSessionUsable(DefaultDrmSession<T> session) {
+    return session.getState() != DrmSession.STATE_ERROR && session.maybeRenewLicense();
+  }
+
+  private void closeIdleSession(DefaultDrmSession<T> session) {
+    idleSessions.remove(session);
+    if (idleSessions.isEmpty()) {
+      mediaDrmHandler.removeCallbacks(checkIdleSessionsRunnable);
+    }
+    closeSession(session);
+  }
+
+  private synchronized void checkIdleSessions() {
+    for (int i = idleSessions.size() - 1; i >= 0; i--) {
+      DefaultDrmSession<T> session = idleSessions.get(i);
+      if (!isIdleSessionUsable(session)) {
+        closeIdleSession(session);
+      }
+    }
+    if (!idleSessions.isEmpty()) {
+      mediaDrmHandler.postDelayed(checkIdleSessionsRunnable, IDLE_SESSION_CHECK_INTERVAL_MS);
+    }
+  }
+
+  /**
+   * Drops the records mapping data to the coalesced {@code schemeDatas} if no open session holds
+   * them, so that the records don't outlive the sessions.
+   */
+  private void maybeRemoveCoalescedSchemeDatas(@Nullable List<SchemeData> schemeDatas) {
+    if (schemeDatas == null || coalescedSchemeDatas.isEmpty()) {
+      return;
+    }
+    for (DefaultDrmSession<T> session : sessions) {
+      if (schemeDatas.equals(session.schemeDatas)) {
+        return;
+      }
+    }
+    coalescedSchemeDatas.values().removeAll(Collections.singleton(schemeDatas));
+  }
+
+  /**
+   * Returns {@link DrmInitData} requesting the keys of all the given Widevine data, and records
+   * that sessions acquired for any of the data should request those keys. Returns null if the
+   * data can't be coalesced.
+   */
+  private @Nullable DrmInitData coalesceDrmInitDatas(List<DrmInitData> drmInitDatas) {
+    if (!C.WIDEVINE_UUID.equals(uuid)) {
+      return null;
+    }
+    List<List<SchemeData>> schemeDatasList = new ArrayList<>();
+    List<byte[]> psshAtoms = new ArrayList<>();
+    SchemeData firstSchemeData = null;
+    String schemeType = null;
+    boolean requiresSecureDecryption = false;
+    for (int i = 0; i < drmInitDatas.size(); i++) {
+      DrmInitData drmInitData = drmInitDatas.get(i);
+      List<SchemeData> schemeDatas = getSchemeDatas(drmInitData, uuid, false);
+      if (schemeDatas.size() != 1 || getSchemeDatas(drmInitData, uuid, true).size() != 1) {
+        return null;
+      } else if (schemeDatasList.contains(schemeDatas)) {
+        continue;
+      }
+      SchemeData schemeData = schemeDatas.get(0);
+      if (firstSchemeData == null) {
+        firstSchemeData = schemeData;
+        schemeType = drmInitData.schemeType;
+      } else if (!Util.areEqual(schemeData.licenseServerUrl, firstSchemeData.licenseServerUrl)
+          || !Util.areEqual(drmInitData.schemeType, schemeType)) {
+        // The keys can't be requested from the same server, or used with the same scheme.
+        return null;
+      }
+      requiresSecureDecryption |= schemeData.requiresSecureDecryption;
+      schemeDatasList.add(schemeDatas);
+      psshAtoms.add(schemeData.data);
+    }
+    if (schemeDatasList.size() < 2) {
+      return null;
+    }
+    byte[] psshAtom = WidevineUtil.buildMultiKeyPsshAtom(psshAtoms);
+    if (psshAtom == null) {
+      return null;
+    }
+    SchemeData coalescedSchemeData =
+        new SchemeData(
+            uuid,
+            firstSchemeData.licenseServerUrl,
+            firstSchemeData.mimeType,
+            psshAtom,
+            requiresSecureDecryption);
+    List<SchemeData> coalescedSchemeDatas = Collections.singletonList(coalescedSchemeData);
+    for (int i = 0; i < schemeDatasList.size(); i++) {
+      this.coalescedSchemeDatas.put(schemeDatasList.get(i), coalescedSchemeDatas);
+    }
+    return new DrmInitData(schemeType, coalescedSchemeData);
+  }
+
   /**
    * Extracts {@link SchemeData} instances suitable for the given DRM scheme {@link UUID}.
    *
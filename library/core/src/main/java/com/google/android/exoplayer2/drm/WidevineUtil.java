@@ -15,8 +15,12 @@
  */
 package com.google.android.exoplayer2.drm;
 
+import android.support.annotation.Nullable;
 import android.util.Pair;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.mp4.PsshAtomUtil;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +35,31 @@ public final class WidevineUtil {
 
   private WidevineUtil() {}
 
+  /**
+   * Builds a Widevine PSSH atom requesting the keys of several Widevine PSSH atoms, so that a
+   * single license request can be made for content whose tracks are encrypted with different keys.
+   *
+   * <p>The Widevine data of a PSSH atom is a serialized protocol buffer, whose key ids are a
+   * repeated field. Concatenating serialized messages merges them, so the data of the returned
+   * atom lists the key ids of all the atoms. Its other fields, such as the content id, are taken
+   * from the last atom, so the atoms should describe the same content.
+   *
+   * @param psshAtoms The Widevine PSSH atoms. Version 0 and 1 atoms are supported.
+   * @return A version 0 Widevine PSSH atom, or null if one of the atoms isn't a valid Widevine
+   *     PSSH atom.
+   */
+  public static @Nullable byte[] buildMultiKeyPsshAtom(List<byte[]> psshAtoms) {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    for (int i = 0; i < psshAtoms.size(); i++) {
+      byte[] atomData = PsshAtomUtil.parseSchemeSpecificData(psshAtoms.get(i), C.WIDEVINE_UUID);
+      if (atomData == null) {
+        return null;
+      }
+      data.write(atomData, 0, atomData.length);
+    }
+    return PsshAtomUtil.buildPsshAtom(C.WIDEVINE_UUID, data.toByteArray());
+  }
+
   /**
    * Returns license and playback durations remaining in seconds.
    *
@@ -21,7 +21,6 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.Arrays;
 
 /**
  * An {@link ExtractorInput} that wraps a {@link DataSource}.
@@ -38,6 +37,10 @@ public final class DefaultExtractorInput implements ExtractorInput {
 
   private long position;
   private byte[] peekBuffer;
+  // The offset in peekBuffer of the data at the current read position. Data consumed from the
+  // front of the peek buffer is dropped by advancing this offset, rather than by shifting the
+  // remaining data down on every read.
+  private int peekBufferOffset;
   private int peekBufferPosition;
   private int peekBufferLength;
 
@@ -116,7 +119,8 @@ public final class DefaultExtractorInput implements ExtractorInput {
     if (!advancePeekPosition(length, allowEndOfInput)) {
       return false;
     }
-    System.arraycopy(peekBuffer, peekBufferPosition - length, target, offset, length);
+    System.arraycopy(
+        peekBuffer, peekBufferOffset + peekBufferPosition - length, target, offset, length);
     return true;
   }
 
@@ -132,8 +136,8 @@ public final class DefaultExtractorInput implements ExtractorInput {
     ensureSpaceForPeek(length);
     int bytesPeeked = Math.min(peekBufferLength - peekBufferPosition, length);
     while (bytesPeeked < length) {
-      bytesPeeked = readFromDataSource(peekBuffer, peekBufferPosition, length, bytesPeeked,
-          allowEndOfInput);
+      bytesPeeked = readFromDataSource(peekBuffer, peekBufferOffset + peekBufferPosition, length,
+          bytesPeeked, allowEndOfInput);
       if (bytesPeeked == C.RESULT_END_OF_INPUT) {
         return false;
       }
@@ -181,11 +185,19 @@ public final class DefaultExtractorInput implements ExtractorInput {
    */
   private void ensureSpaceForPeek(int length) {
     int requiredLength = peekBufferPosition + length;
+    if (peekBufferOffset + requiredLength <= peekBuffer.length) {
+      return;
+    }
+    byte[] newPeekBuffer = peekBuffer;
     if (requiredLength > peekBuffer.length) {
       int newPeekCapacity = Util.constrainValue(peekBuffer.length * 2,
           requiredLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE, requiredLength + PEEK_MAX_FREE_SPACE);
-      peekBuffer = Arrays.copyOf(peekBuffer, newPeekCapacity);
+      newPeekBuffer = new byte[newPeekCapacity];
     }
+    // Move the buffered data to the start of the buffer, reclaiming the space before it.
+    System.arraycopy(peekBuffer, peekBufferOffset, newPeekBuffer, 0, peekBufferLength);
+    peekBuffer = newPeekBuffer;
+    peekBufferOffset = 0;
   }
 
   /**
@@ -213,7 +225,7 @@ public final class DefaultExtractorInput implements ExtractorInput {
       return 0;
     }
     int peekBytes = Math.min(peekBufferLength, length);
-    System.arraycopy(peekBuffer, 0, target, offset, peekBytes);
+    System.arraycopy(peekBuffer, peekBufferOffset, target, offset, peekBytes);
     updatePeekBuffer(peekBytes);
     return peekBytes;
   }
@@ -226,12 +238,17 @@ public final class DefaultExtractorInput implements ExtractorInput {
   private void updatePeekBuffer(int bytesConsumed) {
     peekBufferLength -= bytesConsumed;
     peekBufferPosition = 0;
-    byte[] newPeekBuffer = peekBuffer;
+    if (peekBufferLength == 0) {
+      peekBufferOffset = 0;
+    } else {
+      peekBufferOffset += bytesConsumed;
+    }
     if (peekBufferLength < peekBuffer.length - PEEK_MAX_FREE_SPACE) {
-      newPeekBuffer = new byte[peekBufferLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE];
+      byte[] newPeekBuffer = new byte[peekBufferLength + PEEK_MIN_FREE_SPACE_AFTER_RESIZE];
+      System.arraycopy(peekBuffer, peekBufferOffset, newPeekBuffer, 0, peekBufferLength);
+      peekBuffer = newPeekBuffer;
+      peekBufferOffset = 0;
     }
-    System.arraycopy(peekBuffer, bytesConsumed, newPeekBuffer, 0, peekBufferLength);
-    peekBuffer = newPeekBuffer;
   }
 
   /**
@@ -76,6 +76,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   private @AdtsExtractor.Flags int adtsFlags;
   private @AmrExtractor.Flags int amrFlags;
   private @MatroskaExtractor.Flags int matroskaFlags;
+  private long matroskaMinCueIntervalUs;
   private @Mp4Extractor.Flags int mp4Flags;
   private @FragmentedMp4Extractor.Flags int fragmentedMp4Flags;
   private @Mp3Extractor.Flags int mp3Flags;
@@ -141,6 +142,20 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     return this;
   }
 
+  /**
+   * Sets the minimum interval between cue points retained by {@link MatroskaExtractor} instances
+   * created by the factory.
+   *
+   * @see MatroskaExtractor#MatroskaExtractor(int, long)
+   * @param minCueIntervalUs The minimum interval between retained cue points, in microseconds.
+   * @return The factory, for convenience.
+   */
+  public synchronized DefaultExtractorsFactory setMatroskaExtractorMinCueIntervalUs(
+      long minCueIntervalUs) {
+    this.matroskaMinCueIntervalUs = minCueIntervalUs;
+    return this;
+  }
+
   /**
    * Sets flags for {@link Mp4Extractor} instances created by the factory.
    *
@@ -207,7 +222,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   @Override
   public synchronized Extractor[] createExtractors() {
     Extractor[] extractors = new Extractor[FLAC_EXTRACTOR_CONSTRUCTOR == null ? 12 : 13];
-    extractors[0] = new MatroskaExtractor(matroskaFlags);
+    extractors[0] = new MatroskaExtractor(matroskaFlags, matroskaMinCueIntervalUs);
     extractors[1] = new FragmentedMp4Extractor(fragmentedMp4Flags);
     extractors[2] = new Mp4Extractor(mp4Flags);
     extractors[3] =
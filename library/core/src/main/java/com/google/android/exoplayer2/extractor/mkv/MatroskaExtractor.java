@@ -65,13 +65,13 @@ public final class MatroskaExtractor implements Extractor {
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new MatroskaExtractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_DISABLE_SEEK_FOR_CUES}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_DISABLE_SEEK_FOR_CUES} and {@link #FLAG_LOAD_CUES_LAZILY}.
    */
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
       flag = true,
-      value = {FLAG_DISABLE_SEEK_FOR_CUES})
+      value = {FLAG_DISABLE_SEEK_FOR_CUES, FLAG_LOAD_CUES_LAZILY})
   public @interface Flags {}
   /**
    * Flag to disable seeking for cues.
@@ -82,6 +82,23 @@ public final class MatroskaExtractor implements Extractor {
    * media is treated as being unseekable.
    */
   public static final int FLAG_DISABLE_SEEK_FOR_CUES = 1;
+  /**
+   * Flag to defer seeking for cues until playback can start.
+   * <p>
+   * Normally (i.e. when this flag is not set) the extractor seeks to the cues element when it
+   * reaches the first cluster, and only outputs a {@link SeekMap} once the cues have been read.
+   * Setting this flag causes the extractor to output an unseekable {@link SeekMap} immediately, and
+   * to seek to the cues element only once {@link #LAZY_CUES_LOAD_DELAY_US} of media has been read.
+   * A seekable {@link SeekMap} is output once the cues have been read. This flag has no effect if
+   * {@link #FLAG_DISABLE_SEEK_FOR_CUES} is set.
+   */
+  public static final int FLAG_LOAD_CUES_LAZILY = 1 << 1;
+
+  /**
+   * The duration of media read from the first cluster onward before the cues element is loaded,
+   * if {@link #FLAG_LOAD_CUES_LAZILY} is set.
+   */
+  public static final long LAZY_CUES_LOAD_DELAY_US = 5 * C.MICROS_PER_SECOND;
 
   private static final String TAG = "MatroskaExtractor";
 
@@ -304,6 +321,9 @@ public final class MatroskaExtractor implements Extractor {
   private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
   private final boolean seekForCuesEnabled;
+  private final boolean loadCuesLazily;
+  private final long minCueIntervalUs;
+  private final long lazyCuesLoadDelayUs;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -335,12 +355,16 @@ public final class MatroskaExtractor implements Extractor {
 
   // Cue related elements.
   private boolean seekForCues;
+  private boolean builtCues;
   private long cuesContentPosition = C.POSITION_UNSET;
   private long seekPositionAfterBuildingCues = C.POSITION_UNSET;
   private long clusterTimecodeUs = C.TIME_UNSET;
+  private long firstClusterTimecodeUs = C.TIME_UNSET;
   private LongArray cueTimesUs;
   private LongArray cueClusterPositions;
-  private boolean seenClusterPositionForCurrentCuePoint;
+  private long cuePointTimeUs;
+  private long cuePointClusterPosition;
+  private boolean cuesIncomplete;
 
   // Block reading state.
   private int blockState;
@@ -375,13 +399,36 @@ public final class MatroskaExtractor implements Extractor {
   }
 
   public MatroskaExtractor(@Flags int flags) {
-    this(new DefaultEbmlReader(), flags);
+    this(flags, /* minCueIntervalUs= */ 0);
+  }
+
+  /**
+   * @param flags Flags that control the extractor's behavior.
+   * @param minCueIntervalUs The minimum interval between retained cue points, in microseconds. Cue
+   *     points closer than this to the previously retained cue point are discarded as the cues are
+   *     read, bounding the memory used by the seek index of long streams at the cost of seek
+   *     precision. Zero retains all cue points.
+   */
+  public MatroskaExtractor(@Flags int flags, long minCueIntervalUs) {
+    this(new DefaultEbmlReader(), flags, minCueIntervalUs);
   }
 
   /* package */ MatroskaExtractor(EbmlReader reader, @Flags int flags) {
+    this(reader, flags, /* minCueIntervalUs= */ 0);
+  }
+
+  /* package */ MatroskaExtractor(EbmlReader reader, @Flags int flags, long minCueIntervalUs) {
+    this(reader, flags, minCueIntervalUs, LAZY_CUES_LOAD_DELAY_US);
+  }
+
+  /* package */ MatroskaExtractor(
+      EbmlReader reader, @Flags int flags, long minCueIntervalUs, long lazyCuesLoadDelayUs) {
     this.reader = reader;
     this.reader.init(new InnerEbmlReaderOutput());
+    this.minCueIntervalUs = minCueIntervalUs;
+    this.lazyCuesLoadDelayUs = lazyCuesLoadDelayUs;
     seekForCuesEnabled = (flags & FLAG_DISABLE_SEEK_FOR_CUES) == 0;
+    loadCuesLazily = seekForCuesEnabled && (flags & FLAG_LOAD_CUES_LAZILY) != 0;
     varintReader = new VarintReader();
     tracks = new SparseArray<>();
     scratch = new ParsableByteArray(4);
@@ -408,6 +455,11 @@ public final class MatroskaExtractor implements Extractor {
   @Override
   public void seek(long position, long timeUs) {
     clusterTimecodeUs = C.TIME_UNSET;
+    if (seekPositionAfterBuildingCues != C.POSITION_UNSET && !builtCues) {
+      // A lazy load of the cues was interrupted. Retry it once playback resumes.
+      seekPositionAfterBuildingCues = C.POSITION_UNSET;
+      firstClusterTimecodeUs = C.TIME_UNSET;
+    }
     blockState = BLOCK_STATE_START;
     reader.reset();
     varintReader.reset();
@@ -460,22 +512,32 @@ public final class MatroskaExtractor implements Extractor {
       case ID_CUES:
         cueTimesUs = new LongArray();
         cueClusterPositions = new LongArray();
+        cuesIncomplete = false;
         break;
       case ID_CUE_POINT:
-        seenClusterPositionForCurrentCuePoint = false;
+        cuePointTimeUs = C.TIME_UNSET;
+        cuePointClusterPosition = C.POSITION_UNSET;
         break;
       case ID_CLUSTER:
         if (!sentSeekMap) {
           // We need to build cues before parsing the cluster.
           if (seekForCuesEnabled && cuesContentPosition != C.POSITION_UNSET) {
-            // We know where the Cues element is located. Seek to request it.
-            seekForCues = true;
+            if (loadCuesLazily) {
+              // Allow playback to start, and load the cues once some media has been read.
+              extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+              sentSeekMap = true;
+            } else {
+              // We know where the Cues element is located. Seek to request it.
+              seekForCues = true;
+            }
           } else {
             // We don't know where the Cues element is located. It's most likely omitted. Allow
             // playback, but disable seeking.
             extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
             sentSeekMap = true;
           }
+        } else if (shouldLoadCuesLazily()) {
+          seekForCues = true;
         }
         break;
       case ID_BLOCK_GROUP:
@@ -517,10 +579,20 @@ public final class MatroskaExtractor implements Extractor {
           cuesContentPosition = seekEntryPosition;
         }
         break;
+      case ID_CUE_POINT:
+        if (cuePointTimeUs == C.TIME_UNSET || cuePointClusterPosition == C.POSITION_UNSET) {
+          cuesIncomplete = true;
+        } else if (cueTimesUs.size() == 0
+            || cuePointTimeUs - cueTimesUs.get(cueTimesUs.size() - 1) >= minCueIntervalUs) {
+          cueTimesUs.add(cuePointTimeUs);
+          cueClusterPositions.add(cuePointClusterPosition);
+        }
+        break;
       case ID_CUES:
-        if (!sentSeekMap) {
+        if (!sentSeekMap || (loadCuesLazily && !builtCues)) {
           extractorOutput.seekMap(buildSeekMap());
           sentSeekMap = true;
+          builtCues = true;
         } else {
           // We have already built the cues. Ignore.
         }
@@ -667,19 +739,21 @@ public final class MatroskaExtractor implements Extractor {
         }
         break;
       case ID_CUE_TIME:
-        cueTimesUs.add(scaleTimecodeToUs(value));
+        cuePointTimeUs = scaleTimecodeToUs(value);
         break;
       case ID_CUE_CLUSTER_POSITION:
-        if (!seenClusterPositionForCurrentCuePoint) {
+        if (cuePointClusterPosition == C.POSITION_UNSET) {
           // If there's more than one video/audio track, then there could be more than one
           // CueTrackPositions within a single CuePoint. In such a case, ignore all but the first
           // one (since the cluster position will be quite close for all the tracks).
-          cueClusterPositions.add(value);
-          seenClusterPositionForCurrentCuePoint = true;
+          cuePointClusterPosition = value;
         }
         break;
       case ID_TIME_CODE:
         clusterTimecodeUs = scaleTimecodeToUs(value);
+        if (firstClusterTimecodeUs == C.TIME_UNSET) {
+          firstClusterTimecodeUs = clusterTimecodeUs;
+        }
         break;
       case ID_BLOCK_DURATION:
         blockDurationUs = scaleTimecodeToUs(value);
@@ -1286,8 +1360,7 @@ public final class MatroskaExtractor implements Extractor {
    */
   private SeekMap buildSeekMap() {
     if (segmentContentPosition == C.POSITION_UNSET || durationUs == C.TIME_UNSET
-        || cueTimesUs == null || cueTimesUs.size() == 0
-        || cueClusterPositions == null || cueClusterPositions.size() != cueTimesUs.size()) {
+        || cueTimesUs == null || cueTimesUs.size() == 0 || cuesIncomplete) {
       // Cues information is missing or incomplete.
       cueTimesUs = null;
       cueClusterPositions = null;
@@ -1332,7 +1405,9 @@ public final class MatroskaExtractor implements Extractor {
     }
     // After parsing Cues, seek back to original position if available. We will not do this unless
     // we seeked to get to the Cues in the first place.
-    if (sentSeekMap && seekPositionAfterBuildingCues != C.POSITION_UNSET) {
+    if (sentSeekMap
+        && (!loadCuesLazily || builtCues)
+        && seekPositionAfterBuildingCues != C.POSITION_UNSET) {
       seekPosition.position = seekPositionAfterBuildingCues;
       seekPositionAfterBuildingCues = C.POSITION_UNSET;
       return true;
@@ -1340,6 +1415,19 @@ public final class MatroskaExtractor implements Extractor {
     return false;
   }
 
+  /**
+   * Returns whether the cues should be loaded lazily at the start of the current cluster, which is
+   * the case once {@link #lazyCuesLoadDelayUs} of media has been read from the first cluster.
+   */
+  private boolean shouldLoadCuesLazily() {
+    return loadCuesLazily
+        && !builtCues
+        && seekPositionAfterBuildingCues == C.POSITION_UNSET
+        && cuesContentPosition != C.POSITION_UNSET
+        && firstClusterTimecodeUs != C.TIME_UNSET
+        && clusterTimecodeUs - firstClusterTimecodeUs >= lazyCuesLoadDelayUs;
+  }
+
   private long scaleTimecodeToUs(long unscaledTimecode) throws ParserException {
     if (timecodeScale == C.TIME_UNSET) {
       throw new ParserException("Can't scale timecode prior to timecodeScale being set.");
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/**
+ * MP3 seeker that uses an index of frame positions built while reading the stream. The index
+ * covers the stream from its first frame up to some position. If the index doesn't cover the whole
+ * stream, a fallback {@link Mp3Extractor.Seeker} is used beyond its end if it's seekable. If it
+ * isn't, seeking is limited to the indexed part of the stream.
+ */
+/* package */ final class IndexSeeker implements Mp3Extractor.Seeker {
+
+  /** Builds an index of frame times and positions with a bounded number of entries. */
+  public static final class Builder {
+
+    private final int maxEntryCount;
+
+    private long minIntervalUs;
+    private long[] timesUs;
+    private long[] positions;
+    private int size;
+
+    /**
+     * @param maxEntryCount The maximum number of entries to hold. When this is reached, every other
+     *     entry is discarded and the minimum interval between entries is doubled.
+     * @param minIntervalUs The initial minimum interval between entries, in microseconds.
+     */
+    public Builder(int maxEntryCount, long minIntervalUs) {
+      Assertions.checkArgument(maxEntryCount >= 2 && minIntervalUs > 0);
+      this.maxEntryCount = maxEntryCount;
+      this.minIntervalUs = minIntervalUs;
+      timesUs = new long[Math.min(maxEntryCount, 32)];
+      positions = new long[timesUs.length];
+    }
+
+    /** Returns the number of entries in the index. */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Adds a frame to the index, if it's sufficiently far from the last entry. Frames must be added
+     * in increasing order of time and position.
+     *
+     * @param timeUs The time of the frame, in microseconds.
+     * @param position The position of the start of the frame.
+     */
+    public void add(long timeUs, long position) {
+      if (size > 0 && timeUs - timesUs[size - 1] < minIntervalUs) {
+        return;
+      }
+      if (size == maxEntryCount) {
+        // Keep every other entry, starting from the first.
+        int newSize = (size + 1) / 2;
+        for (int i = 1; i < newSize; i++) {
+          timesUs[i] = timesUs[2 * i];
+          positions[i] = positions[2 * i];
+        }
+        size = newSize;
+        minIntervalUs *= 2;
+        if (timeUs - timesUs[size - 1] < minIntervalUs) {
+          return;
+        }
+      } else if (size == timesUs.length) {
+        int newCapacity = Math.min(maxEntryCount, size * 2);
+        timesUs = Arrays.copyOf(timesUs, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+      }
+      timesUs[size] = timeUs;
+      positions[size] = position;
+      size++;
+    }
+
+    /**
+     * Returns a seeker for the frames added so far.
+     *
+     * @param durationUs The duration of the stream, in microseconds, or {@link C#TIME_UNSET} if
+     *     unknown.
+     * @param fallbackSeeker The seeker to use beyond the end of the index if it's seekable, or null
+     *     if the index covers the whole stream.
+     */
+    public IndexSeeker build(long durationUs, @Nullable Mp3Extractor.Seeker fallbackSeeker) {
+      Assertions.checkState(size > 0);
+      return new IndexSeeker(
+          Arrays.copyOf(timesUs, size),
+          Arrays.copyOf(positions, size),
+          durationUs,
+          fallbackSeeker);
+    }
+  }
+
+  private final long[] timesUs;
+  private final long[] positions;
+  private final long durationUs;
+  @Nullable private final Mp3Extractor.Seeker fallbackSeeker;
+
+  private IndexSeeker(
+      long[] timesUs,
+      long[] positions,
+      long durationUs,
+      @Nullable Mp3Extractor.Seeker fallbackSeeker) {
+    this.timesUs = timesUs;
+    this.positions = positions;
+    this.durationUs = durationUs;
+    this.fallbackSeeker = fallbackSeeker;
+  }
+
+  /** Returns whether the index covers the whole stream. */
+  public boolean isComplete() {
+    return fallbackSeeker == null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Always returns true, since the index holds at least one entry. Seeking beyond the end of an
+   * incomplete index whose fallback seeker isn't seekable seeks to the last indexed frame.
+   */
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public SeekPoints getSeekPoints(long timeUs) {
+    int lastIndex = timesUs.length - 1;
+    if (isFallbackSeekable() && timeUs > timesUs[lastIndex]) {
+      return fallbackSeeker.getSeekPoints(timeUs);
+    }
+    int index = Util.binarySearchFloor(timesUs, timeUs, true, true);
+    SeekPoint seekPoint = new SeekPoint(timesUs[index], positions[index]);
+    if (seekPoint.timeUs >= timeUs || index == lastIndex) {
+      return new SeekPoints(seekPoint);
+    } else {
+      SeekPoint nextSeekPoint = new SeekPoint(timesUs[index + 1], positions[index + 1]);
+      return new SeekPoints(seekPoint, nextSeekPoint);
+    }
+  }
+
+  @Override
+  public long getTimeUs(long position) {
+    int lastIndex = positions.length - 1;
+    if (fallbackSeeker != null && position > positions[lastIndex]) {
+      return fallbackSeeker.getTimeUs(position);
+    }
+    int index = Util.binarySearchFloor(positions, position, true, true);
+    if (positions[index] == position || index == lastIndex) {
+      return timesUs[index];
+    }
+    // Interpolate between the neighboring entries.
+    long positionOffset = position - positions[index];
+    long positionRange = positions[index + 1] - positions[index];
+    long timeRangeUs = timesUs[index + 1] - timesUs[index];
+    return timesUs[index] + (positionOffset * timeRangeUs) / positionRange;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  private boolean isFallbackSeekable() {
+    return fallbackSeeker != null && fallbackSeeker.isSeekable();
+  }
+
+}
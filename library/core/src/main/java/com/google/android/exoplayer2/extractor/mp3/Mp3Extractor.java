@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor.mp3;
 
 import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
@@ -48,12 +49,17 @@ public final class Mp3Extractor implements Extractor {
 
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
-   * #FLAG_ENABLE_CONSTANT_BITRATE_SEEKING} and {@link #FLAG_DISABLE_ID3_METADATA}.
+   * #FLAG_ENABLE_CONSTANT_BITRATE_SEEKING}, {@link #FLAG_DISABLE_ID3_METADATA} and {@link
+   * #FLAG_ENABLE_INDEX_SEEKING}.
    */
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
       flag = true,
-      value = {FLAG_ENABLE_CONSTANT_BITRATE_SEEKING, FLAG_DISABLE_ID3_METADATA})
+      value = {
+        FLAG_ENABLE_CONSTANT_BITRATE_SEEKING,
+        FLAG_DISABLE_ID3_METADATA,
+        FLAG_ENABLE_INDEX_SEEKING
+      })
   public @interface Flags {}
   /**
    * Flag to force enable seeking using a constant bitrate assumption in cases where seeking would
@@ -65,6 +71,24 @@ public final class Mp3Extractor implements Extractor {
    * required.
    */
   public static final int FLAG_DISABLE_ID3_METADATA = 2;
+  /**
+   * Flag to build an index of frame positions as the stream is read, and to use it for seeking
+   * once available. The index is output as an updated {@link SeekMap} covering the contiguously
+   * read part of the stream each time the indexed duration doubles and when the extractor is
+   * seeked, and covering the whole stream once the end of the stream has been read contiguously
+   * from its first frame. Beyond the end of a partial index, seeking falls back to the seeking
+   * metadata if it's seekable, and is limited to the indexed part otherwise. Seeking within the
+   * indexed part of the stream is exact, which is not the case for the seeking metadata in many
+   * variable bitrate streams. The memory used by the index is bounded by {@link
+   * #MAX_INDEX_ENTRY_COUNT}.
+   */
+  public static final int FLAG_ENABLE_INDEX_SEEKING = 4;
+
+  /**
+   * The maximum number of entries in the index built if {@link #FLAG_ENABLE_INDEX_SEEKING} is set.
+   * Entries are decimated to stay within this limit as the index grows.
+   */
+  public static final int MAX_INDEX_ENTRY_COUNT = 8192;
 
   /**
    * The maximum number of bytes to search when synchronizing, before giving up.
@@ -89,6 +113,11 @@ public final class Mp3Extractor implements Extractor {
   private static final int SEEK_HEADER_VBRI = Util.getIntegerCodeForString("VBRI");
   private static final int SEEK_HEADER_UNSET = 0;
 
+  /** The initial minimum interval between entries in the index built for index seeking. */
+  private static final long MIN_INDEX_INTERVAL_US = 100_000;
+  /** The indexed duration at which a partial index is first output for index seeking. */
+  private static final long MIN_INDEX_OUTPUT_DURATION_US = 1_000_000;
+
   @Flags private final int flags;
   private final long forcedFirstSampleTimestampUs;
   private final ParsableByteArray scratch;
@@ -108,6 +137,16 @@ public final class Mp3Extractor implements Extractor {
   private long samplesRead;
   private int sampleBytesRemaining;
 
+  // Index seeking.
+  @Nullable private IndexSeeker.Builder indexBuilder;
+  private Seeker metadataSeeker;
+  private long firstFramePosition;
+  private long indexBasisTimeUs;
+  private long nextIndexedFramePosition;
+  private long indexedSamples;
+  private long indexedSamplesAtLastOutput;
+  private long nextIndexOutputDurationUs;
+
   public Mp3Extractor() {
     this(0);
   }
@@ -132,6 +171,11 @@ public final class Mp3Extractor implements Extractor {
     gaplessInfoHolder = new GaplessInfoHolder();
     basisTimeUs = C.TIME_UNSET;
     id3Peeker = new Id3Peeker();
+    if ((flags & FLAG_ENABLE_INDEX_SEEKING) != 0) {
+      indexBuilder = new IndexSeeker.Builder(MAX_INDEX_ENTRY_COUNT, MIN_INDEX_INTERVAL_US);
+    }
+    nextIndexedFramePosition = C.POSITION_UNSET;
+    nextIndexOutputDurationUs = MIN_INDEX_OUTPUT_DURATION_US;
   }
 
   // Extractor implementation.
@@ -154,6 +198,7 @@ public final class Mp3Extractor implements Extractor {
     basisTimeUs = C.TIME_UNSET;
     samplesRead = 0;
     sampleBytesRemaining = 0;
+    maybeOutputPartialIndex();
   }
 
   @Override
@@ -168,6 +213,7 @@ public final class Mp3Extractor implements Extractor {
       try {
         synchronize(input, false);
       } catch (EOFException e) {
+        maybeOutputCompleteIndex(input);
         return RESULT_END_OF_INPUT;
       }
     }
@@ -177,6 +223,8 @@ public final class Mp3Extractor implements Extractor {
           || (!seeker.isSeekable() && (flags & FLAG_ENABLE_CONSTANT_BITRATE_SEEKING) != 0)) {
         seeker = getConstantBitrateSeeker(input);
       }
+      metadataSeeker = seeker;
+      firstFramePosition = input.getPosition();
       extractorOutput.seekMap(seeker);
       trackOutput.format(
           Format.createAudioSampleFormat(
@@ -205,6 +253,7 @@ public final class Mp3Extractor implements Extractor {
     if (sampleBytesRemaining == 0) {
       extractorInput.resetPeekPosition();
       if (!extractorInput.peekFully(scratch.data, 0, 4, true)) {
+        maybeOutputCompleteIndex(extractorInput);
         return RESULT_END_OF_INPUT;
       }
       scratch.setPosition(0);
@@ -225,6 +274,9 @@ public final class Mp3Extractor implements Extractor {
         }
       }
       sampleBytesRemaining = synchronizedHeader.frameSize;
+      if (indexBuilder != null) {
+        maybeAddFrameToIndex(extractorInput.getPosition());
+      }
     }
     int bytesAppended = trackOutput.sampleData(extractorInput, sampleBytesRemaining, true);
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
@@ -242,6 +294,71 @@ public final class Mp3Extractor implements Extractor {
     return RESULT_CONTINUE;
   }
 
+  /**
+   * Adds the frame at {@code position} to the index, if it immediately follows the last indexed
+   * frame. The index is only extended while frames are read contiguously from the first frame, so
+   * that the times of indexed frames are exact.
+   */
+  private void maybeAddFrameToIndex(long position) {
+    if (nextIndexedFramePosition == C.POSITION_UNSET) {
+      if (position != firstFramePosition) {
+        return;
+      }
+      nextIndexedFramePosition = position;
+      indexBasisTimeUs = metadataSeeker.getTimeUs(position);
+    }
+    if (position != nextIndexedFramePosition) {
+      return;
+    }
+    long timeUs =
+        indexBasisTimeUs + (indexedSamples * C.MICROS_PER_SECOND / synchronizedHeader.sampleRate);
+    indexBuilder.add(timeUs, position);
+    nextIndexedFramePosition += synchronizedHeader.frameSize;
+    indexedSamples += synchronizedHeader.samplesPerFrame;
+    long indexedDurationUs = indexedSamples * C.MICROS_PER_SECOND / synchronizedHeader.sampleRate;
+    if (indexedDurationUs >= nextIndexOutputDurationUs) {
+      // Output the index as it grows, doubling the interval each time so that the number of seek
+      // map updates is logarithmic in the duration of the stream.
+      maybeOutputPartialIndex();
+      nextIndexOutputDurationUs = indexedDurationUs * 2;
+    }
+  }
+
+  /** Outputs the part of the stream indexed so far, if it's grown since the last output. */
+  private void maybeOutputPartialIndex() {
+    if (indexBuilder == null
+        || indexBuilder.size() == 0
+        || indexedSamples == indexedSamplesAtLastOutput
+        || isIndexComplete()) {
+      return;
+    }
+    seeker = indexBuilder.build(metadataSeeker.getDurationUs(), metadataSeeker);
+    indexedSamplesAtLastOutput = indexedSamples;
+    extractorOutput.seekMap(seeker);
+  }
+
+  /**
+   * Outputs an index covering the whole stream if the end of the input has been reached by reading
+   * every frame contiguously from the first frame.
+   */
+  private void maybeOutputCompleteIndex(ExtractorInput input) {
+    if (indexBuilder == null
+        || indexBuilder.size() == 0
+        || nextIndexedFramePosition != input.getPosition()
+        || isIndexComplete()) {
+      return;
+    }
+    long durationUs =
+        indexBasisTimeUs + (indexedSamples * C.MICROS_PER_SECOND / synchronizedHeader.sampleRate);
+    seeker = indexBuilder.build(durationUs, /* fallbackSeeker= */ null);
+    indexedSamplesAtLastOutput = indexedSamples;
+    extractorOutput.seekMap(seeker);
+  }
+
+  private boolean isIndexComplete() {
+    return seeker instanceof IndexSeeker && ((IndexSeeker) seeker).isComplete();
+  }
+
   private boolean synchronize(ExtractorInput input, boolean sniffing)
       throws IOException, InterruptedException {
     int validFrameCount = 0;
@@ -65,8 +65,8 @@ public final class FragmentedMp4Extractor implements Extractor {
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
    * #FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME}, {@link #FLAG_WORKAROUND_IGNORE_TFDT_BOX},
-   * {@link #FLAG_ENABLE_EMSG_TRACK}, {@link #FLAG_SIDELOADED} and {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}.
+   * {@link #FLAG_ENABLE_EMSG_TRACK}, {@link #FLAG_SIDELOADED}, {@link
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS} and {@link #FLAG_ENABLE_PARALLEL_TRACK_PARSING}.
    */
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
@@ -76,7 +76,8 @@ public final class FragmentedMp4Extractor implements Extractor {
         FLAG_WORKAROUND_IGNORE_TFDT_BOX,
         FLAG_ENABLE_EMSG_TRACK,
         FLAG_SIDELOADED,
-        FLAG_WORKAROUND_IGNORE_EDIT_LISTS
+        FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
+        FLAG_ENABLE_PARALLEL_TRACK_PARSING
       })
   public @interface Flags {}
   /**
@@ -101,6 +102,11 @@ public final class FragmentedMp4Extractor implements Extractor {
   private static final int FLAG_SIDELOADED = 1 << 3; // 8
   /** Flag to ignore any edit lists in the stream. */
   public static final int FLAG_WORKAROUND_IGNORE_EDIT_LISTS = 1 << 4; // 16
+  /**
+   * Flag to parse the trak atoms of the moov atom concurrently on background threads. The output
+   * of the extractor is unchanged.
+   */
+  public static final int FLAG_ENABLE_PARALLEL_TRACK_PARSING = 1 << 5; // 32
 
   private static final String TAG = "FragmentedMp4Extractor";
 
@@ -428,7 +434,8 @@ public final class FragmentedMp4Extractor implements Extractor {
     processAtomEnded(input.getPosition());
   }
 
-  private void processAtomEnded(long atomEndPosition) throws ParserException {
+  private void processAtomEnded(long atomEndPosition)
+      throws ParserException, InterruptedException {
     while (!containerAtoms.isEmpty() && containerAtoms.peek().endPosition == atomEndPosition) {
       onContainerAtomRead(containerAtoms.pop());
     }
@@ -448,7 +455,8 @@ public final class FragmentedMp4Extractor implements Extractor {
     }
   }
 
-  private void onContainerAtomRead(ContainerAtom container) throws ParserException {
+  private void onContainerAtomRead(ContainerAtom container)
+      throws ParserException, InterruptedException {
     if (container.type == Atom.TYPE_moov) {
       onMoovContainerAtomRead(container);
     } else if (container.type == Atom.TYPE_moof) {
@@ -458,7 +466,8 @@ public final class FragmentedMp4Extractor implements Extractor {
     }
   }
 
-  private void onMoovContainerAtomRead(ContainerAtom moov) throws ParserException {
+  private void onMoovContainerAtomRead(ContainerAtom moov)
+      throws ParserException, InterruptedException {
     Assertions.checkState(sideloadedTrack == null, "Unexpected moov box.");
 
     DrmInitData drmInitData = sideloadedDrmInitData != null ? sideloadedDrmInitData
@@ -480,17 +489,23 @@ public final class FragmentedMp4Extractor implements Extractor {
     }
 
     // Construction of tracks.
+    long trackDuration = duration;
+    List<Track> parsedTracks =
+        ParallelTrakParser.parseTraks(
+            moov,
+            /* parallel= */ (flags & FLAG_ENABLE_PARALLEL_TRACK_PARSING) != 0,
+            (trak, mvhd) ->
+                AtomParsers.parseTrak(
+                    trak,
+                    mvhd,
+                    trackDuration,
+                    drmInitData,
+                    (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0,
+                    false));
     SparseArray<Track> tracks = new SparseArray<>();
-    int moovContainerChildrenSize = moov.containerChildren.size();
-    for (int i = 0; i < moovContainerChildrenSize; i++) {
-      Atom.ContainerAtom atom = moov.containerChildren.get(i);
-      if (atom.type == Atom.TYPE_trak) {
-        Track track = AtomParsers.parseTrak(atom, moov.getLeafAtomOfType(Atom.TYPE_mvhd), duration,
-            drmInitData, (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0, false);
-        if (track != null) {
-          tracks.put(track.id, track);
-        }
-      }
+    for (int i = 0; i < parsedTracks.size(); i++) {
+      Track track = parsedTracks.get(i);
+      tracks.put(track.id, track);
     }
 
     int trackCount = tracks.size();
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor.mp4;
 
 import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
@@ -50,18 +51,24 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new Mp4Extractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS} and {@link #FLAG_ENABLE_PARALLEL_TRACK_PARSING}.
    */
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
       flag = true,
-      value = {FLAG_WORKAROUND_IGNORE_EDIT_LISTS})
+      value = {FLAG_WORKAROUND_IGNORE_EDIT_LISTS, FLAG_ENABLE_PARALLEL_TRACK_PARSING})
   public @interface Flags {}
   /**
    * Flag to ignore any edit lists in the stream.
    */
   public static final int FLAG_WORKAROUND_IGNORE_EDIT_LISTS = 1;
+  /**
+   * Flag to parse the sample tables of different tracks concurrently on background threads. The
+   * output of the extractor is unchanged, but the time taken to process the moov atom of streams
+   * with many tracks is reduced on multi-core devices.
+   */
+  public static final int FLAG_ENABLE_PARALLEL_TRACK_PARSING = 1 << 1;
 
   /**
    * Parser states.
@@ -350,7 +357,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return seekRequired && parserState != STATE_READING_SAMPLE;
   }
 
-  private void processAtomEnded(long atomEndPosition) throws ParserException {
+  private void processAtomEnded(long atomEndPosition)
+      throws ParserException, InterruptedException {
     while (!containerAtoms.isEmpty() && containerAtoms.peek().endPosition == atomEndPosition) {
       Atom.ContainerAtom containerAtom = containerAtoms.pop();
       if (containerAtom.type == Atom.TYPE_moov) {
@@ -370,7 +378,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   /**
    * Updates the stored track metadata to reflect the contents of the specified moov atom.
    */
-  private void processMoovAtom(ContainerAtom moov) throws ParserException {
+  private void processMoovAtom(ContainerAtom moov) throws ParserException, InterruptedException {
     int firstVideoTrackIndex = C.INDEX_UNSET;
     long durationUs = C.TIME_UNSET;
     List<Mp4Track> tracks = new ArrayList<>();
@@ -430,29 +438,45 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   private ArrayList<TrackSampleTable> getTrackSampleTables(
       ContainerAtom moov, GaplessInfoHolder gaplessInfoHolder, boolean ignoreEditLists)
-      throws ParserException {
+      throws ParserException, InterruptedException {
+    boolean parallel = (flags & FLAG_ENABLE_PARALLEL_TRACK_PARSING) != 0;
+    // Sample tables of tracks with edit lists may read and write the shared gapless information,
+    // so their parsing is deferred and done sequentially in track order once the others are done.
+    List<ParsedTrack> parsedTracks =
+        ParallelTrakParser.parseTraks(
+            moov,
+            parallel,
+            (trak, mvhd) -> {
+              Track track =
+                  AtomParsers.parseTrak(
+                      trak,
+                      mvhd,
+                      /* duration= */ C.TIME_UNSET,
+                      /* drmInitData= */ null,
+                      ignoreEditLists,
+                      isQuickTime);
+              if (track == null) {
+                return null;
+              }
+              Atom.ContainerAtom stblAtom =
+                  trak.getContainerAtomOfType(Atom.TYPE_mdia)
+                      .getContainerAtomOfType(Atom.TYPE_minf)
+                      .getContainerAtomOfType(Atom.TYPE_stbl);
+              TrackSampleTable trackSampleTable =
+                  track.editListDurations == null
+                      ? AtomParsers.parseStbl(track, stblAtom, new GaplessInfoHolder())
+                      : null;
+              return new ParsedTrack(track, stblAtom, trackSampleTable);
+            });
+
     ArrayList<TrackSampleTable> trackSampleTables = new ArrayList<>();
-    for (int i = 0; i < moov.containerChildren.size(); i++) {
-      Atom.ContainerAtom atom = moov.containerChildren.get(i);
-      if (atom.type != Atom.TYPE_trak) {
-        continue;
+    for (int i = 0; i < parsedTracks.size(); i++) {
+      ParsedTrack parsedTrack = parsedTracks.get(i);
+      TrackSampleTable trackSampleTable = parsedTrack.trackSampleTable;
+      if (trackSampleTable == null) {
+        trackSampleTable =
+            AtomParsers.parseStbl(parsedTrack.track, parsedTrack.stblAtom, gaplessInfoHolder);
       }
-      Track track =
-          AtomParsers.parseTrak(
-              atom,
-              moov.getLeafAtomOfType(Atom.TYPE_mvhd),
-              /* duration= */ C.TIME_UNSET,
-              /* drmInitData= */ null,
-              ignoreEditLists,
-              isQuickTime);
-      if (track == null) {
-        continue;
-      }
-      Atom.ContainerAtom stblAtom =
-          atom.getContainerAtomOfType(Atom.TYPE_mdia)
-              .getContainerAtomOfType(Atom.TYPE_minf)
-              .getContainerAtomOfType(Atom.TYPE_stbl);
-      TrackSampleTable trackSampleTable = AtomParsers.parseStbl(track, stblAtom, gaplessInfoHolder);
       if (trackSampleTable.sampleCount == 0) {
         continue;
       }
@@ -750,4 +774,20 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   }
 
+  /** A parsed track, with its sample table if it could be parsed independently of other tracks. */
+  private static final class ParsedTrack {
+
+    public final Track track;
+    public final Atom.ContainerAtom stblAtom;
+    @Nullable public final TrackSampleTable trackSampleTable;
+
+    public ParsedTrack(
+        Track track, Atom.ContainerAtom stblAtom, @Nullable TrackSampleTable trackSampleTable) {
+      this.track = track;
+      this.stblAtom = stblAtom;
+      this.trackSampleTable = trackSampleTable;
+    }
+
+  }
+
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a per-track parsing function over the trak atoms of a moov atom, either sequentially on the
+ * calling thread or concurrently on a small shared pool of background threads. In both cases the
+ * results are returned in the order in which the trak atoms appear in the moov atom.
+ */
+/* package */ final class ParallelTrakParser {
+
+  /**
+   * Parses a single trak atom.
+   *
+   * @param <T> The type of the parsed result.
+   */
+  public interface TrakParsingFunction<T> {
+
+    /**
+     * Parses a trak atom. May be called concurrently for different trak atoms of the same moov
+     * atom, so implementations must not modify state shared between calls.
+     *
+     * @param trak The trak atom to parse.
+     * @param mvhd The movie header atom. Each call receives its own view of the atom data.
+     * @return The parsed result, or null if the track should be ignored.
+     * @throws ParserException If an error occurs parsing the track.
+     */
+    @Nullable
+    T parse(Atom.ContainerAtom trak, Atom.LeafAtom mvhd) throws ParserException;
+  }
+
+  private static final String THREAD_NAME = "ExoPlayer:TrakParser";
+  private static final int MAX_THREAD_COUNT = 4;
+  private static final long KEEP_ALIVE_TIME_MS = 1000;
+
+  private static @Nullable ExecutorService executorService;
+
+  private ParallelTrakParser() {}
+
+  /**
+   * Parses every trak atom contained in {@code moov}.
+   *
+   * @param moov The moov atom.
+   * @param parallel Whether trak atoms may be parsed concurrently.
+   * @param function The function used to parse each trak atom.
+   * @param <T> The type of the parsed results.
+   * @return The non-null results, in the order of the trak atoms from which they were parsed.
+   * @throws ParserException If an error occurs parsing any of the tracks.
+   * @throws InterruptedException If the calling thread was interrupted while waiting for
+   *     background parsing to complete.
+   */
+  public static <T> List<T> parseTraks(
+      Atom.ContainerAtom moov, boolean parallel, TrakParsingFunction<T> function)
+      throws ParserException, InterruptedException {
+    Atom.LeafAtom mvhd = moov.getLeafAtomOfType(Atom.TYPE_mvhd);
+    List<Atom.ContainerAtom> traks = new ArrayList<>();
+    for (int i = 0; i < moov.containerChildren.size(); i++) {
+      Atom.ContainerAtom atom = moov.containerChildren.get(i);
+      if (atom.type == Atom.TYPE_trak) {
+        traks.add(atom);
+      }
+    }
+
+    List<T> results = new ArrayList<>(traks.size());
+    if (!parallel || traks.size() < 2) {
+      for (int i = 0; i < traks.size(); i++) {
+        addIfNotNull(results, function.parse(traks.get(i), mvhd));
+      }
+      return results;
+    }
+
+    // Hand every trak but the first to the background threads, and parse the first one on the
+    // calling thread while they're busy.
+    ExecutorService executorService = getExecutorService();
+    List<Future<T>> futures = new ArrayList<>(traks.size() - 1);
+    try {
+      for (int i = 1; i < traks.size(); i++) {
+        Atom.ContainerAtom trak = traks.get(i);
+        Atom.LeafAtom mvhdCopy = copyLeafAtom(mvhd);
+        Callable<T> task = () -> function.parse(trak, mvhdCopy);
+        futures.add(executorService.submit(task));
+      }
+      addIfNotNull(results, function.parse(traks.get(0), copyLeafAtom(mvhd)));
+      for (int i = 0; i < futures.size(); i++) {
+        addIfNotNull(results, getResult(futures.get(i)));
+      }
+    } finally {
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).cancel(/* mayInterruptIfRunning= */ false);
+      }
+    }
+    return results;
+  }
+
+  private static synchronized ExecutorService getExecutorService() {
+    if (executorService == null) {
+      int threadCount =
+          Math.max(1, Math.min(MAX_THREAD_COUNT, Runtime.getRuntime().availableProcessors() - 1));
+      ThreadPoolExecutor threadPoolExecutor =
+          new ThreadPoolExecutor(
+              threadCount,
+              threadCount,
+              KEEP_ALIVE_TIME_MS,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+              });
+      // Don't keep idle threads around between moov atoms.
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      executorService = threadPoolExecutor;
+    }
+    return executorService;
+  }
+
+  private static <T> T getResult(Future<T> future) throws ParserException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ParserException) {
+        throw (ParserException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static @Nullable Atom.LeafAtom copyLeafAtom(@Nullable Atom.LeafAtom atom) {
+    // The underlying array is never written to during parsing, so it can be shared. Only the read
+    // position needs to be independent.
+    return atom == null
+        ? null
+        : new Atom.LeafAtom(atom.type, new ParsableByteArray(atom.data.data, atom.data.limit()));
+  }
+
+  private static <T> void addIfNotNull(List<T> list, @Nullable T item) {
+    if (item != null) {
+      list.add(item);
+    }
+  }
+}
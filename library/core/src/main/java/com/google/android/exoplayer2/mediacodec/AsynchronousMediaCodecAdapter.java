@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link MediaCodecAdapter} that operates the codec in asynchronous mode. The codec notifies a
+ * {@link MediaCodecAsyncCallback} of available buffers on a dedicated thread, and buffer indices
+ * are then dequeued from the callback's queues without calling into the codec.
+ */
+@TargetApi(23)
+/* package */ final class AsynchronousMediaCodecAdapter implements MediaCodecAdapter {
+
+  private static final String THREAD_NAME_PREFIX = "ExoPlayer:MediaCodecAsyncAdapter:";
+
+  private final MediaCodec codec;
+  private final MediaCodecAsyncCallback callback;
+  private final HandlerThread handlerThread;
+  private final Handler handler;
+  private final AtomicInteger pendingFlushCount;
+
+  /**
+   * Creates an adapter and sets it as the codec's callback. Must be called before the codec is
+   * configured.
+   *
+   * @param codec The codec.
+   * @param trackType The type of the track being decoded, used to name the callback thread.
+   */
+  public AsynchronousMediaCodecAdapter(MediaCodec codec, int trackType) {
+    this.codec = codec;
+    callback = new MediaCodecAsyncCallback();
+    pendingFlushCount = new AtomicInteger();
+    handlerThread = new HandlerThread(THREAD_NAME_PREFIX + trackType);
+    handlerThread.start();
+    handler = new Handler(handlerThread.getLooper());
+    codec.setCallback(callback, handler);
+  }
+
+  @Override
+  public void start() {
+    codec.start();
+  }
+
+  @Override
+  public int dequeueInputBufferIndex() {
+    if (pendingFlushCount.get() > 0) {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+    return callback.dequeueInputBufferIndex();
+  }
+
+  @Override
+  public int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo, long timeoutUs) {
+    if (pendingFlushCount.get() > 0) {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+    return callback.dequeueOutputBufferIndex(bufferInfo);
+  }
+
+  @Override
+  public MediaFormat getOutputFormat() {
+    return callback.getOutputFormat();
+  }
+
+  @Override
+  public void flush() {
+    pendingFlushCount.incrementAndGet();
+    try {
+      codec.flush();
+    } catch (RuntimeException e) {
+      pendingFlushCount.decrementAndGet();
+      throw e;
+    }
+    // Callbacks that were posted before the flush must be discarded, so the queues are cleared on
+    // the callback thread. The codec doesn't resume until it's started again.
+    handler.post(this::onFlushCompleted);
+  }
+
+  @Override
+  public void shutdown() {
+    handlerThread.quit();
+  }
+
+  private void onFlushCompleted() {
+    callback.flush();
+    try {
+      codec.start();
+    } catch (IllegalStateException e) {
+      callback.setPendingException(e);
+    } finally {
+      pendingFlushCount.decrementAndGet();
+    }
+  }
+}
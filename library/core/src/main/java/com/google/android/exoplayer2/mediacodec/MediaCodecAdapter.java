@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+/**
+ * Abstracts the way in which a {@link MediaCodecRenderer} obtains input and output buffers from a
+ * {@link MediaCodec}. Buffers are still queued and released by calling the codec directly.
+ */
+/* package */ interface MediaCodecAdapter {
+
+  /**
+   * Starts the codec. Called once the codec has been configured.
+   *
+   * @throws IllegalStateException If the codec couldn't be started.
+   */
+  void start();
+
+  /**
+   * Returns the index of the next available input buffer, or {@link
+   * MediaCodec#INFO_TRY_AGAIN_LATER} if there isn't one. Does not block.
+   *
+   * @throws IllegalStateException If the codec has reported an error.
+   */
+  int dequeueInputBufferIndex();
+
+  /**
+   * Returns the index of the next available output buffer, {@link
+   * MediaCodec#INFO_OUTPUT_FORMAT_CHANGED}, {@link MediaCodec#INFO_OUTPUT_BUFFERS_CHANGED} or {@link
+   * MediaCodec#INFO_TRY_AGAIN_LATER}.
+   *
+   * @param bufferInfo Populated with the metadata of the output buffer, if one is returned.
+   * @param timeoutUs The maximum time to block for, in microseconds. Adapters that are notified of
+   *     available buffers asynchronously never block.
+   * @throws IllegalStateException If the codec has reported an error.
+   */
+  int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo, long timeoutUs);
+
+  /**
+   * Returns the output format most recently signalled by {@link #dequeueOutputBufferIndex}
+   * returning {@link MediaCodec#INFO_OUTPUT_FORMAT_CHANGED}.
+   */
+  MediaFormat getOutputFormat();
+
+  /**
+   * Flushes the codec. Buffer indices obtained before the flush must not be used afterwards.
+   *
+   * @throws IllegalStateException If the codec couldn't be flushed.
+   */
+  void flush();
+
+  /** Releases resources held by the adapter. Called once the codec has been released. */
+  void shutdown();
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.support.annotation.Nullable;
+
+/**
+ * A {@link MediaCodec.Callback} that queues the indices of available buffers, output format changes
+ * and errors reported by a codec, so that they can be consumed by another thread.
+ *
+ * <p>Callback methods and {@link #flush()} must be called on a single producing thread. The {@code
+ * dequeue} methods and {@link #getOutputFormat()} must be called on a single consuming thread. The
+ * queues are lock-free, so neither thread ever blocks the other. {@link #flush()} must only be
+ * called while the consuming thread isn't accessing the instance.
+ */
+@TargetApi(21)
+/* package */ final class MediaCodecAsyncCallback extends MediaCodec.Callback {
+
+  /**
+   * The maximum number of entries in each queue. Codecs don't have more buffers than this, so the
+   * limit is only reached if the queues aren't being consumed.
+   */
+  /* package */ static final int QUEUE_CAPACITY = 256;
+
+  private final BufferQueue availableInputBuffers;
+  private final BufferQueue availableOutputBuffers;
+
+  // Accessed on the producing thread only.
+  private @Nullable MediaFormat pendingOutputFormat;
+  // Accessed on the consuming thread only.
+  private @Nullable MediaFormat currentOutputFormat;
+
+  private volatile @Nullable IllegalStateException pendingException;
+
+  public MediaCodecAsyncCallback() {
+    availableInputBuffers = new BufferQueue(QUEUE_CAPACITY);
+    availableOutputBuffers = new BufferQueue(QUEUE_CAPACITY);
+  }
+
+  /**
+   * Returns the index of the next available input buffer, or {@link
+   * MediaCodec#INFO_TRY_AGAIN_LATER} if there isn't one.
+   *
+   * @throws IllegalStateException If the codec has reported an error.
+   */
+  public int dequeueInputBufferIndex() {
+    maybeThrowException();
+    return availableInputBuffers.poll(/* bufferInfo= */ null);
+  }
+
+  /**
+   * Returns the index of the next available output buffer, {@link
+   * MediaCodec#INFO_OUTPUT_FORMAT_CHANGED} or {@link MediaCodec#INFO_TRY_AGAIN_LATER}.
+   *
+   * @param bufferInfo Populated with the metadata of the output buffer, if one is returned.
+   * @throws IllegalStateException If the codec has reported an error.
+   */
+  public int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo) {
+    maybeThrowException();
+    int index = availableOutputBuffers.poll(bufferInfo);
+    if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+      currentOutputFormat = availableOutputBuffers.polledFormat;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the output format most recently signalled by {@link
+   * #dequeueOutputBufferIndex(MediaCodec.BufferInfo)}, or null if no format has been signalled.
+   */
+  public @Nullable MediaFormat getOutputFormat() {
+    return currentOutputFormat;
+  }
+
+  /**
+   * Discards all queued buffer indices and any pending error. If an output format change hasn't
+   * been consumed yet, it's signalled again before the next available output buffer.
+   */
+  public void flush() {
+    MediaFormat lastQueuedFormat = availableOutputBuffers.getLastQueuedFormat();
+    if (lastQueuedFormat != null) {
+      pendingOutputFormat = lastQueuedFormat;
+    }
+    availableInputBuffers.clear();
+    availableOutputBuffers.clear();
+    pendingException = null;
+  }
+
+  /**
+   * Sets an error to be thrown by the next call to a {@code dequeue} method.
+   *
+   * @param exception The error.
+   */
+  public void setPendingException(IllegalStateException exception) {
+    pendingException = exception;
+  }
+
+  // MediaCodec.Callback implementation.
+
+  @Override
+  public void onInputBufferAvailable(MediaCodec codec, int index) {
+    offer(availableInputBuffers, index, /* bufferInfo= */ null, /* format= */ null);
+  }
+
+  @Override
+  public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
+    if (pendingOutputFormat != null) {
+      offer(
+          availableOutputBuffers,
+          MediaCodec.INFO_OUTPUT_FORMAT_CHANGED,
+          /* bufferInfo= */ null,
+          pendingOutputFormat);
+      pendingOutputFormat = null;
+    }
+    offer(availableOutputBuffers, index, info, /* format= */ null);
+  }
+
+  @Override
+  public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+    pendingException = e;
+  }
+
+  @Override
+  public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+    pendingOutputFormat = null;
+    offer(
+        availableOutputBuffers,
+        MediaCodec.INFO_OUTPUT_FORMAT_CHANGED,
+        /* bufferInfo= */ null,
+        format);
+  }
+
+  // Internal methods.
+
+  private void maybeThrowException() {
+    IllegalStateException exception = pendingException;
+    if (exception != null) {
+      pendingException = null;
+      throw exception;
+    }
+  }
+
+  private void offer(
+      BufferQueue queue,
+      int index,
+      @Nullable MediaCodec.BufferInfo bufferInfo,
+      @Nullable MediaFormat format) {
+    if (!queue.offer(index, bufferInfo, format)) {
+      pendingException = new IllegalStateException("Codec buffer queue overflow");
+    }
+  }
+
+  /**
+   * A bounded single-producer single-consumer ring buffer of buffer indices, together with the
+   * metadata of output buffers and the formats of output format changes.
+   */
+  private static final class BufferQueue {
+
+    private final int capacity;
+    private final int mask;
+    private final int[] indices;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final long[] presentationTimesUs;
+    private final int[] flags;
+    private final MediaFormat[] formats;
+
+    // Written by the consumer, except by clear() which is only called while the consumer is idle.
+    private volatile int head;
+    // Written by the producer only. Writing it publishes the entries before it to the consumer.
+    private volatile int tail;
+
+    // Accessed on the consuming thread only.
+    private @Nullable MediaFormat polledFormat;
+
+    public BufferQueue(int capacity) {
+      // The capacity must be a power of two, so that positions can be wrapped using a mask.
+      this.capacity = capacity;
+      mask = capacity - 1;
+      indices = new int[capacity];
+      offsets = new int[capacity];
+      sizes = new int[capacity];
+      presentationTimesUs = new long[capacity];
+      flags = new int[capacity];
+      formats = new MediaFormat[capacity];
+    }
+
+    /** Adds an entry, returning false if the queue is full. Called on the producing thread. */
+    public boolean offer(
+        int index, @Nullable MediaCodec.BufferInfo bufferInfo, @Nullable MediaFormat format) {
+      int tail = this.tail;
+      if (tail - head == capacity) {
+        return false;
+      }
+      int slot = tail & mask;
+      indices[slot] = index;
+      if (bufferInfo != null) {
+        offsets[slot] = bufferInfo.offset;
+        sizes[slot] = bufferInfo.size;
+        presentationTimesUs[slot] = bufferInfo.presentationTimeUs;
+        flags[slot] = bufferInfo.flags;
+      }
+      formats[slot] = format;
+      this.tail = tail + 1;
+      return true;
+    }
+
+    /**
+     * Removes the next entry and returns its index, or returns {@link
+     * MediaCodec#INFO_TRY_AGAIN_LATER} if the queue is empty. Called on the consuming thread.
+     */
+    public int poll(@Nullable MediaCodec.BufferInfo bufferInfo) {
+      int head = this.head;
+      if (head == tail) {
+        return MediaCodec.INFO_TRY_AGAIN_LATER;
+      }
+      int slot = head & mask;
+      int index = indices[slot];
+      if (index >= 0 && bufferInfo != null) {
+        bufferInfo.set(offsets[slot], sizes[slot], presentationTimesUs[slot], flags[slot]);
+      }
+      polledFormat = formats[slot];
+      formats[slot] = null;
+      this.head = head + 1;
+      return index;
+    }
+
+    /** Returns the format of the last queued format change, or null if there isn't one. */
+    public @Nullable MediaFormat getLastQueuedFormat() {
+      for (int position = tail - 1; position - head >= 0; position--) {
+        MediaFormat format = formats[position & mask];
+        if (format != null) {
+          return format;
+        }
+      }
+      return null;
+    }
+
+    /** Removes all entries. Called on the producing thread while the consumer is idle. */
+    public void clear() {
+      int tail = this.tail;
+      for (int position = head; position != tail; position++) {
+        formats[position & mask] = null;
+      }
+      head = tail;
+    }
+  }
+}
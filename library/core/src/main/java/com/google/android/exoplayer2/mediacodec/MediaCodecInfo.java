@@ -18,7 +18,6 @@ package com.google.android.exoplayer2.mediacodec;
 import android.annotation.TargetApi;
 import android.graphics.Point;
 import android.media.MediaCodec;
-import android.media.MediaCodecInfo.AudioCapabilities;
 import android.media.MediaCodecInfo.CodecCapabilities;
 import android.media.MediaCodecInfo.CodecProfileLevel;
 import android.media.MediaCodecInfo.VideoCapabilities;
@@ -57,7 +56,8 @@ public final class MediaCodecInfo {
 
   /**
    * The capabilities of the decoder, like the profiles/levels it supports, or {@code null} if this
-   * is a passthrough codec.
+   * is a passthrough codec or if the instance was loaded from a persistent cache set by {@link
+   * MediaCodecUtil#setPersistentCacheFile(java.io.File)}.
    */
   public final @Nullable CodecCapabilities capabilities;
 
@@ -89,6 +89,11 @@ public final class MediaCodecInfo {
   public final boolean passthrough;
 
   private final boolean isVideo;
+  private final @Nullable CodecProfileLevel[] cachedProfileLevels;
+
+  private boolean cachedInstanceCapabilitiesQueried;
+  private @Nullable CodecCapabilities cachedInstanceCapabilities;
+  private @Nullable PersistableCodecCapabilities persistableCapabilities;
 
   /**
    * Creates an instance representing an audio passthrough decoder.
@@ -145,6 +150,36 @@ public final class MediaCodecInfo {
         name, mimeType, capabilities, /* passthrough= */ false, forceDisableAdaptive, forceSecure);
   }
 
+  /**
+   * Creates an instance from information loaded from a persistent cache. Format support is checked
+   * using {@code persistableCapabilities}. The capabilities of the decoder are only queried if a
+   * check can't be answered from them, for example for a video size that hasn't been checked
+   * before.
+   *
+   * @param name The name of the {@link MediaCodec}.
+   * @param mimeType A mime type supported by the {@link MediaCodec}.
+   * @param adaptive Whether the decoder supports seamless resolution switches.
+   * @param tunneling Whether the decoder supports tunneling.
+   * @param secure Whether the decoder is secure.
+   * @param profileLevels The profile levels supported by the decoder.
+   * @param persistableCapabilities The persisted capabilities of the decoder, or null if they
+   *     weren't persisted.
+   * @return The created instance.
+   */
+  /* package */ static MediaCodecInfo newCachedInstance(
+      String name,
+      String mimeType,
+      boolean adaptive,
+      boolean tunneling,
+      boolean secure,
+      CodecProfileLevel[] profileLevels,
+      @Nullable PersistableCodecCapabilities persistableCapabilities) {
+    MediaCodecInfo codecInfo =
+        new MediaCodecInfo(name, mimeType, adaptive, tunneling, secure, profileLevels);
+    codecInfo.persistableCapabilities = persistableCapabilities;
+    return codecInfo;
+  }
+
   private MediaCodecInfo(
       String name,
       @Nullable String mimeType,
@@ -160,6 +195,25 @@ public final class MediaCodecInfo {
     tunneling = capabilities != null && isTunneling(capabilities);
     secure = forceSecure || (capabilities != null && isSecure(capabilities));
     isVideo = MimeTypes.isVideo(mimeType);
+    cachedProfileLevels = null;
+  }
+
+  private MediaCodecInfo(
+      String name,
+      String mimeType,
+      boolean adaptive,
+      boolean tunneling,
+      boolean secure,
+      CodecProfileLevel[] profileLevels) {
+    this.name = Assertions.checkNotNull(name);
+    this.mimeType = mimeType;
+    this.adaptive = adaptive;
+    this.tunneling = tunneling;
+    this.secure = secure;
+    capabilities = null;
+    passthrough = false;
+    isVideo = MimeTypes.isVideo(mimeType);
+    cachedProfileLevels = profileLevels;
   }
 
   @Override
@@ -173,6 +227,9 @@ public final class MediaCodecInfo {
    * @return The profile levels supported by the decoder.
    */
   public CodecProfileLevel[] getProfileLevels() {
+    if (cachedProfileLevels != null) {
+      return cachedProfileLevels;
+    }
     return capabilities == null || capabilities.profileLevels == null ? new CodecProfileLevel[0]
         : capabilities.profileLevels;
   }
@@ -185,9 +242,13 @@ public final class MediaCodecInfo {
    * @see CodecCapabilities#getMaxSupportedInstances()
    */
   public int getMaxSupportedInstances() {
-    return (Util.SDK_INT < 23 || capabilities == null)
+    if (Util.SDK_INT < 23) {
+      return MAX_SUPPORTED_INSTANCES_UNKNOWN;
+    }
+    PersistableCodecCapabilities capabilities = getPersistableCapabilitiesV21();
+    return capabilities == null || capabilities.maxSupportedInstances < 0
         ? MAX_SUPPORTED_INSTANCES_UNKNOWN
-        : getMaxSupportedInstancesV23(capabilities);
+        : capabilities.maxSupportedInstances;
   }
 
   /**
@@ -339,21 +400,21 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isVideoSizeAndRateSupportedV21(int width, int height, double frameRate) {
+    PersistableCodecCapabilities capabilities = getPersistableCapabilitiesV21();
     if (capabilities == null) {
       logNoSupport("sizeAndRate.caps");
       return false;
     }
-    VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
-    if (videoCapabilities == null) {
+    if (!capabilities.isVideo()) {
       logNoSupport("sizeAndRate.vCaps");
       return false;
     }
-    if (!areSizeAndRateSupportedV21(videoCapabilities, width, height, frameRate)) {
+    if (!getSizeAndRateSupportV21(capabilities, width, height, frameRate)) {
       // Capabilities are known to be inaccurately reported for vertical resolutions on some devices
       // (b/31387661). If the video is vertical and the capabilities indicate support if the width
       // and height are swapped, we assume that the vertical resolution is also supported.
       if (width >= height
-          || !areSizeAndRateSupportedV21(videoCapabilities, height, width, frameRate)) {
+          || !getSizeAndRateSupportV21(capabilities, height, width, frameRate)) {
         logNoSupport("sizeAndRate.support, " + width + "x" + height + "x" + frameRate);
         return false;
       }
@@ -376,17 +437,17 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public Point alignVideoSizeV21(int width, int height) {
+    PersistableCodecCapabilities capabilities = getPersistableCapabilitiesV21();
     if (capabilities == null) {
       logNoSupport("align.caps");
       return null;
     }
-    VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
-    if (videoCapabilities == null) {
+    if (!capabilities.isVideo()) {
       logNoSupport("align.vCaps");
       return null;
     }
-    int widthAlignment = videoCapabilities.getWidthAlignment();
-    int heightAlignment = videoCapabilities.getHeightAlignment();
+    int widthAlignment = capabilities.widthAlignment;
+    int heightAlignment = capabilities.heightAlignment;
     return new Point(Util.ceilDivide(width, widthAlignment) * widthAlignment,
         Util.ceilDivide(height, heightAlignment) * heightAlignment);
   }
@@ -401,16 +462,16 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isAudioSampleRateSupportedV21(int sampleRate) {
+    PersistableCodecCapabilities capabilities = getPersistableCapabilitiesV21();
     if (capabilities == null) {
       logNoSupport("sampleRate.caps");
       return false;
     }
-    AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
-    if (audioCapabilities == null) {
+    if (!capabilities.isAudio()) {
       logNoSupport("sampleRate.aCaps");
       return false;
     }
-    if (!audioCapabilities.isSampleRateSupported(sampleRate)) {
+    if (!capabilities.isSampleRateSupported(sampleRate)) {
       logNoSupport("sampleRate.support, " + sampleRate);
       return false;
     }
@@ -427,17 +488,17 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isAudioChannelCountSupportedV21(int channelCount) {
+    PersistableCodecCapabilities capabilities = getPersistableCapabilitiesV21();
     if (capabilities == null) {
       logNoSupport("channelCount.caps");
       return false;
     }
-    AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
-    if (audioCapabilities == null) {
+    if (!capabilities.isAudio()) {
       logNoSupport("channelCount.aCaps");
       return false;
     }
-    int maxInputChannelCount = adjustMaxInputChannelCount(name, mimeType,
-        audioCapabilities.getMaxInputChannelCount());
+    int maxInputChannelCount =
+        adjustMaxInputChannelCount(name, mimeType, capabilities.maxInputChannelCount);
     if (maxInputChannelCount < channelCount) {
       logNoSupport("channelCount.support, " + channelCount);
       return false;
@@ -445,6 +506,71 @@ public final class MediaCodecInfo {
     return true;
   }
 
+  /**
+   * Returns the capabilities needed to check format support, which are loaded from the persistent
+   * cache or derived from {@link #capabilities}, without querying the capabilities of the decoder.
+   * Returns null if they aren't available.
+   */
+  /* package */ synchronized @Nullable PersistableCodecCapabilities getPersistableCapabilities() {
+    return capabilities != null && Util.SDK_INT >= 21
+        ? getPersistableCapabilitiesV21()
+        : persistableCapabilities;
+  }
+
+  /**
+   * Returns the capabilities needed to check format support. If this instance was loaded from a
+   * persistent cache without them, the capabilities of the decoder are queried.
+   */
+  @TargetApi(21)
+  private synchronized @Nullable PersistableCodecCapabilities getPersistableCapabilitiesV21() {
+    if (persistableCapabilities == null) {
+      CodecCapabilities capabilities = getCapabilities();
+      if (capabilities != null) {
+        persistableCapabilities = PersistableCodecCapabilities.createV21(capabilities);
+      }
+    }
+    return persistableCapabilities;
+  }
+
+  /**
+   * Returns whether a video size and frame rate are supported, recording the result so that it's
+   * persisted along with the other capabilities.
+   */
+  @TargetApi(21)
+  private boolean getSizeAndRateSupportV21(
+      PersistableCodecCapabilities persistableCapabilities,
+      int width,
+      int height,
+      double frameRate) {
+    Boolean supported = persistableCapabilities.getSizeAndRateSupport(width, height, frameRate);
+    if (supported == null) {
+      CodecCapabilities capabilities = getCapabilities();
+      VideoCapabilities videoCapabilities =
+          capabilities != null ? capabilities.getVideoCapabilities() : null;
+      supported =
+          videoCapabilities != null
+              && areSizeAndRateSupportedV21(videoCapabilities, width, height, frameRate);
+      persistableCapabilities.putSizeAndRateSupport(width, height, frameRate, supported);
+      MediaCodecUtil.onPersistableCapabilitiesChanged();
+    }
+    return supported;
+  }
+
+  /**
+   * Returns the capabilities of the decoder, querying them if this instance was loaded from a
+   * persistent cache and they haven't been queried already.
+   */
+  private synchronized @Nullable CodecCapabilities getCapabilities() {
+    if (cachedProfileLevels == null) {
+      return capabilities;
+    }
+    if (!cachedInstanceCapabilitiesQueried) {
+      cachedInstanceCapabilities = MediaCodecUtil.getCapabilitiesForCachedDecoder(this);
+      cachedInstanceCapabilitiesQueried = true;
+    }
+    return cachedInstanceCapabilities;
+  }
+
   private void logNoSupport(String message) {
     Log.d(TAG, "NoSupport [" + message + "] [" + name + ", " + mimeType + "] ["
         + Util.DEVICE_DEBUG_INFO + "]");
@@ -523,9 +649,4 @@ public final class MediaCodecInfo {
         ? capabilities.isSizeSupported(width, height)
         : capabilities.areSizeAndRateSupported(width, height, frameRate);
   }
-
-  @TargetApi(23)
-  private static int getMaxSupportedInstancesV23(CodecCapabilities capabilities) {
-    return capabilities.getMaxSupportedInstances();
-  }
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.media.MediaCodec;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.view.Surface;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Predicate;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A pool of started and configured {@link MediaCodec} instances, which {@link MediaCodecRenderer}s
+ * release codecs into when they no longer need them and acquire codecs from before creating new
+ * ones. Reusing a pooled codec avoids the cost of allocating and configuring a decoder when a
+ * renderer is re-enabled, for example when switching between channels or playlist items.
+ *
+ * <p>A pool may be shared by the renderers of several players. Pooled codecs hold decoder resources
+ * until they're reused, expire or are released by {@link #clear()}, which should be called when the
+ * pool is no longer needed or when the application is asked to trim its memory.
+ */
+public final class MediaCodecPool {
+
+  /** A codec held by a {@link MediaCodecPool}. */
+  public static final class PooledCodec {
+
+    /** The codec, which is started and flushed. */
+    public final MediaCodec codec;
+    /** Information about the codec. */
+    public final MediaCodecInfo codecInfo;
+    /** The format of the media most recently decoded by the codec. */
+    public final Format format;
+    /** The maximum width the codec was configured to support, or {@link Format#NO_VALUE}. */
+    public final int maxWidth;
+    /** The maximum height the codec was configured to support, or {@link Format#NO_VALUE}. */
+    public final int maxHeight;
+    /** The maximum input size the codec was configured to support, or {@link Format#NO_VALUE}. */
+    public final int maxInputSize;
+    /**
+     * A surface the codec outputs to while it's pooled, or null. The surface is owned by the pooled
+     * codec, and is released when the codec is acquired from or released by the pool.
+     */
+    public final @Nullable Surface surface;
+
+    /* package */ boolean configuredWithOperatingRate;
+    /* package */ boolean outputFormatReceived;
+    /* package */ long releaseTimeMs;
+
+    /**
+     * @param codec The codec.
+     * @param codecInfo Information about the codec.
+     * @param format The format of the media most recently decoded by the codec.
+     * @param maxWidth The maximum width the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     * @param maxHeight The maximum height the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     * @param maxInputSize The maximum input size the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     */
+    public PooledCodec(
+        MediaCodec codec,
+        MediaCodecInfo codecInfo,
+        Format format,
+        int maxWidth,
+        int maxHeight,
+        int maxInputSize) {
+      this(codec, codecInfo, format, maxWidth, maxHeight, maxInputSize, /* surface= */ null);
+    }
+
+    /**
+     * @param codec The codec.
+     * @param codecInfo Information about the codec.
+     * @param format The format of the media most recently decoded by the codec.
+     * @param maxWidth The maximum width the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     * @param maxHeight The maximum height the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     * @param maxInputSize The maximum input size the codec was configured to support, or {@link
+     *     Format#NO_VALUE}.
+     * @param surface A surface the codec outputs to while it's pooled, or null. Ownership of the
+     *     surface is transferred to the pooled codec.
+     */
+    public PooledCodec(
+        MediaCodec codec,
+        MediaCodecInfo codecInfo,
+        Format format,
+        int maxWidth,
+        int maxHeight,
+        int maxInputSize,
+        @Nullable Surface surface) {
+      this.codec = codec;
+      this.codecInfo = codecInfo;
+      this.format = format;
+      this.maxWidth = maxWidth;
+      this.maxHeight = maxHeight;
+      this.maxInputSize = maxInputSize;
+      this.surface = surface;
+    }
+
+    /** Releases {@link #surface}, if set. */
+    /* package */ void releaseSurface() {
+      if (surface != null) {
+        surface.release();
+      }
+    }
+  }
+
+  /** The default maximum number of codecs held by the pool. */
+  public static final int DEFAULT_MAX_POOLED_CODEC_COUNT = 2;
+  /** The default duration for which an unused codec is held by the pool, in milliseconds. */
+  public static final long DEFAULT_KEEP_ALIVE_TIME_MS = 30_000;
+
+  private static final String TAG = "MediaCodecPool";
+
+  private final int maxPooledCodecCount;
+  private final long keepAliveTimeMs;
+  // Ordered from most to least recently released.
+  private final LinkedList<PooledCodec> pooledCodecs;
+
+  /** Creates an instance using default parameters. */
+  public MediaCodecPool() {
+    this(DEFAULT_MAX_POOLED_CODEC_COUNT, DEFAULT_KEEP_ALIVE_TIME_MS);
+  }
+
+  /**
+   * @param maxPooledCodecCount The maximum number of codecs held by the pool. When the pool is full,
+   *     the least recently released codec is released to make space for a new one.
+   * @param keepAliveTimeMs The duration for which an unused codec is held by the pool, in
+   *     milliseconds. Expired codecs are released the next time the pool is accessed.
+   */
+  public MediaCodecPool(int maxPooledCodecCount, long keepAliveTimeMs) {
+    Assertions.checkArgument(maxPooledCodecCount > 0);
+    this.maxPooledCodecCount = maxPooledCodecCount;
+    this.keepAliveTimeMs = keepAliveTimeMs;
+    pooledCodecs = new LinkedList<>();
+  }
+
+  /**
+   * Removes a codec from the pool and returns it. Only codecs with the same name, MIME type and
+   * secure flag as {@code codecInfo} are considered.
+   *
+   * @param codecInfo Information about the required codec.
+   * @param predicate Determines whether a candidate codec can be used.
+   * @return The most recently released codec that can be used, or null if there's no such codec.
+   */
+  public @Nullable PooledCodec acquire(MediaCodecInfo codecInfo, Predicate<PooledCodec> predicate) {
+    List<PooledCodec> expiredCodecs;
+    PooledCodec acquiredCodec = null;
+    synchronized (this) {
+      expiredCodecs = removeExpiredCodecs();
+      for (Iterator<PooledCodec> iterator = pooledCodecs.iterator(); iterator.hasNext(); ) {
+        PooledCodec pooledCodec = iterator.next();
+        if (pooledCodec.codecInfo.name.equals(codecInfo.name)
+            && Util.areEqual(pooledCodec.codecInfo.mimeType, codecInfo.mimeType)
+            && pooledCodec.codecInfo.secure == codecInfo.secure
+            && predicate.evaluate(pooledCodec)) {
+          iterator.remove();
+          acquiredCodec = pooledCodec;
+          break;
+        }
+      }
+    }
+    releaseCodecs(expiredCodecs);
+    return acquiredCodec;
+  }
+
+  /**
+   * Adds a codec to the pool. The codec must be started and flushed. If the pool is full, the least
+   * recently released codec is released.
+   *
+   * @param pooledCodec The codec to add.
+   */
+  public void release(PooledCodec pooledCodec) {
+    List<PooledCodec> codecsToRelease;
+    synchronized (this) {
+      pooledCodec.releaseTimeMs = SystemClock.elapsedRealtime();
+      pooledCodecs.addFirst(pooledCodec);
+      codecsToRelease = removeExpiredCodecs();
+      while (pooledCodecs.size() > maxPooledCodecCount) {
+        codecsToRelease.add(pooledCodecs.removeLast());
+      }
+    }
+    releaseCodecs(codecsToRelease);
+  }
+
+  /** Releases all codecs held by the pool. */
+  public void clear() {
+    List<PooledCodec> codecsToRelease;
+    synchronized (this) {
+      codecsToRelease = new ArrayList<>(pooledCodecs);
+      pooledCodecs.clear();
+    }
+    releaseCodecs(codecsToRelease);
+  }
+
+  private List<PooledCodec> removeExpiredCodecs() {
+    List<PooledCodec> expiredCodecs = new ArrayList<>();
+    long nowMs = SystemClock.elapsedRealtime();
+    while (!pooledCodecs.isEmpty()
+        && nowMs - pooledCodecs.getLast().releaseTimeMs > keepAliveTimeMs) {
+      expiredCodecs.add(pooledCodecs.removeLast());
+    }
+    return expiredCodecs;
+  }
+
+  private static void releaseCodecs(List<PooledCodec> pooledCodecs) {
+    for (int i = 0; i < pooledCodecs.size(); i++) {
+      MediaCodec codec = pooledCodecs.get(i).codec;
+      try {
+        codec.stop();
+      } catch (RuntimeException e) {
+        Log.w(TAG, "Failed to stop pooled codec", e);
+      } finally {
+        codec.release();
+        pooledCodecs.get(i).releaseSurface();
+      }
+    }
+  }
+}
@@ -22,7 +22,6 @@ import android.media.MediaCodec.CryptoException;
 import android.media.MediaCrypto;
 import android.media.MediaFormat;
 import android.os.Bundle;
-import android.os.Looper;
 import android.os.SystemClock;
 import android.support.annotation.CheckResult;
 import android.support.annotation.IntDef;
@@ -285,6 +284,12 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private DrmSession<FrameworkMediaCrypto> drmSession;
   private DrmSession<FrameworkMediaCrypto> pendingDrmSession;
   private MediaCodec codec;
+  private @Nullable MediaCodecAdapter codecAdapter;
+  private @Nullable Format codecFormat;
+  private @Nullable MediaCodecPool codecPool;
+  private boolean asynchronousCodecOperationEnabled;
+  private boolean codecAcquiredFromPool;
+  private boolean codecOutputFormatReceived;
   private float rendererOperatingRate;
   private float codecOperatingRate;
   private boolean codecConfiguredWithOperatingRate;
@@ -304,6 +309,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private ByteBuffer[] inputBuffers;
   private ByteBuffer[] outputBuffers;
   private long codecHotswapDeadlineMs;
+  private long decoderQueryDurationMs;
   private int inputIndex;
   private int outputIndex;
   private ByteBuffer outputBuffer;
@@ -370,12 +376,42 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     return ADAPTIVE_NOT_SEAMLESS;
   }
 
+  /**
+   * Sets a {@link MediaCodecPool} from which the renderer acquires codecs before creating new ones,
+   * and to which it returns codecs that can be reused rather than releasing them. Only codecs
+   * configured without a {@link MediaCrypto} are pooled. Video codecs are only pooled on API level
+   * 23 and above, where they can be detached from their output surface. Must not be called while
+   * the renderer is enabled.
+   *
+   * @param codecPool The pool, or null to create and release codecs directly.
+   */
+  public final void setCodecPool(@Nullable MediaCodecPool codecPool) {
+    Assertions.checkState(getState() == STATE_DISABLED);
+    this.codecPool = codecPool;
+  }
+
+  /**
+   * Sets whether codecs are operated in asynchronous mode on API level 23 and above. In this mode
+   * the codec notifies a dedicated thread of available input and output buffers, and the renderer
+   * takes them from lock-free queues rather than polling the codec on the playback thread. Codecs
+   * operated in asynchronous mode are not pooled. Must not be called while the renderer is enabled.
+   *
+   * @param enabled Whether codecs should be operated in asynchronous mode.
+   */
+  public final void setAsynchronousCodecOperationEnabled(boolean enabled) {
+    Assertions.checkState(getState() == STATE_DISABLED);
+    asynchronousCodecOperationEnabled = enabled;
+  }
+
   @Override
   public final int supportsFormat(Format format) throws ExoPlaybackException {
+    long queryStartTimeMs = SystemClock.elapsedRealtime();
     try {
       return supportsFormat(mediaCodecSelector, drmSessionManager, format);
     } catch (DecoderQueryException e) {
       throw ExoPlaybackException.createForRenderer(e, getIndex());
+    } finally {
+      decoderQueryDurationMs += SystemClock.elapsedRealtime() - queryStartTimeMs;
     }
   }
 
@@ -484,6 +520,10 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     codecNeedsMonoChannelCountWorkaround = codecNeedsMonoChannelCountWorkaround(codecName, format);
     codecNeedsEosPropagation =
         codecNeedsEosPropagationWorkaround(codecInfo) || getCodecNeedsEosPropagation();
+    if (codecAcquiredFromPool && codecOutputFormatReceived) {
+      // The pooled codec won't report its output format again unless it changes.
+      processOutputFormat();
+    }
     codecHotswapDeadlineMs =
         getState() == STATE_STARTED
             ? (SystemClock.elapsedRealtime() + MAX_CODEC_HOTSWAP_TIME_MS)
@@ -576,6 +616,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
 
   protected void releaseCodec() {
     log.i("releaseCodec");
+    MediaCodecPool.PooledCodec pooledCodec = codec != null ? maybeCreatePooledCodec() : null;
     codecHotswapDeadlineMs = C.TIME_UNSET;
     resetInputBuffer();
     resetOutputBuffer();
@@ -599,21 +640,30 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     codecReconfigurationState = RECONFIGURATION_STATE_NONE;
     codecReinitializationState = REINITIALIZATION_STATE_NONE;
     codecConfiguredWithOperatingRate = false;
+    codecFormat = null;
+    codecAcquiredFromPool = false;
+    codecOutputFormatReceived = false;
     if (codec != null) {
-      decoderCounters.decoderReleaseCount++;
       try {
-        codec.stop();
+        if (pooledCodec != null && releaseCodecToPool(pooledCodec)) {
+          decoderCounters.decoderPooledCount++;
+        } else {
+          decoderCounters.decoderReleaseCount++;
+          try {
+            codec.stop();
+          } finally {
+            codec.release();
+          }
+        }
       } finally {
-        try {
-          codec.release();
-        } finally {
-          codec = null;
-          if (drmSession != null && pendingDrmSession != drmSession) {
-            try {
-              drmSessionManager.releaseSession(drmSession);
-            } finally {
-              drmSession = null;
-            }
+        codec = null;
+        codecAdapter.shutdown();
+        codecAdapter = null;
+        if (drmSession != null && pendingDrmSession != drmSession) {
+          try {
+            drmSessionManager.releaseSession(drmSession);
+          } finally {
+            drmSession = null;
           }
         }
       }
@@ -663,6 +713,9 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     if (codec != null) {
       TraceUtil.beginSection("drainAndFeed");
       while (drainOutputBuffer(positionUs, elapsedRealtimeUs)) {}
+      if (!waitingForKeys) {
+        maybeSkipInputBuffers(positionUs);
+      }
       while (feedInputBuffer()) {}
       TraceUtil.endSection();
     } else {
@@ -704,7 +757,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       maybeInitCodec();
     } else {
       // We can flush and re-use the existing decoder.
-      codec.flush();
+      codecAdapter.flush();
       codecReceivedBuffers = false;
     }
     if (codecReconfigured && format != null) {
@@ -717,6 +770,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private boolean initCodecWithFallback(MediaCrypto crypto, boolean drmSessionRequiresSecureDecoder)
       throws DecoderInitializationException {
     if (availableCodecInfos == null) {
+      long queryStartTimeMs = SystemClock.elapsedRealtime();
       try {
         availableCodecInfos =
             new ArrayDeque<>(getAvailableCodecInfos(drmSessionRequiresSecureDecoder));
@@ -727,6 +781,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
             e,
             drmSessionRequiresSecureDecoder,
             DecoderInitializationException.DECODER_QUERY_ERROR);
+      } finally {
+        decoderQueryDurationMs += SystemClock.elapsedRealtime() - queryStartTimeMs;
       }
     }
 
@@ -792,16 +848,29 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   }
 
   private void initCodec(MediaCodecInfo codecInfo, MediaCrypto crypto) throws Exception {
+    updateCodecOperatingRate();
+    boolean operateAsynchronously = shouldOperateCodecAsynchronously();
+    if (crypto == null
+        && codecPool != null
+        && !operateAsynchronously
+        && maybeInitCodecFromPool(codecInfo)) {
+      return;
+    }
     long codecInitializingTimestamp;
     long codecInitializedTimestamp;
     MediaCodec codec = null;
+    MediaCodecAdapter codecAdapter = null;
     String name = codecInfo.name;
-    updateCodecOperatingRate();
     boolean configureWithOperatingRate = codecOperatingRate > assumedMinimumCodecOperatingRate;
     try {
       codecInitializingTimestamp = SystemClock.elapsedRealtime();
       TraceUtil.beginSection("createCodec:" + name);
       codec = MediaCodec.createByCodecName(name);
+      // An asynchronous adapter must be set up before the codec is configured.
+      codecAdapter =
+          operateAsynchronously
+              ? new AsynchronousMediaCodecAdapter(codec, getTrackType())
+              : new SynchronousMediaCodecAdapter(codec);
       TraceUtil.endSection();
       TraceUtil.beginSection("configureCodec");
       configureCodec(
@@ -813,7 +882,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       codecConfiguredWithOperatingRate = configureWithOperatingRate;
       TraceUtil.endSection();
       TraceUtil.beginSection("startCodec");
-      codec.start();
+      codecAdapter.start();
       TraceUtil.endSection();
       codecInitializedTimestamp = SystemClock.elapsedRealtime();
       getCodecBuffers(codec);
@@ -822,14 +891,121 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         resetCodecBuffers();
         codec.release();
       }
+      if (codecAdapter != null) {
+        codecAdapter.shutdown();
+      }
       throw e;
     }
     this.codec = codec;
+    this.codecAdapter = codecAdapter;
     this.codecInfo = codecInfo;
+    codecFormat = format;
+    onDecoderInfosQueried(decoderQueryDurationMs);
+    decoderQueryDurationMs = 0;
     long elapsed = codecInitializedTimestamp - codecInitializingTimestamp;
     onCodecInitialized(name, codecInitializedTimestamp, elapsed);
   }
 
+  private boolean maybeInitCodecFromPool(MediaCodecInfo codecInfo) {
+    long codecInitializingTimestamp = SystemClock.elapsedRealtime();
+    MediaCodecPool.PooledCodec pooledCodec =
+        codecPool.acquire(
+            codecInfo,
+            candidate -> getPooledCodecKeepCodecResult(candidate) != KEEP_CODEC_RESULT_NO);
+    if (pooledCodec == null) {
+      return false;
+    }
+    @KeepCodecResult int keepCodecResult = getPooledCodecKeepCodecResult(pooledCodec);
+    MediaCodec codec = pooledCodec.codec;
+    try {
+      onPooledCodecAcquired(pooledCodec);
+      if (codecOperatingRate != CODEC_OPERATING_RATE_UNSET
+          && (pooledCodec.configuredWithOperatingRate
+              || codecOperatingRate > assumedMinimumCodecOperatingRate)) {
+        Bundle codecParameters = new Bundle();
+        codecParameters.putFloat(MediaFormat.KEY_OPERATING_RATE, codecOperatingRate);
+        codec.setParameters(codecParameters);
+        codecConfiguredWithOperatingRate = true;
+      }
+      getCodecBuffers(codec);
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to reuse pooled decoder: " + codecInfo, e);
+      resetCodecBuffers();
+      codecConfiguredWithOperatingRate = false;
+      codec.release();
+      pooledCodec.releaseSurface();
+      return false;
+    }
+    // The codec no longer outputs to the surface it used while pooled.
+    pooledCodec.releaseSurface();
+    long codecInitializedTimestamp = SystemClock.elapsedRealtime();
+    this.codec = codec;
+    codecAdapter = new SynchronousMediaCodecAdapter(codec);
+    this.codecInfo = codecInfo;
+    codecFormat = format;
+    codecAcquiredFromPool = true;
+    codecOutputFormatReceived = pooledCodec.outputFormatReceived;
+    if (keepCodecResult == KEEP_CODEC_RESULT_YES_WITH_RECONFIGURATION) {
+      codecReconfigured = true;
+      codecReconfigurationState = RECONFIGURATION_STATE_WRITE_PENDING;
+    }
+    onDecoderInfosQueried(decoderQueryDurationMs);
+    decoderQueryDurationMs = 0;
+    long elapsed = codecInitializedTimestamp - codecInitializingTimestamp;
+    onCodecInitialized(codecInfo.name, codecInitializedTimestamp, elapsed);
+    return true;
+  }
+
+  private @KeepCodecResult int getPooledCodecKeepCodecResult(
+      MediaCodecPool.PooledCodec pooledCodec) {
+    if (pooledCodec.configuredWithOperatingRate
+        && codecOperatingRate == CODEC_OPERATING_RATE_UNSET) {
+      // The operating rate can't be cleared without instantiating a new codec.
+      return KEEP_CODEC_RESULT_NO;
+    }
+    @KeepCodecResult int keepCodecResult = canKeepPooledCodec(pooledCodec, format);
+    String name = pooledCodec.codecInfo.name;
+    if (keepCodecResult == KEEP_CODEC_RESULT_YES_WITH_RECONFIGURATION
+        && (codecNeedsReconfigureWorkaround(name)
+            || codecAdaptationWorkaroundMode(name) != ADAPTATION_WORKAROUND_MODE_NEVER)) {
+      return KEEP_CODEC_RESULT_NO;
+    }
+    return keepCodecResult;
+  }
+
+  private @Nullable MediaCodecPool.PooledCodec maybeCreatePooledCodec() {
+    if (codecPool == null
+        || codecAdapter instanceof AsynchronousMediaCodecAdapter
+        || drmSession != null
+        || codecFormat == null
+        || codecNeedsFlushWorkaround
+        || (codecReceivedEos && codecNeedsEosFlushWorkaround)) {
+      return null;
+    }
+    MediaCodecPool.PooledCodec pooledCodec = createPooledCodec(codec, codecInfo, codecFormat);
+    if (pooledCodec != null) {
+      pooledCodec.configuredWithOperatingRate = codecConfiguredWithOperatingRate;
+      pooledCodec.outputFormatReceived = codecOutputFormatReceived;
+    }
+    return pooledCodec;
+  }
+
+  private boolean releaseCodecToPool(MediaCodecPool.PooledCodec pooledCodec) {
+    try {
+      pooledCodec.codec.flush();
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to flush decoder for pooling: " + pooledCodec.codecInfo, e);
+      pooledCodec.releaseSurface();
+      return false;
+    }
+    codecPool.release(pooledCodec);
+    return true;
+  }
+
+  private boolean shouldOperateCodecAsynchronously() {
+    return asynchronousCodecOperationEnabled && Util.SDK_INT >= 23;
+  }
+
   private void getCodecBuffers(MediaCodec codec) {
     if (Util.SDK_INT < 21) {
       inputBuffers = codec.getInputBuffers();
@@ -886,7 +1062,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     }
 
     if (inputIndex < 0) {
-      inputIndex = codec.dequeueInputBuffer(0);
+      inputIndex = codecAdapter.dequeueInputBufferIndex();
       if (inputIndex < 0) {
         if (log.allowVerbose()) {
           log.v("dequeueInputBuffer returned " + inputIndex + "... returning false");
@@ -1077,6 +1253,21 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     // Do nothing.
   }
 
+  /**
+   * Called when a {@link MediaCodec} has been created and configured, to report the time spent
+   * querying the available decoders since the previous codec was initialized. This includes the
+   * time spent in {@link #supportsFormat(Format)} and when selecting the decoder to create, and
+   * is the part of the startup latency that {@link MediaCodecUtil#setPersistentCacheFile} can
+   * reduce.
+   * <p>
+   * The default implementation is a no-op.
+   *
+   * @param queryDurationMs The time spent querying decoders, in milliseconds.
+   */
+  protected void onDecoderInfosQueried(long queryDurationMs) {
+    // Do nothing.
+  }
+
   /**
    * Called when a new format is read from the upstream {@link MediaPeriod}.
    *
@@ -1097,7 +1288,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           throw ExoPlaybackException.createForRenderer(
               new IllegalStateException("Media requires a DrmSessionManager"), getIndex());
         }
-        pendingDrmSession = drmSessionManager.acquireSession(Looper.myLooper(), format.drmInitData);
+        pendingDrmSession =
+            drmSessionManager.acquireSession(getPlaybackLooper(), format.drmInitData);
         if (pendingDrmSession == drmSession) {
           drmSessionManager.releaseSession(pendingDrmSession);
         }
@@ -1135,6 +1327,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     if (!keepingCodec) {
       reinitializeCodec();
     } else {
+      codecFormat = format;
       updateCodecOperatingRate();
     }
   }
@@ -1153,6 +1346,20 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     // Do nothing.
   }
 
+  /**
+   * Called in each call to {@link #render(long, long)} before input buffers are fed to the codec,
+   * unless the renderer is waiting for decryption keys. Implementations may skip samples in the
+   * source using {@link #skipSource(long)}, so that they're never fed to the codec.
+   * <p>
+   * The default implementation is a no-op.
+   *
+   * @param positionUs The current media time in microseconds, measured at the start of the current
+   *     iteration of the rendering loop.
+   */
+  protected void maybeSkipInputBuffers(long positionUs) {
+    // Do nothing.
+  }
+
   /**
    * Called immediately before an input buffer is queued into the codec.
    * <p>
@@ -1192,6 +1399,57 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     return KEEP_CODEC_RESULT_NO;
   }
 
+  /**
+   * Returns a {@link MediaCodecPool.PooledCodec} describing a codec that's about to be released, so
+   * that it can be returned to the {@link MediaCodecPool} set by {@link #setCodecPool} and reused
+   * by a renderer that calls {@link #canKeepPooledCodec} and {@link #onPooledCodecAcquired}.
+   * Returning null causes the codec to be released. A codec that outputs to a surface must be
+   * detached from it before being pooled, so that the surface can be connected to another codec.
+   *
+   * <p>The default implementation returns null.
+   *
+   * @param codec The codec.
+   * @param codecInfo Information about the codec.
+   * @param format The format of the media most recently decoded by the codec.
+   * @return A {@link MediaCodecPool.PooledCodec} describing the codec, or null if it can't be
+   *     pooled.
+   */
+  protected @Nullable MediaCodecPool.PooledCodec createPooledCodec(
+      MediaCodec codec, MediaCodecInfo codecInfo, Format format) {
+    return null;
+  }
+
+  /**
+   * Determines whether a codec held by the {@link MediaCodecPool} can be used to decode media in
+   * the given format, with the same semantics as {@link #canKeepCodec(MediaCodec, MediaCodecInfo,
+   * Format, Format)}.
+   *
+   * <p>The default implementation returns {@link #KEEP_CODEC_RESULT_NO}.
+   *
+   * @param pooledCodec The pooled codec.
+   * @param format The format of the media to be decoded.
+   * @return Whether the pooled codec can be used, and if so whether it needs to be reconfigured.
+   */
+  protected @KeepCodecResult int canKeepPooledCodec(
+      MediaCodecPool.PooledCodec pooledCodec, Format format) {
+    return KEEP_CODEC_RESULT_NO;
+  }
+
+  /**
+   * Called when a codec has been acquired from the {@link MediaCodecPool}, instead of {@link
+   * #configureCodec(MediaCodecInfo, MediaCodec, Format, MediaCrypto, float)}. Implementations
+   * should restore any state derived from the codec's configuration.
+   *
+   * <p>The default implementation is a no-op.
+   *
+   * @param pooledCodec The pooled codec.
+   * @throws Exception If the codec can't be used, in which case it's released and a new codec is
+   *     created instead.
+   */
+  protected void onPooledCodecAcquired(MediaCodecPool.PooledCodec pooledCodec) throws Exception {
+    // Do nothing.
+  }
+
   @Override
   public boolean isEnded() {
     return outputStreamEnded;
@@ -1301,7 +1559,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       if (codecNeedsEosOutputExceptionWorkaround && codecReceivedEos) {
         try {
           outputIndex =
-              codec.dequeueOutputBuffer(outputBufferInfo, getDequeueOutputBufferTimeoutUs());
+              codecAdapter.dequeueOutputBufferIndex(
+                  outputBufferInfo, getDequeueOutputBufferTimeoutUs());
         } catch (IllegalStateException e) {
           processEndOfStream();
           if (outputStreamEnded) {
@@ -1312,7 +1571,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         }
       } else {
         outputIndex =
-            codec.dequeueOutputBuffer(outputBufferInfo, getDequeueOutputBufferTimeoutUs());
+            codecAdapter.dequeueOutputBufferIndex(
+                outputBufferInfo, getDequeueOutputBufferTimeoutUs());
       }
 
       if (outputIndex < 0) {
@@ -1409,7 +1669,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
    * Processes a new output format.
    */
   private void processOutputFormat() throws ExoPlaybackException {
-    MediaFormat format = codec.getOutputFormat();
+    codecOutputFormatReceived = true;
+    MediaFormat format = codecAdapter.getOutputFormat();
     if (codecAdaptationWorkaroundMode != ADAPTATION_WORKAROUND_MODE_NEVER
         && format.getInteger(MediaFormat.KEY_WIDTH) == ADAPTATION_WORKAROUND_SLICE_WIDTH_HEIGHT
         && format.getInteger(MediaFormat.KEY_HEIGHT) == ADAPTATION_WORKAROUND_SLICE_WIDTH_HEIGHT) {
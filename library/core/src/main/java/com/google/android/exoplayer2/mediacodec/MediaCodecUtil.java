@@ -20,19 +20,34 @@ import android.annotation.TargetApi;
 import android.media.MediaCodecInfo.CodecCapabilities;
 import android.media.MediaCodecInfo.CodecProfileLevel;
 import android.media.MediaCodecList;
+import android.os.Build;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Pair;
 import android.util.SparseIntArray;
+import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.util.AtomicFile;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -64,6 +79,17 @@ public final class MediaCodecUtil {
 
   private static final HashMap<CodecKey, List<MediaCodecInfo>> decoderInfosCache = new HashMap<>();
 
+  private static final int PERSISTENT_CACHE_VERSION = 2;
+  private static final long PERSISTENT_CACHE_WRITE_DELAY_MS = 5000;
+  private static final String SECURE_DECODER_SUFFIX = ".secure";
+
+  private static @Nullable AtomicFile persistentCacheFile;
+  private static boolean persistentCacheLoaded;
+  private static boolean persistentCacheWriteScheduled;
+  private static int persistentCacheGeneration;
+  private static @Nullable ScheduledExecutorService persistentCacheExecutor;
+  private static @Nullable MediaCodecListCompat cachedDecoderCodecList;
+
   // Codecs to constant mappings.
   // AVC.
   private static final SparseIntArray AVC_PROFILE_NUMBER_TO_CONST;
@@ -102,6 +128,36 @@ public final class MediaCodecUtil {
     }
   }
 
+  /**
+   * Sets a file in which the results of decoder queries are persisted, so that they can be reused
+   * after the process restarts instead of querying {@link MediaCodecList} again. The file is read
+   * on a background thread as soon as this method is called, and its content is ignored if the
+   * device's build fingerprint or the version of the library has changed since it was written. If
+   * decoder information is queried before the file has been read, it's read by the querying thread.
+   *
+   * <p>Along with the decoder names, flags and profile levels, the capabilities needed to check
+   * format support are persisted, including the results of video size and frame rate checks that
+   * have been made. Checks that can't be answered from the file query the capabilities of the
+   * decoder, at which point the persisted information is checked against them and the file is
+   * discarded if it's found to be stale. The file is rewritten on a background thread a few
+   * seconds after new information becomes available.
+   *
+   * <p>Should be called before any decoder information is queried, for example in {@code
+   * Application.onCreate}.
+   *
+   * @param cacheFile The file in which to persist decoder information, or null to stop persisting
+   *     it.
+   */
+  public static synchronized void setPersistentCacheFile(@Nullable File cacheFile) {
+    persistentCacheFile = cacheFile == null ? null : new AtomicFile(cacheFile);
+    persistentCacheLoaded = false;
+    persistentCacheGeneration++;
+    if (persistentCacheFile != null) {
+      AtomicFile file = persistentCacheFile;
+      getPersistentCacheExecutor().execute(() -> loadPersistentCache(file));
+    }
+  }
+
   /**
    * Returns information about a decoder suitable for audio passthrough.
    *
@@ -141,6 +197,7 @@ public final class MediaCodecUtil {
    */
   public static synchronized List<MediaCodecInfo> getDecoderInfos(String mimeType, boolean secure)
       throws DecoderQueryException {
+    maybeLoadPersistentCache();
     CodecKey key = new CodecKey(mimeType, secure);
     List<MediaCodecInfo> cachedDecoderInfos = decoderInfosCache.get(key);
     if (cachedDecoderInfos != null) {
@@ -169,6 +226,7 @@ public final class MediaCodecUtil {
     applyWorkarounds(mimeType, decoderInfos);
     List<MediaCodecInfo> unmodifiableDecoderInfos = Collections.unmodifiableList(decoderInfos);
     decoderInfosCache.put(key, unmodifiableDecoderInfos);
+    maybeSchedulePersistentCacheWrite();
     return unmodifiableDecoderInfos;
   }
 
@@ -223,6 +281,313 @@ public final class MediaCodecUtil {
 
   // Internal methods.
 
+  /**
+   * Queries the capabilities of a decoder whose {@link MediaCodecInfo} was loaded from the
+   * persistent cache, and checks that the cached information is consistent with them. If it isn't,
+   * the persistent cache is discarded so that decoders are queried again.
+   *
+   * @param decoderInfo The cached decoder information.
+   * @return The capabilities of the decoder, or null if they couldn't be queried.
+   */
+  /* package */ static synchronized @Nullable CodecCapabilities getCapabilitiesForCachedDecoder(
+      MediaCodecInfo decoderInfo) {
+    String name = decoderInfo.name;
+    String mimeType = decoderInfo.mimeType;
+    CodecCapabilities capabilities = null;
+    boolean forceDisableAdaptive = codecNeedsDisableAdaptationWorkaround(name);
+    try {
+      if (cachedDecoderCodecList == null) {
+        // The list is shared by all cached decoders, so that it's only read once.
+        cachedDecoderCodecList =
+            Util.SDK_INT >= 21
+                ? new MediaCodecListCompatV21(/* includeSecure= */ true)
+                : new MediaCodecListCompatV16();
+      }
+      MediaCodecListCompat mediaCodecList = cachedDecoderCodecList;
+      capabilities = getCapabilitiesForCodecName(mediaCodecList, name, mimeType);
+      if (capabilities == null && name.endsWith(SECURE_DECODER_SUFFIX)) {
+        // The secure decoder may have been synthesized from the non-secure one.
+        String nonSecureName =
+            name.substring(0, name.length() - SECURE_DECODER_SUFFIX.length());
+        forceDisableAdaptive = codecNeedsDisableAdaptationWorkaround(nonSecureName);
+        capabilities = getCapabilitiesForCodecName(mediaCodecList, nonSecureName, mimeType);
+      }
+    } catch (Exception e) {
+      // If the underlying mediaserver is in a bad state, we may catch an IllegalStateException
+      // or an IllegalArgumentException here.
+      Log.e(TAG, "Failed to query codec " + name + " (" + mimeType + ")", e);
+    }
+    if (capabilities == null) {
+      Log.w(TAG, "Cached decoder no longer available: " + name + ". Discarding cache.");
+      invalidatePersistentCache();
+      return null;
+    }
+    MediaCodecInfo queriedDecoderInfo =
+        MediaCodecInfo.newInstance(
+            name, mimeType, capabilities, forceDisableAdaptive, decoderInfo.secure);
+    if (queriedDecoderInfo.adaptive != decoderInfo.adaptive
+        || queriedDecoderInfo.tunneling != decoderInfo.tunneling
+        || !areProfileLevelsEqual(
+            queriedDecoderInfo.getProfileLevels(), decoderInfo.getProfileLevels())) {
+      Log.w(TAG, "Cached decoder info is stale: " + name + ". Discarding cache.");
+      invalidatePersistentCache();
+    }
+    return capabilities;
+  }
+
+  private static @Nullable CodecCapabilities getCapabilitiesForCodecName(
+      MediaCodecListCompat mediaCodecList, String name, String mimeType) {
+    int numberOfCodecs = mediaCodecList.getCodecCount();
+    for (int i = 0; i < numberOfCodecs; i++) {
+      android.media.MediaCodecInfo codecInfo = mediaCodecList.getCodecInfoAt(i);
+      if (codecInfo.getName().equals(name)) {
+        for (String supportedType : codecInfo.getSupportedTypes()) {
+          if (supportedType.equalsIgnoreCase(mimeType)) {
+            return codecInfo.getCapabilitiesForType(supportedType);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean areProfileLevelsEqual(
+      CodecProfileLevel[] profileLevels, CodecProfileLevel[] otherProfileLevels) {
+    if (profileLevels.length != otherProfileLevels.length) {
+      return false;
+    }
+    for (int i = 0; i < profileLevels.length; i++) {
+      if (profileLevels[i].profile != otherProfileLevels[i].profile
+          || profileLevels[i].level != otherProfileLevels[i].level) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Called when the persistable capabilities of a cached decoder have changed, so that they're
+   * written to the persistent cache.
+   */
+  /* package */ static synchronized void onPersistableCapabilitiesChanged() {
+    maybeSchedulePersistentCacheWrite();
+  }
+
+  private static void loadPersistentCache(AtomicFile cacheFile) {
+    HashMap<CodecKey, List<MediaCodecInfo>> loadedDecoderInfos =
+        readPersistentCache(cacheFile, getPersistentCacheId());
+    synchronized (MediaCodecUtil.class) {
+      if (cacheFile != persistentCacheFile || persistentCacheLoaded) {
+        return;
+      }
+      persistentCacheLoaded = true;
+      addLoadedDecoderInfos(loadedDecoderInfos);
+    }
+  }
+
+  private static void maybeLoadPersistentCache() {
+    if (persistentCacheFile == null || persistentCacheLoaded) {
+      return;
+    }
+    // The file hasn't been read on the background thread yet.
+    persistentCacheLoaded = true;
+    addLoadedDecoderInfos(readPersistentCache(persistentCacheFile, getPersistentCacheId()));
+  }
+
+  private static void addLoadedDecoderInfos(
+      @Nullable HashMap<CodecKey, List<MediaCodecInfo>> loadedDecoderInfos) {
+    if (loadedDecoderInfos == null) {
+      return;
+    }
+    // Prefer anything that was queried before the cache was loaded.
+    for (Map.Entry<CodecKey, List<MediaCodecInfo>> entry : loadedDecoderInfos.entrySet()) {
+      if (!decoderInfosCache.containsKey(entry.getKey())) {
+        decoderInfosCache.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static void maybeSchedulePersistentCacheWrite() {
+    if (persistentCacheFile == null || persistentCacheWriteScheduled) {
+      return;
+    }
+    persistentCacheWriteScheduled = true;
+    getPersistentCacheExecutor()
+        .schedule(
+            MediaCodecUtil::doPersistentCacheWrite,
+            PERSISTENT_CACHE_WRITE_DELAY_MS,
+            TimeUnit.MILLISECONDS);
+  }
+
+  private static void doPersistentCacheWrite() {
+    AtomicFile cacheFile;
+    int generation;
+    HashMap<CodecKey, List<MediaCodecInfo>> decoderInfos;
+    synchronized (MediaCodecUtil.class) {
+      persistentCacheWriteScheduled = false;
+      cacheFile = persistentCacheFile;
+      if (cacheFile == null) {
+        return;
+      }
+      generation = persistentCacheGeneration;
+      decoderInfos = new HashMap<>(decoderInfosCache);
+    }
+    // Serializing the decoder infos takes their locks, so the class lock mustn't be held.
+    writePersistentCache(cacheFile, getPersistentCacheId(), decoderInfos);
+    synchronized (MediaCodecUtil.class) {
+      if (generation != persistentCacheGeneration) {
+        // The cache was invalidated while it was being written.
+        cacheFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads decoder information from a persistent cache file.
+   *
+   * @param cacheFile The file to read.
+   * @param cacheId The expected identifier of the cache.
+   * @return The decoder information, or null if the file doesn't exist, couldn't be read or has a
+   *     different version or identifier.
+   */
+  /* package */ static @Nullable HashMap<CodecKey, List<MediaCodecInfo>> readPersistentCache(
+      AtomicFile cacheFile, String cacheId) {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(cacheFile.openRead()));
+      int version = input.readInt();
+      if (version != PERSISTENT_CACHE_VERSION || !cacheId.equals(input.readUTF())) {
+        // The cache was written by a different version of the library or of the platform.
+        return null;
+      }
+      HashMap<CodecKey, List<MediaCodecInfo>> decoderInfosByKey = new HashMap<>();
+      int keyCount = input.readInt();
+      for (int i = 0; i < keyCount; i++) {
+        CodecKey key = new CodecKey(input.readUTF(), input.readBoolean());
+        int decoderInfoCount = input.readInt();
+        ArrayList<MediaCodecInfo> decoderInfos = new ArrayList<>(decoderInfoCount);
+        for (int j = 0; j < decoderInfoCount; j++) {
+          decoderInfos.add(readDecoderInfo(input));
+        }
+        decoderInfosByKey.put(key, Collections.unmodifiableList(decoderInfos));
+      }
+      return decoderInfosByKey;
+    } catch (FileNotFoundException e) {
+      // Nothing has been persisted yet.
+      return null;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load decoder info cache", e);
+      return null;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Writes decoder information to a persistent cache file.
+   *
+   * @param cacheFile The file to write.
+   * @param cacheId The identifier of the cache.
+   * @param decoderInfosByKey The decoder information to write.
+   */
+  /* package */ static void writePersistentCache(
+      AtomicFile cacheFile, String cacheId, Map<CodecKey, List<MediaCodecInfo>> decoderInfosByKey) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    OutputStream fileOutput = null;
+    try {
+      output.writeInt(PERSISTENT_CACHE_VERSION);
+      output.writeUTF(cacheId);
+      output.writeInt(decoderInfosByKey.size());
+      for (Map.Entry<CodecKey, List<MediaCodecInfo>> entry : decoderInfosByKey.entrySet()) {
+        CodecKey key = entry.getKey();
+        List<MediaCodecInfo> decoderInfos = entry.getValue();
+        output.writeUTF(key.mimeType);
+        output.writeBoolean(key.secure);
+        output.writeInt(decoderInfos.size());
+        for (int i = 0; i < decoderInfos.size(); i++) {
+          writeDecoderInfo(output, decoderInfos.get(i));
+        }
+      }
+      output.flush();
+      fileOutput = new BufferedOutputStream(cacheFile.startWrite());
+      bytes.writeTo(fileOutput);
+      cacheFile.endWrite(fileOutput);
+      // Avoid calling close twice.
+      fileOutput = null;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to store decoder info cache", e);
+    } finally {
+      Util.closeQuietly(fileOutput);
+    }
+  }
+
+  /* package */ static synchronized void invalidatePersistentCache() {
+    decoderInfosCache.clear();
+    cachedDecoderCodecList = null;
+    persistentCacheGeneration++;
+    if (persistentCacheFile != null) {
+      persistentCacheFile.delete();
+    }
+  }
+
+  /* package */ static String getPersistentCacheId() {
+    return Build.FINGERPRINT + "/" + ExoPlayerLibraryInfo.VERSION_INT;
+  }
+
+  private static synchronized ScheduledExecutorService getPersistentCacheExecutor() {
+    if (persistentCacheExecutor == null) {
+      persistentCacheExecutor =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "ExoPlayer:MediaCodecUtil");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return persistentCacheExecutor;
+  }
+
+  private static MediaCodecInfo readDecoderInfo(DataInputStream input) throws IOException {
+    String name = input.readUTF();
+    String mimeType = input.readUTF();
+    boolean adaptive = input.readBoolean();
+    boolean tunneling = input.readBoolean();
+    boolean secure = input.readBoolean();
+    int profileLevelCount = input.readInt();
+    CodecProfileLevel[] profileLevels = new CodecProfileLevel[profileLevelCount];
+    for (int i = 0; i < profileLevelCount; i++) {
+      profileLevels[i] = new CodecProfileLevel();
+      profileLevels[i].profile = input.readInt();
+      profileLevels[i].level = input.readInt();
+    }
+    PersistableCodecCapabilities persistableCapabilities =
+        input.readBoolean() ? PersistableCodecCapabilities.readFromStream(input) : null;
+    return MediaCodecInfo.newCachedInstance(
+        name, mimeType, adaptive, tunneling, secure, profileLevels, persistableCapabilities);
+  }
+
+  private static void writeDecoderInfo(DataOutputStream output, MediaCodecInfo decoderInfo)
+      throws IOException {
+    output.writeUTF(decoderInfo.name);
+    output.writeUTF(decoderInfo.mimeType);
+    output.writeBoolean(decoderInfo.adaptive);
+    output.writeBoolean(decoderInfo.tunneling);
+    output.writeBoolean(decoderInfo.secure);
+    CodecProfileLevel[] profileLevels = decoderInfo.getProfileLevels();
+    output.writeInt(profileLevels.length);
+    for (CodecProfileLevel profileLevel : profileLevels) {
+      output.writeInt(profileLevel.profile);
+      output.writeInt(profileLevel.level);
+    }
+    PersistableCodecCapabilities persistableCapabilities =
+        decoderInfo.getPersistableCapabilities();
+    output.writeBoolean(persistableCapabilities != null);
+    if (persistableCapabilities != null) {
+      persistableCapabilities.writeToStream(output);
+    }
+  }
+
   /**
    * Returns {@link MediaCodecInfo}s for the given codec {@code key} in the order given by
    * {@code mediaCodecList}.
@@ -655,7 +1020,7 @@ public final class MediaCodecUtil {
 
   }
 
-  private static final class CodecKey {
+  /* package */ static final class CodecKey {
 
     public final String mimeType;
     public final boolean secure;
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodecInfo.AudioCapabilities;
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.media.MediaCodecInfo.VideoCapabilities;
+import android.support.annotation.Nullable;
+import android.util.Range;
+import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The parts of a decoder's {@link CodecCapabilities} that {@link MediaCodecInfo} needs to check
+ * whether the decoder supports a format, in a form that {@link MediaCodecUtil} can persist.
+ *
+ * <p>Whether a video size and frame rate are supported can't be derived from the public {@link
+ * VideoCapabilities} API, so the results of these checks are recorded as they're made instead.
+ */
+/* package */ final class PersistableCodecCapabilities {
+
+  /** The maximum number of supported instances, or a value less than zero if unknown. */
+  public final int maxSupportedInstances;
+  /** The width alignment of a video decoder, or 0 if the decoder isn't a video decoder. */
+  public final int widthAlignment;
+  /** The height alignment of a video decoder, or 0 if the decoder isn't a video decoder. */
+  public final int heightAlignment;
+  /**
+   * The supported sample rates of an audio decoder, as inclusive lower and upper bounds of ranges
+   * in ascending order, or null if the decoder isn't an audio decoder.
+   */
+  public final @Nullable int[] sampleRateRanges;
+  /** The maximum input channel count of an audio decoder, or 0 if it isn't an audio decoder. */
+  public final int maxInputChannelCount;
+
+  private final HashMap<SizeAndRate, Boolean> sizeAndRateSupport;
+
+  /**
+   * Creates an instance from the capabilities of a decoder.
+   *
+   * @param capabilities The capabilities of the decoder.
+   * @return The created instance.
+   */
+  @TargetApi(21)
+  public static PersistableCodecCapabilities createV21(CodecCapabilities capabilities) {
+    int maxSupportedInstances =
+        Util.SDK_INT >= 23
+            ? getMaxSupportedInstancesV23(capabilities)
+            : MediaCodecInfo.MAX_SUPPORTED_INSTANCES_UNKNOWN;
+    VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
+    AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
+    int[] sampleRateRanges = null;
+    int maxInputChannelCount = 0;
+    if (audioCapabilities != null) {
+      Range<Integer>[] ranges = audioCapabilities.getSupportedSampleRateRanges();
+      sampleRateRanges = new int[ranges.length * 2];
+      for (int i = 0; i < ranges.length; i++) {
+        sampleRateRanges[i * 2] = ranges[i].getLower();
+        sampleRateRanges[i * 2 + 1] = ranges[i].getUpper();
+      }
+      maxInputChannelCount = audioCapabilities.getMaxInputChannelCount();
+    }
+    return new PersistableCodecCapabilities(
+        maxSupportedInstances,
+        videoCapabilities != null ? videoCapabilities.getWidthAlignment() : 0,
+        videoCapabilities != null ? videoCapabilities.getHeightAlignment() : 0,
+        sampleRateRanges,
+        maxInputChannelCount);
+  }
+
+  /**
+   * @param maxSupportedInstances The maximum number of supported instances, or a value less than
+   *     zero if unknown.
+   * @param widthAlignment The width alignment of a video decoder, or 0.
+   * @param heightAlignment The height alignment of a video decoder, or 0.
+   * @param sampleRateRanges The supported sample rate ranges of an audio decoder, or null.
+   * @param maxInputChannelCount The maximum input channel count of an audio decoder, or 0.
+   */
+  public PersistableCodecCapabilities(
+      int maxSupportedInstances,
+      int widthAlignment,
+      int heightAlignment,
+      @Nullable int[] sampleRateRanges,
+      int maxInputChannelCount) {
+    this.maxSupportedInstances = maxSupportedInstances;
+    this.widthAlignment = widthAlignment;
+    this.heightAlignment = heightAlignment;
+    this.sampleRateRanges = sampleRateRanges;
+    this.maxInputChannelCount = maxInputChannelCount;
+    sizeAndRateSupport = new HashMap<>();
+  }
+
+  /** Returns whether the decoder is a video decoder. */
+  public boolean isVideo() {
+    return widthAlignment > 0;
+  }
+
+  /** Returns whether the decoder is an audio decoder. */
+  public boolean isAudio() {
+    return sampleRateRanges != null;
+  }
+
+  /** Returns whether the given sample rate is supported by an audio decoder. */
+  public boolean isSampleRateSupported(int sampleRate) {
+    if (sampleRateRanges == null) {
+      return false;
+    }
+    for (int i = 0; i < sampleRateRanges.length; i += 2) {
+      if (sampleRate >= sampleRateRanges[i] && sampleRate <= sampleRateRanges[i + 1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the recorded result of checking whether a video size and frame rate are supported, or
+   * null if it hasn't been recorded.
+   */
+  public synchronized @Nullable Boolean getSizeAndRateSupport(
+      int width, int height, double frameRate) {
+    return sizeAndRateSupport.get(new SizeAndRate(width, height, frameRate));
+  }
+
+  /** Records the result of checking whether a video size and frame rate are supported. */
+  public synchronized void putSizeAndRateSupport(
+      int width, int height, double frameRate, boolean supported) {
+    sizeAndRateSupport.put(new SizeAndRate(width, height, frameRate), supported);
+  }
+
+  /**
+   * Writes the instance to a stream.
+   *
+   * @param output The stream.
+   * @throws IOException If an error occurs writing to the stream.
+   */
+  public void writeToStream(DataOutputStream output) throws IOException {
+    output.writeInt(maxSupportedInstances);
+    output.writeInt(widthAlignment);
+    output.writeInt(heightAlignment);
+    if (sampleRateRanges == null) {
+      output.writeInt(-1);
+    } else {
+      output.writeInt(sampleRateRanges.length);
+      for (int sampleRate : sampleRateRanges) {
+        output.writeInt(sampleRate);
+      }
+    }
+    output.writeInt(maxInputChannelCount);
+    HashMap<SizeAndRate, Boolean> sizeAndRateSupport;
+    synchronized (this) {
+      sizeAndRateSupport = new HashMap<>(this.sizeAndRateSupport);
+    }
+    output.writeInt(sizeAndRateSupport.size());
+    for (Map.Entry<SizeAndRate, Boolean> entry : sizeAndRateSupport.entrySet()) {
+      SizeAndRate sizeAndRate = entry.getKey();
+      output.writeInt(sizeAndRate.width);
+      output.writeInt(sizeAndRate.height);
+      output.writeDouble(sizeAndRate.frameRate);
+      output.writeBoolean(entry.getValue());
+    }
+  }
+
+  /**
+   * Reads an instance written by {@link #writeToStream(DataOutputStream)} from a stream.
+   *
+   * @param input The stream.
+   * @return The instance.
+   * @throws IOException If an error occurs reading from the stream.
+   */
+  public static PersistableCodecCapabilities readFromStream(DataInputStream input)
+      throws IOException {
+    int maxSupportedInstances = input.readInt();
+    int widthAlignment = input.readInt();
+    int heightAlignment = input.readInt();
+    int sampleRateRangesLength = input.readInt();
+    int[] sampleRateRanges = null;
+    if (sampleRateRangesLength >= 0) {
+      sampleRateRanges = new int[sampleRateRangesLength];
+      for (int i = 0; i < sampleRateRangesLength; i++) {
+        sampleRateRanges[i] = input.readInt();
+      }
+    }
+    int maxInputChannelCount = input.readInt();
+    PersistableCodecCapabilities capabilities =
+        new PersistableCodecCapabilities(
+            maxSupportedInstances,
+            widthAlignment,
+            heightAlignment,
+            sampleRateRanges,
+            maxInputChannelCount);
+    int sizeAndRateCount = input.readInt();
+    for (int i = 0; i < sizeAndRateCount; i++) {
+      int width = input.readInt();
+      int height = input.readInt();
+      double frameRate = input.readDouble();
+      capabilities.putSizeAndRateSupport(width, height, frameRate, input.readBoolean());
+    }
+    return capabilities;
+  }
+
+  @TargetApi(23)
+  private static int getMaxSupportedInstancesV23(CodecCapabilities capabilities) {
+    return capabilities.getMaxSupportedInstances();
+  }
+
+  private static final class SizeAndRate {
+
+    public final int width;
+    public final int height;
+    public final double frameRate;
+
+    public SizeAndRate(int width, int height, double frameRate) {
+      this.width = width;
+      this.height = height;
+      this.frameRate = frameRate;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      SizeAndRate other = (SizeAndRate) obj;
+      return width == other.width
+          && height == other.height
+          && Double.compare(frameRate, other.frameRate) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = width;
+      result = 31 * result + height;
+      result = 31 * result + Double.valueOf(frameRate).hashCode();
+      return result;
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.offline.DownloadAction.Deserializer;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Stores and loads the state of downloads to/from a file, as {@link Record}s identified by integer
+ * keys.
+ *
+ * <p>Changes are appended to the file, so that putting or removing a record writes a single entry
+ * rather than every record. Once most of the entries in the file are obsolete, because the records
+ * they describe have since been updated or removed, the file is rewritten. Each entry carries a
+ * checksum, so that an entry whose write was interrupted is discarded when the file is loaded.
+ *
+ * <p>A file written by {@link ActionFile} is migrated when loaded, with a record for each action.
+ *
+ * <p>Instances are thread-safe. File I/O is performed on the calling thread, while holding the
+ * instance's lock, so a query may wait for a change to be written.
+ */
+public final class DownloadIndex {
+
+  /** The persisted state of a download. */
+  public static final class Record {
+
+    /** The key identifying the record. */
+    public final int key;
+    /** The action being executed. */
+    public final DownloadAction action;
+    /** The state of the task executing the action. */
+    public final @TaskState.State int state;
+    /**
+     * The estimated download percentage, or {@link C#PERCENTAGE_UNSET} if no estimate is available
+     * or if this is a removal task.
+     */
+    public final float downloadPercentage;
+    /** The total number of downloaded bytes. */
+    public final long downloadedBytes;
+
+    /**
+     * @param key The key identifying the record.
+     * @param action The action being executed.
+     * @param state The state of the task executing the action.
+     * @param downloadPercentage The estimated download percentage, or {@link C#PERCENTAGE_UNSET}.
+     * @param downloadedBytes The total number of downloaded bytes.
+     */
+    public Record(
+        int key,
+        DownloadAction action,
+        @TaskState.State int state,
+        float downloadPercentage,
+        long downloadedBytes) {
+      this.key = key;
+      this.action = action;
+      this.state = state;
+      this.downloadPercentage = downloadPercentage;
+      this.downloadedBytes = downloadedBytes;
+    }
+  }
+
+  /* package */ static final int VERSION = 1;
+
+  private static final String TAG = "DownloadIndex";
+
+  /** The minimum number of obsolete entries for the file to be rewritten. */
+  private static final int MIN_OBSOLETE_ENTRY_COUNT_FOR_REWRITE = 64;
+  /** Entries longer than this are considered corrupt. */
+  private static final int MAX_ENTRY_LENGTH = 16 * 1024 * 1024;
+
+  private static final int ENTRY_TYPE_PUT = 0;
+  private static final int ENTRY_TYPE_REMOVE = 1;
+
+  private final File file;
+  private final AtomicFile atomicFile;
+  private final ArrayList<Record> records;
+  private final CRC32 crc32;
+
+  private int obsoleteEntryCount;
+  private boolean loaded;
+
+  /**
+   * @param file File to be used to store and load the records.
+   */
+  public DownloadIndex(File file) {
+    this.file = file;
+    atomicFile = new AtomicFile(file);
+    records = new ArrayList<>();
+    crc32 = new CRC32();
+  }
+
+  /**
+   * Loads the records from file. Must be called before any other method except {@link
+   * #isLoaded()}.
+   *
+   * @param deserializers {@link Deserializer}s to deserialize {@link DownloadAction}s.
+   * @throws IOException If there is an error during loading.
+   */
+  public synchronized void load(Deserializer... deserializers) throws IOException {
+    records.clear();
+    obsoleteEntryCount = 0;
+    loaded = false;
+    InputStream inputStream;
+    try {
+      inputStream = atomicFile.openRead();
+    } catch (FileNotFoundException e) {
+      loaded = true;
+      return;
+    }
+    boolean discardedEntries;
+    try {
+      DataInputStream input = new DataInputStream(inputStream);
+      int version;
+      try {
+        version = input.readInt();
+      } catch (EOFException e) {
+        // The file is empty.
+        loaded = true;
+        return;
+      }
+      if (version == ActionFile.VERSION) {
+        Util.closeQuietly(inputStream);
+        inputStream = null;
+        migrateActionFile(deserializers);
+        return;
+      } else if (version > VERSION) {
+        throw new IOException("Unsupported download index version: " + version);
+      }
+      discardedEntries = readEntries(input, deserializers);
+    } finally {
+      Util.closeQuietly(inputStream);
+    }
+    loaded = true;
+    if (discardedEntries) {
+      Log.w(TAG, "Discarding incomplete entries at the end of " + file);
+      rewrite();
+    }
+  }
+
+  /** Returns whether the records have been loaded successfully. */
+  public synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  /** Removes all the records and deletes the file. */
+  public synchronized void clear() {
+    records.clear();
+    obsoleteEntryCount = 0;
+    atomicFile.delete();
+    loaded = true;
+  }
+
+  /** Returns the number of records. */
+  public synchronized int getRecordCount() {
+    Assertions.checkState(loaded);
+    return records.size();
+  }
+
+  /** Returns the record with the given key, or null if no such record exists. */
+  public synchronized @Nullable Record getRecord(int key) {
+    Assertions.checkState(loaded);
+    int index = binarySearch(key);
+    return index >= 0 ? records.get(index) : null;
+  }
+
+  /**
+   * Returns a range of the records, in ascending order of their keys.
+   *
+   * @param offset The index of the first record to return.
+   * @param limit The maximum number of records to return.
+   * @return The records. Fewer than {@code limit} if there are fewer records after {@code offset}.
+   */
+  public synchronized List<Record> getRecords(int offset, int limit) {
+    Assertions.checkState(loaded);
+    int fromIndex = Math.min(offset, records.size());
+    int toIndex = (int) Math.min((long) fromIndex + limit, records.size());
+    return Collections.unmodifiableList(new ArrayList<>(records.subList(fromIndex, toIndex)));
+  }
+
+  /**
+   * Adds a record, replacing any record with the same key, and writes the change to file.
+   *
+   * @param record The record.
+   * @throws IOException If there is an error during writing.
+   */
+  public synchronized void put(Record record) throws IOException {
+    Assertions.checkState(loaded);
+    appendEntry(buildPutEntry(record));
+    applyPut(record);
+    maybeRewrite();
+  }
+
+  /**
+   * Removes the record with the given key, if it exists, and writes the change to file.
+   *
+   * @param key The key of the record.
+   * @throws IOException If there is an error during writing.
+   */
+  public synchronized void remove(int key) throws IOException {
+    Assertions.checkState(loaded);
+    if (binarySearch(key) < 0) {
+      return;
+    }
+    appendEntry(buildRemoveEntry(key));
+    applyRemove(key);
+    maybeRewrite();
+  }
+
+  /**
+   * Reads entries until the end of the file, applying them to {@link #records}. Returns whether
+   * any incomplete or corrupt entries were found at the end of the file.
+   */
+  private boolean readEntries(DataInputStream input, Deserializer[] deserializers)
+      throws IOException {
+    while (true) {
+      int length;
+      try {
+        length = input.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      if (length <= 0 || length > MAX_ENTRY_LENGTH) {
+        return true;
+      }
+      byte[] entry = new byte[length];
+      long checksum;
+      try {
+        input.readFully(entry);
+        checksum = input.readLong();
+      } catch (EOFException e) {
+        return true;
+      }
+      if (checksum != getChecksum(entry)) {
+        return true;
+      }
+      DataInputStream entryInput = new DataInputStream(new ByteArrayInputStream(entry));
+      int type = entryInput.readInt();
+      int key = entryInput.readInt();
+      if (type == ENTRY_TYPE_PUT) {
+        DownloadAction action = DownloadAction.deserializeFromStream(deserializers, entryInput);
+        int state = entryInput.readInt();
+        float downloadPercentage = entryInput.readFloat();
+        long downloadedBytes = entryInput.readLong();
+        applyPut(new Record(key, action, state, downloadPercentage, downloadedBytes));
+      } else if (type == ENTRY_TYPE_REMOVE) {
+        applyRemove(key);
+      } else {
+        throw new IOException("Unsupported download index entry type: " + type);
+      }
+    }
+  }
+
+  private void migrateActionFile(Deserializer[] deserializers) throws IOException {
+    DownloadAction[] actions = new ActionFile(file).load(deserializers);
+    for (int i = 0; i < actions.length; i++) {
+      records.add(
+          new Record(
+              /* key= */ i,
+              actions[i],
+              TaskState.STATE_QUEUED,
+              C.PERCENTAGE_UNSET,
+              /* downloadedBytes= */ 0));
+    }
+    loaded = true;
+    rewrite();
+  }
+
+  private void applyPut(Record record) {
+    int index = binarySearch(record.key);
+    if (index >= 0) {
+      records.set(index, record);
+      obsoleteEntryCount++;
+    } else {
+      records.add(-index - 1, record);
+    }
+  }
+
+  private void applyRemove(int key) {
+    int index = binarySearch(key);
+    if (index >= 0) {
+      records.remove(index);
+      // Both the entry that put the record and the entry that removed it are obsolete.
+      obsoleteEntryCount += 2;
+    } else {
+      obsoleteEntryCount++;
+    }
+  }
+
+  private int binarySearch(int key) {
+    int low = 0;
+    int high = records.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midKey = records.get(mid).key;
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void maybeRewrite() throws IOException {
+    if (obsoleteEntryCount >= MIN_OBSOLETE_ENTRY_COUNT_FOR_REWRITE
+        && obsoleteEntryCount > records.size()) {
+      rewrite();
+    }
+  }
+
+  /** Rewrites the file with a single entry per record. */
+  private void rewrite() throws IOException {
+    DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicFile.startWrite()));
+      output.writeInt(VERSION);
+      for (int i = 0; i < records.size(); i++) {
+        writeEntry(output, buildPutEntry(records.get(i)));
+      }
+      atomicFile.endWrite(output);
+      // Avoid calling close twice.
+      output = null;
+    } finally {
+      Util.closeQuietly(output);
+    }
+    obsoleteEntryCount = 0;
+  }
+
+  private void appendEntry(byte[] entry) throws IOException {
+    if (file.length() == 0) {
+      // Write the header along with the first entry.
+      rewrite();
+    }
+    FileOutputStream fileOutputStream = new FileOutputStream(file, /* append= */ true);
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+      writeEntry(output, entry);
+      output.flush();
+      fileOutputStream.getFD().sync();
+    } finally {
+      Util.closeQuietly(fileOutputStream);
+    }
+  }
+
+  private void writeEntry(DataOutputStream output, byte[] entry) throws IOException {
+    output.writeInt(entry.length);
+    output.write(entry);
+    output.writeLong(getChecksum(entry));
+  }
+
+  private long getChecksum(byte[] entry) {
+    crc32.reset();
+    crc32.update(entry, 0, entry.length);
+    return crc32.getValue();
+  }
+
+  private static byte[] buildPutEntry(Record record) throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    output.writeInt(ENTRY_TYPE_PUT);
+    output.writeInt(record.key);
+    DownloadAction.serializeToStream(record.action, output);
+    output.writeInt(record.state);
+    output.writeFloat(record.downloadPercentage);
+    output.writeLong(record.downloadedBytes);
+    output.flush();
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  private static byte[] buildRemoveEntry(int key) throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    output.writeInt(ENTRY_TYPE_REMOVE);
+    output.writeInt(key);
+    output.flush();
+    return byteArrayOutputStream.toByteArray();
+  }
+}
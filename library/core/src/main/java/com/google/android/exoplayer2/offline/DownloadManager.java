@@ -40,6 +40,7 @@ import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -84,10 +85,13 @@ public final class DownloadManager {
   private static final String TAG = "DownloadManager";
   private static final boolean DEBUG = false;
 
+  /** The interval at which the progress of started download tasks is written to the action file. */
+  private static final long PROGRESS_WRITE_INTERVAL_MS = 5000;
+
   private final DownloaderConstructorHelper downloaderConstructorHelper;
   private final int maxActiveDownloadTasks;
   private final int minRetryCount;
-  private final ActionFile actionFile;
+  private final DownloadIndex downloadIndex;
   private final DownloadAction.Deserializer[] deserializers;
   private final ArrayList<Task> tasks;
   private final ArrayList<Task> activeDownloadTasks;
@@ -95,11 +99,14 @@ public final class DownloadManager {
   private final HandlerThread fileIOThread;
   private final Handler fileIOHandler;
   private final CopyOnWriteArraySet<Listener> listeners;
+  private final Runnable storeProgressRunnable;
 
   private int nextTaskId;
+  private int nextRecordKey;
   private boolean initialized;
   private boolean released;
   private boolean downloadsStopped;
+  private boolean progressWriteScheduled;
 
   /**
    * Creates a {@link DownloadManager}.
@@ -107,7 +114,8 @@ public final class DownloadManager {
    * @param cache Cache instance to be used to store downloaded data.
    * @param upstreamDataSourceFactory A {@link DataSource.Factory} for creating data sources for
    *     downloading upstream data.
-   * @param actionSaveFile File to save active actions.
+   * @param actionSaveFile File to save active actions. A file written by {@link ActionFile} is
+   *     migrated.
    * @param deserializers Used to deserialize {@link DownloadAction}s. If empty, {@link
    *     DownloadAction#getDefaultDeserializers()} is used instead.
    */
@@ -127,7 +135,8 @@ public final class DownloadManager {
    *
    * @param constructorHelper A {@link DownloaderConstructorHelper} to create {@link Downloader}s
    *     for downloading data.
-   * @param actionFile The file in which active actions are saved.
+   * @param actionFile The file in which active actions are saved. A file written by {@link
+   *     ActionFile} is migrated.
    * @param deserializers Used to deserialize {@link DownloadAction}s. If empty, {@link
    *     DownloadAction#getDefaultDeserializers()} is used instead.
    */
@@ -150,7 +159,8 @@ public final class DownloadManager {
    *     for downloading data.
    * @param maxSimultaneousDownloads The maximum number of simultaneous download tasks.
    * @param minRetryCount The minimum number of times a task must be retried before failing.
-   * @param actionFile The file in which active actions are saved.
+   * @param actionFile The file in which active actions are saved. A file written by {@link
+   *     ActionFile} is migrated.
    * @param deserializers Used to deserialize {@link DownloadAction}s. If empty, {@link
    *     DownloadAction#getDefaultDeserializers()} is used instead.
    */
@@ -163,7 +173,7 @@ public final class DownloadManager {
     this.downloaderConstructorHelper = constructorHelper;
     this.maxActiveDownloadTasks = maxSimultaneousDownloads;
     this.minRetryCount = minRetryCount;
-    this.actionFile = new ActionFile(actionFile);
+    this.downloadIndex = new DownloadIndex(actionFile);
     this.deserializers =
         deserializers.length > 0 ? deserializers : DownloadAction.getDefaultDeserializers();
     this.downloadsStopped = true;
@@ -182,6 +192,7 @@ public final class DownloadManager {
     fileIOHandler = new Handler(fileIOThread.getLooper());
 
     listeners = new CopyOnWriteArraySet<>();
+    storeProgressRunnable = this::storeProgress;
 
     loadActions();
     logd("Created");
@@ -253,7 +264,8 @@ public final class DownloadManager {
     Assertions.checkState(!released);
     Task task = addTaskForAction(action);
     if (initialized) {
-      saveActions();
+      task.recordKey = nextRecordKey++;
+      storeTask(task);
       maybeStartTasks();
       if (task.currentState == STATE_QUEUED) {
         // Task did not change out of its initial state, and so its initial state won't have been
@@ -303,6 +315,28 @@ public final class DownloadManager {
     return states;
   }
 
+  /**
+   * Returns a range of the persisted download records, in ascending order of their keys. Keys are
+   * assigned in the order in which tasks are added, and are preserved when the manager is created
+   * again with the same action file. May be called from any thread.
+   *
+   * <p>Records are written asynchronously, and the progress of started download tasks is written
+   * periodically, so the records may lag behind {@link #getAllTaskStates()}. Records of finished
+   * tasks are removed. An empty list is returned until the action file has been loaded, or if
+   * loading it failed.
+   *
+   * @param offset The index of the first record to return.
+   * @param limit The maximum number of records to return.
+   * @return The records. Fewer than {@code limit} if there are fewer records after {@code offset}.
+   */
+  public List<DownloadIndex.Record> getDownloadRecords(int offset, int limit) {
+    synchronized (downloadIndex) {
+      return downloadIndex.isLoaded()
+          ? downloadIndex.getRecords(offset, limit)
+          : Collections.emptyList();
+    }
+  }
+
   /** Returns whether the manager has completed initialization. */
   public boolean isInitialized() {
     Assertions.checkState(!released);
@@ -331,6 +365,10 @@ public final class DownloadManager {
     if (released) {
       return;
     }
+    // Write the latest progress of the started download tasks, so that it's restored when a manager
+    // is next created with the same action file.
+    storeProgress();
+    handler.removeCallbacks(storeProgressRunnable);
     released = true;
     for (int i = 0; i < tasks.size(); i++) {
       tasks.get(i).stop();
@@ -405,6 +443,27 @@ public final class DownloadManager {
         }
       }
     }
+    maybeScheduleProgressWrite();
+  }
+
+  private void maybeScheduleProgressWrite() {
+    if (!progressWriteScheduled && !released && !activeDownloadTasks.isEmpty()) {
+      progressWriteScheduled = true;
+      handler.postDelayed(storeProgressRunnable, PROGRESS_WRITE_INTERVAL_MS);
+    }
+  }
+
+  /** Writes the progress of the started download tasks that have progressed since last written. */
+  private void storeProgress() {
+    progressWriteScheduled = false;
+    for (int i = 0; i < activeDownloadTasks.size(); i++) {
+      Task task = activeDownloadTasks.get(i);
+      if (task.recordKey != C.INDEX_UNSET
+          && task.getDownloadedBytes() != task.storedDownloadedBytes) {
+        storeTask(task);
+      }
+    }
+    maybeScheduleProgressWrite();
   }
 
   private void maybeNotifyListenersIdle() {
@@ -428,7 +487,9 @@ public final class DownloadManager {
     notifyListenersTaskStateChange(task);
     if (task.isFinished()) {
       tasks.remove(task);
-      saveActions();
+      removeStoredTask(task);
+    } else if (task.recordKey != C.INDEX_UNSET) {
+      storeTask(task);
     }
     if (stopped) {
       maybeStartTasks();
@@ -447,15 +508,18 @@ public final class DownloadManager {
   private void loadActions() {
     fileIOHandler.post(
         () -> {
-          DownloadAction[] loadedActions;
+          List<DownloadIndex.Record> loadedRecords;
           try {
-            loadedActions = actionFile.load(DownloadManager.this.deserializers);
+            downloadIndex.load(DownloadManager.this.deserializers);
+            loadedRecords = downloadIndex.getRecords(0, downloadIndex.getRecordCount());
             logd("Action file is loaded.");
           } catch (Throwable e) {
-            Log.e(TAG, "Action file loading failed.", e);
-            loadedActions = new DownloadAction[0];
+            // Keep the file, so that the actions aren't lost if the error is transient. Changes
+            // aren't persisted until the file is loaded successfully by a new manager.
+            Log.e(TAG, "Action file loading failed. Changes won't be persisted.", e);
+            loadedRecords = Collections.emptyList();
           }
-          final DownloadAction[] actions = loadedActions;
+          final List<DownloadIndex.Record> records = loadedRecords;
           handler.post(
               () -> {
                 if (released) {
@@ -463,17 +527,26 @@ public final class DownloadManager {
                 }
                 List<Task> pendingTasks = new ArrayList<>(tasks);
                 tasks.clear();
-                for (DownloadAction action : actions) {
-                  addTaskForAction(action);
+                for (int i = 0; i < records.size(); i++) {
+                  DownloadIndex.Record record = records.get(i);
+                  // Started tasks are queued again, and report their persisted progress until
+                  // they're restarted.
+                  Task task = addTaskForAction(record.action);
+                  task.recordKey = record.key;
+                  task.storedDownloadPercentage = record.downloadPercentage;
+                  task.storedDownloadedBytes = record.downloadedBytes;
+                  nextRecordKey = record.key + 1;
                 }
                 logd("Tasks are created.");
                 initialized = true;
                 for (Listener listener : listeners) {
                   listener.onInitialized(DownloadManager.this);
                 }
-                if (!pendingTasks.isEmpty()) {
-                  tasks.addAll(pendingTasks);
-                  saveActions();
+                for (int i = 0; i < pendingTasks.size(); i++) {
+                  Task task = pendingTasks.get(i);
+                  task.recordKey = nextRecordKey++;
+                  tasks.add(task);
+                  storeTask(task);
                 }
                 maybeStartTasks();
                 for (int i = 0; i < tasks.size(); i++) {
@@ -488,21 +561,49 @@ public final class DownloadManager {
         });
   }
 
-  private void saveActions() {
+  private void storeTask(Task task) {
     if (released) {
       return;
     }
-    final DownloadAction[] actions = new DownloadAction[tasks.size()];
-    for (int i = 0; i < tasks.size(); i++) {
-      actions[i] = tasks.get(i).action;
+    TaskState taskState = task.getDownloadState();
+    task.storedDownloadPercentage = taskState.downloadPercentage;
+    task.storedDownloadedBytes = taskState.downloadedBytes;
+    DownloadIndex.Record record =
+        new DownloadIndex.Record(
+            task.recordKey,
+            task.action,
+            taskState.state,
+            taskState.downloadPercentage,
+            taskState.downloadedBytes);
+    fileIOHandler.post(
+        () -> {
+          if (!downloadIndex.isLoaded()) {
+            return;
+          }
+          try {
+            downloadIndex.put(record);
+            logd("Task is persisted.");
+          } catch (IOException e) {
+            Log.e(TAG, "Persisting task failed.", e);
+          }
+        });
+  }
+
+  private void removeStoredTask(Task task) {
+    if (released || task.recordKey == C.INDEX_UNSET) {
+      return;
     }
+    int recordKey = task.recordKey;
     fileIOHandler.post(
         () -> {
+          if (!downloadIndex.isLoaded()) {
+            return;
+          }
           try {
-            actionFile.store(actions);
-            logd("Actions persisted.");
+            downloadIndex.remove(recordKey);
+            logd("Task is removed from the action file.");
           } catch (IOException e) {
-            Log.e(TAG, "Persisting actions failed.", e);
+            Log.e(TAG, "Removing task from the action file failed.", e);
           }
         });
   }
@@ -648,6 +749,9 @@ public final class DownloadManager {
     private volatile Downloader downloader;
     private Thread thread;
     private Throwable error;
+    private int recordKey;
+    private float storedDownloadPercentage;
+    private long storedDownloadedBytes;
 
     private Task(
         int id, DownloadManager downloadManager, DownloadAction action, int minRetryCount) {
@@ -656,6 +760,8 @@ public final class DownloadManager {
       this.action = action;
       this.currentState = STATE_QUEUED;
       this.minRetryCount = minRetryCount;
+      recordKey = C.INDEX_UNSET;
+      storedDownloadPercentage = C.PERCENTAGE_UNSET;
     }
 
     public TaskState getDownloadState() {
@@ -681,15 +787,18 @@ public final class DownloadManager {
 
     /**
      * Returns the estimated download percentage, or {@link C#PERCENTAGE_UNSET} if no estimate is
-     * available.
+     * available. Before the task is started, returns the last persisted estimate.
      */
     public float getDownloadPercentage() {
-      return downloader != null ? downloader.getDownloadPercentage() : C.PERCENTAGE_UNSET;
+      return downloader != null ? downloader.getDownloadPercentage() : storedDownloadPercentage;
     }
 
-    /** Returns the total number of downloaded bytes. */
+    /**
+     * Returns the total number of downloaded bytes. Before the task is started, returns the last
+     * persisted number.
+     */
     public long getDownloadedBytes() {
-      return downloader != null ? downloader.getDownloadedBytes() : 0;
+      return downloader != null ? downloader.getDownloadedBytes() : storedDownloadedBytes;
     }
 
     @Override
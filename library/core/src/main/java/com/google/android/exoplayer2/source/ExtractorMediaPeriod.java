@@ -638,6 +638,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   private void maybeFinishPrepare() {
     SeekMap seekMap = this.seekMap;
+    if (prepared && !released && seekMap != null) {
+      maybeUpdateSeekMap(seekMap);
+      return;
+    }
     if (released || prepared || !sampleQueuesBuilt || seekMap == null) {
       return;
     }
@@ -670,6 +674,22 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     Assertions.checkNotNull(callback).onPrepared(this);
   }
 
+  /**
+   * Updates the prepared state if the extractor has output a new {@link SeekMap} since preparation
+   * completed, for example once a seek index that was loaded lazily becomes available.
+   */
+  private void maybeUpdateSeekMap(SeekMap seekMap) {
+    PreparedState preparedState = getPreparedState();
+    if (preparedState.seekMap == seekMap) {
+      return;
+    }
+    preparedState.seekMap = seekMap;
+    if (seekMap.getDurationUs() != C.TIME_UNSET) {
+      durationUs = seekMap.getDurationUs();
+    }
+    listener.onSourceInfoRefreshed(durationUs, seekMap.isSeekable());
+  }
+
   private PreparedState getPreparedState() {
     return Assertions.checkNotNull(preparedState);
   }
@@ -987,7 +1007,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   /** Stores state that is initialized when preparation completes. */
   private static final class PreparedState {
 
-    public final SeekMap seekMap;
+    public SeekMap seekMap;
     public final TrackGroupArray tracks;
     public final boolean[] trackIsAudioVideoFlags;
     public final boolean[] trackEnabledStates;
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Subtitle} assembled from the chunks of a sample decoded by an {@link
+ * SimpleSubtitleDecoder.IncrementalSubtitleParser}, so that the whole sample can be cached.
+ */
+/* package */ final class ChunkedSubtitle implements Subtitle {
+
+  private final Subtitle[] chunks;
+  /** The first event time of each chunk, in ascending order. */
+  private final long[] chunkStartTimesUs;
+  private final long[] eventTimesUs;
+
+  /**
+   * @param chunks The chunks, in the order in which they were decoded. Every cue in a chunk must
+   *     end at or before the start of the first cue of the next chunk.
+   */
+  public ChunkedSubtitle(List<Subtitle> chunks) {
+    ArrayList<Subtitle> nonEmptyChunks = new ArrayList<>(chunks.size());
+    int eventTimeCount = 0;
+    for (int i = 0; i < chunks.size(); i++) {
+      Subtitle chunk = chunks.get(i);
+      if (chunk.getEventTimeCount() > 0) {
+        nonEmptyChunks.add(chunk);
+        eventTimeCount += chunk.getEventTimeCount();
+      }
+    }
+    this.chunks = nonEmptyChunks.toArray(new Subtitle[0]);
+    chunkStartTimesUs = new long[this.chunks.length];
+    long[] eventTimesUs = new long[eventTimeCount];
+    int uniqueEventTimeCount = 0;
+    for (int i = 0; i < this.chunks.length; i++) {
+      Subtitle chunk = this.chunks[i];
+      chunkStartTimesUs[i] = chunk.getEventTime(0);
+      for (int j = 0; j < chunk.getEventTimeCount(); j++) {
+        long eventTimeUs = chunk.getEventTime(j);
+        // The last event time of a chunk may be the first of the next.
+        if (uniqueEventTimeCount == 0 || eventTimesUs[uniqueEventTimeCount - 1] != eventTimeUs) {
+          eventTimesUs[uniqueEventTimeCount++] = eventTimeUs;
+        }
+      }
+    }
+    this.eventTimesUs = Arrays.copyOf(eventTimesUs, uniqueEventTimeCount);
+  }
+
+  @Override
+  public int getNextEventTimeIndex(long timeUs) {
+    int index = Util.binarySearchCeil(eventTimesUs, timeUs, false, false);
+    return index < eventTimesUs.length ? index : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getEventTimeCount() {
+    return eventTimesUs.length;
+  }
+
+  @Override
+  public long getEventTime(int index) {
+    Assertions.checkArgument(index >= 0);
+    Assertions.checkArgument(index < eventTimesUs.length);
+    return eventTimesUs[index];
+  }
+
+  @Override
+  public List<Cue> getCues(long timeUs) {
+    int chunkIndex = Util.binarySearchFloor(chunkStartTimesUs, timeUs, true, false);
+    return chunkIndex == -1 ? Collections.emptyList() : chunks[chunkIndex].getCues(timeUs);
+  }
+}
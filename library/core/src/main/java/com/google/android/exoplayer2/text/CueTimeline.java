@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of timed cues for {@link Subtitle} implementations, which finds the cues to display at a
+ * given time with a binary search.
+ *
+ * <p>The cue start and end times divide the timeline into segments, during each of which the same
+ * set of cues is active. The active cues of every segment are computed once, when the timeline is
+ * created. The list of cues to display during a segment is built by a {@link CueListBuilder} the
+ * first time it's requested, and returned again for later lookups in the same segment.
+ *
+ * <p>Lookups may be made from several threads, for example when a subtitle is shared through a
+ * {@link SubtitleCache}. A cue list may then be built more than once, but each list is published
+ * through an unmodifiable wrapper, whose final field makes it safe to read from any thread.
+ */
+public final class CueTimeline {
+
+  /** Builds the list of cues to display while a set of cues is active. */
+  public interface CueListBuilder {
+
+    /**
+     * Returns the cues to display while the specified cues are active.
+     *
+     * @param cueIndices The indices of the active cues, in ascending order. Never empty.
+     * @return The cues to display.
+     */
+    List<Cue> buildCueList(int[] cueIndices);
+  }
+
+  private static final int NEVER_ACTIVE = -1;
+
+  private final CueListBuilder cueListBuilder;
+  /** The start times of the segments, in ascending order and without duplicates. */
+  private final long[] segmentStartTimesUs;
+  /**
+   * The indices of the active cues of each segment, where those of segment {@code i} are stored
+   * from {@code activeCueOffsets[i]} (inclusive) to {@code activeCueOffsets[i + 1]} (exclusive).
+   */
+  private final int[] activeCueIndices;
+  private final int[] activeCueOffsets;
+  private final List<Cue>[] segmentCueLists;
+
+  /**
+   * @param startTimesUs The start time of each cue, in microseconds.
+   * @param endTimesUs The end time of each cue, in microseconds. A cue is active from its start
+   *     time (inclusive) to its end time (exclusive), so a cue whose end time isn't after its start
+   *     time is never active.
+   * @param cueListBuilder Builds the cues to display while a set of cues is active.
+   */
+  @SuppressWarnings("unchecked")
+  public CueTimeline(long[] startTimesUs, long[] endTimesUs, CueListBuilder cueListBuilder) {
+    Assertions.checkArgument(startTimesUs.length == endTimesUs.length);
+    this.cueListBuilder = cueListBuilder;
+    int cueCount = startTimesUs.length;
+
+    long[] times = new long[2 * cueCount];
+    System.arraycopy(startTimesUs, 0, times, 0, cueCount);
+    System.arraycopy(endTimesUs, 0, times, cueCount, cueCount);
+    Arrays.sort(times);
+    int segmentCount = 0;
+    for (int i = 0; i < times.length; i++) {
+      if (segmentCount == 0 || times[i] != times[segmentCount - 1]) {
+        times[segmentCount++] = times[i];
+      }
+    }
+    segmentStartTimesUs = Arrays.copyOf(times, segmentCount);
+
+    // Bucket the cues by the segments in which they become active and inactive. Filling each
+    // bucket in cue index order keeps the buckets sorted.
+    int[] startOffsets = new int[segmentCount + 1];
+    int[] endOffsets = new int[segmentCount + 1];
+    int[] startSegments = new int[cueCount];
+    int[] endSegments = new int[cueCount];
+    for (int i = 0; i < cueCount; i++) {
+      if (startTimesUs[i] < endTimesUs[i]) {
+        startSegments[i] = Arrays.binarySearch(segmentStartTimesUs, startTimesUs[i]);
+        endSegments[i] = Arrays.binarySearch(segmentStartTimesUs, endTimesUs[i]);
+        startOffsets[startSegments[i] + 1]++;
+        endOffsets[endSegments[i] + 1]++;
+      } else {
+        startSegments[i] = NEVER_ACTIVE;
+      }
+    }
+    for (int i = 0; i < segmentCount; i++) {
+      startOffsets[i + 1] += startOffsets[i];
+      endOffsets[i + 1] += endOffsets[i];
+    }
+    int[] startingCues = new int[startOffsets[segmentCount]];
+    int[] endingCues = new int[endOffsets[segmentCount]];
+    int[] startPositions = Arrays.copyOf(startOffsets, segmentCount);
+    int[] endPositions = Arrays.copyOf(endOffsets, segmentCount);
+    for (int i = 0; i < cueCount; i++) {
+      if (startSegments[i] != NEVER_ACTIVE) {
+        startingCues[startPositions[startSegments[i]]++] = i;
+        endingCues[endPositions[endSegments[i]]++] = i;
+      }
+    }
+
+    // Sweep through the segments, keeping the active cues sorted by index.
+    int[] activeCues = new int[startingCues.length];
+    int activeCueCount = 0;
+    int[] indices = new int[startingCues.length];
+    int indexCount = 0;
+    activeCueOffsets = new int[segmentCount + 1];
+    for (int segment = 0; segment < segmentCount; segment++) {
+      for (int i = endOffsets[segment]; i < endOffsets[segment + 1]; i++) {
+        int position = Arrays.binarySearch(activeCues, 0, activeCueCount, endingCues[i]);
+        activeCueCount--;
+        System.arraycopy(activeCues, position + 1, activeCues, position, activeCueCount - position);
+      }
+      for (int i = startOffsets[segment]; i < startOffsets[segment + 1]; i++) {
+        int position = -Arrays.binarySearch(activeCues, 0, activeCueCount, startingCues[i]) - 1;
+        System.arraycopy(activeCues, position, activeCues, position + 1, activeCueCount - position);
+        activeCues[position] = startingCues[i];
+        activeCueCount++;
+      }
+      if (indexCount + activeCueCount > indices.length) {
+        indices = Arrays.copyOf(indices, Math.max(indices.length * 2, indexCount + activeCueCount));
+      }
+      System.arraycopy(activeCues, 0, indices, indexCount, activeCueCount);
+      indexCount += activeCueCount;
+      activeCueOffsets[segment + 1] = indexCount;
+    }
+    activeCueIndices = indexCount == indices.length ? indices : Arrays.copyOf(indices, indexCount);
+    segmentCueLists = new List[segmentCount];
+  }
+
+  /**
+   * Returns the cues to display at a given time.
+   *
+   * @param timeUs The time in microseconds.
+   * @return An unmodifiable list of the cues to display, possibly empty. The same list is returned
+   *     for any time during which the same cues are active.
+   */
+  public List<Cue> getCues(long timeUs) {
+    int segment =
+        Util.binarySearchFloor(
+            segmentStartTimesUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (segment == -1 || activeCueOffsets[segment] == activeCueOffsets[segment + 1]) {
+      return Collections.emptyList();
+    }
+    List<Cue> cueList = segmentCueLists[segment];
+    if (cueList == null) {
+      int[] cueIndices =
+          Arrays.copyOfRange(
+              activeCueIndices, activeCueOffsets[segment], activeCueOffsets[segment + 1]);
+      cueList = Collections.unmodifiableList(cueListBuilder.buildCueList(cueIndices));
+      segmentCueLists[segment] = cueList;
+    }
+    return cueList;
+  }
+}
@@ -15,19 +15,56 @@
  */
 package com.google.android.exoplayer2.text;
 
+import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.decoder.SimpleDecoder;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * Base class for subtitle parsers that use their own decode thread.
+ *
+ * <p>Subclasses may decode large samples incrementally by overriding {@link
+ * #createIncrementalParser(byte[], int, boolean)}. Each chunk of the sample is then output as soon
+ * as it's decoded, rather than when the whole sample has been decoded. Chunks that end before the
+ * position set by {@link #setPositionUs(long)} are skipped.
  */
 public abstract class SimpleSubtitleDecoder extends
     SimpleDecoder<SubtitleInputBuffer, SubtitleOutputBuffer, SubtitleDecoderException> implements
     SubtitleDecoder {
 
+  /** Decodes a sample in consecutive chunks. */
+  protected interface IncrementalSubtitleParser {
+
+    /**
+     * Decodes the next chunk of the sample. Every cue in a chunk must end at or before the start
+     * of the first cue of the next chunk.
+     *
+     * @return The decoded chunk, with event times relative to the sample like those of a {@link
+     *     Subtitle} decoded in one go.
+     * @throws SubtitleDecoderException If a decoding error occurs.
+     */
+    Subtitle parseNextChunk() throws SubtitleDecoderException;
+
+    /** Returns whether there are more chunks to decode. */
+    boolean hasNextChunk();
+  }
+
   private final String name;
 
+  private @Nullable SubtitleCache subtitleCache;
+  private @Nullable Format subtitleCacheFormat;
+
+  // Accessed on the decode thread only.
+  private @Nullable IncrementalSubtitleParser incrementalParser;
+  private boolean decodingFirstChunk;
+  private @Nullable SubtitleCache.Key incrementalCacheKey;
+  private @Nullable ArrayList<Subtitle> incrementalChunks;
+  private int incrementalSampleSize;
+
+  private volatile long positionUs;
+
   /**
    * @param name The name of the decoder.
    */
@@ -42,9 +79,23 @@ public abstract class SimpleSubtitleDecoder extends
     return name;
   }
 
+  /**
+   * Sets a {@link SubtitleCache} that's consulted before decoding each sample, and to which decoded
+   * subtitles are added. Only used if {@link #canCacheSubtitles()} returns true. The chunks of a
+   * sample decoded incrementally are cached together once the last chunk has been decoded, and a
+   * cached sample is output in one go. Must be called before the first input buffer is queued.
+   *
+   * @param subtitleCache The cache, or null if decoded subtitles shouldn't be cached.
+   * @param format The format of the samples that will be decoded.
+   */
+  public final void setSubtitleCache(@Nullable SubtitleCache subtitleCache, Format format) {
+    this.subtitleCache = canCacheSubtitles() ? subtitleCache : null;
+    subtitleCacheFormat = format;
+  }
+
   @Override
   public void setPositionUs(long timeUs) {
-    // Do nothing
+    positionUs = timeUs;
   }
 
   @Override
@@ -72,17 +123,55 @@ public abstract class SimpleSubtitleDecoder extends
   protected final SubtitleDecoderException decode(
       SubtitleInputBuffer inputBuffer, SubtitleOutputBuffer outputBuffer, boolean reset) {
     try {
-      ByteBuffer inputData = inputBuffer.data;
-      Subtitle subtitle = decode(inputData.array(), inputData.limit(), reset);
-      outputBuffer.setContent(inputBuffer.timeUs, subtitle, inputBuffer.subsampleOffsetUs);
-      // Clear BUFFER_FLAG_DECODE_ONLY (see [Internal: b/27893809]).
-      outputBuffer.clearFlag(C.BUFFER_FLAG_DECODE_ONLY);
+      if (reset || incrementalParser == null) {
+        ByteBuffer inputData = inputBuffer.data;
+        byte[] data = inputData.array();
+        int size = inputData.limit();
+        SubtitleCache subtitleCache = this.subtitleCache;
+        SubtitleCache.Key cacheKey = null;
+        Subtitle subtitle = null;
+        if (subtitleCache != null) {
+          cacheKey = SubtitleCache.createKey(subtitleCacheFormat, inputBuffer.timeUs, data, size);
+          subtitle = subtitleCache.get(cacheKey);
+        }
+        incrementalParser = null;
+        incrementalChunks = null;
+        if (subtitle == null) {
+          incrementalParser = createIncrementalParser(data, size, reset);
+          if (incrementalParser == null) {
+            subtitle = decode(data, size, reset);
+            if (subtitleCache != null) {
+              subtitleCache.put(cacheKey, subtitle, getEstimatedSubtitleSizeBytes(subtitle, size));
+            }
+          }
+        }
+        if (incrementalParser == null) {
+          outputBuffer.setContent(inputBuffer.timeUs, subtitle, inputBuffer.subsampleOffsetUs);
+          // Clear BUFFER_FLAG_DECODE_ONLY (see [Internal: b/27893809]).
+          outputBuffer.clearFlag(C.BUFFER_FLAG_DECODE_ONLY);
+          return null;
+        }
+        decodingFirstChunk = true;
+        if (subtitleCache != null) {
+          incrementalCacheKey = cacheKey;
+          incrementalChunks = new ArrayList<>();
+          incrementalSampleSize = size;
+        }
+      }
+      decodeNextChunk(inputBuffer, outputBuffer);
       return null;
     } catch (SubtitleDecoderException e) {
+      incrementalParser = null;
+      incrementalChunks = null;
       return e;
     }
   }
 
+  @Override
+  protected final boolean hasPendingOutput() {
+    return incrementalParser != null;
+  }
+
   /**
    * Decodes data into a {@link Subtitle}.
    *
@@ -95,4 +184,83 @@ public abstract class SimpleSubtitleDecoder extends
   protected abstract Subtitle decode(byte[] data, int size, boolean reset)
       throws SubtitleDecoderException;
 
+  /**
+   * Returns a parser that decodes data incrementally, or null if the data should be decoded in one
+   * go by {@link #decode(byte[], int, boolean)}. The default implementation returns null.
+   *
+   * @param data An array holding the data to be decoded, starting at position 0. The array isn't
+   *     modified until the parser has decoded the last chunk.
+   * @param size The size of the data to be decoded.
+   * @param reset Whether the decoder must be reset before decoding.
+   * @return A parser for the data, or null.
+   * @throws SubtitleDecoderException If a decoding error occurs.
+   */
+  protected @Nullable IncrementalSubtitleParser createIncrementalParser(
+      byte[] data, int size, boolean reset) throws SubtitleDecoderException {
+    return null;
+  }
+
+  /**
+   * Returns whether the subtitles decoded by this decoder may be cached in a {@link SubtitleCache}.
+   * This is only the case if each subtitle depends only on the sample it's decoded from and the
+   * format, and not on the samples decoded before it. The default implementation returns false.
+   */
+  protected boolean canCacheSubtitles() {
+    return false;
+  }
+
+  /**
+   * Returns the estimated memory used by a subtitle decoded by this decoder, which is used to bound
+   * the size of a {@link SubtitleCache}. The default implementation returns {@link
+   * SubtitleCache#estimateSizeBytes(int)}, which only accounts for the decoded sample.
+   *
+   * @param subtitle The decoded subtitle.
+   * @param sampleSize The size of the sample from which the subtitle was decoded, in bytes.
+   * @return The estimated size of the subtitle, in bytes.
+   */
+  protected long getEstimatedSubtitleSizeBytes(Subtitle subtitle, int sampleSize) {
+    return SubtitleCache.estimateSizeBytes(sampleSize);
+  }
+
+  private void decodeNextChunk(SubtitleInputBuffer inputBuffer, SubtitleOutputBuffer outputBuffer)
+      throws SubtitleDecoderException {
+    IncrementalSubtitleParser incrementalParser = this.incrementalParser;
+    Subtitle chunk = incrementalParser.parseNextChunk();
+    boolean lastChunk = !incrementalParser.hasNextChunk();
+    long subsampleOffsetUs =
+        inputBuffer.subsampleOffsetUs == Format.OFFSET_SAMPLE_RELATIVE
+            ? inputBuffer.timeUs
+            : inputBuffer.subsampleOffsetUs;
+    int eventTimeCount = chunk.getEventTimeCount();
+    if (decodingFirstChunk) {
+      // The first chunk replaces the subtitle of the previous sample at the sample time.
+      outputBuffer.setContent(inputBuffer.timeUs, chunk, subsampleOffsetUs);
+      outputBuffer.clearFlag(C.BUFFER_FLAG_DECODE_ONLY);
+    } else if (eventTimeCount == 0
+        || (!lastChunk && chunk.getEventTime(eventTimeCount - 1) + subsampleOffsetUs <= positionUs)) {
+      // The chunk has no cues, or all of its cues have already ended.
+      outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+    } else {
+      // Later chunks replace the previous chunk when their first cue starts.
+      outputBuffer.setContent(chunk.getEventTime(0) + subsampleOffsetUs, chunk, subsampleOffsetUs);
+      outputBuffer.clearFlag(C.BUFFER_FLAG_DECODE_ONLY);
+    }
+    decodingFirstChunk = false;
+    ArrayList<Subtitle> incrementalChunks = this.incrementalChunks;
+    if (incrementalChunks != null) {
+      incrementalChunks.add(chunk);
+    }
+    if (lastChunk) {
+      this.incrementalParser = null;
+      if (incrementalChunks != null) {
+        Subtitle subtitle = new ChunkedSubtitle(incrementalChunks);
+        subtitleCache.put(
+            incrementalCacheKey,
+            subtitle,
+            getEstimatedSubtitleSizeBytes(subtitle, incrementalSampleSize));
+        this.incrementalChunks = null;
+      }
+    }
+  }
+
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of decoded {@link Subtitle}s, which {@link SimpleSubtitleDecoder}s
+ * consult before decoding a sample. Reusing a decoded subtitle avoids decoding the same sample
+ * again, for example when switching back to a previously selected text track or seeking back.
+ *
+ * <p>Subtitles are keyed by the {@link Format} they were decoded from, including its initialization
+ * data, the sample time and the sample data, so a cache may be shared by the renderers of several
+ * players. The memory used by a decoded subtitle is estimated by the decoder, and the least
+ * recently used subtitles are evicted when the estimated total exceeds the maximum size. {@link
+ * #clear()} should be called when the application is asked to trim its memory.
+ */
+public final class SubtitleCache {
+
+  /** An opaque key identifying a decoded sample. */
+  public static final class Key {
+
+    @Nullable private final String formatId;
+    @Nullable private final String sampleMimeType;
+    private final int initializationDataHashCode;
+    private final long timeUs;
+    private final int size;
+    private final int dataHashCode;
+
+    private Key(
+        @Nullable String formatId,
+        @Nullable String sampleMimeType,
+        int initializationDataHashCode,
+        long timeUs,
+        int size,
+        int dataHashCode) {
+      this.formatId = formatId;
+      this.sampleMimeType = sampleMimeType;
+      this.initializationDataHashCode = initializationDataHashCode;
+      this.timeUs = timeUs;
+      this.size = size;
+      this.dataHashCode = dataHashCode;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return timeUs == other.timeUs
+          && size == other.size
+          && dataHashCode == other.dataHashCode
+          && initializationDataHashCode == other.initializationDataHashCode
+          && Util.areEqual(formatId, other.formatId)
+          && Util.areEqual(sampleMimeType, other.sampleMimeType);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 17;
+      result = 31 * result + (formatId == null ? 0 : formatId.hashCode());
+      result = 31 * result + (sampleMimeType == null ? 0 : sampleMimeType.hashCode());
+      result = 31 * result + initializationDataHashCode;
+      result = 31 * result + (int) (timeUs ^ (timeUs >>> 32));
+      result = 31 * result + size;
+      result = 31 * result + dataHashCode;
+      return result;
+    }
+  }
+
+  /** The default maximum estimated size of the cached subtitles, in bytes. */
+  public static final int DEFAULT_MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * The estimated number of bytes used by a decoded subtitle per byte of sample data. Text is
+   * decoded to UTF-16, and each cue carries spans and layout properties.
+   */
+  private static final int ESTIMATED_BYTES_PER_SAMPLE_BYTE = 4;
+  /** The estimated number of bytes used by a {@link Cue}, excluding its text. */
+  private static final int ESTIMATED_BYTES_PER_CUE = 128;
+
+  private final long maxSizeBytes;
+  // Ordered from least to most recently used.
+  private final LinkedHashMap<Key, Entry> entries;
+  private long sizeBytes;
+
+  /** Creates an instance using the default maximum size. */
+  public SubtitleCache() {
+    this(DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  /**
+   * @param maxSizeBytes The maximum estimated size of the cached subtitles, in bytes. When the
+   *     cache is full, the least recently used subtitles are evicted to make space for a new one.
+   */
+  public SubtitleCache(long maxSizeBytes) {
+    Assertions.checkArgument(maxSizeBytes > 0);
+    this.maxSizeBytes = maxSizeBytes;
+    entries = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, true);
+  }
+
+  /**
+   * Returns the key of a sample.
+   *
+   * @param format The format of the sample.
+   * @param timeUs The time of the sample, in microseconds.
+   * @param data An array holding the sample data, starting at position 0.
+   * @param size The size of the sample data.
+   * @return The key.
+   */
+  public static Key createKey(Format format, long timeUs, byte[] data, int size) {
+    int initializationDataHashCode = 1;
+    for (int i = 0; i < format.initializationData.size(); i++) {
+      initializationDataHashCode =
+          31 * initializationDataHashCode + Arrays.hashCode(format.initializationData.get(i));
+    }
+    int dataHashCode = 1;
+    for (int i = 0; i < size; i++) {
+      dataHashCode = 31 * dataHashCode + data[i];
+    }
+    return new Key(
+        format.id, format.sampleMimeType, initializationDataHashCode, timeUs, size, dataHashCode);
+  }
+
+  /**
+   * Returns the estimated memory used by a subtitle decoded from a sample, based only on the size
+   * of the sample.
+   *
+   * @param sampleSize The size of the sample, in bytes.
+   * @return The estimated size of the subtitle, in bytes.
+   */
+  public static long estimateSizeBytes(int sampleSize) {
+    return (long) sampleSize * ESTIMATED_BYTES_PER_SAMPLE_BYTE;
+  }
+
+  /**
+   * Returns the estimated memory used by cues that a subtitle creates in addition to those
+   * accounted for by {@link #estimateSizeBytes(int)}, for example cues it precomputes for each
+   * period of time.
+   *
+   * @param cueCount The number of additional cues.
+   * @param textLength The total length of the text of the additional cues, in characters.
+   * @return The estimated size of the cues, in bytes.
+   */
+  public static long estimateCueSizeBytes(int cueCount, long textLength) {
+    return (long) cueCount * ESTIMATED_BYTES_PER_CUE + textLength * 2;
+  }
+
+  /**
+   * Returns the subtitle decoded from a sample, or null if it isn't cached.
+   *
+   * @param key The key of the sample.
+   * @return The subtitle, or null.
+   */
+  public synchronized @Nullable Subtitle get(Key key) {
+    Entry entry = entries.get(key);
+    return entry != null ? entry.subtitle : null;
+  }
+
+  /**
+   * Adds the subtitle decoded from a sample to the cache, estimating its size with {@link
+   * #estimateSizeBytes(int)}. If the cache is full, the least recently used subtitles are evicted.
+   * Subtitles estimated to be larger than the cache aren't added.
+   *
+   * @param key The key of the sample.
+   * @param subtitle The subtitle decoded from the sample.
+   */
+  public void put(Key key, Subtitle subtitle) {
+    put(key, subtitle, estimateSizeBytes(key.size));
+  }
+
+  /**
+   * Adds the subtitle decoded from a sample to the cache. If the cache is full, the least recently
+   * used subtitles are evicted. Subtitles estimated to be larger than the cache aren't added.
+   *
+   * @param key The key of the sample.
+   * @param subtitle The subtitle decoded from the sample.
+   * @param entrySizeBytes The estimated memory used by the subtitle, in bytes.
+   */
+  public synchronized void put(Key key, Subtitle subtitle, long entrySizeBytes) {
+    if (entrySizeBytes > maxSizeBytes) {
+      return;
+    }
+    Entry previousEntry = entries.put(key, new Entry(subtitle, entrySizeBytes));
+    if (previousEntry != null) {
+      sizeBytes -= previousEntry.sizeBytes;
+    }
+    sizeBytes += entrySizeBytes;
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (sizeBytes > maxSizeBytes) {
+      sizeBytes -= iterator.next().getValue().sizeBytes;
+      iterator.remove();
+    }
+  }
+
+  /** Returns the estimated size of the cached subtitles, in bytes. */
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  /** Removes all subtitles from the cache. */
+  public synchronized void clear() {
+    entries.clear();
+    sizeBytes = 0;
+  }
+
+  private static final class Entry {
+
+    public final Subtitle subtitle;
+    public final long sizeBytes;
+
+    public Entry(Subtitle subtitle, long sizeBytes) {
+      this.subtitle = subtitle;
+      this.sizeBytes = sizeBytes;
+    }
+  }
+}
@@ -76,6 +76,7 @@ public final class TextRenderer extends BaseRenderer implements Callback {
   private final TextOutput output;
   private final SubtitleDecoderFactory decoderFactory;
   private final FormatHolder formatHolder;
+  private @Nullable SubtitleCache subtitleCache;
 
   private boolean inputStreamEnded;
   private boolean outputStreamEnded;
@@ -118,6 +119,18 @@ public final class TextRenderer extends BaseRenderer implements Callback {
     formatHolder = new FormatHolder();
   }
 
+  /**
+   * Sets a {@link SubtitleCache} that's consulted before decoding samples, and to which decoded
+   * subtitles are added. Only used by {@link SimpleSubtitleDecoder}s. Must not be called while the
+   * renderer is enabled.
+   *
+   * @param subtitleCache The cache, or null if decoded subtitles shouldn't be cached.
+   */
+  public final void setSubtitleCache(@Nullable SubtitleCache subtitleCache) {
+    Assertions.checkState(getState() == STATE_DISABLED);
+    this.subtitleCache = subtitleCache;
+  }
+
   @Override
   public int supportsFormat(Format format) {
     if (decoderFactory.supportsFormat(format)) {
@@ -135,7 +148,7 @@ public final class TextRenderer extends BaseRenderer implements Callback {
     if (decoder != null) {
       decoderReplacementState = REPLACEMENT_STATE_SIGNAL_END_OF_STREAM;
     } else {
-      decoder = decoderFactory.createDecoder(streamFormat);
+      createDecoder();
     }
   }
 
@@ -290,7 +303,14 @@ public final class TextRenderer extends BaseRenderer implements Callback {
 
   private void replaceDecoder() {
     releaseDecoder();
+    createDecoder();
+  }
+
+  private void createDecoder() {
     decoder = decoderFactory.createDecoder(streamFormat);
+    if (subtitleCache != null && decoder instanceof SimpleSubtitleDecoder) {
+      ((SimpleSubtitleDecoder) decoder).setSubtitleCache(subtitleCache, streamFormat);
+    }
   }
 
   private long getNextEventTime() {
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.cea;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Decodes CEA-608 and CEA-708 captions outside of playback, outputting the cues of a whole stream
+ * with their start and end times. This is useful to extract or index the captions of recorded
+ * content as fast as they can be decoded.
+ *
+ * <p>Unlike {@link Cea608Decoder} and {@link Cea708Decoder} used as {@link
+ * com.google.android.exoplayer2.text.SubtitleDecoder}s, samples are decoded as soon as they can be
+ * ordered by presentation time rather than when the playback position reaches them, and no buffers
+ * need to be dequeued or released. Samples may be passed in decode order, and are reordered within
+ * a window of {@link #REORDER_WINDOW_SIZE} samples.
+ *
+ * <p>Instances aren't thread-safe.
+ */
+public final class CeaBatchDecoder {
+
+  /** Receives the cues output by a {@link CeaBatchDecoder}. */
+  public interface Output {
+
+    /**
+     * Called when cues stop being displayed.
+     *
+     * @param startTimeUs The time at which the cues started being displayed, in microseconds.
+     * @param endTimeUs The time at which the cues stopped being displayed, in microseconds, or
+     *     {@link C#TIME_UNSET} if they were still displayed at the end of the stream.
+     * @param cues The cues. Never empty.
+     */
+    void onCues(long startTimeUs, long endTimeUs, List<Cue> cues);
+  }
+
+  /** The maximum number of samples held to reorder samples passed in decode order. */
+  public static final int REORDER_WINDOW_SIZE = 16;
+
+  private final CeaDecoder decoder;
+  private final Output output;
+  private final SubtitleInputBuffer inputBuffer;
+  private final PriorityQueue<Sample> pendingSamples;
+  private final ArrayDeque<Sample> availableSamples;
+  private final CcDataOutput ccDataOutput;
+
+  private long sampleCount;
+  private List<Cue> cues;
+  private long cuesStartTimeUs;
+
+  /**
+   * @param format The format of the captions. Its sample MIME type must be {@link
+   *     MimeTypes#APPLICATION_CEA608}, {@link MimeTypes#APPLICATION_MP4CEA608} or {@link
+   *     MimeTypes#APPLICATION_CEA708}.
+   * @param output Receives the decoded cues.
+   * @throws IllegalArgumentException If the sample MIME type isn't supported.
+   */
+  public CeaBatchDecoder(Format format, Output output) {
+    if (MimeTypes.APPLICATION_CEA608.equals(format.sampleMimeType)
+        || MimeTypes.APPLICATION_MP4CEA608.equals(format.sampleMimeType)) {
+      decoder = new Cea608Decoder(format.sampleMimeType, format.accessibilityChannel);
+    } else if (MimeTypes.APPLICATION_CEA708.equals(format.sampleMimeType)) {
+      decoder = new Cea708Decoder(format.accessibilityChannel, format.initializationData);
+    } else {
+      throw new IllegalArgumentException("Unsupported MIME type: " + format.sampleMimeType);
+    }
+    this.output = output;
+    inputBuffer = new SubtitleInputBuffer();
+    pendingSamples = new PriorityQueue<>();
+    availableSamples = new ArrayDeque<>();
+    ccDataOutput = new CcDataOutput();
+    cues = Collections.emptyList();
+  }
+
+  /**
+   * Consumes the unescaped content of an SEI NAL unit, decoding the caption data of any CEA-608 or
+   * CEA-708 messages it contains. See {@link CeaUtil#consume(long, ParsableByteArray,
+   * TrackOutput[])}. The format passed to the constructor should have a sample MIME type of {@link
+   * MimeTypes#APPLICATION_CEA608} or {@link MimeTypes#APPLICATION_CEA708}.
+   *
+   * @param presentationTimeUs The presentation time of the SEI NAL unit, in microseconds.
+   * @param seiBuffer The unescaped SEI NAL unit data, excluding the NAL unit start code and type.
+   */
+  public void consumeSei(long presentationTimeUs, ParsableByteArray seiBuffer) {
+    CeaUtil.consume(presentationTimeUs, seiBuffer, ccDataOutput.outputs);
+  }
+
+  /**
+   * Consumes a sample of caption data, in the format of the samples that extractors output for the
+   * sample MIME type of the format passed to the constructor.
+   *
+   * @param timeUs The presentation time of the sample, in microseconds.
+   * @param data An array holding the sample data.
+   * @param offset The offset of the sample data in {@code data}.
+   * @param length The length of the sample data.
+   */
+  public void consumeSample(long timeUs, byte[] data, int offset, int length) {
+    Sample sample = availableSamples.isEmpty() ? new Sample() : availableSamples.pollFirst();
+    sample.set(timeUs, sampleCount++, data, offset, length);
+    pendingSamples.add(sample);
+    if (pendingSamples.size() > REORDER_WINDOW_SIZE) {
+      decodeSample(pendingSamples.poll());
+    }
+  }
+
+  /**
+   * Decodes any pending samples and outputs the cues displayed at the end of the stream, then
+   * resets the decoder so that another stream can be decoded.
+   */
+  public void endOfStream() {
+    while (!pendingSamples.isEmpty()) {
+      decodeSample(pendingSamples.poll());
+    }
+    outputCues(C.TIME_UNSET, Collections.emptyList());
+    reset();
+  }
+
+  /**
+   * Resets the decoder, discarding any pending samples and cues without outputting them. Should be
+   * called after a discontinuity in the stream, such as a seek.
+   */
+  public void reset() {
+    while (!pendingSamples.isEmpty()) {
+      availableSamples.add(pendingSamples.poll());
+    }
+    ccDataOutput.reset();
+    decoder.flush();
+    sampleCount = 0;
+    cues = Collections.emptyList();
+  }
+
+  private void decodeSample(Sample sample) {
+    inputBuffer.clear();
+    inputBuffer.ensureSpaceForWrite(sample.length);
+    inputBuffer.data.put(sample.data, 0, sample.length);
+    inputBuffer.flip();
+    inputBuffer.timeUs = sample.timeUs;
+    availableSamples.add(sample);
+
+    decoder.decode(inputBuffer);
+    if (decoder.isNewSubtitleDataAvailable()) {
+      // The cues of a CeaSubtitle are displayed from time zero.
+      List<Cue> newCues = decoder.createSubtitle().getCues(0);
+      outputCues(inputBuffer.timeUs, newCues != null ? newCues : Collections.emptyList());
+    }
+  }
+
+  private void outputCues(long timeUs, List<Cue> newCues) {
+    // Cues replaced by others at the time they were displayed were never visible.
+    if (!cues.isEmpty() && timeUs != cuesStartTimeUs) {
+      output.onCues(cuesStartTimeUs, timeUs, cues);
+    }
+    cues = newCues;
+    cuesStartTimeUs = timeUs;
+  }
+
+  /** A sample waiting to be decoded. */
+  private static final class Sample implements Comparable<Sample> {
+
+    public long timeUs;
+    public long index;
+    public byte[] data;
+    public int length;
+
+    public Sample() {
+      data = new byte[0];
+    }
+
+    public void set(long timeUs, long index, byte[] data, int offset, int length) {
+      this.timeUs = timeUs;
+      this.index = index;
+      if (this.data.length < length) {
+        this.data = new byte[length];
+      }
+      System.arraycopy(data, offset, this.data, 0, length);
+      this.length = length;
+    }
+
+    @Override
+    public int compareTo(@NonNull Sample other) {
+      if (timeUs != other.timeUs) {
+        return timeUs < other.timeUs ? -1 : 1;
+      }
+      return Long.compare(index, other.index);
+    }
+  }
+
+  /** Collects the caption data written by {@link CeaUtil} into samples. */
+  private final class CcDataOutput implements TrackOutput {
+
+    public final TrackOutput[] outputs;
+
+    private byte[] data;
+    private int length;
+
+    public CcDataOutput() {
+      outputs = new TrackOutput[] {this};
+      data = new byte[0];
+    }
+
+    public void reset() {
+      length = 0;
+    }
+
+    @Override
+    public void format(Format format) {
+      // Do nothing.
+    }
+
+    @Override
+    public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput)
+        throws IOException, InterruptedException {
+      ensureCapacity(length);
+      int bytesRead = input.read(data, this.length, length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      this.length += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length) {
+      ensureCapacity(length);
+      data.readBytes(this.data, this.length, length);
+      this.length += length;
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData encryptionData) {
+      int sampleOffset = length - offset - size;
+      consumeSample(timeUs, data, sampleOffset, size);
+      // Keep any data written after the end of the sample.
+      System.arraycopy(data, length - offset, data, 0, offset);
+      length = offset;
+    }
+
+    private void ensureCapacity(int additionalLength) {
+      if (data.length < length + additionalLength) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, length + additionalLength));
+      }
+    }
+  }
+}
@@ -85,6 +85,7 @@ import java.util.List;
   private final DisplayDefinition defaultDisplayDefinition;
   private final ClutDefinition defaultClutDefinition;
   private final SubtitleService subtitleService;
+  private final SparseArray<RegionCue> regionCues;
 
   private Bitmap bitmap;
 
@@ -108,6 +109,7 @@ import java.util.List;
     defaultClutDefinition = new ClutDefinition(0, generateDefault2BitClutEntries(),
         generateDefault4BitClutEntries(), generateDefault8BitClutEntries());
     subtitleService = new SubtitleService(subtitlePageId, ancillaryPageId);
+    regionCues = new SparseArray<>();
   }
 
   /**
@@ -115,6 +117,7 @@ import java.util.List;
    */
   public void reset() {
     subtitleService.reset();
+    regionCues.clear();
   }
 
   /**
@@ -154,18 +157,6 @@ import java.util.List;
       int regionId = pageRegions.keyAt(i);
       RegionComposition regionComposition = subtitleService.regions.get(regionId);
 
-      // Clip drawing to the current region and display definition window.
-      int baseHorizontalAddress = pageRegion.horizontalAddress
-          + displayDefinition.horizontalPositionMinimum;
-      int baseVerticalAddress = pageRegion.verticalAddress
-          + displayDefinition.verticalPositionMinimum;
-      int clipRight = Math.min(baseHorizontalAddress + regionComposition.width,
-          displayDefinition.horizontalPositionMaximum);
-      int clipBottom = Math.min(baseVerticalAddress + regionComposition.height,
-          displayDefinition.verticalPositionMaximum);
-      canvas.clipRect(baseHorizontalAddress, baseVerticalAddress, clipRight, clipBottom,
-          Region.Op.REPLACE);
-
       ClutDefinition clutDefinition = subtitleService.cluts.get(regionComposition.clutId);
       if (clutDefinition == null) {
         clutDefinition = subtitleService.ancillaryCluts.get(regionComposition.clutId);
@@ -175,13 +166,41 @@ import java.util.List;
       }
 
       SparseArray<RegionObject> regionObjects = regionComposition.regionObjects;
+      ObjectData[] objects = new ObjectData[regionObjects.size()];
       for (int j = 0; j < regionObjects.size(); j++) {
         int objectId = regionObjects.keyAt(j);
-        RegionObject regionObject = regionObjects.valueAt(j);
         ObjectData objectData = subtitleService.objects.get(objectId);
         if (objectData == null) {
           objectData = subtitleService.ancillaryObjects.get(objectId);
         }
+        objects[j] = objectData;
+      }
+
+      // Segments are parsed into new instances, so a region whose segments haven't been updated
+      // since it was last painted doesn't need to be painted again.
+      RegionCue regionCue = regionCues.get(regionId);
+      if (regionCue != null
+          && regionCue.isUnchanged(
+              displayDefinition, pageRegion, regionComposition, clutDefinition, objects)) {
+        cues.add(regionCue.cue);
+        continue;
+      }
+
+      // Clip drawing to the current region and display definition window.
+      int baseHorizontalAddress = pageRegion.horizontalAddress
+          + displayDefinition.horizontalPositionMinimum;
+      int baseVerticalAddress = pageRegion.verticalAddress
+          + displayDefinition.verticalPositionMinimum;
+      int clipRight = Math.min(baseHorizontalAddress + regionComposition.width,
+          displayDefinition.horizontalPositionMaximum);
+      int clipBottom = Math.min(baseVerticalAddress + regionComposition.height,
+          displayDefinition.verticalPositionMaximum);
+      canvas.clipRect(baseHorizontalAddress, baseVerticalAddress, clipRight, clipBottom,
+          Region.Op.REPLACE);
+
+      for (int j = 0; j < regionObjects.size(); j++) {
+        RegionObject regionObject = regionObjects.valueAt(j);
+        ObjectData objectData = objects[j];
         if (objectData != null) {
           Paint paint = objectData.nonModifyingColorFlag ? null : defaultPaint;
           paintPixelDataSubBlocks(objectData, clutDefinition, regionComposition.depth,
@@ -208,14 +227,24 @@ import java.util.List;
 
       Bitmap cueBitmap = Bitmap.createBitmap(bitmap, baseHorizontalAddress, baseVerticalAddress,
           regionComposition.width, regionComposition.height);
-      cues.add(new Cue(cueBitmap, (float) baseHorizontalAddress / displayDefinition.width,
+      Cue cue = new Cue(cueBitmap, (float) baseHorizontalAddress / displayDefinition.width,
           Cue.ANCHOR_TYPE_START, (float) baseVerticalAddress / displayDefinition.height,
           Cue.ANCHOR_TYPE_START, (float) regionComposition.width / displayDefinition.width,
-          (float) regionComposition.height / displayDefinition.height));
+          (float) regionComposition.height / displayDefinition.height);
+      cues.add(cue);
+      regionCues.put(regionId, new RegionCue(
+          displayDefinition, pageRegion, regionComposition, clutDefinition, objects, cue));
 
       canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
     }
 
+    // Drop the cues of regions that are no longer part of the page composition.
+    for (int i = regionCues.size() - 1; i >= 0; i--) {
+      if (pageRegions.indexOfKey(regionCues.keyAt(i)) < 0) {
+        regionCues.removeAt(i);
+      }
+    }
+
     return cues;
   }
 
@@ -807,6 +836,54 @@ import java.util.List;
 
   // Private inner classes.
 
+  /**
+   * The cue painted for a region, and the segment data from which it was painted. The bitmap of
+   * the cue is immutable, so the cue can be output again while the data is unchanged.
+   */
+  private static final class RegionCue {
+
+    private final DisplayDefinition displayDefinition;
+    private final int horizontalAddress;
+    private final int verticalAddress;
+    private final RegionComposition regionComposition;
+    private final ClutDefinition clutDefinition;
+    private final ObjectData[] objects;
+
+    public final Cue cue;
+
+    public RegionCue(DisplayDefinition displayDefinition, PageRegion pageRegion,
+        RegionComposition regionComposition, ClutDefinition clutDefinition, ObjectData[] objects,
+        Cue cue) {
+      this.displayDefinition = displayDefinition;
+      this.horizontalAddress = pageRegion.horizontalAddress;
+      this.verticalAddress = pageRegion.verticalAddress;
+      this.regionComposition = regionComposition;
+      this.clutDefinition = clutDefinition;
+      this.objects = objects;
+      this.cue = cue;
+    }
+
+    public boolean isUnchanged(DisplayDefinition displayDefinition, PageRegion pageRegion,
+        RegionComposition regionComposition, ClutDefinition clutDefinition,
+        ObjectData[] objects) {
+      if (this.displayDefinition != displayDefinition
+          || horizontalAddress != pageRegion.horizontalAddress
+          || verticalAddress != pageRegion.verticalAddress
+          || this.regionComposition != regionComposition
+          || this.clutDefinition != clutDefinition
+          || this.objects.length != objects.length) {
+        return false;
+      }
+      for (int i = 0; i < objects.length; i++) {
+        if (this.objects[i] != objects[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
   /**
    * The subtitle service definition.
    */
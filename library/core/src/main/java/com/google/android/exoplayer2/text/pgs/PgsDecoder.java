@@ -114,6 +114,18 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
 
     private final ParsableByteArray bitmapData;
     private final int[] colors;
+    private final int[] lastColors;
+
+    // Reused to decode the run-length encoded pixels of each display set, since the decoded pixels
+    // are copied into the bitmap.
+    private int[] argbBitmapData;
+    // The last bitmap built, and the data from which it was built. Consecutive display sets often
+    // show the same object, whose bitmap is then output again rather than decoded again.
+    private Bitmap lastBitmap;
+    private byte[] lastBitmapData;
+    private int lastBitmapDataLength;
+    private int lastBitmapWidth;
+    private int lastBitmapHeight;
 
     private boolean colorsSet;
     private int planeWidth;
@@ -126,6 +138,9 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
     public CueBuilder() {
       bitmapData = new ParsableByteArray();
       colors = new int[256];
+      lastColors = new int[256];
+      argbBitmapData = new int[0];
+      lastBitmapData = new byte[0];
     }
 
     private void parsePaletteSection(ParsableByteArray buffer, int sectionLength) {
@@ -207,11 +222,55 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
           || !colorsSet) {
         return null;
       }
+      Bitmap bitmap = isLastBitmapData() ? lastBitmap : buildBitmap();
+      // Build the cue.
+      return new Cue(
+          bitmap,
+          (float) bitmapX / planeWidth,
+          Cue.ANCHOR_TYPE_START,
+          (float) bitmapY / planeHeight,
+          Cue.ANCHOR_TYPE_START,
+          (float) bitmapWidth / planeWidth,
+          (float) bitmapHeight / planeHeight);
+    }
+
+    public void reset() {
+      planeWidth = 0;
+      planeHeight = 0;
+      bitmapX = 0;
+      bitmapY = 0;
+      bitmapWidth = 0;
+      bitmapHeight = 0;
+      bitmapData.reset(0);
+      colorsSet = false;
+    }
+
+    private boolean isLastBitmapData() {
+      if (lastBitmap == null
+          || lastBitmapWidth != bitmapWidth
+          || lastBitmapHeight != bitmapHeight
+          || lastBitmapDataLength != bitmapData.limit()
+          || !Arrays.equals(lastColors, colors)) {
+        return false;
+      }
+      byte[] data = bitmapData.data;
+      for (int i = 0; i < lastBitmapDataLength; i++) {
+        if (lastBitmapData[i] != data[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private Bitmap buildBitmap() {
+      int pixelCount = bitmapWidth * bitmapHeight;
+      if (argbBitmapData.length < pixelCount) {
+        argbBitmapData = new int[pixelCount];
+      }
       // Build the bitmapData.
       bitmapData.setPosition(0);
-      int[] argbBitmapData = new int[bitmapWidth * bitmapHeight];
       int argbBitmapDataIndex = 0;
-      while (argbBitmapDataIndex < argbBitmapData.length) {
+      while (argbBitmapDataIndex < pixelCount) {
         int colorIndex = bitmapData.readUnsignedByte();
         if (colorIndex != 0) {
           argbBitmapData[argbBitmapDataIndex++] = colors[colorIndex];
@@ -223,6 +282,8 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
                     ? (switchBits & 0x3F)
                     : (((switchBits & 0x3F) << 8) | bitmapData.readUnsignedByte());
             int color = (switchBits & 0x80) == 0 ? 0 : colors[bitmapData.readUnsignedByte()];
+            // The reused array may be larger than the bitmap, so don't let a run overflow it.
+            runLength = Math.min(runLength, pixelCount - argbBitmapDataIndex);
             Arrays.fill(
                 argbBitmapData, argbBitmapDataIndex, argbBitmapDataIndex + runLength, color);
             argbBitmapDataIndex += runLength;
@@ -231,26 +292,18 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
       }
       Bitmap bitmap =
           Bitmap.createBitmap(argbBitmapData, bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
-      // Build the cue.
-      return new Cue(
-          bitmap,
-          (float) bitmapX / planeWidth,
-          Cue.ANCHOR_TYPE_START,
-          (float) bitmapY / planeHeight,
-          Cue.ANCHOR_TYPE_START,
-          (float) bitmapWidth / planeWidth,
-          (float) bitmapHeight / planeHeight);
-    }
 
-    public void reset() {
-      planeWidth = 0;
-      planeHeight = 0;
-      bitmapX = 0;
-      bitmapY = 0;
-      bitmapWidth = 0;
-      bitmapHeight = 0;
-      bitmapData.reset(0);
-      colorsSet = false;
+      int bitmapDataLength = bitmapData.limit();
+      if (lastBitmapData.length < bitmapDataLength) {
+        lastBitmapData = new byte[bitmapDataLength];
+      }
+      System.arraycopy(bitmapData.data, 0, lastBitmapData, 0, bitmapDataLength);
+      System.arraycopy(colors, 0, lastColors, 0, colors.length);
+      lastBitmapDataLength = bitmapDataLength;
+      lastBitmapWidth = bitmapWidth;
+      lastBitmapHeight = bitmapHeight;
+      lastBitmap = bitmap;
+      return bitmap;
     }
   }
 }
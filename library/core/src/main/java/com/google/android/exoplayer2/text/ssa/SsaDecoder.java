@@ -71,6 +71,11 @@ public final class SsaDecoder extends SimpleSubtitleDecoder {
     }
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
   @Override
   protected SsaSubtitle decode(byte[] bytes, int length, boolean reset) {
     ArrayList<Cue> cues = new ArrayList<>();
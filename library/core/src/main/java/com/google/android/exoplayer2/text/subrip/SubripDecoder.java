@@ -45,6 +45,11 @@ public final class SubripDecoder extends SimpleSubtitleDecoder {
     textBuilder = new StringBuilder();
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
   @Override
   protected SubripSubtitle decode(byte[] bytes, int length, boolean reset) {
     ArrayList<Cue> cues = new ArrayList<>();
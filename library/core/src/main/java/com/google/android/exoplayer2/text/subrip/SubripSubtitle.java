@@ -17,9 +17,12 @@ package com.google.android.exoplayer2.text.subrip;
 
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.CueTimeline;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -29,7 +32,8 @@ import java.util.List;
 /* package */ final class SubripSubtitle implements Subtitle {
 
   private final Cue[] cues;
-  private final long[] cueTimesUs;
+  private final long[] sortedCueTimesUs;
+  private final CueTimeline cueTimeline;
 
   /**
    * @param cues The cues in the subtitle. Null entries may be used to represent empty cues.
@@ -37,36 +41,62 @@ import java.util.List;
    */
   public SubripSubtitle(Cue[] cues, long[] cueTimesUs) {
     this.cues = cues;
-    this.cueTimesUs = cueTimesUs;
+    // Each cue is displayed until the next cue time, which is either its end time or the start time
+    // of the next cue.
+    long[] startTimesUs = new long[cues.length];
+    long[] endTimesUs = new long[cues.length];
+    for (int i = 0; i < cues.length; i++) {
+      if (cues[i] != null) {
+        startTimesUs[i] = cueTimesUs[i];
+        endTimesUs[i] = i + 1 < cueTimesUs.length ? cueTimesUs[i + 1] : Long.MAX_VALUE;
+      }
+    }
+    cueTimeline = new CueTimeline(startTimesUs, endTimesUs, this::buildCueList);
+    // Cue times are in file order, which isn't sorted if cues overlap.
+    long[] sortedCueTimesUs = Arrays.copyOf(cueTimesUs, cueTimesUs.length);
+    Arrays.sort(sortedCueTimesUs);
+    int uniqueCueTimeCount = 0;
+    for (int i = 0; i < sortedCueTimesUs.length; i++) {
+      if (uniqueCueTimeCount == 0
+          || sortedCueTimesUs[i] != sortedCueTimesUs[uniqueCueTimeCount - 1]) {
+        sortedCueTimesUs[uniqueCueTimeCount++] = sortedCueTimesUs[i];
+      }
+    }
+    this.sortedCueTimesUs = Arrays.copyOf(sortedCueTimesUs, uniqueCueTimeCount);
   }
 
   @Override
   public int getNextEventTimeIndex(long timeUs) {
-    int index = Util.binarySearchCeil(cueTimesUs, timeUs, false, false);
-    return index < cueTimesUs.length ? index : C.INDEX_UNSET;
+    int index = Util.binarySearchCeil(sortedCueTimesUs, timeUs, false, false);
+    return index < sortedCueTimesUs.length ? index : C.INDEX_UNSET;
   }
 
   @Override
   public int getEventTimeCount() {
-    return cueTimesUs.length;
+    return sortedCueTimesUs.length;
   }
 
   @Override
   public long getEventTime(int index) {
     Assertions.checkArgument(index >= 0);
-    Assertions.checkArgument(index < cueTimesUs.length);
-    return cueTimesUs[index];
+    Assertions.checkArgument(index < sortedCueTimesUs.length);
+    return sortedCueTimesUs[index];
   }
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    int index = Util.binarySearchFloor(cueTimesUs, timeUs, true, false);
-    if (index == -1 || cues[index] == null) {
-      // timeUs is earlier than the start of the first cue, or we have an empty cue.
-      return Collections.emptyList();
-    } else {
-      return Collections.singletonList(cues[index]);
+    return cueTimeline.getCues(timeUs);
+  }
+
+  private List<Cue> buildCueList(int[] cueIndices) {
+    if (cueIndices.length == 1) {
+      return Collections.singletonList(cues[cueIndices[0]]);
+    }
+    List<Cue> cueList = new ArrayList<>(cueIndices.length);
+    for (int cueIndex : cueIndices) {
+      cueList.add(cues[cueIndex]);
     }
+    return cueList;
   }
 
 }
@@ -24,6 +24,7 @@ import android.util.Pair;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
+import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.text.SubtitleDecoderException;
 import com.google.android.exoplayer2.util.ColorParser;
 import com.google.android.exoplayer2.util.Log;
@@ -104,6 +105,19 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
     }
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
+  @Override
+  protected long getEstimatedSubtitleSizeBytes(Subtitle subtitle, int sampleSize) {
+    // The cues active during each period of time are resolved in advance, so a cue that spans
+    // several periods is created once for each of them.
+    return super.getEstimatedSubtitleSizeBytes(subtitle, sampleSize)
+        + ((TtmlSubtitle) subtitle).getEstimatedCueListSizeBytes();
+  }
+
   @Override
   protected TtmlSubtitle decode(byte[] bytes, int length, boolean reset)
       throws SubtitleDecoderException {
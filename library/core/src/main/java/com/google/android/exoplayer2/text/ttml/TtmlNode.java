@@ -141,18 +141,24 @@ import java.util.Map.Entry;
 
   public long[] getEventTimesUs() {
     TreeSet<Long> eventTimeSet = new TreeSet<>();
-    getEventTimes(eventTimeSet, false);
-    long[] eventTimes = new long[eventTimeSet.size()];
-    int i = 0;
-    for (long eventTimeUs : eventTimeSet) {
-      eventTimes[i++] = eventTimeUs;
-    }
-    return eventTimes;
+    getEventTimes(eventTimeSet, false, false);
+    return toArray(eventTimeSet);
+  }
+
+  /**
+   * Returns the times at which any node in this subtree becomes active or inactive, in ascending
+   * order. Unlike the event times, these include the times of container nodes, so the cues returned
+   * by {@link #getCues} are the same at any time between two consecutive returned times.
+   */
+  public long[] getCueChangeTimesUs() {
+    TreeSet<Long> cueChangeTimeSet = new TreeSet<>();
+    getEventTimes(cueChangeTimeSet, false, true);
+    return toArray(cueChangeTimeSet);
   }
 
-  private void getEventTimes(TreeSet<Long> out, boolean descendsPNode) {
+  private void getEventTimes(TreeSet<Long> out, boolean descendsPNode, boolean includeAllNodes) {
     boolean isPNode = TAG_P.equals(tag);
-    if (descendsPNode || isPNode) {
+    if (includeAllNodes || descendsPNode || isPNode) {
       if (startTimeUs != C.TIME_UNSET) {
         out.add(startTimeUs);
       }
@@ -164,8 +170,17 @@ import java.util.Map.Entry;
       return;
     }
     for (int i = 0; i < children.size(); i++) {
-      children.get(i).getEventTimes(out, descendsPNode || isPNode);
+      children.get(i).getEventTimes(out, descendsPNode || isPNode, includeAllNodes);
+    }
+  }
+
+  private static long[] toArray(TreeSet<Long> timeSet) {
+    long[] times = new long[timeSet.size()];
+    int i = 0;
+    for (long timeUs : timeSet) {
+      times[i++] = timeUs;
     }
+    return times;
   }
 
   public String[] getStyleIds() {
@@ -180,27 +195,233 @@ import java.util.Map.Entry;
     List<Cue> cues = new ArrayList<>();
     for (Entry<String, SubtitleAccumulator> entry : regionOutputs.entrySet()) {
       TtmlRegion region = regionMap.get(entry.getKey());
-      final Bitmap backgroundImage = entry.getValue().backgroundImage;
-      cues.add(
-          new Cue(
-              cleanUpText(entry.getValue().builder),
-              /* textAlignment= */ null,
-              backgroundImage,
-              getLineYValue(region),                  //line
-              getLineType(region),                    //lineType
-              region.lineAnchor,                      //lineAnchor
-              getLineXValue(region.x),                //Position
-              /* positionAnchor= */ Cue.TYPE_UNSET,   //positionAnchor
-              region.textSizeType,                    //textSizeType
-              region.textSize,                        //textSize
-              getLineXValue(region.width),            //size
-             1.0f,
-              false,
-              Color.BLACK));
+      cues.add(createCue(region, entry.getValue().builder, entry.getValue().backgroundImage));
     }
     return cues;
   }
 
+  /**
+   * Returns the cues to display before the first of the given cue change times, followed by the
+   * cues to display from each cue change time until the next, in the same way as {@link #getCues}.
+   *
+   * <p>The tree is traversed once. The text of each paragraph is styled once for each period in
+   * which its content doesn't change, and the cue of a region is built once for each period in
+   * which the paragraphs and background image it displays don't change. Lists for consecutive
+   * periods with the same cues are the same instance.
+   *
+   * @param cueChangeTimesUs The times returned by {@link #getCueChangeTimesUs()}.
+   * @param globalStyles The global styles.
+   * @param regionMap The regions, by id.
+   * @param metadata The metadata providing background images, or null.
+   * @return The cues for each period.
+   */
+  @SuppressWarnings("unchecked")
+  public List<Cue>[] getCueLists(long[] cueChangeTimesUs, Map<String, TtmlStyle> globalStyles,
+      Map<String, TtmlRegion> regionMap, TtmlMetadata metadata) {
+    List<CueSegment> segments = new ArrayList<>();
+    collectCueSegments(C.TIME_UNSET, C.TIME_UNSET, regionId, new ArrayList<>(), globalStyles,
+        metadata, segments);
+
+    // Bucket the segments by the periods in which they start and stop being displayed.
+    int periodCount = cueChangeTimesUs.length + 1;
+    List<CueSegment>[] startingSegments = new List[periodCount];
+    List<CueSegment>[] endingSegments = new List[periodCount];
+    for (int i = 0; i < segments.size(); i++) {
+      CueSegment segment = segments.get(i);
+      int startPeriodIndex = getPeriodIndex(cueChangeTimesUs, segment.startTimeUs, 0);
+      int endPeriodIndex = getPeriodIndex(cueChangeTimesUs, segment.endTimeUs, periodCount);
+      if (startPeriodIndex < endPeriodIndex) {
+        addToPeriod(startingSegments, startPeriodIndex, segment);
+        if (endPeriodIndex < periodCount) {
+          addToPeriod(endingSegments, endPeriodIndex, segment);
+        }
+      }
+    }
+
+    // Sweep the periods, rebuilding only the cues of the regions whose segments change.
+    Map<String, TreeMap<Integer, CueSegment>> displayedSegmentsByRegion = new HashMap<>();
+    TreeMap<String, Cue> cuesByRegion = new TreeMap<>();
+    Set<String> changedRegionIds = new HashSet<>();
+    List<Cue>[] cueLists = new List[periodCount];
+    for (int i = 0; i < periodCount; i++) {
+      changedRegionIds.clear();
+      if (endingSegments[i] != null) {
+        for (CueSegment segment : endingSegments[i]) {
+          for (String segmentRegionId : segment.regionOutputs.keySet()) {
+            displayedSegmentsByRegion.get(segmentRegionId).remove(segment.index);
+            changedRegionIds.add(segmentRegionId);
+          }
+        }
+      }
+      if (startingSegments[i] != null) {
+        for (CueSegment segment : startingSegments[i]) {
+          for (String segmentRegionId : segment.regionOutputs.keySet()) {
+            TreeMap<Integer, CueSegment> displayedSegments =
+                displayedSegmentsByRegion.get(segmentRegionId);
+            if (displayedSegments == null) {
+              displayedSegments = new TreeMap<>();
+              displayedSegmentsByRegion.put(segmentRegionId, displayedSegments);
+            }
+            displayedSegments.put(segment.index, segment);
+            changedRegionIds.add(segmentRegionId);
+          }
+        }
+      }
+      if (i > 0 && changedRegionIds.isEmpty()) {
+        cueLists[i] = cueLists[i - 1];
+        continue;
+      }
+      for (String changedRegionId : changedRegionIds) {
+        TreeMap<Integer, CueSegment> displayedSegments =
+            displayedSegmentsByRegion.get(changedRegionId);
+        if (displayedSegments.isEmpty()) {
+          cuesByRegion.remove(changedRegionId);
+        } else {
+          TtmlRegion region = regionMap.get(changedRegionId);
+          cuesByRegion.put(
+              changedRegionId, createCue(changedRegionId, displayedSegments.values(), region));
+        }
+      }
+      cueLists[i] = cuesByRegion.isEmpty() ? Collections.emptyList()
+          : Collections.unmodifiableList(new ArrayList<>(cuesByRegion.values()));
+    }
+    return cueLists;
+  }
+
+  /**
+   * Adds the segments of the cues displayed while this node is active to {@code out}, in document
+   * order. Each paragraph contributes one segment for each period in which its content doesn't
+   * change, and each node with a background image outside of a paragraph contributes one segment.
+   */
+  private void collectCueSegments(long inheritedStartTimeUs, long inheritedEndTimeUs,
+      String inheritedRegion, List<TtmlNode> ancestors, Map<String, TtmlStyle> globalStyles,
+      TtmlMetadata metadata, List<CueSegment> out) {
+    if (isTextNode || TAG_METADATA.equals(tag)) {
+      return;
+    }
+    // The node is displayed while it and all of its ancestors are active.
+    long segmentStartTimeUs = inheritedStartTimeUs == C.TIME_UNSET ? startTimeUs
+        : startTimeUs == C.TIME_UNSET ? inheritedStartTimeUs
+        : Math.max(inheritedStartTimeUs, startTimeUs);
+    long segmentEndTimeUs = inheritedEndTimeUs == C.TIME_UNSET ? endTimeUs
+        : endTimeUs == C.TIME_UNSET ? inheritedEndTimeUs
+        : Math.min(inheritedEndTimeUs, endTimeUs);
+    if (segmentStartTimeUs != C.TIME_UNSET && segmentEndTimeUs != C.TIME_UNSET
+        && segmentStartTimeUs >= segmentEndTimeUs) {
+      return;
+    }
+    String resolvedRegionId = ANONYMOUS_REGION_ID.equals(regionId) ? inheritedRegion : regionId;
+    int segmentIndex = out.isEmpty() ? 0 : out.get(out.size() - 1).index + 1;
+
+    if (TAG_P.equals(tag)) {
+      // Split the paragraph at the times at which a descendant becomes active or inactive.
+      TreeSet<Long> changeTimeSet = new TreeSet<>();
+      getEventTimes(changeTimeSet, false, true);
+      long pieceStartTimeUs = segmentStartTimeUs;
+      for (long timeUs : changeTimeSet) {
+        if ((segmentStartTimeUs == C.TIME_UNSET || timeUs > segmentStartTimeUs)
+            && (segmentEndTimeUs == C.TIME_UNSET || timeUs < segmentEndTimeUs)) {
+          out.add(createParagraphSegment(segmentIndex, pieceStartTimeUs, timeUs, inheritedRegion,
+              ancestors, globalStyles, metadata));
+          pieceStartTimeUs = timeUs;
+        }
+      }
+      out.add(createParagraphSegment(segmentIndex, pieceStartTimeUs, segmentEndTimeUs,
+          inheritedRegion, ancestors, globalStyles, metadata));
+      return;
+    }
+
+    if (backgroundImageId != null) {
+      SubtitleAccumulator regionOutput = new SubtitleAccumulator();
+      regionOutput.backgroundImage = metadata.getImage(backgroundImageId);
+      Map<String, SubtitleAccumulator> regionOutputs =
+          Collections.singletonMap(resolvedRegionId, regionOutput);
+      out.add(new CueSegment(segmentIndex, segmentStartTimeUs, segmentEndTimeUs, regionOutputs,
+          /* paragraphRegionId= */ null));
+    }
+    ancestors.add(this);
+    for (int i = 0; i < getChildCount(); i++) {
+      getChild(i).collectCueSegments(segmentStartTimeUs, segmentEndTimeUs, resolvedRegionId,
+          ancestors, globalStyles, metadata, out);
+    }
+    ancestors.remove(ancestors.size() - 1);
+  }
+
+  /**
+   * Returns the segment of this paragraph that's displayed between the given times, during which
+   * its content doesn't change. The styles of the ancestors apply to the whole segment.
+   */
+  private CueSegment createParagraphSegment(int index, long startTimeUs, long endTimeUs,
+      String inheritedRegion, List<TtmlNode> ancestors, Map<String, TtmlStyle> globalStyles,
+      TtmlMetadata metadata) {
+    long timeUs = startTimeUs != C.TIME_UNSET ? startTimeUs
+        : endTimeUs != C.TIME_UNSET ? endTimeUs - 1 : 0;
+    TreeMap<String, SubtitleAccumulator> regionOutputs = new TreeMap<>();
+    traverseForText(timeUs, false, inheritedRegion, regionOutputs, metadata);
+    for (int i = 0; i < ancestors.size(); i++) {
+      for (SubtitleAccumulator regionOutput : regionOutputs.values()) {
+        if (regionOutput.length() != 0) {
+          ancestors.get(i).applyStyleToOutput(globalStyles, regionOutput, 0, regionOutput.length());
+        }
+      }
+    }
+    traverseForStyle(timeUs, globalStyles, regionOutputs);
+    String paragraphRegionId = ANONYMOUS_REGION_ID.equals(regionId) ? inheritedRegion : regionId;
+    return new CueSegment(index, startTimeUs, endTimeUs, regionOutputs, paragraphRegionId);
+  }
+
+  /**
+   * Returns the index of the period that starts at {@code timeUs}, or {@code unsetIndex} if {@code
+   * timeUs} is {@link C#TIME_UNSET}.
+   */
+  private static int getPeriodIndex(long[] cueChangeTimesUs, long timeUs, int unsetIndex) {
+    return timeUs == C.TIME_UNSET ? unsetIndex : Arrays.binarySearch(cueChangeTimesUs, timeUs) + 1;
+  }
+
+  private static void addToPeriod(List<CueSegment>[] segmentsByPeriod, int periodIndex,
+      CueSegment segment) {
+    if (segmentsByPeriod[periodIndex] == null) {
+      segmentsByPeriod[periodIndex] = new ArrayList<>();
+    }
+    segmentsByPeriod[periodIndex].add(segment);
+  }
+
+  private Cue createCue(String regionId, Collection<CueSegment> segments, TtmlRegion region) {
+    SpannableStringBuilder builder = new SpannableStringBuilder();
+    Bitmap backgroundImage = null;
+    for (CueSegment segment : segments) {
+      SubtitleAccumulator regionOutput = segment.regionOutputs.get(regionId);
+      builder.append(regionOutput.builder);
+      if (regionOutput.backgroundImage != null) {
+        backgroundImage = regionOutput.backgroundImage;
+      }
+      if (regionId.equals(segment.paragraphRegionId)) {
+        // Ending the paragraph again only has an effect if the segment is blank, in which case the
+        // paragraph ends the text of the previous segments.
+        TtmlRenderUtil.endParagraph(builder);
+      }
+    }
+    return createCue(region, builder, backgroundImage);
+  }
+
+  private Cue createCue(TtmlRegion region, SpannableStringBuilder builder, Bitmap backgroundImage) {
+    return new Cue(
+        cleanUpText(builder),
+        /* textAlignment= */ null,
+        backgroundImage,
+        getLineYValue(region),                  //line
+        getLineType(region),                    //lineType
+        region.lineAnchor,                      //lineAnchor
+        getLineXValue(region.x),                //Position
+        /* positionAnchor= */ Cue.TYPE_UNSET,   //positionAnchor
+        region.textSizeType,                    //textSizeType
+        region.textSize,                        //textSize
+        getLineXValue(region.width),            //size
+        1.0f,
+        false,
+        Color.BLACK);
+  }
+
   @SuppressLint("SwitchIntDef")
   private static float getLineYValue(final TtmlRegion region){
     if (region.y == null)
@@ -364,6 +585,30 @@ import java.util.Map.Entry;
     return builder;
   }
 
+  /**
+   * The text and background image that a paragraph, or a node with a background image, adds to
+   * the cues of each region between two times.
+   */
+  private static final class CueSegment {
+
+    /** The position of the paragraph or node in document order. */
+    public final int index;
+    public final long startTimeUs;
+    public final long endTimeUs;
+    public final Map<String, SubtitleAccumulator> regionOutputs;
+    /** The region that a paragraph ends in, or null if the segment isn't part of a paragraph. */
+    public final String paragraphRegionId;
+
+    public CueSegment(int index, long startTimeUs, long endTimeUs,
+        Map<String, SubtitleAccumulator> regionOutputs, String paragraphRegionId) {
+      this.index = index;
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+      this.regionOutputs = regionOutputs;
+      this.paragraphRegionId = paragraphRegionId;
+    }
+  }
+
   private static class SubtitleAccumulator {
     SpannableStringBuilder builder = new SpannableStringBuilder();
     Bitmap backgroundImage = null;
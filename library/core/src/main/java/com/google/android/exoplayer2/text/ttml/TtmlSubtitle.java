@@ -19,10 +19,13 @@ import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.SubtitleCache;
 import com.google.android.exoplayer2.util.Util;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A representation of a TTML subtitle.
@@ -32,17 +35,42 @@ import java.util.Map;
   private final TtmlNode root;
   private final long[] eventTimesUs;
   private final Map<String, TtmlStyle> globalStyles;
-  private final Map<String, TtmlRegion> regionMap;
-  private final TtmlMetadata metadata;
+  /** The times at which the cues can change, in ascending order. */
+  private final long[] cueChangeTimesUs;
+  /**
+   * The cues before the first cue change time, followed by the cues from each cue change time until
+   * the next.
+   */
+  private final List<Cue>[] cueLists;
+  private final long estimatedCueListSizeBytes;
 
+  /**
+   * Creates a subtitle, resolving the cues to display between each pair of consecutive cue change
+   * times in a single traversal of the node tree, so that {@link #getCues(long)} doesn't need to
+   * traverse it.
+   */
   public TtmlSubtitle(TtmlNode root, Map<String, TtmlStyle> globalStyles,
       Map<String, TtmlRegion> regionMap, @Nullable TtmlMetadata metadata) {
     this.root = root;
-    this.regionMap = regionMap;
     this.globalStyles =
         globalStyles != null ? Collections.unmodifiableMap(globalStyles) : Collections.emptyMap();
     this.eventTimesUs = root.getEventTimesUs();
-    this.metadata = metadata;
+    cueChangeTimesUs = root.getCueChangeTimesUs();
+    cueLists = root.getCueLists(cueChangeTimesUs, this.globalStyles, regionMap, metadata);
+    // Cues that don't change are shared by the lists of consecutive periods, so count each once.
+    Set<Cue> cues = Collections.newSetFromMap(new IdentityHashMap<>());
+    int cueCount = 0;
+    long textLength = 0;
+    for (List<Cue> cueList : cueLists) {
+      for (int i = 0; i < cueList.size(); i++) {
+        Cue cue = cueList.get(i);
+        if (cues.add(cue)) {
+          cueCount++;
+          textLength += cue.text != null ? cue.text.length() : 0;
+        }
+      }
+    }
+    estimatedCueListSizeBytes = SubtitleCache.estimateCueSizeBytes(cueCount, textLength);
   }
 
   @Override
@@ -61,6 +89,11 @@ import java.util.Map;
     return eventTimesUs[index];
   }
 
+  /** Returns the estimated memory used by the cues resolved for each period of time, in bytes. */
+  public long getEstimatedCueListSizeBytes() {
+    return estimatedCueListSizeBytes;
+  }
+
   /* @VisibleForTesting */
   /* package */ TtmlNode getRoot() {
     return root;
@@ -68,7 +101,8 @@ import java.util.Map;
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    return root.getCues(timeUs, globalStyles, regionMap, metadata);
+    int index = Util.binarySearchFloor(cueChangeTimesUs, timeUs, true, false);
+    return cueLists[index + 1];
   }
 
   /* @VisibleForTesting */
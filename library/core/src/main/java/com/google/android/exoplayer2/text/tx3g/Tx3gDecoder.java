@@ -115,6 +115,11 @@ public final class Tx3gDecoder extends SimpleSubtitleDecoder {
     }
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
   @Override
   protected Subtitle decode(byte[] bytes, int length, boolean reset)
       throws SubtitleDecoderException {
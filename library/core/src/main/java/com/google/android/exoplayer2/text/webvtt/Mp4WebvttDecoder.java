@@ -44,6 +44,11 @@ public final class Mp4WebvttDecoder extends SimpleSubtitleDecoder {
     builder = new WebvttCue.Builder();
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
   @Override
   protected Mp4WebvttSubtitle decode(byte[] bytes, int length, boolean reset)
       throws SubtitleDecoderException {
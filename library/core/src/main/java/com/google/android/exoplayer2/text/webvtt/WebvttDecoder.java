@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.text.webvtt;
 
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
@@ -26,6 +27,11 @@ import java.util.List;
 /**
  * A {@link SimpleSubtitleDecoder} for WebVTT.
  * <p>
+ * Samples of at least {@link #INCREMENTAL_DECODING_MIN_SIZE} bytes, such as sideloaded files, are
+ * decoded incrementally. They're split into chunks of at least {@link #MIN_CHUNK_CUE_COUNT} cues,
+ * at points where no cue is being displayed. WebVTT requires cues to be ordered by start time, so
+ * each chunk can be output as soon as it's decoded.
+ * <p>
  * @see <a href="http://dev.w3.org/html5/webvtt">WebVTT specification</a>
  */
 public final class WebvttDecoder extends SimpleSubtitleDecoder {
@@ -39,12 +45,19 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
   private static final String COMMENT_START = "NOTE";
   private static final String STYLE_START = "STYLE";
 
+  /** The minimum size of a sample that's decoded incrementally, in bytes. */
+  private static final int INCREMENTAL_DECODING_MIN_SIZE = 64 * 1024;
+  /** The minimum number of cues in each chunk of a sample that's decoded incrementally. */
+  private static final int MIN_CHUNK_CUE_COUNT = 64;
+
   private final WebvttCueParser cueParser;
   private final ParsableByteArray parsableWebvttData;
   private final WebvttCue.Builder webvttCueBuilder;
   private final CssParser cssParser;
   private final List<WebvttCssStyle> definedStyles;
 
+  private boolean parsedCue;
+
   public WebvttDecoder() {
     super("WebvttDecoder");
     cueParser = new WebvttCueParser();
@@ -54,13 +67,39 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
     definedStyles = new ArrayList<>();
   }
 
+  @Override
+  protected boolean canCacheSubtitles() {
+    return true;
+  }
+
   @Override
   protected WebvttSubtitle decode(byte[] bytes, int length, boolean reset)
       throws SubtitleDecoderException {
+    startDecoding(bytes, length);
+    ArrayList<WebvttCue> subtitles = new ArrayList<>();
+    WebvttCue cue;
+    while ((cue = readNextCue()) != null) {
+      subtitles.add(cue);
+    }
+    return new WebvttSubtitle(subtitles);
+  }
+
+  @Override
+  protected @Nullable IncrementalSubtitleParser createIncrementalParser(
+      byte[] bytes, int length, boolean reset) throws SubtitleDecoderException {
+    if (length < INCREMENTAL_DECODING_MIN_SIZE) {
+      return null;
+    }
+    startDecoding(bytes, length);
+    return new IncrementalWebvttParser();
+  }
+
+  private void startDecoding(byte[] bytes, int length) throws SubtitleDecoderException {
     parsableWebvttData.reset(bytes, length);
     // Initialization for consistent starting state.
     webvttCueBuilder.reset();
     definedStyles.clear();
+    parsedCue = false;
 
     // Validate the first line of the header, and skip the remainder.
     try {
@@ -69,14 +108,16 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
       throw new SubtitleDecoderException(e);
     }
     while (!TextUtils.isEmpty(parsableWebvttData.readLine())) {}
+  }
 
+  /** Returns the next cue, or null if the end of the data has been reached. */
+  private @Nullable WebvttCue readNextCue() throws SubtitleDecoderException {
     int event;
-    ArrayList<WebvttCue> subtitles = new ArrayList<>();
     while ((event = getNextEvent(parsableWebvttData)) != EVENT_END_OF_FILE) {
       if (event == EVENT_COMMENT) {
         skipComment(parsableWebvttData);
       } else if (event == EVENT_STYLE_BLOCK) {
-        if (!subtitles.isEmpty()) {
+        if (parsedCue) {
           throw new SubtitleDecoderException("A style block was found after the first cue.");
         }
         parsableWebvttData.readLine(); // Consume the "STYLE" header.
@@ -86,12 +127,14 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
         }
       } else if (event == EVENT_CUE) {
         if (cueParser.parseCue(parsableWebvttData, webvttCueBuilder, definedStyles)) {
-          subtitles.add(webvttCueBuilder.build());
+          WebvttCue cue = webvttCueBuilder.build();
           webvttCueBuilder.reset();
+          parsedCue = true;
+          return cue;
         }
       }
     }
-    return new WebvttSubtitle(subtitles);
+    return null;
   }
 
   /**
@@ -124,4 +167,38 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
     while (!TextUtils.isEmpty(parsableWebvttData.readLine())) {}
   }
 
+  private final class IncrementalWebvttParser implements IncrementalSubtitleParser {
+
+    private @Nullable WebvttCue nextChunkFirstCue;
+    private boolean endOfData;
+
+    @Override
+    public WebvttSubtitle parseNextChunk() throws SubtitleDecoderException {
+      ArrayList<WebvttCue> cues = new ArrayList<>();
+      long endTimeUs = Long.MIN_VALUE;
+      if (nextChunkFirstCue != null) {
+        cues.add(nextChunkFirstCue);
+        endTimeUs = nextChunkFirstCue.endTime;
+        nextChunkFirstCue = null;
+      }
+      WebvttCue cue;
+      while ((cue = readNextCue()) != null) {
+        if (cues.size() >= MIN_CHUNK_CUE_COUNT && cue.startTime >= endTimeUs) {
+          // All cues in the chunk have ended when this cue starts, so it can start the next chunk.
+          nextChunkFirstCue = cue;
+          return new WebvttSubtitle(cues);
+        }
+        cues.add(cue);
+        endTimeUs = Math.max(endTimeUs, cue.endTime);
+      }
+      endOfData = true;
+      return new WebvttSubtitle(cues);
+    }
+
+    @Override
+    public boolean hasNextChunk() {
+      return !endOfData;
+    }
+  }
+
 }
@@ -18,12 +18,12 @@ package com.google.android.exoplayer2.text.webvtt;
 import android.text.SpannableStringBuilder;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.CueTimeline;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -32,25 +32,27 @@ import java.util.List;
 /* package */ final class WebvttSubtitle implements Subtitle {
 
   private final List<WebvttCue> cues;
-  private final int numCues;
-  private final long[] cueTimesUs;
   private final long[] sortedCueTimesUs;
+  private final CueTimeline cueTimeline;
 
   /**
    * @param cues A list of the cues in this subtitle.
    */
   public WebvttSubtitle(List<WebvttCue> cues) {
     this.cues = cues;
-    numCues = cues.size();
-    cueTimesUs = new long[2 * numCues];
+    int numCues = cues.size();
+    long[] startTimesUs = new long[numCues];
+    long[] endTimesUs = new long[numCues];
+    sortedCueTimesUs = new long[2 * numCues];
     for (int cueIndex = 0; cueIndex < numCues; cueIndex++) {
       WebvttCue cue = cues.get(cueIndex);
-      int arrayIndex = cueIndex * 2;
-      cueTimesUs[arrayIndex] = cue.startTime;
-      cueTimesUs[arrayIndex + 1] = cue.endTime;
+      startTimesUs[cueIndex] = cue.startTime;
+      endTimesUs[cueIndex] = cue.endTime;
+      sortedCueTimesUs[cueIndex * 2] = cue.startTime;
+      sortedCueTimesUs[cueIndex * 2 + 1] = cue.endTime;
     }
-    sortedCueTimesUs = Arrays.copyOf(cueTimesUs, cueTimesUs.length);
     Arrays.sort(sortedCueTimesUs);
+    cueTimeline = new CueTimeline(startTimesUs, endTimesUs, this::buildCueList);
   }
 
   @Override
@@ -73,31 +75,30 @@ import java.util.List;
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    ArrayList<Cue> list = null;
+    return cueTimeline.getCues(timeUs);
+  }
+
+  private List<Cue> buildCueList(int[] cueIndices) {
+    ArrayList<Cue> list = new ArrayList<>();
     WebvttCue firstNormalCue = null;
     SpannableStringBuilder normalCueTextBuilder = null;
 
-    for (int i = 0; i < numCues; i++) {
-      if ((cueTimesUs[i * 2] <= timeUs) && (timeUs < cueTimesUs[i * 2 + 1])) {
-        if (list == null) {
-          list = new ArrayList<>();
-        }
-        WebvttCue cue = cues.get(i);
-        if (cue.isNormalCue()) {
-          // we want to merge all of the normal cues into a single cue to ensure they are drawn
-          // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
-          // normal cues, otherwise we can just append the single normal cue
-          if (firstNormalCue == null) {
-            firstNormalCue = cue;
-          } else if (normalCueTextBuilder == null) {
-            normalCueTextBuilder = new SpannableStringBuilder();
-            normalCueTextBuilder.append(firstNormalCue.text).append("\n").append(cue.text);
-          } else {
-            normalCueTextBuilder.append("\n").append(cue.text);
-          }
+    for (int cueIndex : cueIndices) {
+      WebvttCue cue = cues.get(cueIndex);
+      if (cue.isNormalCue()) {
+        // we want to merge all of the normal cues into a single cue to ensure they are drawn
+        // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
+        // normal cues, otherwise we can just append the single normal cue
+        if (firstNormalCue == null) {
+          firstNormalCue = cue;
+        } else if (normalCueTextBuilder == null) {
+          normalCueTextBuilder = new SpannableStringBuilder();
+          normalCueTextBuilder.append(firstNormalCue.text).append("\n").append(cue.text);
         } else {
-          list.add(cue);
+          normalCueTextBuilder.append("\n").append(cue.text);
         }
+      } else {
+        list.add(cue);
       }
     }
     if (normalCueTextBuilder != null) {
@@ -107,12 +108,7 @@ import java.util.List;
       // there was only a single normal cue, so just add it to the list
       list.add(firstNormalCue);
     }
-
-    if (list != null) {
-      return list;
-    } else {
-      return Collections.emptyList();
-    }
+    return list;
   }
 
 }
@@ -283,6 +283,14 @@ public class EventLogger implements AnalyticsListener {
     logd(eventTime, "decoderInitialized", getTrackTypeString(trackType) + ", " + decoderName);
   }
 
+  @Override
+  public void onDecoderInfosQueried(EventTime eventTime, int trackType, long queryDurationMs) {
+    logd(
+        eventTime,
+        "decoderInfosQueried",
+        getTrackTypeString(trackType) + ", " + queryDurationMs + "ms");
+  }
+
   @Override
   public void onDecoderInputFormatChanged(EventTime eventTime, int trackType, Format format) {
     logd(
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+/**
+ * Predicts whether video frames that haven't been decoded yet will be released late, so that a
+ * renderer can skip them before they reach the decoder.
+ *
+ * <p>The prediction is based on how late each frame is when it's released, which includes the time
+ * it spent being decoded. A moving model of that lateness with a trend, fitted by double
+ * exponential smoothing, is extrapolated over the frames that are still being decoded. Lateness is
+ * only predicted to be sustained if frames are already being released late on average and the
+ * trend isn't improving.
+ */
+public final class FrameDropPredictor {
+
+  /** The weight given to the lateness of each newly released frame. */
+  private static final double LEVEL_SMOOTHING_FACTOR = 0.2;
+  /** The weight given to the change in lateness at each newly released frame. */
+  private static final double TREND_SMOOTHING_FACTOR = 0.1;
+  /** The number of frames that must be released before a prediction is made. */
+  private static final int MIN_RELEASED_FRAME_COUNT = 8;
+  /** The average lateness above which frames are considered to be released late. */
+  private static final long LATE_THRESHOLD_US = 30000;
+  /** The predicted lateness above which frames should be skipped. */
+  private static final long SKIP_THRESHOLD_US = 100000;
+
+  private int releasedFrameCount;
+  private double levelUs;
+  private double trendUs;
+  private boolean updatedSincePrediction;
+
+  /** Creates a new predictor. */
+  public FrameDropPredictor() {
+    reset();
+  }
+
+  /**
+   * Updates the model with a frame that was rendered or dropped.
+   *
+   * @param earlyUs The time until the frame should have been presented when it was released, in
+   *     microseconds. A negative value indicates that the frame was late.
+   */
+  public void onFrameReleased(long earlyUs) {
+    double latenessUs = -earlyUs;
+    if (releasedFrameCount == 0) {
+      levelUs = latenessUs;
+      trendUs = 0;
+    } else {
+      double previousLevelUs = levelUs;
+      levelUs =
+          LEVEL_SMOOTHING_FACTOR * latenessUs
+              + (1 - LEVEL_SMOOTHING_FACTOR) * (previousLevelUs + trendUs);
+      trendUs =
+          TREND_SMOOTHING_FACTOR * (levelUs - previousLevelUs)
+              + (1 - TREND_SMOOTHING_FACTOR) * trendUs;
+    }
+    releasedFrameCount++;
+    updatedSincePrediction = true;
+  }
+
+  /**
+   * Returns the predicted lateness of the next frame input to the decoder, in microseconds.
+   *
+   * @param pendingFrameCount The number of frames that are being decoded, which will be released
+   *     before the next input frame.
+   */
+  public long getPredictedLatenessUs(int pendingFrameCount) {
+    return (long) (levelUs + trendUs * (pendingFrameCount + 1));
+  }
+
+  /**
+   * Returns whether frames that haven't been input to the decoder yet are predicted to be released
+   * late for a sustained period, so that they should be skipped. Returns false if no frames have
+   * been released since this method last returned true.
+   *
+   * @param pendingFrameCount The number of frames that are being decoded, which will be released
+   *     before the next input frame.
+   */
+  public boolean shouldSkipFrames(int pendingFrameCount) {
+    if (!updatedSincePrediction
+        || releasedFrameCount < MIN_RELEASED_FRAME_COUNT
+        || levelUs < LATE_THRESHOLD_US
+        || trendUs < 0
+        || getPredictedLatenessUs(pendingFrameCount) < SKIP_THRESHOLD_US) {
+      return false;
+    }
+    updatedSincePrediction = false;
+    return true;
+  }
+
+  /** Discards the model, for example after frames have been skipped or playback has been reset. */
+  public void reset() {
+    releasedFrameCount = 0;
+    levelUs = 0;
+    trendUs = 0;
+    updatedSincePrediction = false;
+  }
+}
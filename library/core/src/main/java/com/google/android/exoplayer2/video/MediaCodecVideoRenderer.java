@@ -34,11 +34,13 @@ import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlayerMessage.Target;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
 import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecPool;
 import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
 import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
 import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
@@ -97,6 +99,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
 
   private final Context context;
   private final VideoFrameReleaseTimeHelper frameReleaseTimeHelper;
+  private final FrameDropPredictor frameDropPredictor;
+  private final TunneledFrameTracker tunneledFrameTracker;
   private final EventDispatcher eventDispatcher;
   private final long allowedJoiningTimeMs;
   private final int maxDroppedFramesToNotify;
@@ -119,6 +123,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private int consecutiveDroppedFrameCount;
   private int buffersInCodecCount;
   private long lastRenderTimeUs;
+  private boolean predictiveFrameDroppingEnabled;
+  private long predictionResumeTimeUs;
 
   private int pendingRotationDegrees;
   private float pendingPixelWidthHeightRatio;
@@ -235,6 +241,9 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
     // AMZN_CHANGE_END
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
+    frameDropPredictor = new FrameDropPredictor();
+    tunneledFrameTracker = new TunneledFrameTracker();
+    predictionResumeTimeUs = C.TIME_UNSET;
     deviceNeedsAutoFrcWorkaround = deviceNeedsAutoFrcWorkaround();
     pendingOutputStreamOffsetsUs = new long[MAX_PENDING_OUTPUT_STREAM_OFFSET_COUNT];
     pendingOutputStreamSwitchTimesUs = new long[MAX_PENDING_OUTPUT_STREAM_OFFSET_COUNT];
@@ -249,6 +258,21 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     clearReportedVideoSize();
   }
 
+  /**
+   * Sets whether frames are dropped predictively. If enabled, the renderer models how late frames
+   * are when they're released using a {@link FrameDropPredictor}. When frames that haven't been
+   * decoded yet are predicted to be late for a sustained period, samples are skipped in the source
+   * up to a keyframe, so that they're never decoded. Each time this happens {@link
+   * DecoderCounters#skippedInputToKeyframeCount} is incremented. Must not be called while the
+   * renderer is enabled.
+   *
+   * @param enabled Whether frames should be dropped predictively.
+   */
+  public final void setPredictiveFrameDroppingEnabled(boolean enabled) {
+    Assertions.checkState(getState() == STATE_DISABLED);
+    predictiveFrameDroppingEnabled = enabled;
+  }
+
   @Override
   protected int supportsFormat(MediaCodecSelector mediaCodecSelector,
       DrmSessionManager<FrameworkMediaCrypto> drmSessionManager, Format format)
@@ -322,6 +346,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     initialPositionUs = C.TIME_UNSET;
     consecutiveDroppedFrameCount = 0;
     lastInputTimeUs = C.TIME_UNSET;
+    resetFrameDropPredictor();
     if (pendingOutputStreamOffsetCount != 0) {
       outputStreamOffsetUs = pendingOutputStreamOffsetsUs[pendingOutputStreamOffsetCount - 1];
       pendingOutputStreamOffsetCount = 0;
@@ -364,6 +389,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   @Override
   protected void onStopped() {
     joiningDeadlineMs = C.TIME_UNSET;
+    resetFrameDropPredictor();
     maybeNotifyDroppedFrames();
     super.onStopped();
   }
@@ -508,16 +534,67 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   @Override
   protected @KeepCodecResult int canKeepCodec(
       MediaCodec codec, MediaCodecInfo codecInfo, Format oldFormat, Format newFormat) {
-    if (codecInfo.isSeamlessAdaptationSupported(
-            oldFormat, newFormat, /* isNewFormatComplete= */ true)
-        && newFormat.width <= codecMaxValues.width
-        && newFormat.height <= codecMaxValues.height
-        && getMaxInputSize(codecInfo, newFormat) <= codecMaxValues.inputSize) {
-      return oldFormat.initializationDataEquals(newFormat)
-          ? KEEP_CODEC_RESULT_YES_WITHOUT_RECONFIGURATION
-          : KEEP_CODEC_RESULT_YES_WITH_RECONFIGURATION;
+    return canKeepCodec(codecInfo, codecMaxValues, oldFormat, newFormat);
+  }
+
+  @Override
+  protected @Nullable MediaCodecPool.PooledCodec createPooledCodec(
+      MediaCodec codec, MediaCodecInfo codecInfo, Format format) {
+    if (Util.SDK_INT < 23
+        || tunneling
+        || codecNeedsSetOutputSurfaceWorkaround
+        || surface == null
+        || (codecInfo.secure && !DummySurface.isSecureSupported(context))) {
+      // The codec can only be moved off its surface using setOutputSurface.
+      return null;
     }
-    return KEEP_CODEC_RESULT_NO;
+    // Detach the codec from the renderer's surface, which may otherwise not be connected to another
+    // codec while this one is pooled.
+    DummySurface pooledCodecSurface = null;
+    try {
+      pooledCodecSurface = DummySurface.newInstanceV17(context, codecInfo.secure);
+      setOutputSurfaceV23(codec, pooledCodecSurface);
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to detach decoder from its surface for pooling: " + codecInfo, e);
+      if (pooledCodecSurface != null) {
+        pooledCodecSurface.release();
+      }
+      return null;
+    }
+    return new MediaCodecPool.PooledCodec(
+        codec,
+        codecInfo,
+        format,
+        codecMaxValues.width,
+        codecMaxValues.height,
+        codecMaxValues.inputSize,
+        pooledCodecSurface);
+  }
+
+  @Override
+  protected @KeepCodecResult int canKeepPooledCodec(
+      MediaCodecPool.PooledCodec pooledCodec, Format format) {
+    if (Util.SDK_INT < 23 || tunneling) {
+      return KEEP_CODEC_RESULT_NO;
+    }
+    CodecMaxValues pooledCodecMaxValues =
+        new CodecMaxValues(pooledCodec.maxWidth, pooledCodec.maxHeight, pooledCodec.maxInputSize);
+    return canKeepCodec(pooledCodec.codecInfo, pooledCodecMaxValues, pooledCodec.format, format);
+  }
+
+  @Override
+  protected void onPooledCodecAcquired(MediaCodecPool.PooledCodec pooledCodec) {
+    codecMaxValues =
+        new CodecMaxValues(pooledCodec.maxWidth, pooledCodec.maxHeight, pooledCodec.maxInputSize);
+    if (surface == null) {
+      Assertions.checkState(shouldUseDummySurface(pooledCodec.codecInfo));
+      if (dummySurface == null) {
+        dummySurface = DummySurface.newInstanceV17(context, pooledCodec.codecInfo.secure);
+      }
+      surface = dummySurface;
+    }
+    setOutputSurfaceV23(pooledCodec.codec, surface);
+    pooledCodec.codec.setVideoScalingMode(scalingMode);
   }
 
   @CallSuper
@@ -527,6 +604,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       super.releaseCodec();
     } finally {
       buffersInCodecCount = 0;
+      tunneledFrameTracker.reset();
+      resetFrameDropPredictor();
       if (dummySurface != null) {
         if (surface == dummySurface) {
           surface = null;
@@ -542,6 +621,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   protected void flushCodec() throws ExoPlaybackException {
     super.flushCodec();
     buffersInCodecCount = 0;
+    tunneledFrameTracker.reset();
+    resetFrameDropPredictor();
   }
 
   @Override
@@ -559,6 +640,11 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return maxFrameRate == -1 ? CODEC_OPERATING_RATE_UNSET : (maxFrameRate * operatingRate);
   }
 
+  @Override
+  protected void onDecoderInfosQueried(long queryDurationMs) {
+    eventDispatcher.decoderInfosQueried(queryDurationMs);
+  }
+
   @Override
   protected void onCodecInitialized(String name, long initializedTimestampMs,
       long initializationDurationMs) {
@@ -575,6 +661,32 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     pendingRotationDegrees = newFormat.rotationDegrees;
   }
 
+  @Override
+  protected void maybeSkipInputBuffers(long positionUs) {
+    if (!predictiveFrameDroppingEnabled
+        || tunneling
+        || surface == dummySurface
+        || getState() != STATE_STARTED
+        || lastInputTimeUs == C.TIME_UNSET
+        || !frameDropPredictor.shouldSkipFrames(buffersInCodecCount)) {
+      return;
+    }
+    // The next sample would be released about as late as predicted, so skip to the last keyframe
+    // that can be released on time, if it's after the samples that have already been read.
+    long skipToPositionUs =
+        lastInputTimeUs + frameDropPredictor.getPredictedLatenessUs(buffersInCodecCount);
+    int skippedSourceBufferCount = skipSource(skipToPositionUs);
+    if (skippedSourceBufferCount == 0) {
+      return;
+    }
+    decoderCounters.skippedInputToKeyframeCount++;
+    updateDroppedBufferCounters(skippedSourceBufferCount);
+    // Frames that are already in the codec will still be late, so they shouldn't cause more samples
+    // to be skipped.
+    frameDropPredictor.reset();
+    predictionResumeTimeUs = lastInputTimeUs;
+  }
+
   /**
    * Called immediately before an input buffer is queued into the codec.
    *
@@ -585,10 +697,17 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   protected void onQueueInputBuffer(DecoderInputBuffer buffer) {
     buffersInCodecCount++;
     lastInputTimeUs = Math.max(buffer.timeUs, lastInputTimeUs);
-    if (Util.SDK_INT < 23 && tunneling) {
+    if (tunneling && buffer.isDecodeOnly()) {
+      // The codec doesn't render decode-only buffers, so count them as skipped rather than waiting
+      // for them to be rendered or counting them as dropped when a later frame is rendered.
+      decoderCounters.skippedOutputBufferCount++;
+      onProcessedOutputBuffer(buffer.timeUs);
+    } else if (Util.SDK_INT < 23 && tunneling) {
       // In tunneled mode before API 23 we don't have a way to know when the buffer is output, so
       // treat it as if it were output immediately.
       onProcessedTunneledBuffer(buffer.timeUs);
+    } else if (tunneling) {
+      tunneledFrameTracker.onFrameQueued(buffer.timeUs);
     }
   }
 
@@ -688,6 +807,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         && maybeDropBuffersToKeyframe(codec, bufferIndex, presentationTimeUs, positionUs)) {
       return false;
     } else if (shouldDropOutputBuffer(earlyUs, elapsedRealtimeUs)) {
+      updateFrameDropPredictor(bufferPresentationTimeUs, earlyUs);
       dropOutputBuffer(codec, bufferIndex, presentationTimeUs);
       return true;
     }
@@ -695,6 +815,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     if (Util.SDK_INT >= 21) {
       // Let the underlying framework time the release.
       if (earlyUs < 50000) {
+        updateFrameDropPredictor(bufferPresentationTimeUs, earlyUs);
         notifyFrameMetadataListener(presentationTimeUs, adjustedReleaseTimeNs, format);
         renderOutputBufferV21(codec, bufferIndex, presentationTimeUs, adjustedReleaseTimeNs);
         return true;
@@ -702,6 +823,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     } else {
       // We need to time the release ourselves.
       if (earlyUs < 30000) {
+        updateFrameDropPredictor(bufferPresentationTimeUs, earlyUs);
         if (earlyUs > 11000) {
           // We're a little too early to render the frame. Sleep until the frame can be rendered.
           // Note: The 11ms threshold was chosen fairly arbitrarily.
@@ -723,6 +845,17 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return false;
   }
 
+  private void updateFrameDropPredictor(long bufferPresentationTimeUs, long earlyUs) {
+    if (predictiveFrameDroppingEnabled && bufferPresentationTimeUs > predictionResumeTimeUs) {
+      frameDropPredictor.onFrameReleased(earlyUs);
+    }
+  }
+
+  private void resetFrameDropPredictor() {
+    frameDropPredictor.reset();
+    predictionResumeTimeUs = C.TIME_UNSET;
+  }
+
   private void processOutputFormat(MediaCodec codec, int width, int height) {
     currentWidth = width;
     currentHeight = height;
@@ -769,6 +902,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       processOutputFormat(getCodec(), format.width, format.height);
     }
     maybeNotifyVideoSizeChanged();
+    decoderCounters.renderedOutputBufferCount++;
+    consecutiveDroppedFrameCount = 0;
     maybeNotifyRenderedFirstFrame();
     onProcessedOutputBuffer(presentationTimeUs);
   }
@@ -1043,6 +1178,20 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return earlyUs < -30000;
   }
 
+  private static @KeepCodecResult int canKeepCodec(
+      MediaCodecInfo codecInfo, CodecMaxValues codecMaxValues, Format oldFormat, Format newFormat) {
+    if (codecInfo.isSeamlessAdaptationSupported(
+            oldFormat, newFormat, /* isNewFormatComplete= */ true)
+        && newFormat.width <= codecMaxValues.width
+        && newFormat.height <= codecMaxValues.height
+        && getMaxInputSize(codecInfo, newFormat) <= codecMaxValues.inputSize) {
+      return oldFormat.initializationDataEquals(newFormat)
+          ? KEEP_CODEC_RESULT_YES_WITHOUT_RECONFIGURATION
+          : KEEP_CODEC_RESULT_YES_WITH_RECONFIGURATION;
+    }
+    return KEEP_CODEC_RESULT_NO;
+  }
+
   private static boolean isBufferVeryLate(long earlyUs) {
     // Class a buffer as very late if it should have been presented more than 500 ms ago.
     return earlyUs < -500000;
@@ -1514,7 +1663,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private final class OnFrameRenderedListenerV23 implements MediaCodec.OnFrameRenderedListener {
 
     private OnFrameRenderedListenerV23(MediaCodec codec) {
-      codec.setOnFrameRenderedListener(this, new Handler());
+      codec.setOnFrameRenderedListener(this, new Handler(getPlaybackLooper()));
     }
 
     @Override
@@ -1523,6 +1672,12 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         // Stale event.
         return;
       }
+      int droppedFrameCount = tunneledFrameTracker.onFrameRendered(presentationTimeUs);
+      if (droppedFrameCount > 0) {
+        // The codec dropped earlier frames without reporting them.
+        buffersInCodecCount -= droppedFrameCount;
+        updateDroppedBufferCounters(droppedFrameCount);
+      }
       onProcessedTunneledBuffer(presentationTimeUs);
     }
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+/**
+ * Tracks the presentation times of frames queued to a codec in tunneled mode, to count the frames
+ * the codec drops. In tunneled mode the codec renders frames in presentation order and only reports
+ * the frames it renders, so a frame that's still pending when a later frame is rendered was
+ * dropped.
+ */
+/* package */ final class TunneledFrameTracker {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MAX_CAPACITY = 256;
+
+  /** Presentation times of pending frames, in ascending order. */
+  private long[] pendingFrameTimesUs;
+  private int pendingFrameCount;
+
+  public TunneledFrameTracker() {
+    pendingFrameTimesUs = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Called when a frame is queued to the codec.
+   *
+   * @param presentationTimeUs The presentation time of the frame, in microseconds.
+   */
+  public void onFrameQueued(long presentationTimeUs) {
+    if (pendingFrameCount == pendingFrameTimesUs.length) {
+      if (pendingFrameCount == MAX_CAPACITY) {
+        // Something is wrong if this many frames are pending, so forget the earliest one rather
+        // than growing without bound.
+        removeFirst(1);
+      } else {
+        long[] newPendingFrameTimesUs = new long[pendingFrameCount * 2];
+        System.arraycopy(pendingFrameTimesUs, 0, newPendingFrameTimesUs, 0, pendingFrameCount);
+        pendingFrameTimesUs = newPendingFrameTimesUs;
+      }
+    }
+    // Frames are queued in decode order, which is usually close to presentation order.
+    int index = pendingFrameCount;
+    while (index > 0 && pendingFrameTimesUs[index - 1] > presentationTimeUs) {
+      pendingFrameTimesUs[index] = pendingFrameTimesUs[index - 1];
+      index--;
+    }
+    pendingFrameTimesUs[index] = presentationTimeUs;
+    pendingFrameCount++;
+  }
+
+  /**
+   * Called when the codec renders a frame. The rendered frame and any pending frames that should
+   * have been presented before it are no longer pending.
+   *
+   * @param presentationTimeUs The presentation time of the rendered frame, in microseconds.
+   * @return The number of pending frames that should have been presented before the rendered
+   *     frame, which were dropped.
+   */
+  public int onFrameRendered(long presentationTimeUs) {
+    int droppedFrameCount = 0;
+    while (droppedFrameCount < pendingFrameCount
+        && pendingFrameTimesUs[droppedFrameCount] < presentationTimeUs) {
+      droppedFrameCount++;
+    }
+    boolean renderedFramePending =
+        droppedFrameCount < pendingFrameCount
+            && pendingFrameTimesUs[droppedFrameCount] == presentationTimeUs;
+    removeFirst(renderedFramePending ? droppedFrameCount + 1 : droppedFrameCount);
+    return droppedFrameCount;
+  }
+
+  /** Returns the number of frames that have been queued but not rendered or dropped. */
+  public int getPendingFrameCount() {
+    return pendingFrameCount;
+  }
+
+  /** Forgets all pending frames, for example when the codec is flushed. */
+  public void reset() {
+    pendingFrameCount = 0;
+  }
+
+  private void removeFirst(int count) {
+    pendingFrameCount -= count;
+    System.arraycopy(pendingFrameTimesUs, count, pendingFrameTimesUs, 0, pendingFrameCount);
+  }
+}
@@ -49,6 +49,15 @@ public interface VideoRendererEventListener {
   void onVideoDecoderInitialized(String decoderName, long initializedTimestampMs,
       long initializationDurationMs);
 
+  /**
+   * Called when a decoder has been initialized, immediately before {@link
+   * #onVideoDecoderInitialized(String, long, long)}, to report the time spent querying the
+   * available decoders since the previous decoder was initialized.
+   *
+   * @param queryDurationMs The time spent querying decoders, in milliseconds.
+   */
+  default void onVideoDecoderInfosQueried(long queryDurationMs) {}
+
   /**
    * Called when the format of the media being consumed by the renderer changes.
    *
@@ -142,6 +151,13 @@ public interface VideoRendererEventListener {
       }
     }
 
+    /** Invokes {@link VideoRendererEventListener#onVideoDecoderInfosQueried(long)}. */
+    public void decoderInfosQueried(long queryDurationMs) {
+      if (listener != null) {
+        handler.post(() -> listener.onVideoDecoderInfosQueried(queryDurationMs));
+      }
+    }
+
     /** Invokes {@link VideoRendererEventListener#onVideoInputFormatChanged(Format)}. */
     public void inputFormatChanged(Format format) {
       if (listener != null) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link RenderThreadPool}. */
+@RunWith(RobolectricTestRunner.class)
+public final class RenderThreadPoolTest {
+
+  private RecordingRenderer[] renderers;
+  private RenderThreadPool renderThreadPool;
+
+  @Before
+  public void setUp() {
+    renderers =
+        new RecordingRenderer[] {
+          new RecordingRenderer(C.TRACK_TYPE_VIDEO),
+          new RecordingRenderer(C.TRACK_TYPE_AUDIO),
+          new RecordingRenderer(C.TRACK_TYPE_TEXT)
+        };
+    renderThreadPool = new RenderThreadPool(renderers);
+  }
+
+  @After
+  public void tearDown() {
+    renderThreadPool.release();
+  }
+
+  @Test
+  public void testRenderRendersEachRendererOnItsOwnThread() throws ExoPlaybackException {
+    renderThreadPool.render(renderers, /* positionUs= */ 1000, /* elapsedRealtimeUs= */ 2000);
+
+    assertThat(renderers[0].renderThread).isSameAs(Thread.currentThread());
+    assertThat(renderers[1].renderThread).isNotSameAs(Thread.currentThread());
+    assertThat(renderers[2].renderThread).isNotSameAs(Thread.currentThread());
+    assertThat(renderers[1].renderThread).isNotSameAs(renderers[2].renderThread);
+    for (RecordingRenderer renderer : renderers) {
+      assertThat(renderer.renderCount).isEqualTo(1);
+      assertThat(renderer.positionUs).isEqualTo(1000);
+      assertThat(renderer.elapsedRealtimeUs).isEqualTo(2000);
+    }
+  }
+
+  @Test
+  public void testRenderReusesThreads() throws ExoPlaybackException {
+    renderThreadPool.render(renderers, /* positionUs= */ 0, /* elapsedRealtimeUs= */ 0);
+    Thread audioRenderThread = renderers[1].renderThread;
+    renderThreadPool.render(renderers, /* positionUs= */ 10, /* elapsedRealtimeUs= */ 10);
+
+    assertThat(renderers[1].renderThread).isSameAs(audioRenderThread);
+    assertThat(renderers[1].renderCount).isEqualTo(2);
+  }
+
+  @Test
+  public void testRenderWaitsForAllRenderers() throws ExoPlaybackException {
+    renderers[2].renderDurationMs = 100;
+
+    renderThreadPool.render(renderers, /* positionUs= */ 0, /* elapsedRealtimeUs= */ 0);
+
+    assertThat(renderers[2].renderCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testRenderPropagatesExceptionFromOtherThread() {
+    ExoPlaybackException exception =
+        ExoPlaybackException.createForRenderer(new Exception(), /* rendererIndex= */ 1);
+    renderers[1].exceptionToThrow = exception;
+
+    try {
+      renderThreadPool.render(renderers, /* positionUs= */ 0, /* elapsedRealtimeUs= */ 0);
+      fail();
+    } catch (ExoPlaybackException e) {
+      assertThat(e).isSameAs(exception);
+    }
+    // The other renderers still rendered.
+    assertThat(renderers[0].renderCount).isEqualTo(1);
+    assertThat(renderers[2].renderCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testRenderWithSubsetOfRenderers() throws ExoPlaybackException {
+    Renderer[] enabledRenderers = new Renderer[] {renderers[2]};
+
+    renderThreadPool.render(enabledRenderers, /* positionUs= */ 0, /* elapsedRealtimeUs= */ 0);
+
+    assertThat(renderers[0].renderCount).isEqualTo(0);
+    assertThat(renderers[1].renderCount).isEqualTo(0);
+    assertThat(renderers[2].renderThread).isSameAs(Thread.currentThread());
+  }
+
+  private static final class RecordingRenderer extends BaseRenderer {
+
+    public volatile Thread renderThread;
+    public volatile int renderCount;
+    public volatile long positionUs;
+    public volatile long elapsedRealtimeUs;
+    public volatile ExoPlaybackException exceptionToThrow;
+    public volatile long renderDurationMs;
+
+    public RecordingRenderer(int trackType) {
+      super(trackType);
+    }
+
+    @Override
+    public int supportsFormat(Format format) {
+      return FORMAT_HANDLED;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+      renderThread = Thread.currentThread();
+      this.positionUs = positionUs;
+      this.elapsedRealtimeUs = elapsedRealtimeUs;
+      if (renderDurationMs > 0) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(renderDurationMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      renderCount++;
+      if (exceptionToThrow != null) {
+        throw exceptionToThrow;
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public boolean isEnded() {
+      return false;
+    }
+  }
+}
@@ -19,6 +19,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
 import com.google.android.exoplayer2.C;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -112,6 +114,47 @@ public final class SonicAudioProcessorTest {
     assertThat(sonicAudioProcessor.isActive()).isFalse();
   }
 
+  @Test
+  public void testOutputsFloatForFloatInput() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+    sonicAudioProcessor.configure(44100, 2, C.ENCODING_PCM_FLOAT);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+    assertThat(sonicAudioProcessor.getOutputEncoding()).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void testReconfigureWithDifferentEncodingRequiresFlush() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+    assertThat(sonicAudioProcessor.configure(44100, 2, C.ENCODING_PCM_16BIT)).isTrue();
+    assertThat(sonicAudioProcessor.configure(44100, 2, C.ENCODING_PCM_16BIT)).isFalse();
+    assertThat(sonicAudioProcessor.configure(44100, 2, C.ENCODING_PCM_FLOAT)).isTrue();
+    assertThat(sonicAudioProcessor.getOutputEncoding()).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void testFloatOutputMatches16BitOutput() throws Exception {
+    int sampleCount = 2 * 44100;
+    ByteBuffer shortInput = ByteBuffer.allocate(sampleCount * 2).order(ByteOrder.nativeOrder());
+    ByteBuffer floatInput = ByteBuffer.allocate(sampleCount * 4).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < sampleCount; i++) {
+      short sample = (short) (Math.sin(i * 0.05) * 16384);
+      shortInput.putShort(sample);
+      floatInput.putFloat(sample / 32768f);
+    }
+    shortInput.flip();
+    floatInput.flip();
+
+    float[] shortOutput = process(shortInput, C.ENCODING_PCM_16BIT);
+    float[] floatOutput = process(floatInput, C.ENCODING_PCM_FLOAT);
+
+    assertThat(floatOutput.length).isEqualTo(shortOutput.length);
+    assertThat(floatOutput.length).isGreaterThan(0);
+    for (int i = 0; i < floatOutput.length; i++) {
+      // 16-bit output is truncated, so may differ from float output by one quantization step.
+      assertThat(floatOutput[i]).isWithin(1f / 32768).of(shortOutput[i]);
+    }
+  }
+
   @Test
   public void testDoesNotSupportNon16BitInput() throws Exception {
     try {
@@ -134,4 +177,28 @@ public final class SonicAudioProcessorTest {
     }
   }
 
+  /**
+   * Processes {@code input} with a new processor at speed 1.5, returning the output as normalized
+   * samples.
+   */
+  private static float[] process(ByteBuffer input, @C.PcmEncoding int encoding) throws Exception {
+    SonicAudioProcessor processor = new SonicAudioProcessor();
+    processor.setSpeed(1.5f);
+    processor.configure(44100, 2, encoding);
+    processor.flush();
+    ByteBuffer output = ByteBuffer.allocate(2 * input.capacity()).order(ByteOrder.nativeOrder());
+    processor.queueInput(input);
+    output.put(processor.getOutput());
+    processor.queueEndOfStream();
+    processor.queueInput(AudioProcessor.EMPTY_BUFFER);
+    output.put(processor.getOutput());
+    output.flip();
+    boolean isFloat = encoding == C.ENCODING_PCM_FLOAT;
+    float[] samples = new float[output.remaining() / (isFloat ? 4 : 2)];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = isFloat ? output.getFloat() : output.getShort() / 32768f;
+    }
+    return samples;
+  }
+
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * JVM benchmark comparing the CPU cost and quality of changing the speed of audio with {@link
+ * SonicAudioProcessor} and {@link WsolaAudioProcessor}, for 16-bit and float stereo and 5.1 audio.
+ *
+ * <p>Ignored, as it isn't a unit test. Remove the {@link Ignore} annotation to run it. For each
+ * configuration, the CPU time spent per second of input audio is reported. Quality is reported as
+ * the distortion of a pure tone: the energy of the output that doesn't fit a tone at the input
+ * frequency, relative to the output energy, in decibels. Lower is better.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class TimeStretchBenchmark {
+
+  private static final int SAMPLE_RATE_HZ = 48000;
+  private static final float[] SPEEDS = new float[] {1.05f, 1.25f, 1.5f};
+  private static final int INPUT_DURATION_S = 10;
+  private static final int BUFFER_FRAME_COUNT = 1024;
+  private static final double TONE_RADIANS_PER_FRAME = 2 * Math.PI * 440 / SAMPLE_RATE_HZ;
+
+  private interface TimeStretcher {
+
+    /** Returns a processor for the specified speed. */
+    AudioProcessor create(float speed);
+  }
+
+  @Ignore
+  @Test
+  public void benchmark() throws Exception {
+    TimeStretcher sonic =
+        speed -> {
+          SonicAudioProcessor processor = new SonicAudioProcessor();
+          processor.setSpeed(speed);
+          return processor;
+        };
+    TimeStretcher wsola =
+        speed -> {
+          WsolaAudioProcessor processor = new WsolaAudioProcessor();
+          processor.setSpeed(speed);
+          return processor;
+        };
+    for (int channelCount : new int[] {2, 6}) {
+      for (int encoding : new int[] {C.ENCODING_PCM_16BIT, C.ENCODING_PCM_FLOAT}) {
+        ByteBuffer input = createInput(channelCount, encoding);
+        for (float speed : SPEEDS) {
+          for (String name : new String[] {"sonic", "wsola"}) {
+            AudioProcessor processor = (name.equals("sonic") ? sonic : wsola).create(speed);
+            processor.configure(SAMPLE_RATE_HZ, channelCount, encoding);
+            double cpuTimeNs =
+                BenchmarkUtil.measureCpuTimeNs(
+                    () -> process(processor, input, /* output= */ null));
+            ByteBuffer output =
+                ByteBuffer.allocate(3 * input.capacity()).order(ByteOrder.nativeOrder());
+            process(processor, input, output);
+            BenchmarkUtil.report(
+                "%s channels=%d encoding=%s speed=%.2f: %.3f ms CPU per second of audio,"
+                    + " distortion %.1f dB",
+                name,
+                channelCount,
+                encoding == C.ENCODING_PCM_FLOAT ? "float" : "16-bit",
+                speed,
+                cpuTimeNs / 1e6 / INPUT_DURATION_S,
+                getToneDistortionDb(output, channelCount, encoding));
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns the same pure tone on each channel. */
+  private static ByteBuffer createInput(int channelCount, @C.PcmEncoding int encoding) {
+    int frameCount = SAMPLE_RATE_HZ * INPUT_DURATION_S;
+    int bytesPerSample = encoding == C.ENCODING_PCM_FLOAT ? 4 : 2;
+    ByteBuffer input =
+        ByteBuffer.allocateDirect(frameCount * channelCount * bytesPerSample)
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < frameCount; i++) {
+      float sample = (float) (0.5 * Math.sin(i * TONE_RADIANS_PER_FRAME));
+      for (int channel = 0; channel < channelCount; channel++) {
+        if (encoding == C.ENCODING_PCM_FLOAT) {
+          input.putFloat(sample);
+        } else {
+          input.putShort((short) (sample * 32767));
+        }
+      }
+    }
+    input.flip();
+    return input;
+  }
+
+  private static void process(
+      AudioProcessor processor, ByteBuffer input, @Nullable ByteBuffer output) {
+    processor.flush();
+    ByteBuffer inputBuffer = input.duplicate().order(ByteOrder.nativeOrder());
+    int bufferSize = BUFFER_FRAME_COUNT * (input.capacity() / (SAMPLE_RATE_HZ * INPUT_DURATION_S));
+    while (inputBuffer.hasRemaining()) {
+      int limit = Math.min(inputBuffer.position() + bufferSize, inputBuffer.capacity());
+      ByteBuffer chunk = inputBuffer.duplicate().order(ByteOrder.nativeOrder());
+      chunk.limit(limit);
+      processor.queueInput(chunk);
+      ByteBuffer processed = processor.getOutput();
+      if (output != null) {
+        output.put(processed);
+      }
+      inputBuffer.position(limit);
+    }
+    processor.queueEndOfStream();
+    processor.queueInput(AudioProcessor.EMPTY_BUFFER);
+    ByteBuffer processed = processor.getOutput();
+    if (output != null) {
+      output.put(processed);
+      output.flip();
+    }
+  }
+
+  /**
+   * Returns the energy of the first channel of {@code output} that doesn't fit a tone at the input
+   * frequency, relative to its total energy, in decibels.
+   */
+  private static double getToneDistortionDb(
+      ByteBuffer output, int channelCount, @C.PcmEncoding int encoding) {
+    boolean isFloat = encoding == C.ENCODING_PCM_FLOAT;
+    int bytesPerFrame = channelCount * (isFloat ? 4 : 2);
+    // Skip the end of the output, which may be faded out.
+    int frameCount = output.remaining() / bytesPerFrame - SAMPLE_RATE_HZ / 10;
+    double[] samples = new double[frameCount];
+    for (int i = 0; i < frameCount; i++) {
+      int position = i * bytesPerFrame;
+      samples[i] = isFloat ? output.getFloat(position) : output.getShort(position) / 32768.0;
+    }
+    // A pure tone satisfies x[n + 1] - 2 * cos(w) * x[n] + x[n - 1] = 0 for any phase.
+    double twoCos = 2 * Math.cos(TONE_RADIANS_PER_FRAME);
+    double residualEnergy = 0;
+    double signalEnergy = 0;
+    for (int i = 1; i < frameCount - 1; i++) {
+      double residual = samples[i + 1] - twoCos * samples[i] + samples[i - 1];
+      residualEnergy += residual * residual;
+      signalEnergy += samples[i] * samples[i];
+    }
+    return 10 * Math.log10(residualEnergy / signalEnergy);
+  }
+}
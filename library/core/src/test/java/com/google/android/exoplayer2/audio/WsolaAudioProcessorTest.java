@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.android.exoplayer2.C;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link WsolaAudioProcessor}. */
+@RunWith(RobolectricTestRunner.class)
+public final class WsolaAudioProcessorTest {
+
+  private static final int SAMPLE_RATE_HZ = 48000;
+  private static final int CHANNEL_COUNT = 2;
+  private static final double TONE_RADIANS_PER_FRAME = 2 * Math.PI * 440 / SAMPLE_RATE_HZ;
+
+  private WsolaAudioProcessor wsolaAudioProcessor;
+
+  @Before
+  public void setUp() {
+    wsolaAudioProcessor = new WsolaAudioProcessor();
+  }
+
+  @Test
+  public void testIsActiveWithSpeedChange() throws Exception {
+    wsolaAudioProcessor.setSpeed(1.05f);
+    wsolaAudioProcessor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, C.ENCODING_PCM_16BIT);
+    wsolaAudioProcessor.flush();
+    assertThat(wsolaAudioProcessor.isActive()).isTrue();
+  }
+
+  @Test
+  public void testIsNotActiveWithNoChange() throws Exception {
+    wsolaAudioProcessor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, C.ENCODING_PCM_16BIT);
+    assertThat(wsolaAudioProcessor.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSetSpeedConstrainsToSupportedRange() {
+    assertThat(wsolaAudioProcessor.setSpeed(4f)).isEqualTo(WsolaAudioProcessor.MAXIMUM_SPEED);
+    assertThat(wsolaAudioProcessor.setSpeed(0.1f)).isEqualTo(WsolaAudioProcessor.MINIMUM_SPEED);
+  }
+
+  @Test
+  public void testOutputsSameEncodingAsInput() throws Exception {
+    wsolaAudioProcessor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, C.ENCODING_PCM_FLOAT);
+    assertThat(wsolaAudioProcessor.getOutputEncoding()).isEqualTo(C.ENCODING_PCM_FLOAT);
+    wsolaAudioProcessor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, C.ENCODING_PCM_16BIT);
+    assertThat(wsolaAudioProcessor.getOutputEncoding()).isEqualTo(C.ENCODING_PCM_16BIT);
+  }
+
+  @Test
+  public void testDoesNotSupportOtherEncodings() throws Exception {
+    try {
+      wsolaAudioProcessor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, C.ENCODING_PCM_24BIT);
+      fail();
+    } catch (AudioProcessor.UnhandledFormatException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testOutputDurationIsScaledBySpeed() throws Exception {
+    int inputFrameCount = 2 * SAMPLE_RATE_HZ;
+    for (float speed : new float[] {0.8f, 1.05f, 1.25f, 2f}) {
+      float[] output = process(createToneInput(inputFrameCount), speed, C.ENCODING_PCM_FLOAT);
+      assertThat(output.length / CHANNEL_COUNT).isEqualTo(Math.round(inputFrameCount / speed));
+    }
+  }
+
+  @Test
+  public void testFloatOutputMatches16BitOutput() throws Exception {
+    ByteBuffer floatInput = createToneInput(SAMPLE_RATE_HZ);
+    ByteBuffer shortInput =
+        ByteBuffer.allocate(floatInput.remaining() / 2).order(ByteOrder.nativeOrder());
+    // Quantize the float input, so that both inputs have the same samples.
+    while (floatInput.hasRemaining()) {
+      short sample = (short) (floatInput.getFloat() * 32768);
+      shortInput.putShort(sample);
+      floatInput.putFloat(floatInput.position() - 4, sample / 32768f);
+    }
+    floatInput.rewind();
+    shortInput.flip();
+
+    float[] floatOutput = process(floatInput, /* speed= */ 1.25f, C.ENCODING_PCM_FLOAT);
+    float[] shortOutput = process(shortInput, /* speed= */ 1.25f, C.ENCODING_PCM_16BIT);
+
+    assertThat(shortOutput.length).isEqualTo(floatOutput.length);
+    for (int i = 0; i < floatOutput.length; i++) {
+      assertThat(shortOutput[i]).isWithin(1f / 32768).of(floatOutput[i]);
+    }
+  }
+
+  @Test
+  public void testPreservesPitchOfTone() throws Exception {
+    float[] output =
+        process(createToneInput(2 * SAMPLE_RATE_HZ), /* speed= */ 1.25f, C.ENCODING_PCM_FLOAT);
+
+    // A pure tone satisfies x[n + 1] - 2 * cos(w) * x[n] + x[n - 1] = 0 for any phase, so any
+    // residual is due to discontinuities or pitch changes. Skip the fade out at the end.
+    double twoCos = 2 * Math.cos(TONE_RADIANS_PER_FRAME);
+    double residualEnergy = 0;
+    double signalEnergy = 0;
+    int frameCount = output.length / CHANNEL_COUNT - SAMPLE_RATE_HZ / 10;
+    for (int i = 1; i < frameCount - 1; i++) {
+      double sample = output[i * CHANNEL_COUNT];
+      double residual =
+          output[(i + 1) * CHANNEL_COUNT] - twoCos * sample + output[(i - 1) * CHANNEL_COUNT];
+      residualEnergy += residual * residual;
+      signalEnergy += sample * sample;
+    }
+    assertThat(residualEnergy / signalEnergy).isLessThan(1e-4);
+  }
+
+  private static ByteBuffer createToneInput(int frameCount) {
+    ByteBuffer input =
+        ByteBuffer.allocate(frameCount * CHANNEL_COUNT * 4).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < frameCount; i++) {
+      float sample = (float) (0.5 * Math.sin(i * TONE_RADIANS_PER_FRAME));
+      for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+        input.putFloat(sample);
+      }
+    }
+    input.flip();
+    return input;
+  }
+
+  /**
+   * Processes {@code input} with a new processor at the specified speed, returning the output as
+   * normalized samples.
+   */
+  private static float[] process(ByteBuffer input, float speed, @C.PcmEncoding int encoding)
+      throws Exception {
+    WsolaAudioProcessor processor = new WsolaAudioProcessor();
+    processor.setSpeed(speed);
+    processor.configure(SAMPLE_RATE_HZ, CHANNEL_COUNT, encoding);
+    processor.flush();
+    ByteBuffer output = ByteBuffer.allocate(3 * input.capacity()).order(ByteOrder.nativeOrder());
+    processor.queueInput(input);
+    output.put(processor.getOutput());
+    processor.queueEndOfStream();
+    processor.queueInput(AudioProcessor.EMPTY_BUFFER);
+    output.put(processor.getOutput());
+    output.flip();
+    boolean isFloat = encoding == C.ENCODING_PCM_FLOAT;
+    float[] samples = new float[output.remaining() / (isFloat ? 4 : 2)];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = isFloat ? output.getFloat() : output.getShort() / 32768f;
+    }
+    return samples;
+  }
+}
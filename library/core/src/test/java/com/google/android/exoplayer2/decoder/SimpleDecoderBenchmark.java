@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * JVM benchmark measuring the overhead of passing buffers through a {@link SimpleDecoder}, using a
+ * fake decoder that does almost no work per buffer.
+ *
+ * <p>Ignored, as it isn't a unit test. Remove the {@link Ignore} annotation to run it. The calling
+ * thread behaves like a renderer: it queues as many input buffers as it can and releases any output
+ * buffers, then waits for a short time before doing the same again. For each buffer count, the CPU
+ * time spent per buffer by all threads, including the decode thread, is reported.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleDecoderBenchmark {
+
+  private static final int[] BUFFER_COUNTS = new int[] {4, 8, 16};
+  private static final int BUFFERS_PER_ITERATION = 5000;
+  private static final long WORK_INTERVAL_NS = 500000;
+
+  @Ignore
+  @Test
+  public void benchmark() throws Exception {
+    for (int bufferCount : BUFFER_COUNTS) {
+      FakeDecoder decoder = new FakeDecoder(bufferCount);
+      double cpuTimeNs = BenchmarkUtil.measureCpuTimeNs(() -> passBuffers(decoder));
+      decoder.release();
+      BenchmarkUtil.report(
+          "buffers=%d: %.0f ns CPU per buffer", bufferCount, cpuTimeNs / BUFFERS_PER_ITERATION);
+    }
+  }
+
+  /** Passes buffers through the decoder, waiting between each batch of work. */
+  private static void passBuffers(FakeDecoder decoder) throws Exception {
+    decoder.flush();
+    int queuedCount = 0;
+    int outputCount = 0;
+    while (outputCount < BUFFERS_PER_ITERATION) {
+      DecoderInputBuffer inputBuffer;
+      while (queuedCount < BUFFERS_PER_ITERATION
+          && (inputBuffer = decoder.dequeueInputBuffer()) != null) {
+        inputBuffer.timeUs = queuedCount++;
+        decoder.queueInputBuffer(inputBuffer);
+      }
+      SimpleOutputBuffer outputBuffer;
+      while ((outputBuffer = decoder.dequeueOutputBuffer()) != null) {
+        outputCount++;
+        outputBuffer.release();
+      }
+      LockSupport.parkNanos(WORK_INTERVAL_NS);
+    }
+  }
+
+  private static final class FakeDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleOutputBuffer, Exception> {
+
+    public FakeDecoder(int bufferCount) {
+      super(new DecoderInputBuffer[bufferCount], new SimpleOutputBuffer[bufferCount]);
+    }
+
+    @Override
+    public String getName() {
+      return "FakeDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected SimpleOutputBuffer createOutputBuffer() {
+      return new SimpleOutputBuffer(this);
+    }
+
+    @Override
+    protected Exception createUnexpectedDecodeException(Throwable error) {
+      return new Exception(error);
+    }
+
+    @Override
+    protected Exception decode(
+        DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
+      outputBuffer.timeUs = inputBuffer.timeUs;
+      return null;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.android.exoplayer2.C;
+import java.util.concurrent.Semaphore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link SimpleDecoder}. */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleDecoderTest {
+
+  private static final long TIMEOUT_MS = 10000;
+  private static final long ERROR_TIME_US = -1;
+
+  private FakeDecoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new FakeDecoder(/* inputBufferCount= */ 4, /* outputBufferCount= */ 4);
+  }
+
+  @After
+  public void tearDown() {
+    decoder.release();
+  }
+
+  @Test
+  public void testOutputsBuffersInQueueOrder() throws Exception {
+    for (long timeUs = 0; timeUs < 3; timeUs++) {
+      queueInputBuffer(timeUs, /* flags= */ 0);
+    }
+
+    for (long timeUs = 0; timeUs < 3; timeUs++) {
+      SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+      assertThat(outputBuffer.timeUs).isEqualTo(timeUs);
+      outputBuffer.release();
+    }
+  }
+
+  @Test
+  public void testDecodesMoreInputWhenOutputBufferReleased() throws Exception {
+    decoder.release();
+    decoder = new FakeDecoder(/* inputBufferCount= */ 2, /* outputBufferCount= */ 1);
+    queueInputBuffer(/* timeUs= */ 0, /* flags= */ 0);
+    queueInputBuffer(/* timeUs= */ 1, /* flags= */ 0);
+
+    SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(0);
+    outputBuffer.release();
+    outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(1);
+  }
+
+  @Test
+  public void testFlushDiscardsQueuedBuffersAndResetsDecoder() throws Exception {
+    decoder.decodePermits.drainPermits();
+    queueInputBuffer(/* timeUs= */ 0, /* flags= */ 0);
+    queueInputBuffer(/* timeUs= */ 1, /* flags= */ 0);
+
+    decoder.flush();
+    decoder.decodePermits.release(Integer.MAX_VALUE / 2);
+    queueInputBuffer(/* timeUs= */ 2, /* flags= */ 0);
+
+    SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(2);
+    assertThat(decoder.lastResetTimeUs).isEqualTo(2);
+    assertThat(decoder.dequeueOutputBuffer()).isNull();
+  }
+
+  @Test
+  public void testSkipsDecodeOnlyBuffers() throws Exception {
+    queueInputBuffer(/* timeUs= */ 0, C.BUFFER_FLAG_DECODE_ONLY);
+    queueInputBuffer(/* timeUs= */ 1, C.BUFFER_FLAG_DECODE_ONLY);
+    queueInputBuffer(/* timeUs= */ 2, /* flags= */ 0);
+
+    SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(2);
+    assertThat(outputBuffer.skippedOutputBufferCount).isEqualTo(2);
+  }
+
+  @Test
+  public void testDecodesPendingOutputBeforeNextInputBuffer() throws Exception {
+    decoder.release();
+    decoder = new FakeDecoder(/* inputBufferCount= */ 2, /* outputBufferCount= */ 1);
+    decoder.outputBufferCountPerInput = 3;
+    queueInputBuffer(/* timeUs= */ 0, /* flags= */ 0);
+    queueInputBuffer(/* timeUs= */ 1, /* flags= */ 0);
+
+    for (long timeUs = 0; timeUs < 6; timeUs++) {
+      SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+      assertThat(outputBuffer.timeUs).isEqualTo(timeUs);
+      outputBuffer.release();
+    }
+  }
+
+  @Test
+  public void testFlushDiscardsPendingOutput() throws Exception {
+    decoder.release();
+    decoder = new FakeDecoder(/* inputBufferCount= */ 2, /* outputBufferCount= */ 1);
+    decoder.outputBufferCountPerInput = 2;
+    queueInputBuffer(/* timeUs= */ 0, /* flags= */ 0);
+    SimpleOutputBuffer outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(0);
+
+    decoder.flush();
+    outputBuffer.release();
+    queueInputBuffer(/* timeUs= */ 5, /* flags= */ 0);
+
+    outputBuffer = dequeueOutputBuffer();
+    assertThat(outputBuffer.timeUs).isEqualTo(10);
+    assertThat(decoder.lastResetTimeUs).isEqualTo(5);
+  }
+
+  @Test
+  public void testOutputsEndOfStream() throws Exception {
+    queueInputBuffer(/* timeUs= */ 0, C.BUFFER_FLAG_END_OF_STREAM);
+
+    assertThat(dequeueOutputBuffer().isEndOfStream()).isTrue();
+  }
+
+  @Test
+  public void testPropagatesDecodeException() throws Exception {
+    queueInputBuffer(ERROR_TIME_US, /* flags= */ 0);
+
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (System.currentTimeMillis() < deadlineMs) {
+      try {
+        decoder.dequeueOutputBuffer();
+      } catch (FakeDecoderException e) {
+        return;
+      }
+      Thread.sleep(1);
+    }
+    fail();
+  }
+
+  private void queueInputBuffer(long timeUs, int flags) throws FakeDecoderException {
+    DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    inputBuffer.timeUs = timeUs;
+    inputBuffer.setFlags(flags);
+    decoder.queueInputBuffer(inputBuffer);
+  }
+
+  private SimpleOutputBuffer dequeueOutputBuffer() throws Exception {
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (System.currentTimeMillis() < deadlineMs) {
+      SimpleOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+      if (outputBuffer != null) {
+        return outputBuffer;
+      }
+      Thread.sleep(1);
+    }
+    throw new AssertionError("Timed out waiting for an output buffer");
+  }
+
+  private static final class FakeDecoderException extends Exception {
+
+    public FakeDecoderException(String message) {
+      super(message);
+    }
+  }
+
+  private static final class FakeDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleOutputBuffer, FakeDecoderException> {
+
+    public final Semaphore decodePermits;
+    public volatile long lastResetTimeUs;
+    public volatile int outputBufferCountPerInput;
+
+    private int pendingOutputBufferCount;
+
+    public FakeDecoder(int inputBufferCount, int outputBufferCount) {
+      super(new DecoderInputBuffer[inputBufferCount], new SimpleOutputBuffer[outputBufferCount]);
+      decodePermits = new Semaphore(Integer.MAX_VALUE / 2);
+      lastResetTimeUs = C.TIME_UNSET;
+      outputBufferCountPerInput = 1;
+    }
+
+    @Override
+    public String getName() {
+      return "FakeDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected SimpleOutputBuffer createOutputBuffer() {
+      return new SimpleOutputBuffer(this);
+    }
+
+    @Override
+    protected FakeDecoderException createUnexpectedDecodeException(Throwable error) {
+      return new FakeDecoderException(error.getMessage());
+    }
+
+    @Override
+    protected FakeDecoderException decode(
+        DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
+      decodePermits.acquireUninterruptibly();
+      if (reset) {
+        lastResetTimeUs = inputBuffer.timeUs;
+      }
+      if (inputBuffer.timeUs == ERROR_TIME_US) {
+        return new FakeDecoderException("Decode error");
+      }
+      if (reset || pendingOutputBufferCount == 0) {
+        pendingOutputBufferCount = outputBufferCountPerInput;
+      }
+      int outputIndex = outputBufferCountPerInput - pendingOutputBufferCount;
+      pendingOutputBufferCount--;
+      outputBuffer.init(
+          inputBuffer.timeUs * outputBufferCountPerInput + outputIndex, /* size= */ 0);
+      return null;
+    }
+
+    @Override
+    protected boolean hasPendingOutput() {
+      return pendingOutputBufferCount > 0;
+    }
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.drm.DrmInitData.SchemeData;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.KeyRequest;
+import com.google.android.exoplayer2.extractor.mp4.PsshAtomUtil;
+import com.google.android.exoplayer2.testutil.RobolectricUtil;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Tests {@link DefaultDrmSessionManager}. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {RobolectricUtil.CustomLooper.class, RobolectricUtil.CustomMessageQueue.class})
+public final class DefaultDrmSessionManagerTest {
+
+  private static final long TIMEOUT_MS = 10000;
+  private static final byte[] SESSION_ID_1 = {1, 2, 3};
+  private static final byte[] SESSION_ID_2 = {4, 5, 6};
+
+  @Mock private MediaDrmCallback mediaDrmCallback;
+  @Mock private ExoMediaDrm<ExoMediaCrypto> mediaDrm;
+
+  private HandlerThread handlerThread;
+  private Looper playbackLooper;
+  private ConditionVariable keysLoaded;
+  private DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    when(mediaDrm.openSession()).thenReturn(SESSION_ID_1, SESSION_ID_2);
+    when(mediaDrm.getKeyRequest(any(byte[].class), anyList(), anyInt(), any(HashMap.class)))
+        .thenReturn(new KeyRequest(new byte[] {7, 8, 9}, "licenseServerUrl"));
+    when(mediaDrmCallback.executeKeyRequest(any(UUID.class), any(KeyRequest.class)))
+        .thenReturn(new byte[] {0});
+    handlerThread = new HandlerThread("DefaultDrmSessionManagerTest");
+    handlerThread.start();
+    playbackLooper = handlerThread.getLooper();
+    keysLoaded = new ConditionVariable();
+    drmSessionManager = createDrmSessionManager(/* multiSession= */ false);
+  }
+
+  @After
+  public void tearDown() {
+    drmSessionManager.releaseIdleSessions();
+    handlerThread.quit();
+  }
+
+  @Test
+  public void testReleasedSessionIsClosedByDefault() throws Exception {
+    DrmSession<ExoMediaCrypto> session = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session);
+
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+  }
+
+  @Test
+  public void testIdleSessionIsReused() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    DrmSession<ExoMediaCrypto> session = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session);
+    DrmSession<ExoMediaCrypto> reusedSession =
+        drmSessionManager.acquireSession(playbackLooper, newDrmInitData(1));
+
+    assertThat(reusedSession).isSameAs(session);
+    assertThat(reusedSession.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    verify(mediaDrm, times(1)).openSession();
+    verify(mediaDrmCallback, times(1)).executeKeyRequest(any(UUID.class), any(KeyRequest.class));
+    verify(mediaDrm, never()).closeSession(any(byte[].class));
+  }
+
+  @Test
+  public void testIdleSessionWithOtherInitDataIsNotReused() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(2);
+
+    DrmSession<ExoMediaCrypto> session = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session);
+    DrmSession<ExoMediaCrypto> otherSession = acquireSessionAndWaitForKeys(newDrmInitData(2));
+
+    assertThat(otherSession).isNotSameAs(session);
+    verify(mediaDrm, never()).closeSession(any(byte[].class));
+  }
+
+  @Test
+  public void testLeastRecentlyReleasedIdleSessionIsClosed() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    DrmSession<ExoMediaCrypto> session1 = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session1);
+    DrmSession<ExoMediaCrypto> session2 = acquireSessionAndWaitForKeys(newDrmInitData(2));
+    verify(mediaDrm, never()).closeSession(any(byte[].class));
+    drmSessionManager.releaseSession(session2);
+
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+    verify(mediaDrm, never()).closeSession(SESSION_ID_2);
+  }
+
+  @Test
+  public void testExpiredIdleSessionIsNotReused() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    DrmSession<ExoMediaCrypto> session = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session);
+    setStubLicenseDurationRemainingSec(0);
+    DrmSession<ExoMediaCrypto> newSession = acquireSessionAndWaitForKeys(newDrmInitData(1));
+
+    assertThat(newSession).isNotSameAs(session);
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+    verify(mediaDrmCallback, times(2)).executeKeyRequest(any(UUID.class), any(KeyRequest.class));
+  }
+
+  @Test
+  public void testReleaseIdleSessionsClosesSessions() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    DrmSession<ExoMediaCrypto> session = acquireSessionAndWaitForKeys(newDrmInitData(1));
+    drmSessionManager.releaseSession(session);
+    drmSessionManager.releaseIdleSessions();
+
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+  }
+
+  @Test
+  public void testPrefetchedLicenseIsUsedByAcquiredSession() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    keysLoaded.close();
+    drmSessionManager.prefetchLicense(playbackLooper, newDrmInitData(1));
+    assertThat(keysLoaded.block(TIMEOUT_MS)).isTrue();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackLooper, newDrmInitData(1));
+
+    assertThat(session.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    verify(mediaDrmCallback, times(1)).executeKeyRequest(any(UUID.class), any(KeyRequest.class));
+  }
+
+  @Test
+  public void testPrefetchLicenseFromOtherThreadAcquiresSessionOnPlaybackThread()
+      throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+    AtomicReference<Looper> openSessionLooper = new AtomicReference<>();
+    when(mediaDrm.openSession())
+        .thenAnswer(
+            invocation -> {
+              openSessionLooper.set(Looper.myLooper());
+              return SESSION_ID_1;
+            });
+
+    keysLoaded.close();
+    drmSessionManager.prefetchLicense(playbackLooper, newDrmInitData(1));
+    assertThat(keysLoaded.block(TIMEOUT_MS)).isTrue();
+
+    assertThat(openSessionLooper.get()).isSameAs(playbackLooper);
+  }
+
+  @Test
+  public void testPrefetchLicenseWithoutIdleSessionsDoesNothing() throws Exception {
+    drmSessionManager.prefetchLicense(playbackLooper, newDrmInitData(1));
+    waitForPlaybackThread();
+
+    verify(mediaDrm, never()).openSession();
+  }
+
+  @Test
+  public void testPrefetchLicenseWithoutSchemeSpecificDataDoesNothing() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+
+    drmSessionManager.prefetchLicense(
+        playbackLooper,
+        new DrmInitData(new SchemeData(C.WIDEVINE_UUID, "mimeType", /* data= */ null)));
+    waitForPlaybackThread();
+
+    verify(mediaDrm, never()).openSession();
+  }
+
+  @Test
+  public void testKeyRequestsAreNotCoalescedByDefault() throws Exception {
+    drmSessionManager = createDrmSessionManager(/* multiSession= */ true);
+    drmSessionManager.setMaxIdleSessionCount(2);
+
+    drmSessionManager.prefetchLicenses(
+        playbackLooper, Arrays.asList(newWidevineDrmInitData(1), newWidevineDrmInitData(2)));
+    waitForPlaybackThread();
+
+    verify(mediaDrm, times(2)).openSession();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCoalescedKeyRequestIsSharedBySessions() throws Exception {
+    drmSessionManager = createDrmSessionManager(/* multiSession= */ true);
+    drmSessionManager.setMaxIdleSessionCount(1);
+    drmSessionManager.setCoalesceKeyRequests(true);
+    DrmInitData videoDrmInitData = newWidevineDrmInitData(1);
+    DrmInitData audioDrmInitData = newWidevineDrmInitData(2);
+
+    keysLoaded.close();
+    drmSessionManager.prefetchLicenses(
+        playbackLooper, Arrays.asList(videoDrmInitData, audioDrmInitData));
+    assertThat(keysLoaded.block(TIMEOUT_MS)).isTrue();
+    DrmSession<ExoMediaCrypto> videoSession =
+        drmSessionManager.acquireSession(playbackLooper, videoDrmInitData);
+    DrmSession<ExoMediaCrypto> audioSession =
+        drmSessionManager.acquireSession(playbackLooper, audioDrmInitData);
+
+    assertThat(audioSession).isSameAs(videoSession);
+    assertThat(videoSession.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    verify(mediaDrm, times(1)).openSession();
+    verify(mediaDrmCallback, times(1)).executeKeyRequest(any(UUID.class), any(KeyRequest.class));
+    byte[] multiKeyPsshAtom =
+        WidevineUtil.buildMultiKeyPsshAtom(
+            Arrays.asList(videoDrmInitData.get(0).data, audioDrmInitData.get(0).data));
+    assertThat(PsshAtomUtil.parseSchemeSpecificData(multiKeyPsshAtom, C.WIDEVINE_UUID))
+        .isEqualTo(TestUtil.joinByteArrays(buildWidevineData(1), buildWidevineData(2)));
+    verify(mediaDrm)
+        .getKeyRequest(
+            any(byte[].class),
+            eq(
+                Collections.singletonList(
+                    new SchemeData(C.WIDEVINE_UUID, MimeTypes.VIDEO_MP4, multiKeyPsshAtom))),
+            anyInt(),
+            any(HashMap.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testClosedCoalescedSessionIsNotSharedBySessions() throws Exception {
+    drmSessionManager.setMaxIdleSessionCount(1);
+    drmSessionManager.setCoalesceKeyRequests(true);
+    DrmInitData videoDrmInitData = newWidevineDrmInitData(1);
+    DrmInitData audioDrmInitData = newWidevineDrmInitData(2);
+
+    keysLoaded.close();
+    drmSessionManager.prefetchLicenses(
+        playbackLooper, Arrays.asList(videoDrmInitData, audioDrmInitData));
+    assertThat(keysLoaded.block(TIMEOUT_MS)).isTrue();
+    drmSessionManager.releaseIdleSessions();
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+    DrmSession<ExoMediaCrypto> videoSession = acquireSessionAndWaitForKeys(videoDrmInitData);
+
+    // The session requests the keys of its own data, rather than those of the closed session.
+    verify(mediaDrm)
+        .getKeyRequest(
+            any(byte[].class),
+            eq(Collections.singletonList(videoDrmInitData.get(0))),
+            anyInt(),
+            any(HashMap.class));
+    drmSessionManager.releaseSession(videoSession);
+  }
+
+  private DefaultDrmSessionManager<ExoMediaCrypto> createDrmSessionManager(boolean multiSession) {
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager =
+        new DefaultDrmSessionManager<>(
+            C.WIDEVINE_UUID,
+            mediaDrm,
+            mediaDrmCallback,
+            /* optionalKeyRequestParameters= */ null,
+            multiSession);
+    drmSessionManager.addListener(
+        new Handler(playbackLooper),
+        new DefaultDrmSessionEventListener() {
+          @Override
+          public void onDrmKeysLoaded() {
+            keysLoaded.open();
+          }
+
+          @Override
+          public void onDrmSessionManagerError(Exception error) {
+            keysLoaded.open();
+          }
+
+          @Override
+          public void onDrmKeysRestored() {
+            // Do nothing.
+          }
+
+          @Override
+          public void onDrmKeysRemoved() {
+            // Do nothing.
+          }
+        });
+    return drmSessionManager;
+  }
+
+  private DrmSession<ExoMediaCrypto> acquireSessionAndWaitForKeys(DrmInitData drmInitData) {
+    keysLoaded.close();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackLooper, drmInitData);
+    assertThat(keysLoaded.block(TIMEOUT_MS)).isTrue();
+    assertThat(session.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    return session;
+  }
+
+  /** Waits until the playback thread has handled the messages posted to it so far. */
+  private void waitForPlaybackThread() {
+    ConditionVariable messagesHandled = new ConditionVariable();
+    new Handler(playbackLooper).post(messagesHandled::open);
+    assertThat(messagesHandled.block(TIMEOUT_MS)).isTrue();
+  }
+
+  private void setStubLicenseDurationRemainingSec(long licenseDurationRemainingSec) {
+    HashMap<String, String> keyStatus = new HashMap<>();
+    keyStatus.put(
+        WidevineUtil.PROPERTY_LICENSE_DURATION_REMAINING,
+        String.valueOf(licenseDurationRemainingSec));
+    when(mediaDrm.queryKeyStatus(any(byte[].class))).thenReturn(keyStatus);
+  }
+
+  private static DrmInitData newWidevineDrmInitData(int keyId) {
+    byte[] psshAtom = PsshAtomUtil.buildPsshAtom(C.WIDEVINE_UUID, buildWidevineData(keyId));
+    return new DrmInitData(new SchemeData(C.WIDEVINE_UUID, MimeTypes.VIDEO_MP4, psshAtom));
+  }
+
+  /** Returns Widevine PSSH data listing a single key id. */
+  private static byte[] buildWidevineData(int keyId) {
+    byte[] data = new byte[18];
+    data[0] = 0x12; // The tag of the key_id field.
+    data[1] = 16; // The length of the key id.
+    data[17] = (byte) keyId;
+    return data;
+  }
+
+  private static DrmInitData newDrmInitData(int keyId) {
+    return new DrmInitData(
+        new SchemeData(C.WIDEVINE_UUID, "mimeType", new byte[] {1, 4, 7, (byte) keyId}));
+  }
+}
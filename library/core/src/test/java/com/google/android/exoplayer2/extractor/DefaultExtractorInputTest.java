@@ -427,6 +427,38 @@ public class DefaultExtractorInputTest {
     }
   }
 
+  @Test
+  public void testInterleavedPeeksAndReadsReturnStreamData() throws Exception {
+    // Consuming data from the peek buffer advances through it in place, so exercise peeks that
+    // require the buffered data to be moved or the buffer to grow.
+    byte[] data = new byte[256 * 1024];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + (i >> 8));
+    }
+    FakeDataSource testDataSource = new FakeDataSource();
+    testDataSource.getDataSet().newDefaultData().appendReadData(data);
+    testDataSource.open(new DataSpec(Uri.parse(TEST_URI)));
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, data.length);
+
+    int[] peekLengths = new int[] {1000, 70 * 1024, 10, 5000};
+    int[] readLengths = new int[] {417, 3, 60 * 1024, 1};
+    int position = 0;
+    for (int i = 0; position + 80 * 1024 < data.length; i++) {
+      int peekLength = peekLengths[i % peekLengths.length];
+      byte[] peeked = new byte[peekLength];
+      input.resetPeekPosition();
+      input.peekFully(peeked, 0, peekLength);
+      assertThat(peeked).isEqualTo(Arrays.copyOfRange(data, position, position + peekLength));
+
+      int readLength = readLengths[i % readLengths.length];
+      byte[] read = new byte[readLength];
+      input.readFully(read, 0, readLength);
+      assertThat(read).isEqualTo(Arrays.copyOfRange(data, position, position + readLength));
+      position += readLength;
+      assertThat(input.getPosition()).isEqualTo(position);
+    }
+  }
+
   private static FakeDataSource buildDataSource() throws Exception {
     FakeDataSource testDataSource = new FakeDataSource();
     testDataSource.getDataSet().newDefaultData()
@@ -15,18 +15,88 @@
  */
 package com.google.android.exoplayer2.extractor.mkv;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.extractor.ChunkIndex;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 
 /** Tests for {@link MatroskaExtractor}. */
 @RunWith(RobolectricTestRunner.class)
 public final class MatroskaExtractorTest {
 
+  private static final String SAMPLE_FILE = "mkv/sample.mkv";
+
   @Test
   public void testMkvSample() throws Exception {
-    ExtractorAsserts.assertBehavior(MatroskaExtractor::new, "mkv/sample.mkv");
+    ExtractorAsserts.assertBehavior(MatroskaExtractor::new, SAMPLE_FILE);
+  }
+
+  @Test
+  public void testMkvSampleWithLazyCuesLoading() throws Exception {
+    // The sample is shorter than the lazy load delay, so the cues are read in place at its end.
+    ExtractorAsserts.assertBehavior(
+        () -> new MatroskaExtractor(MatroskaExtractor.FLAG_LOAD_CUES_LAZILY), SAMPLE_FILE);
+  }
+
+  @Test
+  public void testMkvSampleWithDeferredLazyCuesLoading() throws Exception {
+    MatroskaExtractor extractor =
+        new MatroskaExtractor(
+            new DefaultEbmlReader(),
+            MatroskaExtractor.FLAG_LOAD_CUES_LAZILY,
+            /* minCueIntervalUs= */ 0,
+            /* lazyCuesLoadDelayUs= */ 100_000);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(TestUtil.getByteArray(RuntimeEnvironment.application, SAMPLE_FILE))
+            .build();
+
+    SeekMap firstSeekMap = null;
+    int seekCount = 0;
+    PositionHolder seekPosition = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, seekPosition);
+      if (firstSeekMap == null) {
+        firstSeekMap = output.seekMap;
+      }
+      if (readResult == Extractor.RESULT_SEEK) {
+        seekCount++;
+        input.setPosition((int) seekPosition.position);
+      }
+    }
+
+    // An unseekable seek map is output without seeking, so that preparation can complete.
+    assertThat(firstSeekMap.isSeekable()).isFalse();
+    // The cues are loaded once the delay has elapsed, and the extractor then seeks back to where
+    // it left off, so the output matches reading the cues up front.
+    assertThat(seekCount).isEqualTo(2);
+    output.assertOutput(RuntimeEnvironment.application, SAMPLE_FILE + ".0.dump");
+  }
+
+  @Test
+  public void testMkvSampleWithMinCueInterval() throws Exception {
+    MatroskaExtractor extractor =
+        new MatroskaExtractor(/* flags= */ 0, /* minCueIntervalUs= */ 500_000);
+    FakeExtractorOutput output =
+        TestUtil.extractAllSamplesFromFile(extractor, RuntimeEnvironment.application, SAMPLE_FILE);
+
+    // Cue points within 500ms of the last retained cue point are discarded.
+    ChunkIndex seekMap = (ChunkIndex) output.seekMap;
+    assertThat(seekMap.timesUs).isEqualTo(new long[] {67_000, 567_000, 1_104_000});
+    assertThat(seekMap.offsets).isEqualTo(new long[] {5576, 84155, 107424});
   }
 
   @Test
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link IndexSeeker}. */
+@RunWith(RobolectricTestRunner.class)
+public final class IndexSeekerTest {
+
+  private static final long FRAME_DURATION_US = 26_000;
+  private static final int FRAME_SIZE = 417;
+
+  @Test
+  public void testGetSeekPointsReturnsIndexedFrames() {
+    IndexSeeker.Builder builder =
+        new IndexSeeker.Builder(/* maxEntryCount= */ 100, /* minIntervalUs= */ 1);
+    addFrames(builder, /* frameCount= */ 10);
+    IndexSeeker seeker = builder.build(/* durationUs= */ 10 * FRAME_DURATION_US, null);
+
+    assertThat(seeker.isComplete()).isTrue();
+    assertThat(seeker.getSeekPoints(3 * FRAME_DURATION_US))
+        .isEqualTo(new SeekPoints(new SeekPoint(3 * FRAME_DURATION_US, 3 * FRAME_SIZE)));
+    assertThat(seeker.getSeekPoints(3 * FRAME_DURATION_US + 1))
+        .isEqualTo(
+            new SeekPoints(
+                new SeekPoint(3 * FRAME_DURATION_US, 3 * FRAME_SIZE),
+                new SeekPoint(4 * FRAME_DURATION_US, 4 * FRAME_SIZE)));
+    assertThat(seeker.getTimeUs(5 * FRAME_SIZE)).isEqualTo(5 * FRAME_DURATION_US);
+  }
+
+  @Test
+  public void testEntriesAreDecimatedWhenFull() {
+    IndexSeeker.Builder builder =
+        new IndexSeeker.Builder(/* maxEntryCount= */ 8, /* minIntervalUs= */ 1);
+    addFrames(builder, /* frameCount= */ 100);
+
+    assertThat(builder.size()).isAtMost(8);
+    IndexSeeker seeker = builder.build(/* durationUs= */ 100 * FRAME_DURATION_US, null);
+    // The first frame is always retained, and retained entries remain exact.
+    assertThat(seeker.getSeekPoints(0).first).isEqualTo(new SeekPoint(0, 0));
+    SeekPoint seekPoint = seeker.getSeekPoints(50 * FRAME_DURATION_US).first;
+    assertThat(seekPoint.position).isEqualTo(seekPoint.timeUs / FRAME_DURATION_US * FRAME_SIZE);
+  }
+
+  @Test
+  public void testFallbackSeekerUsedBeyondIndex() {
+    IndexSeeker.Builder builder =
+        new IndexSeeker.Builder(/* maxEntryCount= */ 100, /* minIntervalUs= */ 1);
+    addFrames(builder, /* frameCount= */ 10);
+    Mp3Extractor.Seeker fallbackSeeker =
+        new LinearSeeker(100 * FRAME_DURATION_US, /* isSeekable= */ true);
+    IndexSeeker seeker = builder.build(/* durationUs= */ 100 * FRAME_DURATION_US, fallbackSeeker);
+
+    assertThat(seeker.isComplete()).isFalse();
+    assertThat(seeker.getDurationUs()).isEqualTo(100 * FRAME_DURATION_US);
+    assertThat(seeker.getSeekPoints(50 * FRAME_DURATION_US))
+        .isEqualTo(fallbackSeeker.getSeekPoints(50 * FRAME_DURATION_US));
+    assertThat(seeker.getTimeUs(50 * FRAME_SIZE))
+        .isEqualTo(fallbackSeeker.getTimeUs(50 * FRAME_SIZE));
+  }
+
+  @Test
+  public void testSeekingLimitedToIndexIfFallbackSeekerNotSeekable() {
+    IndexSeeker.Builder builder =
+        new IndexSeeker.Builder(/* maxEntryCount= */ 100, /* minIntervalUs= */ 1);
+    addFrames(builder, /* frameCount= */ 10);
+    Mp3Extractor.Seeker fallbackSeeker =
+        new LinearSeeker(100 * FRAME_DURATION_US, /* isSeekable= */ false);
+    IndexSeeker seeker = builder.build(/* durationUs= */ 100 * FRAME_DURATION_US, fallbackSeeker);
+
+    assertThat(seeker.isSeekable()).isTrue();
+    assertThat(seeker.getSeekPoints(50 * FRAME_DURATION_US))
+        .isEqualTo(new SeekPoints(new SeekPoint(9 * FRAME_DURATION_US, 9 * FRAME_SIZE)));
+    assertThat(seeker.getTimeUs(9 * FRAME_SIZE)).isEqualTo(9 * FRAME_DURATION_US);
+  }
+
+  private static void addFrames(IndexSeeker.Builder builder, int frameCount) {
+    for (int i = 0; i < frameCount; i++) {
+      builder.add(i * FRAME_DURATION_US, i * FRAME_SIZE);
+    }
+  }
+
+  /** Seeker mapping time linearly to position, offset so that it never agrees with the index. */
+  private static final class LinearSeeker implements Mp3Extractor.Seeker {
+
+    private final long durationUs;
+    private final boolean isSeekable;
+
+    public LinearSeeker(long durationUs, boolean isSeekable) {
+      this.durationUs = durationUs;
+      this.isSeekable = isSeekable;
+    }
+
+    @Override
+    public boolean isSeekable() {
+      return isSeekable;
+    }
+
+    @Override
+    public SeekPoints getSeekPoints(long timeUs) {
+      return new SeekPoints(new SeekPoint(timeUs, timeUs / FRAME_DURATION_US * FRAME_SIZE + 1));
+    }
+
+    @Override
+    public long getTimeUs(long position) {
+      return (position - 1) / FRAME_SIZE * FRAME_DURATION_US;
+    }
+
+    @Override
+    public long getDurationUs() {
+      return durationUs;
+    }
+  }
+}
@@ -15,10 +15,21 @@
  */
 package com.google.android.exoplayer2.extractor.mp3;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 
 /** Unit test for {@link Mp3Extractor}. */
 @RunWith(RobolectricTestRunner.class)
@@ -33,4 +44,36 @@ public final class Mp3ExtractorTest {
   public void testTrimmedMp3Sample() throws Exception {
     ExtractorAsserts.assertBehavior(Mp3Extractor::new, "mp3/play-trimmed.mp3");
   }
+
+  @Test
+  public void testMp3SampleWithIndexSeeking() throws Exception {
+    String fileName = "mp3/bear.mp3";
+    Mp3Extractor extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING);
+    FakeExtractorOutput extractorOutput =
+        TestUtil.extractAllSamplesFromFile(extractor, RuntimeEnvironment.application, fileName);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(0);
+    int sampleCount = trackOutput.getSampleCount();
+    long frameDurationUs = trackOutput.getSampleTimeUs(1) - trackOutput.getSampleTimeUs(0);
+
+    // Reading the whole stream replaces the seeking metadata with a complete index.
+    SeekMap seekMap = extractorOutput.seekMap;
+    assertThat(seekMap).isInstanceOf(IndexSeeker.class);
+    assertThat(((IndexSeeker) seekMap).isComplete()).isTrue();
+    assertThat(seekMap.isSeekable()).isTrue();
+    assertThat(seekMap.getDurationUs())
+        .isEqualTo(trackOutput.getSampleTimeUs(sampleCount - 1) + frameDurationUs);
+
+    // Seeking to an indexed frame resumes from that frame with its exact time.
+    SeekPoint seekPoint = seekMap.getSeekPoints(seekMap.getDurationUs() / 2).first;
+    assertThat(trackOutput.getSampleTimesUs()).contains(seekPoint.timeUs);
+    DataSource dataSource =
+        new DefaultDataSourceFactory(RuntimeEnvironment.application, "UserAgent")
+            .createDataSource();
+    Uri fileUri = TestUtil.buildAssetUri(fileName);
+    int sampleIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, seekPoint.timeUs, dataSource, trackOutput, fileUri);
+    assertThat(sampleIndex).isEqualTo(sampleCount);
+    assertThat(trackOutput.getSampleTimeUs(sampleIndex)).isEqualTo(seekPoint.timeUs);
+  }
 }
@@ -51,6 +51,19 @@ public final class FragmentedMp4ExtractorTest {
     ExtractorAsserts.assertBehavior(extractorFactory, "mp4/sample_fragmented_sei.mp4");
   }
 
+  @Test
+  public void testSampleWithParallelTrackParsing() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () ->
+            new FragmentedMp4Extractor(
+                FragmentedMp4Extractor.FLAG_ENABLE_PARALLEL_TRACK_PARSING,
+                null,
+                null,
+                null,
+                Collections.emptyList()),
+        "mp4/sample_fragmented.mp4");
+  }
+
   private static ExtractorFactory getExtractorFactory(final List<Format> closedCaptionFormats) {
     return () -> new FragmentedMp4Extractor(0, null, null, null, closedCaptionFormats);
   }
@@ -30,4 +30,10 @@ public final class Mp4ExtractorTest {
   public void testMp4Sample() throws Exception {
     ExtractorAsserts.assertBehavior(Mp4Extractor::new, "mp4/sample.mp4");
   }
+
+  @Test
+  public void testMp4SampleWithParallelTrackParsing() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_ENABLE_PARALLEL_TRACK_PARSING), "mp4/sample.mp4");
+  }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Unit test for {@link MediaCodecAsyncCallback}. The test plays the role of the codec, calling the
+ * callback methods directly.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class MediaCodecAsyncCallbackTest {
+
+  private MediaCodecAsyncCallback callback;
+  private MediaCodec.BufferInfo bufferInfo;
+
+  @Before
+  public void setUp() {
+    callback = new MediaCodecAsyncCallback();
+    bufferInfo = new MediaCodec.BufferInfo();
+  }
+
+  @Test
+  public void testDequeueWithoutAvailableBuffersReturnsTryAgainLater() {
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+  }
+
+  @Test
+  public void testDequeueInputBufferIndexReturnsIndicesInOrder() {
+    callback.onInputBufferAvailable(/* codec= */ null, 2);
+    callback.onInputBufferAvailable(/* codec= */ null, 0);
+    callback.onInputBufferAvailable(/* codec= */ null, 1);
+
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(2);
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(0);
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(1);
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+  }
+
+  @Test
+  public void testDequeueOutputBufferIndexPopulatesBufferInfo() {
+    callback.onOutputBufferAvailable(
+        /* codec= */ null, 3, createBufferInfo(/* presentationTimeUs= */ 1000, /* flags= */ 0));
+    callback.onOutputBufferAvailable(
+        /* codec= */ null,
+        1,
+        createBufferInfo(/* presentationTimeUs= */ 2000, MediaCodec.BUFFER_FLAG_END_OF_STREAM));
+
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(3);
+    assertThat(bufferInfo.presentationTimeUs).isEqualTo(1000);
+    assertThat(bufferInfo.size).isEqualTo(100);
+    assertThat(bufferInfo.flags).isEqualTo(0);
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(1);
+    assertThat(bufferInfo.presentationTimeUs).isEqualTo(2000);
+    assertThat(bufferInfo.flags).isEqualTo(MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+  }
+
+  @Test
+  public void testOutputFormatChangeIsSignalledInOrder() {
+    MediaFormat format = createFormat();
+    callback.onOutputBufferAvailable(/* codec= */ null, 0, createBufferInfo(1000, 0));
+    callback.onOutputFormatChanged(/* codec= */ null, format);
+    callback.onOutputBufferAvailable(/* codec= */ null, 1, createBufferInfo(2000, 0));
+
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(0);
+    assertThat(callback.getOutputFormat()).isNull();
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+    assertThat(callback.getOutputFormat()).isSameAs(format);
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(1);
+    assertThat(callback.getOutputFormat()).isSameAs(format);
+  }
+
+  @Test
+  public void testFlushDiscardsQueuedBuffers() {
+    callback.onInputBufferAvailable(/* codec= */ null, 0);
+    callback.onOutputBufferAvailable(/* codec= */ null, 0, createBufferInfo(1000, 0));
+
+    callback.flush();
+
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+    callback.onInputBufferAvailable(/* codec= */ null, 1);
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFlushRetainsUnconsumedOutputFormat() {
+    MediaFormat format = createFormat();
+    callback.onOutputFormatChanged(/* codec= */ null, format);
+    callback.onOutputBufferAvailable(/* codec= */ null, 0, createBufferInfo(1000, 0));
+
+    callback.flush();
+    callback.onOutputBufferAvailable(/* codec= */ null, 1, createBufferInfo(2000, 0));
+
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+    assertThat(callback.getOutputFormat()).isSameAs(format);
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(1);
+  }
+
+  @Test
+  public void testFlushAfterConsumingOutputFormatDoesNotSignalItAgain() {
+    callback.onOutputFormatChanged(/* codec= */ null, createFormat());
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+
+    callback.flush();
+    callback.onOutputBufferAvailable(/* codec= */ null, 1, createBufferInfo(2000, 0));
+
+    assertThat(callback.dequeueOutputBufferIndex(bufferInfo)).isEqualTo(1);
+  }
+
+  @Test
+  public void testPendingExceptionIsThrownOnce() {
+    IllegalStateException exception = new IllegalStateException();
+    callback.onInputBufferAvailable(/* codec= */ null, 0);
+    callback.setPendingException(exception);
+
+    try {
+      callback.dequeueInputBufferIndex();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(exception);
+    }
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOverflowIsReportedAsException() {
+    for (int i = 0; i <= MediaCodecAsyncCallback.QUEUE_CAPACITY; i++) {
+      callback.onInputBufferAvailable(/* codec= */ null, i);
+    }
+
+    try {
+      callback.dequeueInputBufferIndex();
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testIndicesWrapAroundQueue() {
+    for (int i = 0; i < 3 * MediaCodecAsyncCallback.QUEUE_CAPACITY; i++) {
+      callback.onInputBufferAvailable(/* codec= */ null, i);
+      assertThat(callback.dequeueInputBufferIndex()).isEqualTo(i);
+    }
+    assertThat(callback.dequeueInputBufferIndex()).isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+  }
+
+  private static MediaCodec.BufferInfo createBufferInfo(long presentationTimeUs, int flags) {
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(/* newOffset= */ 0, /* newSize= */ 100, presentationTimeUs, flags);
+    return bufferInfo;
+  }
+
+  private static MediaFormat createFormat() {
+    return MediaFormat.createVideoFormat(MimeTypes.VIDEO_H264, 1920, 1080);
+  }
+}
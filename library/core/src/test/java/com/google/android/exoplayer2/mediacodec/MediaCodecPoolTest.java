@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.media.MediaCodec;
+import android.os.SystemClock;
+import android.view.Surface;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.mediacodec.MediaCodecPool.PooledCodec;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link MediaCodecPool}. */
+@RunWith(RobolectricTestRunner.class)
+public final class MediaCodecPoolTest {
+
+  private static final long KEEP_ALIVE_TIME_MS = 1000;
+
+  private static final MediaCodecInfo AVC_CODEC_INFO =
+      MediaCodecInfo.newInstance("avc", MimeTypes.VIDEO_H264, /* capabilities= */ null);
+  private static final MediaCodecInfo HEVC_CODEC_INFO =
+      MediaCodecInfo.newInstance("hevc", MimeTypes.VIDEO_H265, /* capabilities= */ null);
+
+  private MediaCodecPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new MediaCodecPool(/* maxPooledCodecCount= */ 2, KEEP_ALIVE_TIME_MS);
+  }
+
+  @Test
+  public void testAcquireReturnsMatchingCodec() {
+    PooledCodec avcCodec = newPooledCodec(AVC_CODEC_INFO);
+    PooledCodec hevcCodec = newPooledCodec(HEVC_CODEC_INFO);
+    pool.release(avcCodec);
+    pool.release(hevcCodec);
+
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec);
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isNull();
+    assertThat(pool.acquire(HEVC_CODEC_INFO, candidate -> true)).isSameAs(hevcCodec);
+  }
+
+  @Test
+  public void testAcquireSkipsCodecsRejectedByPredicate() {
+    PooledCodec avcCodec = newPooledCodec(AVC_CODEC_INFO);
+    pool.release(avcCodec);
+
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> false)).isNull();
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec);
+  }
+
+  @Test
+  public void testAcquireReturnsMostRecentlyReleasedCodec() {
+    PooledCodec avcCodec1 = newPooledCodec(AVC_CODEC_INFO);
+    PooledCodec avcCodec2 = newPooledCodec(AVC_CODEC_INFO);
+    pool.release(avcCodec1);
+    pool.release(avcCodec2);
+
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec2);
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec1);
+  }
+
+  @Test
+  public void testReleaseWhenFullEvictsLeastRecentlyReleasedCodec() {
+    PooledCodec avcCodec1 = newPooledCodec(AVC_CODEC_INFO);
+    PooledCodec avcCodec2 = newPooledCodec(AVC_CODEC_INFO);
+    PooledCodec avcCodec3 = newPooledCodec(AVC_CODEC_INFO);
+    pool.release(avcCodec1);
+    pool.release(avcCodec2);
+    pool.release(avcCodec3);
+
+    verify(avcCodec1.codec).release();
+    verify(avcCodec1.surface).release();
+    verify(avcCodec2.codec, never()).release();
+    verify(avcCodec3.codec, never()).release();
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec3);
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec2);
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isNull();
+  }
+
+  @Test
+  public void testExpiredCodecsAreReleased() {
+    PooledCodec avcCodec = newPooledCodec(AVC_CODEC_INFO);
+    pool.release(avcCodec);
+    SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + KEEP_ALIVE_TIME_MS + 1);
+    PooledCodec hevcCodec = newPooledCodec(HEVC_CODEC_INFO);
+    pool.release(hevcCodec);
+
+    verify(avcCodec.codec).release();
+    verify(avcCodec.surface).release();
+    verify(hevcCodec.codec, never()).release();
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isNull();
+    assertThat(pool.acquire(HEVC_CODEC_INFO, candidate -> true)).isSameAs(hevcCodec);
+  }
+
+  @Test
+  public void testCodecsWithinKeepAliveTimeAreNotReleased() {
+    PooledCodec avcCodec = newPooledCodec(AVC_CODEC_INFO);
+    pool.release(avcCodec);
+    SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + KEEP_ALIVE_TIME_MS);
+
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isSameAs(avcCodec);
+    verify(avcCodec.codec, never()).release();
+  }
+
+  @Test
+  public void testClearReleasesAllCodecs() {
+    PooledCodec avcCodec = newPooledCodec(AVC_CODEC_INFO);
+    PooledCodec hevcCodec = newPooledCodec(HEVC_CODEC_INFO);
+    pool.release(avcCodec);
+    pool.release(hevcCodec);
+    pool.clear();
+
+    verify(avcCodec.codec).release();
+    verify(hevcCodec.codec).release();
+    assertThat(pool.acquire(AVC_CODEC_INFO, candidate -> true)).isNull();
+    assertThat(pool.acquire(HEVC_CODEC_INFO, candidate -> true)).isNull();
+  }
+
+  private static PooledCodec newPooledCodec(MediaCodecInfo codecInfo) {
+    Format format =
+        Format.createVideoSampleFormat(
+            /* id= */ null,
+            codecInfo.mimeType,
+            /* codecs= */ null,
+            /* bitrate= */ Format.NO_VALUE,
+            /* maxInputSize= */ Format.NO_VALUE,
+            /* width= */ 1280,
+            /* height= */ 720,
+            /* frameRate= */ Format.NO_VALUE,
+            /* initializationData= */ null,
+            /* drmInitData= */ null);
+    return new PooledCodec(
+        mock(MediaCodec.class),
+        codecInfo,
+        format,
+        /* maxWidth= */ 1920,
+        /* maxHeight= */ 1080,
+        /* maxInputSize= */ Format.NO_VALUE,
+        mock(Surface.class));
+  }
+}
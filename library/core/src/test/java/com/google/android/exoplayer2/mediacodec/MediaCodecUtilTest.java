@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil.CodecKey;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/** Unit tests for the persistent decoder information cache of {@link MediaCodecUtil}. */
+@RunWith(RobolectricTestRunner.class)
+public final class MediaCodecUtilTest {
+
+  private static final String CACHE_ID = "fingerprint/1";
+
+  private File tempFile;
+  private AtomicFile cacheFile;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFile = Util.createTempFile(RuntimeEnvironment.application, "ExoPlayerTest");
+    tempFile.delete();
+    cacheFile = new AtomicFile(tempFile);
+    MediaCodecUtil.setPersistentCacheFile(null);
+    MediaCodecUtil.invalidatePersistentCache();
+  }
+
+  @After
+  public void tearDown() {
+    MediaCodecUtil.setPersistentCacheFile(null);
+    MediaCodecUtil.invalidatePersistentCache();
+    tempFile.delete();
+  }
+
+  @Test
+  public void testWriteAndReadPersistentCache() {
+    PersistableCodecCapabilities videoCapabilities =
+        new PersistableCodecCapabilities(
+            /* maxSupportedInstances= */ 16,
+            /* widthAlignment= */ 2,
+            /* heightAlignment= */ 4,
+            /* sampleRateRanges= */ null,
+            /* maxInputChannelCount= */ 0);
+    videoCapabilities.putSizeAndRateSupport(1920, 1080, 30, /* supported= */ true);
+    videoCapabilities.putSizeAndRateSupport(3840, 2160, 60, /* supported= */ false);
+    PersistableCodecCapabilities audioCapabilities =
+        new PersistableCodecCapabilities(
+            /* maxSupportedInstances= */ 32,
+            /* widthAlignment= */ 0,
+            /* heightAlignment= */ 0,
+            /* sampleRateRanges= */ new int[] {8000, 8000, 16000, 48000},
+            /* maxInputChannelCount= */ 6);
+    HashMap<CodecKey, List<MediaCodecInfo>> decoderInfos = new HashMap<>();
+    decoderInfos.put(
+        new CodecKey(MimeTypes.VIDEO_H264, /* secure= */ false),
+        Collections.singletonList(
+            newCachedDecoderInfo("video.avc", MimeTypes.VIDEO_H264, videoCapabilities)));
+    decoderInfos.put(
+        new CodecKey(MimeTypes.AUDIO_AAC, /* secure= */ false),
+        Collections.singletonList(
+            newCachedDecoderInfo("audio.aac", MimeTypes.AUDIO_AAC, audioCapabilities)));
+
+    MediaCodecUtil.writePersistentCache(cacheFile, CACHE_ID, decoderInfos);
+    HashMap<CodecKey, List<MediaCodecInfo>> readDecoderInfos =
+        MediaCodecUtil.readPersistentCache(cacheFile, CACHE_ID);
+
+    assertThat(readDecoderInfos).hasSize(2);
+    List<MediaCodecInfo> videoDecoderInfos =
+        readDecoderInfos.get(new CodecKey(MimeTypes.VIDEO_H264, /* secure= */ false));
+    assertThat(videoDecoderInfos).hasSize(1);
+    MediaCodecInfo videoDecoderInfo = videoDecoderInfos.get(0);
+    assertThat(videoDecoderInfo.name).isEqualTo("video.avc");
+    assertThat(videoDecoderInfo.mimeType).isEqualTo(MimeTypes.VIDEO_H264);
+    assertThat(videoDecoderInfo.adaptive).isTrue();
+    assertThat(videoDecoderInfo.tunneling).isFalse();
+    assertThat(videoDecoderInfo.secure).isFalse();
+    CodecProfileLevel[] profileLevels = videoDecoderInfo.getProfileLevels();
+    assertThat(profileLevels).hasLength(1);
+    assertThat(profileLevels[0].profile).isEqualTo(CodecProfileLevel.AVCProfileHigh);
+    assertThat(profileLevels[0].level).isEqualTo(CodecProfileLevel.AVCLevel41);
+    PersistableCodecCapabilities readVideoCapabilities =
+        videoDecoderInfo.getPersistableCapabilities();
+    assertThat(readVideoCapabilities.maxSupportedInstances).isEqualTo(16);
+    assertThat(readVideoCapabilities.widthAlignment).isEqualTo(2);
+    assertThat(readVideoCapabilities.heightAlignment).isEqualTo(4);
+    assertThat(readVideoCapabilities.getSizeAndRateSupport(1920, 1080, 30)).isTrue();
+    assertThat(readVideoCapabilities.getSizeAndRateSupport(3840, 2160, 60)).isFalse();
+    assertThat(readVideoCapabilities.getSizeAndRateSupport(1280, 720, 30)).isNull();
+
+    PersistableCodecCapabilities readAudioCapabilities =
+        readDecoderInfos
+            .get(new CodecKey(MimeTypes.AUDIO_AAC, /* secure= */ false))
+            .get(0)
+            .getPersistableCapabilities();
+    assertThat(readAudioCapabilities.isAudio()).isTrue();
+    assertThat(readAudioCapabilities.isVideo()).isFalse();
+    assertThat(readAudioCapabilities.sampleRateRanges)
+        .isEqualTo(new int[] {8000, 8000, 16000, 48000});
+    assertThat(readAudioCapabilities.isSampleRateSupported(8000)).isTrue();
+    assertThat(readAudioCapabilities.isSampleRateSupported(11025)).isFalse();
+    assertThat(readAudioCapabilities.isSampleRateSupported(44100)).isTrue();
+    assertThat(readAudioCapabilities.maxInputChannelCount).isEqualTo(6);
+  }
+
+  @Test
+  public void testReadPersistentCacheWithDifferentIdReturnsNull() {
+    MediaCodecUtil.writePersistentCache(cacheFile, CACHE_ID, newVideoDecoderInfos("video.avc"));
+
+    assertThat(MediaCodecUtil.readPersistentCache(cacheFile, "otherFingerprint/1")).isNull();
+  }
+
+  @Test
+  public void testReadMissingPersistentCacheReturnsNull() {
+    assertThat(MediaCodecUtil.readPersistentCache(cacheFile, CACHE_ID)).isNull();
+  }
+
+  @Test
+  public void testGetDecoderInfosUsesPersistentCache() throws Exception {
+    MediaCodecUtil.writePersistentCache(
+        cacheFile, MediaCodecUtil.getPersistentCacheId(), newVideoDecoderInfos("video.avc"));
+    MediaCodecUtil.setPersistentCacheFile(tempFile);
+
+    List<MediaCodecInfo> decoderInfos =
+        MediaCodecUtil.getDecoderInfos(MimeTypes.VIDEO_H264, /* secure= */ false);
+
+    assertThat(decoderInfos).hasSize(1);
+    MediaCodecInfo decoderInfo = decoderInfos.get(0);
+    assertThat(decoderInfo.name).isEqualTo("video.avc");
+    // The persisted result is used without querying the capabilities of the decoder.
+    assertThat(decoderInfo.isVideoSizeAndRateSupportedV21(1920, 1080, 30)).isTrue();
+  }
+
+  @Test
+  public void testInvalidatePersistentCacheDeletesFile() {
+    MediaCodecUtil.writePersistentCache(
+        cacheFile, MediaCodecUtil.getPersistentCacheId(), newVideoDecoderInfos("video.avc"));
+    MediaCodecUtil.setPersistentCacheFile(tempFile);
+
+    MediaCodecUtil.invalidatePersistentCache();
+
+    assertThat(tempFile.exists()).isFalse();
+  }
+
+  private static HashMap<CodecKey, List<MediaCodecInfo>> newVideoDecoderInfos(String name) {
+    PersistableCodecCapabilities capabilities =
+        new PersistableCodecCapabilities(
+            /* maxSupportedInstances= */ 16,
+            /* widthAlignment= */ 2,
+            /* heightAlignment= */ 2,
+            /* sampleRateRanges= */ null,
+            /* maxInputChannelCount= */ 0);
+    capabilities.putSizeAndRateSupport(1920, 1080, 30, /* supported= */ true);
+    HashMap<CodecKey, List<MediaCodecInfo>> decoderInfos = new HashMap<>();
+    decoderInfos.put(
+        new CodecKey(MimeTypes.VIDEO_H264, /* secure= */ false),
+        Collections.singletonList(newCachedDecoderInfo(name, MimeTypes.VIDEO_H264, capabilities)));
+    return decoderInfos;
+  }
+
+  private static MediaCodecInfo newCachedDecoderInfo(
+      String name, String mimeType, PersistableCodecCapabilities capabilities) {
+    CodecProfileLevel profileLevel = new CodecProfileLevel();
+    profileLevel.profile = CodecProfileLevel.AVCProfileHigh;
+    profileLevel.level = CodecProfileLevel.AVCLevel41;
+    return MediaCodecInfo.newCachedInstance(
+        name,
+        mimeType,
+        /* adaptive= */ true,
+        /* tunneling= */ false,
+        /* secure= */ false,
+        new CodecProfileLevel[] {profileLevel},
+        capabilities);
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.offline.DownloadAction.Deserializer;
+import com.google.android.exoplayer2.offline.DownloadIndex.Record;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/** Unit tests for {@link DownloadIndex}. */
+@RunWith(RobolectricTestRunner.class)
+public class DownloadIndexTest {
+
+  private static final String TYPE = "type";
+
+  private File tempFile;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFile = Util.createTempFile(RuntimeEnvironment.application, "ExoPlayerTest");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tempFile.delete();
+  }
+
+  @Test
+  public void testLoadEmptyFile() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testLoadMissingFile() throws Exception {
+    tempFile.delete();
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testPutAndLoadRecords() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_QUEUED, 0));
+    downloadIndex.put(newRecord(/* key= */ 1, "321", TaskState.STATE_STARTED, 1000));
+
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(2);
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_QUEUED, 0);
+    assertRecord(downloadIndex.getRecord(1), /* key= */ 1, "321", TaskState.STATE_STARTED, 1000);
+  }
+
+  @Test
+  public void testPutReplacesRecordWithSameKey() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_QUEUED, 0));
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_STARTED, 1000));
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_STARTED, 1000);
+
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(1);
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_STARTED, 1000);
+  }
+
+  @Test
+  public void testRemoveRecord() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_QUEUED, 0));
+    downloadIndex.put(newRecord(/* key= */ 1, "321", TaskState.STATE_QUEUED, 0));
+    downloadIndex.remove(0);
+    assertThat(downloadIndex.getRecord(0)).isNull();
+
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(1);
+    assertThat(downloadIndex.getRecord(0)).isNull();
+    assertRecord(downloadIndex.getRecord(1), /* key= */ 1, "321", TaskState.STATE_QUEUED, 0);
+  }
+
+  @Test
+  public void testGetRecordsReturnsRangeInKeyOrder() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    for (int key = 4; key >= 0; key--) {
+      downloadIndex.put(newRecord(key, "123", TaskState.STATE_QUEUED, 0));
+    }
+
+    List<Record> records = downloadIndex.getRecords(/* offset= */ 1, /* limit= */ 2);
+    assertThat(records).hasSize(2);
+    assertThat(records.get(0).key).isEqualTo(1);
+    assertThat(records.get(1).key).isEqualTo(2);
+    records = downloadIndex.getRecords(/* offset= */ 4, /* limit= */ 2);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).key).isEqualTo(4);
+    assertThat(downloadIndex.getRecords(/* offset= */ 5, /* limit= */ 2)).isEmpty();
+  }
+
+  @Test
+  public void testLoadDiscardsIncompleteEntry() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_QUEUED, 0));
+    downloadIndex.put(newRecord(/* key= */ 1, "321", TaskState.STATE_QUEUED, 0));
+    // Simulate an interrupted write of the last entry.
+    RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+    file.setLength(file.length() - 1);
+    file.close();
+
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(1);
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_QUEUED, 0);
+
+    // Entries appended after the discarded one are loaded.
+    downloadIndex.put(newRecord(/* key= */ 2, "321", TaskState.STATE_QUEUED, 0));
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(2);
+    assertRecord(downloadIndex.getRecord(2), /* key= */ 2, "321", TaskState.STATE_QUEUED, 0);
+  }
+
+  @Test
+  public void testObsoleteEntriesAreDiscarded() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_STARTED, 0));
+    long headerLength = 4;
+    long entryLength = tempFile.length() - headerLength;
+    for (int i = 1; i <= 1000; i++) {
+      downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_STARTED, i));
+    }
+
+    assertThat(tempFile.length()).isLessThan(headerLength + 100 * entryLength);
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(1);
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_STARTED, 1000);
+  }
+
+  @Test
+  public void testLoadMigratesActionFile() throws Exception {
+    new ActionFile(tempFile)
+        .store(
+            new FakeDownloadAction(TYPE, Util.getUtf8Bytes("123")),
+            new FakeDownloadAction(TYPE, Util.getUtf8Bytes("321")));
+
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(2);
+    assertRecord(downloadIndex.getRecord(0), /* key= */ 0, "123", TaskState.STATE_QUEUED, 0);
+    assertRecord(downloadIndex.getRecord(1), /* key= */ 1, "321", TaskState.STATE_QUEUED, 0);
+
+    downloadIndex = loadDownloadIndex();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testClearDeletesFile() throws Exception {
+    DownloadIndex downloadIndex = loadDownloadIndex();
+    downloadIndex.put(newRecord(/* key= */ 0, "123", TaskState.STATE_QUEUED, 0));
+    downloadIndex.clear();
+    assertThat(downloadIndex.getRecordCount()).isEqualTo(0);
+    assertThat(tempFile.exists()).isFalse();
+  }
+
+  private DownloadIndex loadDownloadIndex() throws IOException {
+    DownloadIndex downloadIndex = new DownloadIndex(tempFile);
+    downloadIndex.load(new FakeDeserializer(TYPE));
+    return downloadIndex;
+  }
+
+  private static Record newRecord(int key, String data, int state, long downloadedBytes) {
+    return new Record(
+        key,
+        new FakeDownloadAction(TYPE, Util.getUtf8Bytes(data)),
+        state,
+        C.PERCENTAGE_UNSET,
+        downloadedBytes);
+  }
+
+  private static void assertRecord(
+      Record record, int key, String data, int state, long downloadedBytes) {
+    assertThat(record).isNotNull();
+    assertThat(record.key).isEqualTo(key);
+    assertThat(record.action).isEqualTo(new FakeDownloadAction(TYPE, Util.getUtf8Bytes(data)));
+    assertThat(record.state).isEqualTo(state);
+    assertThat(record.downloadPercentage).isEqualTo(C.PERCENTAGE_UNSET);
+    assertThat(record.downloadedBytes).isEqualTo(downloadedBytes);
+  }
+
+  private static class FakeDeserializer extends Deserializer {
+
+    FakeDeserializer(String type) {
+      super(type, FakeDownloadAction.VERSION);
+    }
+
+    @Override
+    public DownloadAction readFromStream(int version, DataInputStream input) throws IOException {
+      int dataLength = input.readInt();
+      byte[] data = new byte[dataLength];
+      input.readFully(data);
+      return new FakeDownloadAction(type, data);
+    }
+  }
+
+  private static class FakeDownloadAction extends DownloadAction {
+
+    public static final int VERSION = 0;
+
+    private FakeDownloadAction(String type, byte[] data) {
+      super(type, VERSION, Uri.parse("http://test.com"), /* isRemoveAction= */ false, data);
+    }
+
+    @Override
+    protected void writeToStream(DataOutputStream output) throws IOException {
+      output.writeInt(data.length);
+      output.write(data);
+    }
+
+    @Override
+    public Downloader createDownloader(DownloaderConstructorHelper downloaderConstructorHelper) {
+      return null;
+    }
+  }
+}
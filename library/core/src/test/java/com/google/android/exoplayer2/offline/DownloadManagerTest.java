@@ -28,9 +28,13 @@ import com.google.android.exoplayer2.testutil.TestDownloadManagerListener;
 import com.google.android.exoplayer2.upstream.DummyDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.After;
@@ -60,6 +64,7 @@ public class DownloadManagerTest {
   private Uri uri1;
   private Uri uri2;
   private Uri uri3;
+  private Uri uri4;
   private DummyMainThread dummyMainThread;
   private File actionFile;
   private TestDownloadManagerListener downloadManagerListener;
@@ -71,6 +76,7 @@ public class DownloadManagerTest {
     uri1 = Uri.parse("http://abc.com/media1");
     uri2 = Uri.parse("http://abc.com/media2");
     uri3 = Uri.parse("http://abc.com/media3");
+    uri4 = Uri.parse("http://abc.com/media4");
     dummyMainThread = new DummyMainThread();
     actionFile = Util.createTempFile(RuntimeEnvironment.application, "ExoPlayerTest");
     setUpDownloadManager(100);
@@ -391,7 +397,101 @@ public class DownloadManagerTest {
     downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
   }
 
+  @Test
+  public void testRecordKeysAndOrderArePreservedOnRestart() throws Throwable {
+    setUpDownloadManager(100, /* startDownloads= */ false);
+    blockUntilInitialized();
+    DownloadAction action1 = createProgressiveDownloadAction(uri1);
+    DownloadAction action2 = createProgressiveDownloadAction(uri2);
+    DownloadAction action3 = createProgressiveDownloadAction(uri3);
+    runOnMainThread(
+        () -> {
+          downloadManager.handleAction(action1);
+          downloadManager.handleAction(action2);
+          downloadManager.handleAction(action3);
+        });
+
+    setUpDownloadManager(100, /* startDownloads= */ false);
+    blockUntilInitialized();
+
+    assertRecords(action1, action2, action3);
+    assertTaskActions(action1, action2, action3);
+
+    DownloadAction action4 = createProgressiveDownloadAction(uri4);
+    runOnMainThread(() -> downloadManager.handleAction(action4));
+    releaseDownloadManager();
+
+    List<DownloadIndex.Record> records =
+        downloadManager.getDownloadRecords(/* offset= */ 3, /* limit= */ 10);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).key).isEqualTo(3);
+    assertThat(records.get(0).action).isEqualTo(action4);
+  }
+
+  @Test
+  public void testActionFileIsMigrated() throws Throwable {
+    releaseDownloadManager();
+    DownloadAction action1 = createProgressiveDownloadAction(uri1);
+    DownloadAction action2 = createProgressiveDownloadAction(uri2);
+    new ActionFile(actionFile).store(action1, action2);
+
+    setUpDownloadManager(100, /* startDownloads= */ false);
+    blockUntilInitialized();
+
+    assertRecords(action1, action2);
+    assertTaskActions(action1, action2);
+  }
+
+  @Test
+  public void testProgressIsRestored() throws Throwable {
+    releaseDownloadManager();
+    DownloadAction action = createProgressiveDownloadAction(uri1);
+    DownloadIndex downloadIndex = new DownloadIndex(actionFile);
+    downloadIndex.load(ProgressiveDownloadAction.DESERIALIZER);
+    downloadIndex.put(
+        new DownloadIndex.Record(
+            /* key= */ 0,
+            action,
+            TaskState.STATE_STARTED,
+            /* downloadPercentage= */ 50,
+            /* downloadedBytes= */ 1000));
+
+    setUpDownloadManager(100, /* startDownloads= */ false);
+    blockUntilInitialized();
+
+    TaskState[] taskStates = getAllTaskStates();
+    assertThat(taskStates).hasLength(1);
+    assertThat(taskStates[0].action).isEqualTo(action);
+    // Started tasks are queued again.
+    assertThat(taskStates[0].state).isEqualTo(TaskState.STATE_QUEUED);
+    assertThat(taskStates[0].downloadPercentage).isEqualTo(50f);
+    assertThat(taskStates[0].downloadedBytes).isEqualTo(1000);
+  }
+
+  @Test
+  public void testActionFileIsKeptIfLoadingFails() throws Throwable {
+    releaseDownloadManager();
+    DataOutputStream output = new DataOutputStream(new FileOutputStream(actionFile));
+    output.writeInt(DownloadIndex.VERSION + 1);
+    output.close();
+    byte[] fileContent = readActionFile();
+
+    setUpDownloadManager(100, /* startDownloads= */ false);
+    blockUntilInitialized();
+    assertThat(getAllTaskStates()).isEmpty();
+    runOnMainThread(() -> downloadManager.handleAction(createProgressiveDownloadAction(uri1)));
+    releaseDownloadManager();
+
+    assertThat(downloadManager.getDownloadRecords(/* offset= */ 0, /* limit= */ 10)).isEmpty();
+    assertThat(readActionFile()).isEqualTo(fileContent);
+  }
+
   private void setUpDownloadManager(final int maxActiveDownloadTasks) throws Exception {
+    setUpDownloadManager(maxActiveDownloadTasks, /* startDownloads= */ true);
+  }
+
+  private void setUpDownloadManager(final int maxActiveDownloadTasks, boolean startDownloads)
+      throws Exception {
     if (downloadManager != null) {
       releaseDownloadManager();
     }
@@ -409,7 +509,9 @@ public class DownloadManagerTest {
             downloadManagerListener =
                 new TestDownloadManagerListener(downloadManager, dummyMainThread);
             downloadManager.addListener(downloadManagerListener);
-            downloadManager.startDownloads();
+            if (startDownloads) {
+              downloadManager.startDownloads();
+            }
           });
     } catch (Throwable throwable) {
       throw new Exception(throwable);
@@ -424,6 +526,77 @@ public class DownloadManagerTest {
     }
   }
 
+  private void blockUntilInitialized() throws InterruptedException {
+    CountDownLatch initialized = new CountDownLatch(1);
+    runOnMainThread(
+        () -> {
+          if (downloadManager.isInitialized()) {
+            initialized.countDown();
+            return;
+          }
+          downloadManager.addListener(
+              new DownloadManager.Listener() {
+                @Override
+                public void onInitialized(DownloadManager downloadManager) {
+                  initialized.countDown();
+                }
+
+                @Override
+                public void onTaskStateChanged(
+                    DownloadManager downloadManager, TaskState taskState) {
+                  // Do nothing.
+                }
+
+                @Override
+                public void onIdle(DownloadManager downloadManager) {
+                  // Do nothing.
+                }
+              });
+        });
+    assertThat(initialized.await(ASSERT_TRUE_TIMEOUT, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  private TaskState[] getAllTaskStates() {
+    TaskState[][] taskStates = new TaskState[1][];
+    runOnMainThread(() -> taskStates[0] = downloadManager.getAllTaskStates());
+    return taskStates[0];
+  }
+
+  private void assertTaskActions(DownloadAction... actions) {
+    TaskState[] taskStates = getAllTaskStates();
+    assertThat(taskStates).hasLength(actions.length);
+    for (int i = 0; i < actions.length; i++) {
+      assertThat(taskStates[i].action).isEqualTo(actions[i]);
+    }
+  }
+
+  /** Asserts the records of the download manager, which are expected to have consecutive keys. */
+  private void assertRecords(DownloadAction... actions) {
+    List<DownloadIndex.Record> records =
+        downloadManager.getDownloadRecords(/* offset= */ 0, /* limit= */ 10);
+    assertThat(records).hasSize(actions.length);
+    for (int i = 0; i < actions.length; i++) {
+      assertThat(records.get(i).key).isEqualTo(i);
+      assertThat(records.get(i).action).isEqualTo(actions[i]);
+    }
+  }
+
+  private byte[] readActionFile() throws IOException {
+    byte[] content = new byte[(int) actionFile.length()];
+    DataInputStream input = new DataInputStream(new FileInputStream(actionFile));
+    try {
+      input.readFully(content);
+    } finally {
+      input.close();
+    }
+    return content;
+  }
+
+  private static DownloadAction createProgressiveDownloadAction(Uri uri) {
+    return ProgressiveDownloadAction.createDownloadAction(
+        uri, /* data= */ null, /* customCacheKey= */ null);
+  }
+
   private void doTestActionRuns(FakeDownloadAction action) throws Throwable {
     action.post().assertStarted().unblock().assertCompleted();
     downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
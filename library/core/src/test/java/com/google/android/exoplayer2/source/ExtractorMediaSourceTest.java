@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.ConditionVariable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.Timeline.Window;
+import com.google.android.exoplayer2.extractor.ChunkIndex;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.testutil.MediaSourceTestRunner;
+import com.google.android.exoplayer2.testutil.RobolectricUtil;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** Unit tests for {@link ExtractorMediaSource}. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {RobolectricUtil.CustomLooper.class, RobolectricUtil.CustomMessageQueue.class})
+public final class ExtractorMediaSourceTest {
+
+  private static final long DURATION_US = 10 * C.MICROS_PER_SECOND;
+
+  private ConditionVariable outputSeekableSeekMap;
+  private MediaSourceTestRunner testRunner;
+
+  @Before
+  public void setUp() {
+    outputSeekableSeekMap = new ConditionVariable();
+    ExtractorMediaSource mediaSource =
+        new ExtractorMediaSource.Factory(
+                new DefaultDataSourceFactory(RuntimeEnvironment.application, "UserAgent"))
+            .setExtractorsFactory(
+                () -> new Extractor[] {new LateSeekMapExtractor(outputSeekableSeekMap)})
+            .createMediaSource(TestUtil.buildAssetUri("mkv/sample.mkv"));
+    testRunner =
+        new MediaSourceTestRunner(
+            mediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+  }
+
+  @After
+  public void tearDown() {
+    // Unblock the loading thread in case the test failed before doing so.
+    outputSeekableSeekMap.open();
+    testRunner.release();
+  }
+
+  @Test
+  public void testSeekMapOutputAfterPreparationUpdatesTimelineAndPeriod() throws Exception {
+    Timeline timeline = testRunner.prepareSource();
+    MediaPeriod mediaPeriod =
+        testRunner.createPeriod(
+            new MediaPeriodId(timeline.getUidOfPeriod(0), /* windowSequenceNumber= */ 0));
+    CountDownLatch preparedCountDown = testRunner.preparePeriod(mediaPeriod, /* positionUs= */ 0);
+    assertThat(preparedCountDown.await(MediaSourceTestRunner.TIMEOUT_MS, TimeUnit.MILLISECONDS))
+        .isTrue();
+
+    // The period is prepared with the unseekable seek map.
+    Window window = testRunner.assertTimelineChangeBlocking().getWindow(0, new Window());
+    assertThat(window.isSeekable).isFalse();
+    assertThat(window.durationUs).isEqualTo(DURATION_US);
+
+    // The seekable seek map output after preparation reaches the timeline and the period.
+    outputSeekableSeekMap.open();
+    window = testRunner.assertTimelineChangeBlocking().getWindow(0, new Window());
+    assertThat(window.isSeekable).isTrue();
+    assertThat(window.durationUs).isEqualTo(DURATION_US);
+    assertThat(seekPeriodTo(mediaPeriod, DURATION_US / 2)).isEqualTo(DURATION_US / 2);
+
+    testRunner.releasePeriod(mediaPeriod);
+    testRunner.releaseSource();
+  }
+
+  private long seekPeriodTo(MediaPeriod mediaPeriod, long positionUs) {
+    long[] seekPositionUs = new long[1];
+    testRunner.runOnPlaybackThread(() -> seekPositionUs[0] = mediaPeriod.seekToUs(positionUs));
+    return seekPositionUs[0];
+  }
+
+  /**
+   * Extractor that outputs a single track and an unseekable {@link SeekMap}, and then outputs a
+   * seekable {@link SeekMap} once allowed to.
+   */
+  private static final class LateSeekMapExtractor implements Extractor {
+
+    private final ConditionVariable outputSeekableSeekMap;
+
+    private ExtractorOutput output;
+
+    public LateSeekMapExtractor(ConditionVariable outputSeekableSeekMap) {
+      this.outputSeekableSeekMap = outputSeekableSeekMap;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) {
+      return true;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      this.output = output;
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) {
+      output
+          .track(/* id= */ 0, C.TRACK_TYPE_AUDIO)
+          .format(
+              Format.createSampleFormat(
+                  /* id= */ null, MimeTypes.AUDIO_AAC, /* subsampleOffsetUs= */ 0));
+      output.endTracks();
+      output.seekMap(new SeekMap.Unseekable(DURATION_US));
+      outputSeekableSeekMap.block();
+      output.seekMap(
+          new ChunkIndex(
+              /* sizes= */ new int[] {1},
+              /* offsets= */ new long[] {0},
+              /* durationsUs= */ new long[] {DURATION_US},
+              /* timesUs= */ new long[] {0}));
+      return RESULT_END_OF_INPUT;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link CueTimeline}. */
+@RunWith(RobolectricTestRunner.class)
+public final class CueTimelineTest {
+
+  private static final Cue[] CUES = new Cue[] {new Cue("0"), new Cue("1"), new Cue("2")};
+
+  private int buildCount;
+
+  @Test
+  public void testGetCuesReturnsActiveCues() {
+    CueTimeline cueTimeline =
+        createCueTimeline(new long[] {1000, 2000, 2000}, new long[] {3000, 4000, 2500});
+
+    assertThat(cueTimeline.getCues(0)).isEmpty();
+    assertThat(getCueText(cueTimeline.getCues(1000))).isEqualTo("0");
+    assertThat(getCueText(cueTimeline.getCues(2000))).isEqualTo("012");
+    assertThat(getCueText(cueTimeline.getCues(2499))).isEqualTo("012");
+    assertThat(getCueText(cueTimeline.getCues(2500))).isEqualTo("01");
+    assertThat(getCueText(cueTimeline.getCues(3000))).isEqualTo("1");
+    assertThat(cueTimeline.getCues(4000)).isEmpty();
+    assertThat(cueTimeline.getCues(Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testActiveCuesAreInIndexOrder() {
+    CueTimeline cueTimeline =
+        createCueTimeline(new long[] {2000, 1000, 0}, new long[] {3000, 3000, 3000});
+
+    assertThat(getCueText(cueTimeline.getCues(2000))).isEqualTo("012");
+  }
+
+  @Test
+  public void testCuesThatEndBeforeStartingAreNeverActive() {
+    CueTimeline cueTimeline =
+        createCueTimeline(new long[] {1000, 2000, 3000}, new long[] {1000, 1000, 4000});
+
+    assertThat(cueTimeline.getCues(1000)).isEmpty();
+    assertThat(cueTimeline.getCues(2000)).isEmpty();
+    assertThat(getCueText(cueTimeline.getCues(3000))).isEqualTo("2");
+  }
+
+  @Test
+  public void testCueListIsReusedWithinSegment() {
+    CueTimeline cueTimeline =
+        createCueTimeline(new long[] {1000, 2000, 3000}, new long[] {2000, 3000, 4000});
+
+    List<Cue> cues = cueTimeline.getCues(1000);
+    assertThat(cueTimeline.getCues(1500) == cues).isTrue();
+    assertThat(cueTimeline.getCues(1999) == cues).isTrue();
+    assertThat(buildCount).isEqualTo(1);
+    cueTimeline.getCues(2000);
+    assertThat(buildCount).isEqualTo(2);
+  }
+
+  @Test
+  public void testEmptyTimeline() {
+    CueTimeline cueTimeline = createCueTimeline(new long[0], new long[0]);
+
+    assertThat(cueTimeline.getCues(0)).isEmpty();
+    assertThat(buildCount).isEqualTo(0);
+  }
+
+  private CueTimeline createCueTimeline(long[] startTimesUs, long[] endTimesUs) {
+    return new CueTimeline(
+        startTimesUs,
+        endTimesUs,
+        cueIndices -> {
+          buildCount++;
+          List<Cue> cues = new ArrayList<>();
+          for (int cueIndex : cueIndices) {
+            cues.add(CUES[cueIndex]);
+          }
+          return cues;
+        });
+  }
+
+  private static String getCueText(List<Cue> cues) {
+    StringBuilder text = new StringBuilder();
+    for (Cue cue : cues) {
+      text.append(cue.text);
+    }
+    return text.toString();
+  }
+}
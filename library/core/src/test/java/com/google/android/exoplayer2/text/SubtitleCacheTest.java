@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link SubtitleCache}. */
+@RunWith(RobolectricTestRunner.class)
+public final class SubtitleCacheTest {
+
+  private static final Format FORMAT =
+      Format.createTextSampleFormat(
+          /* id= */ "1", MimeTypes.TEXT_VTT, /* selectionFlags= */ 0, /* language= */ "en");
+  private static final Format OTHER_FORMAT =
+      Format.createTextSampleFormat(
+          /* id= */ "2", MimeTypes.TEXT_VTT, /* selectionFlags= */ 0, /* language= */ "de");
+
+  @Test
+  public void testGetReturnsSubtitleForSameSample() {
+    SubtitleCache subtitleCache = new SubtitleCache();
+    Subtitle subtitle = new FakeSubtitle();
+
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10), subtitle);
+
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10)))
+        .isSameAs(subtitle);
+  }
+
+  @Test
+  public void testGetReturnsNullForDifferentSample() {
+    SubtitleCache subtitleCache = new SubtitleCache();
+    byte[] data = new byte[] {1, 2, 3};
+    subtitleCache.put(SubtitleCache.createKey(FORMAT, 0, data, data.length), new FakeSubtitle());
+
+    assertThat(subtitleCache.get(SubtitleCache.createKey(OTHER_FORMAT, 0, data, data.length)))
+        .isNull();
+    assertThat(subtitleCache.get(SubtitleCache.createKey(FORMAT, 1, data, data.length))).isNull();
+    assertThat(subtitleCache.get(SubtitleCache.createKey(FORMAT, 0, data, /* size= */ 2)))
+        .isNull();
+    byte[] otherData = new byte[] {1, 2, 4};
+    assertThat(subtitleCache.get(SubtitleCache.createKey(FORMAT, 0, otherData, otherData.length)))
+        .isNull();
+  }
+
+  @Test
+  public void testGetReturnsNullForDifferentInitializationData() {
+    SubtitleCache subtitleCache = new SubtitleCache();
+    byte[] data = new byte[] {1, 2, 3};
+    subtitleCache.put(
+        SubtitleCache.createKey(createSsaFormat("header1"), 0, data, data.length),
+        new FakeSubtitle());
+
+    assertThat(
+            subtitleCache.get(
+                SubtitleCache.createKey(createSsaFormat("header1"), 0, data, data.length)))
+        .isNotNull();
+    assertThat(
+            subtitleCache.get(
+                SubtitleCache.createKey(createSsaFormat("header2"), 0, data, data.length)))
+        .isNull();
+  }
+
+  @Test
+  public void testPutWithEstimatedSize() {
+    SubtitleCache subtitleCache = new SubtitleCache(/* maxSizeBytes= */ 100);
+
+    subtitleCache.put(
+        createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10),
+        new FakeSubtitle(),
+        /* entrySizeBytes= */ 90);
+    subtitleCache.put(
+        createKey(FORMAT, /* timeUs= */ 1, /* size= */ 10),
+        new FakeSubtitle(),
+        /* entrySizeBytes= */ 20);
+
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10))).isNull();
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 1, /* size= */ 10))).isNotNull();
+    assertThat(subtitleCache.getSizeBytes()).isEqualTo(20);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedSubtitle() {
+    // Each 10 byte sample is estimated to use 40 bytes, so two fit in the cache.
+    SubtitleCache subtitleCache = new SubtitleCache(/* maxSizeBytes= */ 100);
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10), new FakeSubtitle());
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 1, /* size= */ 10), new FakeSubtitle());
+    subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10));
+
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 2, /* size= */ 10), new FakeSubtitle());
+
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10))).isNotNull();
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 1, /* size= */ 10))).isNull();
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 2, /* size= */ 10))).isNotNull();
+    assertThat(subtitleCache.getSizeBytes()).isEqualTo(80);
+  }
+
+  @Test
+  public void testDoesNotAddSubtitleLargerThanCache() {
+    SubtitleCache subtitleCache = new SubtitleCache(/* maxSizeBytes= */ 100);
+
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 30), new FakeSubtitle());
+
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 30))).isNull();
+    assertThat(subtitleCache.getSizeBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void testClearRemovesAllSubtitles() {
+    SubtitleCache subtitleCache = new SubtitleCache();
+    subtitleCache.put(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10), new FakeSubtitle());
+
+    subtitleCache.clear();
+
+    assertThat(subtitleCache.get(createKey(FORMAT, /* timeUs= */ 0, /* size= */ 10))).isNull();
+    assertThat(subtitleCache.getSizeBytes()).isEqualTo(0);
+  }
+
+  private static Format createSsaFormat(String header) {
+    return Format.createTextSampleFormat(
+        /* id= */ "1",
+        MimeTypes.TEXT_SSA,
+        /* codecs= */ null,
+        /* bitrate= */ Format.NO_VALUE,
+        /* selectionFlags= */ 0,
+        /* language= */ null,
+        /* accessibilityChannel= */ Format.NO_VALUE,
+        /* drmInitData= */ null,
+        Format.OFFSET_SAMPLE_RELATIVE,
+        Collections.singletonList(Util.getUtf8Bytes(header)));
+  }
+
+  private static SubtitleCache.Key createKey(Format format, long timeUs, int size) {
+    return SubtitleCache.createKey(format, timeUs, new byte[size], size);
+  }
+
+  private static final class FakeSubtitle implements Subtitle {
+
+    @Override
+    public int getNextEventTimeIndex(long timeUs) {
+      return 0;
+    }
+
+    @Override
+    public int getEventTimeCount() {
+      return 0;
+    }
+
+    @Override
+    public long getEventTime(int index) {
+      return 0;
+    }
+
+    @Override
+    public List<Cue> getCues(long timeUs) {
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.cea;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.rawcc.RawCcExtractor;
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Benchmark comparing the time taken to extract the cues of a CEA-608 stream with a {@link
+ * CeaBatchDecoder}, and with a {@link Cea608Decoder} driven the way {@code TextRenderer} drives it.
+ *
+ * <p>Ignored, as it isn't a unit test. Remove the {@link Ignore} annotation to run it. The samples
+ * of the raw CEA-608 test asset are decoded repeatedly, as if the asset were repeated to make a
+ * long stream, and the CPU time spent per sample is reported.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class CeaBatchDecoderBenchmark {
+
+  private static final String SAMPLE_RAWCC = "rawcc/sample.rawcc";
+  private static final int STREAM_REPETITIONS = 1000;
+
+  private static final Format FORMAT =
+      Format.createTextContainerFormat(
+          /* id= */ null,
+          /* label= */ null,
+          /* containerMimeType= */ null,
+          /* sampleMimeType= */ MimeTypes.APPLICATION_CEA608,
+          /* codecs= */ "cea608",
+          /* bitrate= */ Format.NO_VALUE,
+          /* selectionFlags= */ 0,
+          /* language= */ null,
+          /* accessibilityChannel= */ 1);
+
+  private interface StreamDecoder {
+
+    /** Decodes the stream, returning the number of cue changes. */
+    int decode(Stream stream) throws Exception;
+  }
+
+  @Ignore
+  @Test
+  public void benchmark() throws Exception {
+    FakeTrackOutput trackOutput =
+        TestUtil.extractAllSamplesFromFile(
+                new RawCcExtractor(FORMAT), RuntimeEnvironment.application, SAMPLE_RAWCC)
+            .trackOutputs
+            .get(0);
+    Stream stream = new Stream(trackOutput);
+
+    measure("CeaBatchDecoder", stream, CeaBatchDecoderBenchmark::decodeInBatch);
+    measure("Cea608Decoder", stream, CeaBatchDecoderBenchmark::decodeAsRenderer);
+  }
+
+  private static void measure(String name, Stream stream, StreamDecoder streamDecoder)
+      throws Exception {
+    double cpuTimeNs = BenchmarkUtil.measureCpuTimeNs(() -> streamDecoder.decode(stream));
+    BenchmarkUtil.report(
+        "%s: %.0f ns CPU per sample, %d cue changes",
+        name,
+        cpuTimeNs / stream.getSampleCount(),
+        streamDecoder.decode(stream));
+  }
+
+  private static int decodeInBatch(Stream stream) {
+    int[] cueChangeCount = new int[1];
+    CeaBatchDecoder decoder =
+        new CeaBatchDecoder(FORMAT, (startTimeUs, endTimeUs, cues) -> cueChangeCount[0]++);
+    for (int i = 0; i < stream.getSampleCount(); i++) {
+      byte[] data = stream.getSampleData(i);
+      decoder.consumeSample(stream.getSampleTimeUs(i), data, /* offset= */ 0, data.length);
+    }
+    decoder.endOfStream();
+    return cueChangeCount[0];
+  }
+
+  private static int decodeAsRenderer(Stream stream) throws SubtitleDecoderException {
+    Cea608Decoder decoder = new Cea608Decoder(FORMAT.sampleMimeType, FORMAT.accessibilityChannel);
+    int cueChangeCount = 0;
+    int sampleIndex = 0;
+    while (sampleIndex < stream.getSampleCount()) {
+      SubtitleInputBuffer inputBuffer;
+      while (sampleIndex < stream.getSampleCount()
+          && (inputBuffer = decoder.dequeueInputBuffer()) != null) {
+        byte[] data = stream.getSampleData(sampleIndex);
+        inputBuffer.ensureSpaceForWrite(data.length);
+        inputBuffer.data.put(data);
+        inputBuffer.timeUs = stream.getSampleTimeUs(sampleIndex);
+        inputBuffer.subsampleOffsetUs = Format.OFFSET_SAMPLE_RELATIVE;
+        inputBuffer.flip();
+        decoder.queueInputBuffer(inputBuffer);
+        sampleIndex++;
+      }
+      // Advance the position to the last queued sample, as playback would.
+      decoder.setPositionUs(stream.getSampleTimeUs(sampleIndex - 1));
+      SubtitleOutputBuffer outputBuffer;
+      while ((outputBuffer = decoder.dequeueOutputBuffer()) != null) {
+        cueChangeCount++;
+        outputBuffer.release();
+      }
+    }
+    decoder.release();
+    return cueChangeCount;
+  }
+
+  /** The samples of the test asset, repeated to make a long stream. */
+  private static final class Stream {
+
+    private final byte[][] sampleData;
+    private final long[] sampleTimesUs;
+    private final long durationUs;
+
+    public Stream(FakeTrackOutput trackOutput) {
+      int sampleCount = trackOutput.getSampleCount();
+      sampleData = new byte[sampleCount][];
+      sampleTimesUs = new long[sampleCount];
+      for (int i = 0; i < sampleCount; i++) {
+        sampleData[i] = trackOutput.getSampleData(i);
+        sampleTimesUs[i] = trackOutput.getSampleTimeUs(i);
+      }
+      durationUs = sampleTimesUs[sampleCount - 1] + 1;
+    }
+
+    public int getSampleCount() {
+      return sampleData.length * STREAM_REPETITIONS;
+    }
+
+    public byte[] getSampleData(int index) {
+      return sampleData[index % sampleData.length];
+    }
+
+    public long getSampleTimeUs(int index) {
+      return (index / sampleData.length) * durationUs + sampleTimesUs[index % sampleData.length];
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.cea;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link CeaBatchDecoder}. */
+@RunWith(RobolectricTestRunner.class)
+public final class CeaBatchDecoderTest {
+
+  private static final Format FORMAT =
+      Format.createTextSampleFormat(
+          /* id= */ null,
+          MimeTypes.APPLICATION_CEA608,
+          /* selectionFlags= */ 0,
+          /* language= */ null);
+
+  // CEA-608 packets for field 1, each consisting of a header and two bytes of data.
+  private static final byte[] RESUME_DIRECT_CAPTIONING =
+      TestUtil.createByteArray(0xFC, 0x14, 0x29);
+  private static final byte[] TEXT_HI = TestUtil.createByteArray(0xFC, 'H', 'I');
+  private static final byte[] ERASE_DISPLAYED_MEMORY = TestUtil.createByteArray(0xFC, 0x14, 0x2C);
+
+  private List<OutputCues> outputCues;
+  private CeaBatchDecoder decoder;
+
+  @Before
+  public void setUp() {
+    outputCues = new ArrayList<>();
+    decoder =
+        new CeaBatchDecoder(
+            FORMAT,
+            (startTimeUs, endTimeUs, cues) ->
+                outputCues.add(new OutputCues(startTimeUs, endTimeUs, cues)));
+  }
+
+  @Test
+  public void testOutputsCuesWithStartAndEndTimes() {
+    consumeSample(/* timeUs= */ 0, RESUME_DIRECT_CAPTIONING);
+    consumeSample(/* timeUs= */ 1000000, TEXT_HI);
+    consumeSample(/* timeUs= */ 3000000, ERASE_DISPLAYED_MEMORY);
+    decoder.endOfStream();
+
+    assertThat(outputCues).hasSize(1);
+    assertOutputCues(outputCues.get(0), /* startTimeUs= */ 1000000, /* endTimeUs= */ 3000000, "HI");
+  }
+
+  @Test
+  public void testReordersSamplesPassedInDecodeOrder() {
+    consumeSample(/* timeUs= */ 0, RESUME_DIRECT_CAPTIONING);
+    consumeSample(/* timeUs= */ 3000000, ERASE_DISPLAYED_MEMORY);
+    consumeSample(/* timeUs= */ 1000000, TEXT_HI);
+    decoder.endOfStream();
+
+    assertThat(outputCues).hasSize(1);
+    assertOutputCues(outputCues.get(0), /* startTimeUs= */ 1000000, /* endTimeUs= */ 3000000, "HI");
+  }
+
+  @Test
+  public void testEndOfStreamOutputsDisplayedCues() {
+    consumeSample(/* timeUs= */ 0, RESUME_DIRECT_CAPTIONING);
+    consumeSample(/* timeUs= */ 1000000, TEXT_HI);
+    assertThat(outputCues).isEmpty();
+
+    decoder.endOfStream();
+
+    assertThat(outputCues).hasSize(1);
+    assertOutputCues(outputCues.get(0), /* startTimeUs= */ 1000000, C.TIME_UNSET, "HI");
+  }
+
+  @Test
+  public void testResetDiscardsPendingSamples() {
+    consumeSample(/* timeUs= */ 0, RESUME_DIRECT_CAPTIONING);
+    consumeSample(/* timeUs= */ 1000000, TEXT_HI);
+    decoder.reset();
+    decoder.endOfStream();
+
+    assertThat(outputCues).isEmpty();
+  }
+
+  @Test
+  public void testConsumeSei() {
+    decoder.consumeSei(/* presentationTimeUs= */ 0, buildSei(RESUME_DIRECT_CAPTIONING));
+    decoder.consumeSei(/* presentationTimeUs= */ 1000000, buildSei(TEXT_HI));
+    decoder.consumeSei(/* presentationTimeUs= */ 3000000, buildSei(ERASE_DISPLAYED_MEMORY));
+    decoder.endOfStream();
+
+    assertThat(outputCues).hasSize(1);
+    assertOutputCues(outputCues.get(0), /* startTimeUs= */ 1000000, /* endTimeUs= */ 3000000, "HI");
+  }
+
+  private void consumeSample(long timeUs, byte[] data) {
+    decoder.consumeSample(timeUs, data, /* offset= */ 0, data.length);
+  }
+
+  private static void assertOutputCues(
+      OutputCues outputCues, long startTimeUs, long endTimeUs, String text) {
+    assertThat(outputCues.startTimeUs).isEqualTo(startTimeUs);
+    assertThat(outputCues.endTimeUs).isEqualTo(endTimeUs);
+    assertThat(outputCues.cues).hasSize(1);
+    assertThat(outputCues.cues.get(0).text.toString()).isEqualTo(text);
+  }
+
+  /** Returns an SEI NAL unit carrying an ATSC A/53 caption message with one CEA-608 packet. */
+  private static ParsableByteArray buildSei(byte[] packet) {
+    byte[] payload =
+        TestUtil.joinByteArrays(
+            TestUtil.createByteArray(
+                0xB5, // itu_t_t35_country_code.
+                0x00, 0x31, // itu_t_t35_provider_code (ATSC).
+                'G', 'A', '9', '4', // user_identifier.
+                0x03, // user_data_type_code (cc_data).
+                0x41, // process_cc_data_flag, cc_count.
+                0xFF), // em_data.
+            packet,
+            TestUtil.createByteArray(0xFF)); // marker_bits.
+    byte[] sei =
+        TestUtil.joinByteArrays(
+            TestUtil.createByteArray(/* payloadType= */ 4, payload.length),
+            payload,
+            TestUtil.createByteArray(0x80)); // rbsp_trailing_bits.
+    return new ParsableByteArray(sei);
+  }
+
+  private static final class OutputCues {
+
+    public final long startTimeUs;
+    public final long endTimeUs;
+    public final List<Cue> cues;
+
+    public OutputCues(long startTimeUs, long endTimeUs, List<Cue> cues) {
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+      this.cues = cues;
+    }
+  }
+}
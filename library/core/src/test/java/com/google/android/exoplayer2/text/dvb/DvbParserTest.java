@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.dvb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.Cue;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for the reuse of region cues by {@link DvbParser}. */
+@RunWith(RobolectricTestRunner.class)
+public final class DvbParserTest {
+
+  private static final int SUBTITLE_PAGE_ID = 1;
+  private static final int ANCILLARY_PAGE_ID = 2;
+
+  private static final int SEGMENT_TYPE_PAGE_COMPOSITION = 0x10;
+  private static final int SEGMENT_TYPE_REGION_COMPOSITION = 0x11;
+
+  private static final int PAGE_STATE_NORMAL = 0;
+  private static final int PAGE_STATE_ACQUISITION = 1;
+
+  private static final int REGION_WIDTH = 100;
+  private static final int REGION_HEIGHT = 20;
+
+  private DvbParser parser;
+
+  @Before
+  public void setUp() {
+    parser = new DvbParser(SUBTITLE_PAGE_ID, ANCILLARY_PAGE_ID);
+  }
+
+  @Test
+  public void testDecodeUnchangedRegionsReusesCues() {
+    List<Cue> cues =
+        decode(
+            createPageCompositionSegment(/* version= */ 0, PAGE_STATE_ACQUISITION, 1, 2),
+            createRegionCompositionSegment(/* regionId= */ 1, /* version= */ 0),
+            createRegionCompositionSegment(/* regionId= */ 2, /* version= */ 0));
+    assertThat(cues).hasSize(2);
+
+    List<Cue> unchangedCues = decode();
+
+    assertThat(unchangedCues).hasSize(2);
+    assertThat(unchangedCues.get(0)).isSameAs(cues.get(0));
+    assertThat(unchangedCues.get(1)).isSameAs(cues.get(1));
+  }
+
+  @Test
+  public void testDecodeUpdatedRegionRepaintsOnlyThatRegion() {
+    List<Cue> cues =
+        decode(
+            createPageCompositionSegment(/* version= */ 0, PAGE_STATE_ACQUISITION, 1, 2),
+            createRegionCompositionSegment(/* regionId= */ 1, /* version= */ 0),
+            createRegionCompositionSegment(/* regionId= */ 2, /* version= */ 0));
+
+    List<Cue> updatedCues =
+        decode(createRegionCompositionSegment(/* regionId= */ 2, /* version= */ 1));
+
+    assertThat(updatedCues).hasSize(2);
+    assertThat(updatedCues.get(0)).isSameAs(cues.get(0));
+    assertThat(updatedCues.get(1)).isNotSameAs(cues.get(1));
+    assertThat(updatedCues.get(1).bitmap).isNotSameAs(cues.get(1).bitmap);
+  }
+
+  @Test
+  public void testDecodeRegionRemovedFromPageCompositionDropsItsCue() {
+    List<Cue> cues =
+        decode(
+            createPageCompositionSegment(/* version= */ 0, PAGE_STATE_ACQUISITION, 1, 2),
+            createRegionCompositionSegment(/* regionId= */ 1, /* version= */ 0),
+            createRegionCompositionSegment(/* regionId= */ 2, /* version= */ 0));
+
+    // Region 2 leaves the page composition, so its cue is dropped.
+    List<Cue> updatedCues =
+        decode(createPageCompositionSegment(/* version= */ 1, PAGE_STATE_NORMAL, 1));
+    assertThat(updatedCues).hasSize(1);
+    assertThat(updatedCues.get(0)).isSameAs(cues.get(0));
+
+    // When region 2 returns, its unchanged composition is painted again.
+    updatedCues = decode(createPageCompositionSegment(/* version= */ 2, PAGE_STATE_NORMAL, 1, 2));
+    assertThat(updatedCues).hasSize(2);
+    assertThat(updatedCues.get(0)).isSameAs(cues.get(0));
+    assertThat(updatedCues.get(1)).isNotSameAs(cues.get(1));
+  }
+
+  @Test
+  public void testResetDropsCues() {
+    byte[][] segments = {
+      createPageCompositionSegment(/* version= */ 0, PAGE_STATE_ACQUISITION, 1),
+      createRegionCompositionSegment(/* regionId= */ 1, /* version= */ 0)
+    };
+    List<Cue> cues = decode(segments);
+
+    parser.reset();
+    List<Cue> decodedAgainCues = decode(segments);
+
+    assertThat(decodedAgainCues).hasSize(1);
+    assertThat(decodedAgainCues.get(0)).isNotSameAs(cues.get(0));
+  }
+
+  private List<Cue> decode(byte[]... segments) {
+    byte[] data = TestUtil.joinByteArrays(segments);
+    return parser.decode(data, data.length);
+  }
+
+  /** Returns a page composition segment placing each region below the previous one. */
+  private static byte[] createPageCompositionSegment(int version, int state, int... regionIds) {
+    byte[][] regions = new byte[regionIds.length][];
+    for (int i = 0; i < regionIds.length; i++) {
+      int verticalAddress = regionIds[i] * REGION_HEIGHT;
+      regions[i] =
+          TestUtil.createByteArray(
+              regionIds[i],
+              /* reserved */ 0,
+              /* region_horizontal_address */ 0,
+              0,
+              /* region_vertical_address */ verticalAddress >> 8,
+              verticalAddress & 0xFF);
+    }
+    byte[] header =
+        TestUtil.createByteArray(/* page_time_out */ 10, (version << 4) | (state << 2));
+    return createSegment(
+        SEGMENT_TYPE_PAGE_COMPOSITION,
+        TestUtil.joinByteArrays(header, TestUtil.joinByteArrays(regions)));
+  }
+
+  /** Returns a region composition segment for a filled region without objects. */
+  private static byte[] createRegionCompositionSegment(int regionId, int version) {
+    return createSegment(
+        SEGMENT_TYPE_REGION_COMPOSITION,
+        TestUtil.createByteArray(
+            regionId,
+            /* region_version_number, region_fill_flag */ (version << 4) | 0x08,
+            /* region_width */ 0,
+            REGION_WIDTH,
+            /* region_height */ 0,
+            REGION_HEIGHT,
+            /* region_level_of_compatibility, region_depth (4 bit) */ 0x08,
+            /* CLUT_id */ 0,
+            /* region_8-bit_pixel_code */ 0,
+            /* region_4-bit_pixel_code, region_2-bit_pixel_code */ 0x10));
+  }
+
+  private static byte[] createSegment(int segmentType, byte[] data) {
+    byte[] header =
+        TestUtil.createByteArray(
+            /* sync_byte */ 0x0F,
+            segmentType,
+            SUBTITLE_PAGE_ID >> 8,
+            SUBTITLE_PAGE_ID & 0xFF,
+            data.length >> 8,
+            data.length & 0xFF);
+    return TestUtil.joinByteArrays(header, data);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.pgs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for the reuse of bitmaps by {@link PgsDecoder}. */
+@RunWith(RobolectricTestRunner.class)
+public final class PgsDecoderTest {
+
+  private static final int SECTION_TYPE_PALETTE = 0x14;
+  private static final int SECTION_TYPE_BITMAP_PICTURE = 0x15;
+  private static final int SECTION_TYPE_IDENTIFIER = 0x16;
+  private static final int SECTION_TYPE_END = 0x80;
+
+  private PgsDecoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new PgsDecoder();
+  }
+
+  @Test
+  public void testDecodeUnchangedDisplaySetReusesBitmap() throws SubtitleDecoderException {
+    Cue cue = decodeCue(createDisplaySet(/* luma= */ 0x80, /* colorIndex= */ 1));
+    Cue unchangedCue = decodeCue(createDisplaySet(/* luma= */ 0x80, /* colorIndex= */ 1));
+
+    assertThat(unchangedCue.bitmap).isSameAs(cue.bitmap);
+  }
+
+  @Test
+  public void testDecodeDisplaySetWithChangedPaletteBuildsNewBitmap()
+      throws SubtitleDecoderException {
+    Cue cue = decodeCue(createDisplaySet(/* luma= */ 0x80, /* colorIndex= */ 1));
+    Cue changedCue = decodeCue(createDisplaySet(/* luma= */ 0x40, /* colorIndex= */ 1));
+
+    assertThat(changedCue.bitmap).isNotSameAs(cue.bitmap);
+  }
+
+  @Test
+  public void testDecodeDisplaySetWithChangedObjectBuildsNewBitmap()
+      throws SubtitleDecoderException {
+    Cue cue = decodeCue(createDisplaySet(/* luma= */ 0x80, /* colorIndex= */ 1));
+    Cue changedCue = decodeCue(createDisplaySet(/* luma= */ 0x80, /* colorIndex= */ 2));
+
+    assertThat(changedCue.bitmap).isNotSameAs(cue.bitmap);
+  }
+
+  private Cue decodeCue(byte[] data) throws SubtitleDecoderException {
+    Subtitle subtitle = decoder.decode(data, data.length, /* reset= */ false);
+    List<Cue> cues = subtitle.getCues(/* timeUs= */ 0);
+    assertThat(cues).hasSize(1);
+    return cues.get(0);
+  }
+
+  /**
+   * Returns a display set showing a 2x1 bitmap, whose pixels use the given palette entry. The
+   * palette defines entries 1 and 2 with the given luma.
+   */
+  private static byte[] createDisplaySet(int luma, int colorIndex) {
+    byte[] identifier =
+        createSection(
+            SECTION_TYPE_IDENTIFIER,
+            TestUtil.createByteArray(
+                /* width */ 0x07,
+                0x80,
+                /* height */ 0x04,
+                0x38,
+                /* skipped */ 0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                /* x */ 0,
+                100,
+                /* y */ 0,
+                100));
+    byte[] palette =
+        createSection(
+            SECTION_TYPE_PALETTE,
+            TestUtil.createByteArray(
+                /* id, version */ 0,
+                0,
+                /* index, y, cr, cb, alpha */ 1,
+                luma,
+                0x80,
+                0x80,
+                0xFF,
+                2,
+                luma,
+                0x80,
+                0x80,
+                0xFF));
+    byte[] bitmap =
+        createSection(
+            SECTION_TYPE_BITMAP_PICTURE,
+            TestUtil.createByteArray(
+                /* id */ 0,
+                0,
+                /* version */ 0,
+                /* first in sequence */ 0x80,
+                /* total length */ 0,
+                0,
+                6,
+                /* width */ 0,
+                2,
+                /* height */ 0,
+                1,
+                /* pixels */ colorIndex,
+                colorIndex));
+    byte[] end = createSection(SECTION_TYPE_END, new byte[0]);
+    return TestUtil.joinByteArrays(identifier, palette, bitmap, end);
+  }
+
+  private static byte[] createSection(int sectionType, byte[] data) {
+    byte[] header = TestUtil.createByteArray(sectionType, data.length >> 8, data.length & 0xFF);
+    return TestUtil.joinByteArrays(header, data);
+  }
+}
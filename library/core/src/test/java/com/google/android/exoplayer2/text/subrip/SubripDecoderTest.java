@@ -18,7 +18,9 @@ package com.google.android.exoplayer2.text.subrip;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.Cue;
 import java.io.IOException;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -37,6 +39,7 @@ public final class SubripDecoderTest {
   private static final String TYPICAL_NEGATIVE_TIMESTAMPS = "subrip/typical_negative_timestamps";
   private static final String TYPICAL_UNEXPECTED_END = "subrip/typical_unexpected_end";
   private static final String NO_END_TIMECODES_FILE = "subrip/no_end_timecodes";
+  private static final String OVERLAPPING_FILE = "subrip/overlapping";
 
   @Test
   public void testDecodeEmpty() throws IOException {
@@ -154,6 +157,38 @@ public final class SubripDecoderTest {
         .isEqualTo("Or to the end of the media.");
   }
 
+  @Test
+  public void testDecodeOverlapping() throws IOException {
+    SubripDecoder decoder = new SubripDecoder();
+    byte[] bytes = TestUtil.getByteArray(RuntimeEnvironment.application, OVERLAPPING_FILE);
+    SubripSubtitle subtitle = decoder.decode(bytes, bytes.length, false);
+
+    // Event times are sorted and the end of the second cue, which is also the start of the third,
+    // is only reported once.
+    assertThat(subtitle.getEventTimeCount()).isEqualTo(5);
+    assertThat(subtitle.getEventTime(0)).isEqualTo(0);
+    assertThat(subtitle.getEventTime(1)).isEqualTo(3000000);
+    assertThat(subtitle.getEventTime(2)).isEqualTo(5000000);
+    assertThat(subtitle.getEventTime(3)).isEqualTo(8000000);
+    assertThat(subtitle.getEventTime(4)).isEqualTo(10000000);
+    assertThat(subtitle.getNextEventTimeIndex(4000000)).isEqualTo(2);
+
+    List<Cue> cues = subtitle.getCues(subtitle.getEventTime(0));
+    assertThat(cues).hasSize(1);
+    assertThat(cues.get(0).text.toString()).isEqualTo("This is the first subtitle.");
+    cues = subtitle.getCues(subtitle.getEventTime(1));
+    assertThat(cues).hasSize(2);
+    assertThat(cues.get(0).text.toString()).isEqualTo("This is the first subtitle.");
+    assertThat(cues.get(1).text.toString()).isEqualTo("This is the second subtitle.");
+    cues = subtitle.getCues(subtitle.getEventTime(2));
+    assertThat(cues).hasSize(1);
+    assertThat(cues.get(0).text.toString()).isEqualTo("This is the second subtitle.");
+    cues = subtitle.getCues(subtitle.getEventTime(3));
+    assertThat(cues).hasSize(1);
+    assertThat(cues.get(0).text.toString()).isEqualTo("This is the third subtitle.");
+    assertThat(subtitle.getCues(subtitle.getEventTime(4))).isEmpty();
+  }
+
   private static void assertTypicalCue1(SubripSubtitle subtitle, int eventIndex) {
     assertThat(subtitle.getEventTime(eventIndex)).isEqualTo(0);
     assertThat(subtitle.getCues(subtitle.getEventTime(eventIndex)).get(0).text.toString())
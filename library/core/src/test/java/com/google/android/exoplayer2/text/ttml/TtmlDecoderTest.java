@@ -56,6 +56,7 @@ public final class TtmlDecoderTest {
       "ttml/inherit_multiple_styles.xml";
   private static final String CHAIN_MULTIPLE_STYLES_TTML_FILE = "ttml/chain_multiple_styles.xml";
   private static final String MULTIPLE_REGIONS_TTML_FILE = "ttml/multiple_regions.xml";
+  private static final String TIMED_SPANS_TTML_FILE = "ttml/timed_spans.xml";
   private static final String NO_UNDERLINE_LINETHROUGH_TTML_FILE =
       "ttml/no_underline_linethrough.xml";
   private static final String FONT_SIZE_TTML_FILE = "ttml/font_size.xml";
@@ -311,6 +312,47 @@ public final class TtmlDecoderTest {
     assertThat(ttmlCue.line).isEqualTo(45f / 100f);
   }
 
+  @Test
+  public void testCuesAreReusedBetweenEvents() throws IOException, SubtitleDecoderException {
+    TtmlSubtitle subtitle = getSubtitle(MULTIPLE_REGIONS_TTML_FILE);
+
+    List<Cue> output = subtitle.getCues(1000000);
+    assertThat(subtitle.getCues(3999999)).isSameAs(output);
+    assertThat(subtitle.getCues(4000000)).isEmpty();
+    assertThat(subtitle.getCues(0)).isEmpty();
+    assertThat(subtitle.getCues(Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testCueOfUnchangedRegionIsReused() throws IOException, SubtitleDecoderException {
+    TtmlSubtitle subtitle = getSubtitle(TIMED_SPANS_TTML_FILE);
+
+    List<Cue> output = subtitle.getCues(1000000);
+    assertThat(output).hasSize(1);
+    Cue regionCue = output.get(0);
+    assertThat(regionCue.text.toString()).isEqualTo("lorem");
+
+    output = subtitle.getCues(3000000);
+    assertThat(output).hasSize(2);
+    assertThat(output.get(0)).isSameAs(regionCue);
+    assertThat(output.get(1).text.toString()).isEqualTo("ipsum");
+
+    // The span is active relative to the start of its paragraph.
+    output = subtitle.getCues(5000000);
+    assertThat(output).hasSize(2);
+    assertThat(output.get(0)).isSameAs(regionCue);
+    assertThat(output.get(1).text.toString()).isEqualTo("ipsum dolor");
+
+    output = subtitle.getCues(7000000);
+    assertThat(output).hasSize(2);
+    assertThat(output.get(0)).isSameAs(regionCue);
+    assertThat(output.get(1).text.toString()).isEqualTo("ipsum");
+
+    output = subtitle.getCues(9000000);
+    assertThat(output).containsExactly(regionCue);
+    assertThat(subtitle.getCues(10000000)).isEmpty();
+  }
+
   @Test
   public void testEmptyStyleAttribute() throws IOException, SubtitleDecoderException {
     TtmlSubtitle subtitle = getSubtitle(INHERIT_MULTIPLE_STYLES_TTML_FILE);
@@ -26,11 +26,16 @@ import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
 import android.text.style.TypefaceSpan;
 import android.text.style.UnderlineSpan;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
+import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -391,6 +396,60 @@ public class WebvttDecoderTest {
         .isEqualTo(Typeface.ITALIC);
   }
 
+  @Test
+  public void testDecodeLargeSampleIncrementally() throws Exception {
+    int cueCount = 2000;
+    StringBuilder webvtt = new StringBuilder("WEBVTT\n\n");
+    for (int i = 0; i < cueCount; i++) {
+      webvtt
+          .append(formatTimestamp(i))
+          .append(" --> ")
+          .append(formatTimestamp(i + 1))
+          .append("\nCue ")
+          .append(i)
+          .append("\n\n");
+    }
+    byte[] bytes = Util.getUtf8Bytes(webvtt.toString());
+    WebvttDecoder decoder = new WebvttDecoder();
+    SubtitleInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    inputBuffer.ensureSpaceForWrite(bytes.length);
+    inputBuffer.data.put(bytes);
+    inputBuffer.timeUs = 0;
+    inputBuffer.subsampleOffsetUs = Format.OFFSET_SAMPLE_RELATIVE;
+    inputBuffer.flip();
+    decoder.queueInputBuffer(inputBuffer);
+
+    int decodedCueCount = 0;
+    int chunkCount = 0;
+    long deadlineMs = System.currentTimeMillis() + 10000;
+    while (decodedCueCount < cueCount && System.currentTimeMillis() < deadlineMs) {
+      SubtitleOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+      if (outputBuffer == null) {
+        Thread.sleep(1);
+        continue;
+      }
+      long firstCueTimeUs = decodedCueCount * 1000000L;
+      if (chunkCount > 0) {
+        assertThat(outputBuffer.timeUs).isEqualTo(firstCueTimeUs);
+      }
+      assertThat(outputBuffer.getEventTime(0)).isEqualTo(firstCueTimeUs);
+      assertThat(outputBuffer.getCues(firstCueTimeUs).get(0).text.toString())
+          .isEqualTo("Cue " + decodedCueCount);
+      decodedCueCount += outputBuffer.getEventTimeCount() / 2;
+      chunkCount++;
+      outputBuffer.release();
+    }
+    decoder.release();
+
+    assertThat(decodedCueCount).isEqualTo(cueCount);
+    assertThat(chunkCount).isGreaterThan(1);
+  }
+
+  private static String formatTimestamp(int timeS) {
+    return String.format(
+        Locale.US, "%02d:%02d:%02d.000", timeS / 3600, (timeS / 60) % 60, timeS % 60);
+  }
+
   private WebvttSubtitle getSubtitleForTestAsset(String asset)
       throws IOException, SubtitleDecoderException {
     WebvttDecoder decoder = new WebvttDecoder();
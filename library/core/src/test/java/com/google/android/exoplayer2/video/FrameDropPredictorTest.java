@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link FrameDropPredictor}. */
+@RunWith(RobolectricTestRunner.class)
+public final class FrameDropPredictorTest {
+
+  private static final int PENDING_FRAME_COUNT = 3;
+
+  private FrameDropPredictor frameDropPredictor;
+
+  @Before
+  public void setUp() {
+    frameDropPredictor = new FrameDropPredictor();
+  }
+
+  @Test
+  public void testDoesNotSkipFramesReleasedOnTime() {
+    for (int i = 0; i < 20; i++) {
+      frameDropPredictor.onFrameReleased(/* earlyUs= */ 10000);
+    }
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isFalse();
+  }
+
+  @Test
+  public void testSkipsFramesWhenLatenessIsPredictedToBeSustained() {
+    // Each frame is released 10 ms later than the previous one.
+    for (int i = 0; i < 11; i++) {
+      frameDropPredictor.onFrameReleased(/* earlyUs= */ -10000 * i);
+    }
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isFalse();
+
+    frameDropPredictor.onFrameReleased(/* earlyUs= */ -110000);
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isTrue();
+    // No frames have been released since the previous prediction.
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isFalse();
+
+    frameDropPredictor.onFrameReleased(/* earlyUs= */ -120000);
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isTrue();
+  }
+
+  @Test
+  public void testDoesNotSkipFramesWhenLatenessIsRecovering() {
+    // Frames are very late, but each one is released 10 ms less late than the previous one.
+    for (int i = 0; i < 12; i++) {
+      frameDropPredictor.onFrameReleased(/* earlyUs= */ -200000 + 10000 * i);
+    }
+    assertThat(frameDropPredictor.getPredictedLatenessUs(PENDING_FRAME_COUNT))
+        .isGreaterThan(30000L);
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isFalse();
+  }
+
+  @Test
+  public void testExtrapolatesTrendOverPendingFrames() {
+    frameDropPredictor.onFrameReleased(/* earlyUs= */ 0);
+    frameDropPredictor.onFrameReleased(/* earlyUs= */ -10000);
+
+    // The level is 2000 us and the trend is 200 us per frame.
+    assertThat(frameDropPredictor.getPredictedLatenessUs(/* pendingFrameCount= */ 0))
+        .isEqualTo(2200);
+    assertThat(frameDropPredictor.getPredictedLatenessUs(/* pendingFrameCount= */ 4))
+        .isEqualTo(3000);
+  }
+
+  @Test
+  public void testResetDiscardsModel() {
+    for (int i = 0; i < 20; i++) {
+      frameDropPredictor.onFrameReleased(/* earlyUs= */ -10000 * i);
+    }
+
+    frameDropPredictor.reset();
+    frameDropPredictor.onFrameReleased(/* earlyUs= */ -200000);
+
+    assertThat(frameDropPredictor.shouldSkipFrames(PENDING_FRAME_COUNT)).isFalse();
+  }
+}
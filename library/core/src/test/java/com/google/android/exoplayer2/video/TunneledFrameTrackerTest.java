@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit test for {@link TunneledFrameTracker}. */
+@RunWith(RobolectricTestRunner.class)
+public final class TunneledFrameTrackerTest {
+
+  private TunneledFrameTracker tunneledFrameTracker;
+
+  @Before
+  public void setUp() {
+    tunneledFrameTracker = new TunneledFrameTracker();
+  }
+
+  @Test
+  public void testRenderedFramesAreNotDropped() {
+    tunneledFrameTracker.onFrameQueued(0);
+    tunneledFrameTracker.onFrameQueued(33333);
+
+    assertThat(tunneledFrameTracker.onFrameRendered(0)).isEqualTo(0);
+    assertThat(tunneledFrameTracker.onFrameRendered(33333)).isEqualTo(0);
+    assertThat(tunneledFrameTracker.getPendingFrameCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCountsSkippedFramesAsDropped() {
+    for (int i = 0; i < 5; i++) {
+      tunneledFrameTracker.onFrameQueued(i * 10000);
+    }
+
+    assertThat(tunneledFrameTracker.onFrameRendered(30000)).isEqualTo(3);
+    assertThat(tunneledFrameTracker.getPendingFrameCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testHandlesFramesQueuedOutOfPresentationOrder() {
+    // Decode order for an I P B B sequence.
+    tunneledFrameTracker.onFrameQueued(0);
+    tunneledFrameTracker.onFrameQueued(30000);
+    tunneledFrameTracker.onFrameQueued(10000);
+    tunneledFrameTracker.onFrameQueued(20000);
+
+    assertThat(tunneledFrameTracker.onFrameRendered(0)).isEqualTo(0);
+    assertThat(tunneledFrameTracker.onFrameRendered(20000)).isEqualTo(1);
+    assertThat(tunneledFrameTracker.onFrameRendered(30000)).isEqualTo(0);
+    assertThat(tunneledFrameTracker.getPendingFrameCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacity() {
+    for (int i = 0; i < 100; i++) {
+      tunneledFrameTracker.onFrameQueued(i);
+    }
+
+    assertThat(tunneledFrameTracker.getPendingFrameCount()).isEqualTo(100);
+    assertThat(tunneledFrameTracker.onFrameRendered(99)).isEqualTo(99);
+  }
+
+  @Test
+  public void testResetForgetsPendingFrames() {
+    tunneledFrameTracker.onFrameQueued(0);
+    tunneledFrameTracker.onFrameQueued(10000);
+
+    tunneledFrameTracker.reset();
+
+    assertThat(tunneledFrameTracker.getPendingFrameCount()).isEqualTo(0);
+    assertThat(tunneledFrameTracker.onFrameRendered(20000)).isEqualTo(0);
+  }
+}
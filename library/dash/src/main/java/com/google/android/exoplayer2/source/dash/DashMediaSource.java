@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.source.dash;
 
 import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
@@ -26,6 +27,8 @@ import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.source.BaseMediaSource;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoaderFactory;
 import com.google.android.exoplayer2.source.DefaultCompositeSequenceableLoaderFactory;
@@ -39,6 +42,7 @@ import com.google.android.exoplayer2.source.dash.PlayerEmsgHandler.PlayerEmsgCal
 import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.source.dash.manifest.UtcTimingElement;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -59,6 +63,9 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
@@ -85,6 +92,7 @@ public final class DashMediaSource extends BaseMediaSource {
     private final @Nullable Long minUpdateOverride;
     private boolean isCreateCalled;
     private @Nullable Object tag;
+    private @Nullable DefaultDrmSessionManager<?> drmSessionManager;
 
     /**
      * Creates a new factory for {@link DashMediaSource}s.
@@ -234,6 +242,29 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets a {@link DefaultDrmSessionManager} to request the licenses of protected content as soon
+     * as the manifest is parsed, rather than when the renderers read the first protected samples,
+     * so that the license requests overlap with the loading of the first media segments. Licenses
+     * are requested for the {@link DrmInitData} of each representation carrying scheme specific
+     * data, such as a {@code cenc:pssh} element, and are held in idle sessions until they're used.
+     * The licenses of a period are requested together, so that the manager can coalesce their key
+     * requests. See {@link DefaultDrmSessionManager#prefetchLicenses(Looper, List)}.
+     *
+     * <p>The manager must be the one used by the player's renderers, and must keep idle sessions.
+     * See {@link DefaultDrmSessionManager#setMaxIdleSessionCount(int)}. The default is {@code
+     * null}, meaning that licenses are requested by the renderers.
+     *
+     * @param drmSessionManager The {@link DefaultDrmSessionManager}, or {@code null}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If one of the {@code create} methods has already been called.
+     */
+    public Factory setDrmSessionManager(@Nullable DefaultDrmSessionManager<?> drmSessionManager) {
+      Assertions.checkState(!isCreateCalled);
+      this.drmSessionManager = drmSessionManager;
+      return this;
+    }
+
     /**
      * Returns a new {@link DashMediaSource} using the current parameters and the specified
      * sideloaded manifest.
@@ -256,7 +287,8 @@ public final class DashMediaSource extends BaseMediaSource {
           livePresentationDelayMs,
           livePresentationDelayOverridesManifest,
           tag,
-          minUpdateOverride);
+          minUpdateOverride,
+          drmSessionManager);
     }
 
     /**
@@ -298,7 +330,8 @@ public final class DashMediaSource extends BaseMediaSource {
           livePresentationDelayMs,
           livePresentationDelayOverridesManifest,
           tag,
-          minUpdateOverride);
+          minUpdateOverride,
+          drmSessionManager);
     }
 
     /**
@@ -366,6 +399,8 @@ public final class DashMediaSource extends BaseMediaSource {
   private final LoaderErrorThrower manifestLoadErrorThrower;
   private final @Nullable Object tag;
   private final @Nullable Long minUpdateOverride;
+  private final @Nullable DefaultDrmSessionManager<?> drmSessionManager;
+  private final HashSet<DrmInitData> prefetchedDrmInitDatas;
 
   private DataSource dataSource;
   private Loader loader;
@@ -440,7 +475,8 @@ public final class DashMediaSource extends BaseMediaSource {
         DEFAULT_LIVE_PRESENTATION_DELAY_MS,
         /* livePresentationDelayOverridesManifest= */ false,
         /* tag= */ null,
-        /* minUpdateOverride= */ null);
+        /* minUpdateOverride= */ null,
+        /* drmSessionManager= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
     }
@@ -556,7 +592,8 @@ public final class DashMediaSource extends BaseMediaSource {
             : livePresentationDelayMs,
         livePresentationDelayMs != DEFAULT_LIVE_PRESENTATION_DELAY_PREFER_MANIFEST_MS,
         /* tag= */ null,
-        /* minUpdateOverride= */ null);
+        /* minUpdateOverride= */ null,
+        /* drmSessionManager= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
     }
@@ -573,7 +610,8 @@ public final class DashMediaSource extends BaseMediaSource {
       long livePresentationDelayMs,
       boolean livePresentationDelayOverridesManifest,
       @Nullable Object tag,
-      @Nullable Long minUpdateOverride) {
+      @Nullable Long minUpdateOverride,
+      @Nullable DefaultDrmSessionManager<?> drmSessionManager) {
     this.initialManifestUri = manifestUri;
     this.manifest = manifest;
     this.manifestUri = manifestUri;
@@ -586,11 +624,13 @@ public final class DashMediaSource extends BaseMediaSource {
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
     this.tag = tag;
     this.minUpdateOverride = minUpdateOverride;
+    this.drmSessionManager = drmSessionManager;
     sideloadedManifest = manifest != null;
     manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     manifestUriLock = new Object();
     periodsById = new SparseArray<>();
     playerEmsgCallback = new DefaultPlayerEmsgCallback();
+    prefetchedDrmInitDatas = new HashSet<>();
     expiredManifestPublishTimeUs = C.TIME_UNSET;
     if (sideloadedManifest) {
       Assertions.checkState(!manifest.dynamic);
@@ -627,6 +667,7 @@ public final class DashMediaSource extends BaseMediaSource {
       @Nullable TransferListener mediaTransferListener) {
     this.mediaTransferListener = mediaTransferListener;
     if (sideloadedManifest) {
+      prefetchLicenses(manifest);
       processManifest(false);
     } else {
       dataSource = manifestDataSourceFactory.createDataSource();
@@ -694,6 +735,7 @@ public final class DashMediaSource extends BaseMediaSource {
     dynamicMediaPresentationEnded = false;
     firstPeriodId = 0;
     periodsById.clear();
+    prefetchedDrmInitDatas.clear();
   }
 
   // PlayerEmsgCallback callbacks.
@@ -790,6 +832,7 @@ public final class DashMediaSource extends BaseMediaSource {
 
     manifest = newManifest;
     manifestLoadPending &= manifest.dynamic;
+    prefetchLicenses(manifest);
     manifestLoadStartTimestampMs = elapsedRealtimeMs - loadDurationMs;
     manifestLoadEndTimestampMs = elapsedRealtimeMs;
     if (manifest.location != null) {
@@ -881,6 +924,29 @@ public final class DashMediaSource extends BaseMediaSource {
 
   // Internal methods.
 
+  private void prefetchLicenses(DashManifest manifest) {
+    if (drmSessionManager == null) {
+      return;
+    }
+    // Each license is requested once, so that manifest refreshes don't request it again. The
+    // licenses of a period are requested together, so that their key requests can be coalesced.
+    List<DrmInitData> drmInitDatas = new ArrayList<>();
+    for (int i = 0; i < manifest.getPeriodCount(); i++) {
+      for (AdaptationSet adaptationSet : manifest.getPeriod(i).adaptationSets) {
+        for (Representation representation : adaptationSet.representations) {
+          DrmInitData drmInitData = representation.format.drmInitData;
+          if (drmInitData != null && prefetchedDrmInitDatas.add(drmInitData)) {
+            drmInitDatas.add(drmInitData);
+          }
+        }
+      }
+      if (!drmInitDatas.isEmpty()) {
+        drmSessionManager.prefetchLicenses(Looper.myLooper(), drmInitDatas);
+        drmInitDatas.clear();
+      }
+    }
+  }
+
   private void resolveUtcTimingElement(UtcTimingElement timingElement) {
     String scheme = timingElement.schemeIdUri;
     if (Util.areEqual(scheme, "urn:mpeg:dash:utc:direct:2014")
@@ -66,14 +66,33 @@ public class DefaultDashChunkSource implements DashChunkSource {
 
     private final DataSource.Factory dataSourceFactory;
     private final int maxSegmentsPerLoad;
+    private final long minBufferedDurationToMergeMs;
 
     public Factory(DataSource.Factory dataSourceFactory) {
       this(dataSourceFactory, 1);
     }
 
     public Factory(DataSource.Factory dataSourceFactory, int maxSegmentsPerLoad) {
+      this(dataSourceFactory, maxSegmentsPerLoad, C.TIME_UNSET);
+    }
+
+    /**
+     * @param dataSourceFactory A factory for {@link DataSource}s suitable for loading media data.
+     * @param maxSegmentsPerLoad The maximum number of segments to combine into a single request.
+     * @param minBufferedDurationToMergeMs The buffered duration above which segments may be
+     *     combined into a single request, in milliseconds, or {@link C#TIME_UNSET} to always combine
+     *     up to {@code maxSegmentsPerLoad} segments. See {@link
+     *     DefaultDashChunkSource#DefaultDashChunkSource(LoaderErrorThrower, DashManifest, int,
+     *     int[], TrackSelection, int, DataSource, long, int, long, boolean, boolean,
+     *     PlayerTrackEmsgHandler)}.
+     */
+    public Factory(
+        DataSource.Factory dataSourceFactory,
+        int maxSegmentsPerLoad,
+        long minBufferedDurationToMergeMs) {
       this.dataSourceFactory = dataSourceFactory;
       this.maxSegmentsPerLoad = maxSegmentsPerLoad;
+      this.minBufferedDurationToMergeMs = minBufferedDurationToMergeMs;
     }
 
     @Override
@@ -103,6 +122,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
           dataSource,
           elapsedRealtimeOffsetMs,
           maxSegmentsPerLoad,
+          minBufferedDurationToMergeMs,
           enableEventMessageTrack,
           enableCea608Track,
           playerEmsgHandler);
@@ -117,6 +137,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
   private final DataSource dataSource;
   private final long elapsedRealtimeOffsetMs;
   private final int maxSegmentsPerLoad;
+  private final long minBufferedDurationToMergeUs;
   @Nullable private final PlayerTrackEmsgHandler playerTrackEmsgHandler;
 
   protected final RepresentationHolder[] representationHolders;
@@ -127,6 +148,40 @@ public class DefaultDashChunkSource implements DashChunkSource {
   private boolean missingLastSegment;
   private long liveEdgeTimeUs;
 
+  /**
+   * Equivalent to {@link #DefaultDashChunkSource(LoaderErrorThrower, DashManifest, int, int[],
+   * TrackSelection, int, DataSource, long, int, long, boolean, boolean, PlayerTrackEmsgHandler)},
+   * but always combines up to {@code maxSegmentsPerLoad} segments into a single request.
+   */
+  public DefaultDashChunkSource(
+      LoaderErrorThrower manifestLoaderErrorThrower,
+      DashManifest manifest,
+      int periodIndex,
+      int[] adaptationSetIndices,
+      TrackSelection trackSelection,
+      int trackType,
+      DataSource dataSource,
+      long elapsedRealtimeOffsetMs,
+      int maxSegmentsPerLoad,
+      boolean enableEventMessageTrack,
+      boolean enableCea608Track,
+      @Nullable PlayerTrackEmsgHandler playerTrackEmsgHandler) {
+    this(
+        manifestLoaderErrorThrower,
+        manifest,
+        periodIndex,
+        adaptationSetIndices,
+        trackSelection,
+        trackType,
+        dataSource,
+        elapsedRealtimeOffsetMs,
+        maxSegmentsPerLoad,
+        /* minBufferedDurationToMergeMs= */ C.TIME_UNSET,
+        enableEventMessageTrack,
+        enableCea608Track,
+        playerTrackEmsgHandler);
+  }
+
   /**
    * @param manifestLoaderErrorThrower Throws errors affecting loading of manifests.
    * @param manifest The initial manifest.
@@ -141,6 +196,13 @@ public class DefaultDashChunkSource implements DashChunkSource {
    * @param maxSegmentsPerLoad The maximum number of segments to combine into a single request. Note
    *     that segments will only be combined if their {@link Uri}s are the same and if their data
    *     ranges are adjacent.
+   * @param minBufferedDurationToMergeMs The buffered duration above which segments may be combined
+   *     into a single request, in milliseconds, or {@link C#TIME_UNSET} to always combine up to
+   *     {@code maxSegmentsPerLoad} segments. If set, a single segment is requested while the
+   *     buffered duration is below this threshold, and above it the combined duration of a request
+   *     is limited to the buffered duration in excess of the threshold. The track selection is only
+   *     updated between requests, so if it's set, segments are only combined if the selection
+   *     contains a single track.
    * @param enableEventMessageTrack Whether the chunks generated by the source may output an event
    *     message track.
    * @param enableCea608Track Whether the chunks generated by the source may output a CEA-608 track.
@@ -157,6 +219,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
       DataSource dataSource,
       long elapsedRealtimeOffsetMs,
       int maxSegmentsPerLoad,
+      long minBufferedDurationToMergeMs,
       boolean enableEventMessageTrack,
       boolean enableCea608Track,
       @Nullable PlayerTrackEmsgHandler playerTrackEmsgHandler) {
@@ -169,6 +232,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
     this.periodIndex = periodIndex;
     this.elapsedRealtimeOffsetMs = elapsedRealtimeOffsetMs;
     this.maxSegmentsPerLoad = maxSegmentsPerLoad;
+    this.minBufferedDurationToMergeUs = C.msToUs(minBufferedDurationToMergeMs);
     this.playerTrackEmsgHandler = playerTrackEmsgHandler;
 
     long periodDurationUs = manifest.getPeriodDurationUs(periodIndex);
@@ -361,6 +425,11 @@ public class DefaultDashChunkSource implements DashChunkSource {
 
     int maxSegmentCount =
         (int) Math.min(maxSegmentsPerLoad, lastAvailableSegmentNum - segmentNum + 1);
+    if (minBufferedDurationToMergeUs != C.TIME_UNSET) {
+      maxSegmentCount =
+          getMaxSegmentCountForBufferedDuration(
+              representationHolder, segmentNum, maxSegmentCount, bufferedDurationUs);
+    }
     if (periodDurationUs != C.TIME_UNSET) {
       while (maxSegmentCount > 1
           && representationHolder.getSegmentStartTimeUs(segmentNum + maxSegmentCount - 1)
@@ -455,6 +524,34 @@ public class DefaultDashChunkSource implements DashChunkSource {
             lastAvailableSegmentNum);
   }
 
+  /**
+   * Returns the maximum number of segments starting at {@code segmentNum} that may be combined into
+   * a single request, such that the combined duration doesn't exceed the buffered duration in
+   * excess of {@link #minBufferedDurationToMergeUs}. At least one segment is always returned.
+   *
+   * <p>Segments aren't combined if the track selection contains more than one track, since a
+   * combined request would prevent the selection from switching tracks at the inner segment
+   * boundaries.
+   */
+  private int getMaxSegmentCountForBufferedDuration(
+      RepresentationHolder representationHolder,
+      long segmentNum,
+      int maxSegmentCount,
+      long bufferedDurationUs) {
+    long headroomUs = bufferedDurationUs - minBufferedDurationToMergeUs;
+    if (trackSelection.length() > 1 || headroomUs <= 0) {
+      return 1;
+    }
+    long startTimeUs = representationHolder.getSegmentStartTimeUs(segmentNum);
+    int segmentCount = 1;
+    while (segmentCount < maxSegmentCount
+        && representationHolder.getSegmentEndTimeUs(segmentNum + segmentCount) - startTimeUs
+            <= headroomUs) {
+      segmentCount++;
+    }
+    return segmentCount;
+  }
+
   private ArrayList<Representation> getRepresentations() {
     List<AdaptationSet> manifestAdapationSets = manifest.getPeriod(periodIndex).adaptationSets;
     ArrayList<Representation> representations = new ArrayList<>();
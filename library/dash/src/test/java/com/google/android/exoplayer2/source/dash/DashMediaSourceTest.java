@@ -17,20 +17,76 @@ package com.google.android.exoplayer2.source.dash;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
+import android.net.Uri;
+import android.os.Looper;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.MediaSourceTestRunner;
+import com.google.android.exoplayer2.testutil.RobolectricUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
 
 /** Unit test for {@link DashMediaSource}. */
 @RunWith(RobolectricTestRunner.class)
+@Config(shadows = {RobolectricUtil.CustomLooper.class, RobolectricUtil.CustomMessageQueue.class})
 public final class DashMediaSourceTest {
 
+  private static final String MANIFEST_URI = "http://example.com/manifest.mpd";
+  /**
+   * A static manifest with two video representations protected by the same key, an audio
+   * representation protected by another key, and an unprotected text representation.
+   */
+  private static final String PROTECTED_MANIFEST =
+      "<MPD xmlns:cenc=\"urn:mpeg:cenc:2013\" type=\"static\""
+          + " mediaPresentationDuration=\"PT10S\">"
+          + "<Period>"
+          + "<AdaptationSet mimeType=\"video/mp4\">"
+          + "<ContentProtection schemeIdUri=\"urn:mpeg:dash:mp4protection:2011\" value=\"cenc\""
+          + " cenc:default_KID=\"9eb4050d-e44b-4802-932e-27d75083e266\"/>"
+          + "<Representation id=\"0\" bandwidth=\"1000000\" codecs=\"avc1.42c01e\""
+          + " width=\"1280\" height=\"720\">"
+          + "<BaseURL>video_720.mp4</BaseURL>"
+          + "</Representation>"
+          + "<Representation id=\"1\" bandwidth=\"500000\" codecs=\"avc1.42c01e\""
+          + " width=\"640\" height=\"360\">"
+          + "<BaseURL>video_360.mp4</BaseURL>"
+          + "</Representation>"
+          + "</AdaptationSet>"
+          + "<AdaptationSet mimeType=\"audio/mp4\">"
+          + "<ContentProtection schemeIdUri=\"urn:mpeg:dash:mp4protection:2011\" value=\"cenc\""
+          + " cenc:default_KID=\"1a2b3c4d-5e6f-4a1b-8c2d-3e4f5a6b7c8d\"/>"
+          + "<Representation id=\"2\" bandwidth=\"128000\" codecs=\"mp4a.40.2\""
+          + " audioSamplingRate=\"48000\">"
+          + "<BaseURL>audio.mp4</BaseURL>"
+          + "</Representation>"
+          + "</AdaptationSet>"
+          + "<AdaptationSet mimeType=\"text/vtt\">"
+          + "<Representation id=\"3\" bandwidth=\"1000\">"
+          + "<BaseURL>subtitles.vtt</BaseURL>"
+          + "</Representation>"
+          + "</AdaptationSet>"
+          + "</Period>"
+          + "</MPD>";
+
   @Test
   public void testIso8601ParserParse() throws IOException {
     DashMediaSource.Iso8601Parser parser = new DashMediaSource.Iso8601Parser();
@@ -68,6 +124,44 @@ public final class DashMediaSourceTest {
     }
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPrefetchLicensesRequestsEachLicenseOnce() throws Exception {
+    DefaultDrmSessionManager<?> drmSessionManager = mock(DefaultDrmSessionManager.class);
+    List<DrmInitData> prefetchedDrmInitDatas = new ArrayList<>();
+    // The source reuses the list it passes, so its contents are copied.
+    doAnswer(
+            invocation -> {
+              prefetchedDrmInitDatas.addAll((List<DrmInitData>) invocation.getArguments()[1]);
+              return null;
+            })
+        .when(drmSessionManager)
+        .prefetchLicenses(any(Looper.class), anyListOf(DrmInitData.class));
+    FakeDataSet fakeDataSet =
+        new FakeDataSet().setData(MANIFEST_URI, Util.getUtf8Bytes(PROTECTED_MANIFEST));
+    DashMediaSource mediaSource =
+        new DashMediaSource.Factory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet))
+            .setDrmSessionManager(drmSessionManager)
+            .createMediaSource(Uri.parse(MANIFEST_URI));
+    MediaSourceTestRunner testRunner =
+        new MediaSourceTestRunner(
+            mediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+    try {
+      testRunner.prepareSource();
+      // Reloading the manifest doesn't request the licenses again.
+      testRunner.runOnPlaybackThread(mediaSource::onDashManifestRefreshRequested);
+      testRunner.assertTimelineChangeBlocking();
+      testRunner.releaseSource();
+    } finally {
+      testRunner.release();
+    }
+
+    verify(drmSessionManager).prefetchLicenses(any(Looper.class), anyListOf(DrmInitData.class));
+    assertThat(prefetchedDrmInitDatas).hasSize(2);
+    assertThat(prefetchedDrmInitDatas).containsNoDuplicates();
+  }
+
   private static void assertParseStringToLong(
       long expected, ParsingLoadable.Parser<Long> parser, String data) throws IOException {
     long actual = parser.parse(null, new ByteArrayInputStream(Util.getUtf8Bytes(data)));
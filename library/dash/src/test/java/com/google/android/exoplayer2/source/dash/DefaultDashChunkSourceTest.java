@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ChunkIndex;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.ChunkHolder;
+import com.google.android.exoplayer2.source.chunk.InitializationChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.RandomTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.DummyDataSource;
+import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link DefaultDashChunkSource}. */
+@RunWith(RobolectricTestRunner.class)
+public final class DefaultDashChunkSourceTest {
+
+  private static final int SEGMENT_COUNT = 20;
+  private static final long SEGMENT_DURATION_US = C.MICROS_PER_SECOND;
+  private static final int SEGMENT_LENGTH = 100;
+  private static final int INDEX_LENGTH = 100;
+
+  @Test
+  public void testGetNextChunkWithLowBufferedDurationRequestsSingleSegment() throws IOException {
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            parseSegmentListManifest(/* representationCount= */ 1),
+            /* maxSegmentsPerLoad= */ 5,
+            /* minBufferedDurationToMergeMs= */ 5000);
+
+    MediaChunk chunk =
+        getNextChunk(
+            chunkSource, /* playbackPositionUs= */ 4_000_000, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 1);
+  }
+
+  @Test
+  public void testGetNextChunkWithHighBufferedDurationMergesSegmentsWithinHeadroom()
+      throws IOException {
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            parseSegmentListManifest(/* representationCount= */ 1),
+            /* maxSegmentsPerLoad= */ 5,
+            /* minBufferedDurationToMergeMs= */ 5000);
+
+    // The buffered duration exceeds the threshold by 3 seconds, which fits three segments.
+    MediaChunk chunk =
+        getNextChunk(chunkSource, /* playbackPositionUs= */ 0, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 3);
+  }
+
+  @Test
+  public void testGetNextChunkMergesAtMostMaxSegmentsPerLoad() throws IOException {
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            parseSegmentListManifest(/* representationCount= */ 1),
+            /* maxSegmentsPerLoad= */ 2,
+            /* minBufferedDurationToMergeMs= */ 1000);
+
+    // The buffered duration exceeds the threshold by 7 seconds, but only two segments are merged.
+    MediaChunk chunk =
+        getNextChunk(chunkSource, /* playbackPositionUs= */ 0, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 2);
+  }
+
+  @Test
+  public void testGetNextChunkWithoutThresholdMergesMaxSegmentsPerLoad() throws IOException {
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            parseSegmentListManifest(/* representationCount= */ 1),
+            /* maxSegmentsPerLoad= */ 5,
+            /* minBufferedDurationToMergeMs= */ C.TIME_UNSET);
+
+    MediaChunk chunk =
+        getNextChunk(
+            chunkSource, /* playbackPositionUs= */ 8_000_000, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 5);
+  }
+
+  @Test
+  public void testGetNextChunkWithAdaptiveTrackSelectionRequestsSingleSegment()
+      throws IOException {
+    DashManifest manifest = parseSegmentListManifest(/* representationCount= */ 2);
+    TrackGroup trackGroup = createTrackGroup(manifest);
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            manifest,
+            new RandomTrackSelection(trackGroup, new int[] {0, 1}, /* seed= */ 0),
+            /* maxSegmentsPerLoad= */ 5,
+            /* minBufferedDurationToMergeMs= */ 1000);
+
+    // The selection may switch tracks at each segment boundary, so segments aren't merged despite
+    // the buffered duration.
+    MediaChunk chunk =
+        getNextChunk(chunkSource, /* playbackPositionUs= */ 0, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 1);
+  }
+
+  @Test
+  public void testGetNextChunkWithSegmentIndexFromStreamMergesSegmentsWithinHeadroom()
+      throws IOException {
+    DefaultDashChunkSource chunkSource =
+        createChunkSource(
+            parseSegmentBaseManifest(),
+            /* maxSegmentsPerLoad= */ 5,
+            /* minBufferedDurationToMergeMs= */ 5000);
+
+    // The segment index is requested first.
+    ChunkHolder chunkHolder = new ChunkHolder();
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 8_000_000,
+        Collections.emptyList(),
+        chunkHolder);
+    assertThat(chunkHolder.chunk).isInstanceOf(InitializationChunk.class);
+    assertThat(chunkHolder.chunk.dataSpec.position).isEqualTo(0);
+    assertThat(chunkHolder.chunk.dataSpec.length).isEqualTo(INDEX_LENGTH);
+
+    // Set the index that loading the sidx box yields, as onChunkLoadCompleted does.
+    chunkSource.representationHolders[0] =
+        chunkSource.representationHolders[0].copyWithNewSegmentIndex(
+            new DashWrappingSegmentIndex(createChunkIndex(), /* timeOffsetUs= */ 0));
+    MediaChunk chunk =
+        getNextChunk(chunkSource, /* playbackPositionUs= */ 0, /* loadPositionUs= */ 8_000_000);
+
+    assertChunkSpansSegments(
+        chunk, /* startTimeUs= */ 8_000_000, /* segmentCount= */ 3, INDEX_LENGTH);
+  }
+
+  private static DefaultDashChunkSource createChunkSource(
+      DashManifest manifest, int maxSegmentsPerLoad, long minBufferedDurationToMergeMs) {
+    return createChunkSource(
+        manifest,
+        new FixedTrackSelection(createTrackGroup(manifest), /* track= */ 0),
+        maxSegmentsPerLoad,
+        minBufferedDurationToMergeMs);
+  }
+
+  private static DefaultDashChunkSource createChunkSource(
+      DashManifest manifest,
+      TrackSelection trackSelection,
+      int maxSegmentsPerLoad,
+      long minBufferedDurationToMergeMs) {
+    return new DefaultDashChunkSource(
+        new LoaderErrorThrower.Dummy(),
+        manifest,
+        /* periodIndex= */ 0,
+        /* adaptationSetIndices= */ new int[] {0},
+        trackSelection,
+        C.TRACK_TYPE_VIDEO,
+        DummyDataSource.INSTANCE,
+        /* elapsedRealtimeOffsetMs= */ 0,
+        maxSegmentsPerLoad,
+        minBufferedDurationToMergeMs,
+        /* enableEventMessageTrack= */ false,
+        /* enableCea608Track= */ false,
+        /* playerTrackEmsgHandler= */ null);
+  }
+
+  private static TrackGroup createTrackGroup(DashManifest manifest) {
+    List<Representation> representations =
+        manifest.getPeriod(0).adaptationSets.get(0).representations;
+    Format[] formats = new Format[representations.size()];
+    for (int i = 0; i < formats.length; i++) {
+      formats[i] = representations.get(i).format;
+    }
+    return new TrackGroup(formats);
+  }
+
+  private static MediaChunk getNextChunk(
+      DefaultDashChunkSource chunkSource, long playbackPositionUs, long loadPositionUs) {
+    ChunkHolder chunkHolder = new ChunkHolder();
+    chunkSource.getNextChunk(
+        playbackPositionUs, loadPositionUs, Collections.emptyList(), chunkHolder);
+    assertThat(chunkHolder.chunk).isInstanceOf(MediaChunk.class);
+    return (MediaChunk) chunkHolder.chunk;
+  }
+
+  private static void assertChunkSpansSegments(
+      MediaChunk chunk, long startTimeUs, int segmentCount) {
+    assertChunkSpansSegments(chunk, startTimeUs, segmentCount, /* firstSegmentPosition= */ 0);
+  }
+
+  private static void assertChunkSpansSegments(
+      MediaChunk chunk, long startTimeUs, int segmentCount, long firstSegmentPosition) {
+    assertThat(chunk.startTimeUs).isEqualTo(startTimeUs);
+    assertThat(chunk.endTimeUs).isEqualTo(startTimeUs + segmentCount * SEGMENT_DURATION_US);
+    assertThat(chunk.getNextChunkIndex() - chunk.chunkIndex).isEqualTo(segmentCount);
+    long firstSegmentIndex = startTimeUs / SEGMENT_DURATION_US;
+    assertThat(chunk.dataSpec.position)
+        .isEqualTo(firstSegmentPosition + firstSegmentIndex * SEGMENT_LENGTH);
+    assertThat(chunk.dataSpec.length).isEqualTo(segmentCount * SEGMENT_LENGTH);
+  }
+
+  /**
+   * Returns the index of one second segments that follow the index in the resource of the manifest
+   * returned by {@link #parseSegmentBaseManifest()}, as parsed from its sidx box.
+   */
+  private static ChunkIndex createChunkIndex() {
+    int[] sizes = new int[SEGMENT_COUNT];
+    long[] offsets = new long[SEGMENT_COUNT];
+    long[] durationsUs = new long[SEGMENT_COUNT];
+    long[] timesUs = new long[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      sizes[i] = SEGMENT_LENGTH;
+      offsets[i] = INDEX_LENGTH + (long) i * SEGMENT_LENGTH;
+      durationsUs[i] = SEGMENT_DURATION_US;
+      timesUs[i] = i * SEGMENT_DURATION_US;
+    }
+    return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
+  }
+
+  /**
+   * Returns a manifest with the given number of representations, whose one second segments are
+   * adjacent byte ranges of the same resource, so that they can be merged.
+   */
+  private static DashManifest parseSegmentListManifest(int representationCount)
+      throws IOException {
+    StringBuilder segmentUrls = new StringBuilder();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      long start = (long) i * SEGMENT_LENGTH;
+      segmentUrls
+          .append("<SegmentURL mediaRange=\"")
+          .append(start)
+          .append('-')
+          .append(start + SEGMENT_LENGTH - 1)
+          .append("\"/>");
+    }
+    StringBuilder representations = new StringBuilder();
+    for (int i = 0; i < representationCount; i++) {
+      representations
+          .append("<Representation id=\"")
+          .append(i)
+          .append("\" bandwidth=\"")
+          .append((i + 1) * 1000000)
+          .append("\" codecs=\"avc1.42c01e\" width=\"1280\" height=\"720\">")
+          .append("<BaseURL>http://example.com/video")
+          .append(i)
+          .append(".mp4</BaseURL>")
+          .append("<SegmentList timescale=\"1000\" duration=\"1000\">")
+          .append(segmentUrls)
+          .append("</SegmentList>")
+          .append("</Representation>");
+    }
+    return parseManifest(
+        "<MPD type=\"static\" mediaPresentationDuration=\"PT"
+            + SEGMENT_COUNT
+            + "S\">"
+            + "<Period>"
+            + "<AdaptationSet mimeType=\"video/mp4\">"
+            + representations
+            + "</AdaptationSet>"
+            + "</Period>"
+            + "</MPD>");
+  }
+
+  /**
+   * Returns a manifest with a single representation, whose segments are indexed by a sidx box at
+   * the start of its resource.
+   */
+  private static DashManifest parseSegmentBaseManifest() throws IOException {
+    return parseManifest(
+        "<MPD type=\"static\" mediaPresentationDuration=\"PT"
+            + SEGMENT_COUNT
+            + "S\">"
+            + "<Period>"
+            + "<AdaptationSet mimeType=\"video/mp4\">"
+            + "<Representation id=\"0\" bandwidth=\"1000000\" codecs=\"avc1.42c01e\""
+            + " width=\"1280\" height=\"720\">"
+            + "<BaseURL>http://example.com/video.mp4</BaseURL>"
+            + "<SegmentBase indexRange=\"0-"
+            + (INDEX_LENGTH - 1)
+            + "\"/>"
+            + "</Representation>"
+            + "</AdaptationSet>"
+            + "</Period>"
+            + "</MPD>");
+  }
+
+  private static DashManifest parseManifest(String manifestString) throws IOException {
+    return new DashManifestParser()
+        .parse(
+            Uri.parse("http://example.com/manifest.mpd"),
+            new ByteArrayInputStream(Util.getUtf8Bytes(manifestString)));
+  }
+}
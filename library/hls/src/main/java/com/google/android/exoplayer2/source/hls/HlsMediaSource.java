@@ -17,10 +17,13 @@ package com.google.android.exoplayer2.source.hls;
 
 import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.source.BaseMediaSource;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoaderFactory;
@@ -34,6 +37,8 @@ import com.google.android.exoplayer2.source.SinglePeriodTimeline;
 import com.google.android.exoplayer2.source.ads.AdsMediaSource;
 import com.google.android.exoplayer2.source.hls.playlist.DefaultHlsPlaylistParserFactory;
 import com.google.android.exoplayer2.source.hls.playlist.DefaultHlsPlaylistTracker;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.HlsUrl;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
@@ -47,6 +52,7 @@ import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 
 /** An HLS {@link MediaSource}. */
@@ -70,6 +76,7 @@ public final class HlsMediaSource extends BaseMediaSource
     private boolean allowChunklessPreparation;
     private boolean isCreateCalled;
     private @Nullable Object tag;
+    private @Nullable DefaultDrmSessionManager<?> drmSessionManager;
 
     /**
      * Creates a new factory for {@link HlsMediaSource}s.
@@ -224,6 +231,31 @@ public final class HlsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link DefaultDrmSessionManager} to request the licenses of protected content as soon
+     * as a media playlist is parsed, rather than when the renderers read the first protected
+     * samples. Licenses are requested for the {@code EXT-X-KEY} tags whose {@code KEYFORMAT}
+     * identifies a DRM scheme, and are held in idle sessions until they're used. See {@link
+     * DefaultDrmSessionManager#prefetchLicense(Looper, DrmInitData)}.
+     *
+     * <p>The media playlists of alternate audio renditions are only loaded once the rendition is
+     * selected, so their licenses are requested when their playlist is first loaded, in parallel
+     * with the first audio segment loads.
+     *
+     * <p>The manager must be the one used by the player's renderers, and must keep idle sessions.
+     * See {@link DefaultDrmSessionManager#setMaxIdleSessionCount(int)}. The default is {@code
+     * null}, meaning that licenses are requested by the renderers.
+     *
+     * @param drmSessionManager The {@link DefaultDrmSessionManager}, or {@code null}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If one of the {@code create} methods has already been called.
+     */
+    public Factory setDrmSessionManager(@Nullable DefaultDrmSessionManager<?> drmSessionManager) {
+      Assertions.checkState(!isCreateCalled);
+      this.drmSessionManager = drmSessionManager;
+      return this;
+    }
+
     /**
      * Returns a new {@link HlsMediaSource} using the current parameters.
      *
@@ -241,7 +273,8 @@ public final class HlsMediaSource extends BaseMediaSource
           playlistTrackerFactory.createTracker(
               hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory),
           allowChunklessPreparation,
-          tag);
+          tag,
+          drmSessionManager);
     }
 
     /**
@@ -275,6 +308,9 @@ public final class HlsMediaSource extends BaseMediaSource
   private final boolean allowChunklessPreparation;
   private final HlsPlaylistTracker playlistTracker;
   private final @Nullable Object tag;
+  private final @Nullable DefaultDrmSessionManager<?> drmSessionManager;
+  private final HashSet<DrmInitData> prefetchedDrmInitDatas;
+  private final @Nullable LicensePrefetchingPlaylistListener licensePrefetchingPlaylistListener;
 
   private @Nullable TransferListener mediaTransferListener;
 
@@ -365,7 +401,8 @@ public final class HlsMediaSource extends BaseMediaSource
             new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
             playlistParser),
         /* allowChunklessPreparation= */ false,
-        /* tag= */ null);
+        /* tag= */ null,
+        /* drmSessionManager= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
     }
@@ -379,7 +416,8 @@ public final class HlsMediaSource extends BaseMediaSource
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       HlsPlaylistTracker playlistTracker,
       boolean allowChunklessPreparation,
-      @Nullable Object tag) {
+      @Nullable Object tag,
+      @Nullable DefaultDrmSessionManager<?> drmSessionManager) {
     this.manifestUri = manifestUri;
     this.dataSourceFactory = dataSourceFactory;
     this.extractorFactory = extractorFactory;
@@ -388,6 +426,10 @@ public final class HlsMediaSource extends BaseMediaSource
     this.playlistTracker = playlistTracker;
     this.allowChunklessPreparation = allowChunklessPreparation;
     this.tag = tag;
+    this.drmSessionManager = drmSessionManager;
+    prefetchedDrmInitDatas = new HashSet<>();
+    licensePrefetchingPlaylistListener =
+        drmSessionManager != null ? new LicensePrefetchingPlaylistListener() : null;
   }
 
   @Override
@@ -398,6 +440,9 @@ public final class HlsMediaSource extends BaseMediaSource
     this.mediaTransferListener = mediaTransferListener;
     EventDispatcher eventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     playlistTracker.start(manifestUri, eventDispatcher, /* listener= */ this);
+    if (licensePrefetchingPlaylistListener != null) {
+      playlistTracker.addListener(licensePrefetchingPlaylistListener);
+    }
   }
 
   @Override
@@ -427,11 +472,16 @@ public final class HlsMediaSource extends BaseMediaSource
 
   @Override
   public void releaseSourceInternal() {
+    if (licensePrefetchingPlaylistListener != null) {
+      playlistTracker.removeListener(licensePrefetchingPlaylistListener);
+    }
     playlistTracker.stop();
+    prefetchedDrmInitDatas.clear();
   }
 
   @Override
   public void onPrimaryPlaylistRefreshed(HlsMediaPlaylist playlist) {
+    prefetchLicenses(playlist);
     SinglePeriodTimeline timeline;
     long windowStartTimeMs = playlist.hasProgramDateTime ? C.usToMs(playlist.startTimeUs)
         : C.TIME_UNSET;
@@ -483,4 +533,40 @@ public final class HlsMediaSource extends BaseMediaSource
     refreshSourceInfo(timeline, new HlsManifest(playlistTracker.getMasterPlaylist(), playlist));
   }
 
+  private void prefetchLicenses(@Nullable HlsMediaPlaylist playlist) {
+    if (drmSessionManager == null || playlist == null) {
+      return;
+    }
+    // Each license is requested once, so that playlist refreshes don't request it again.
+    for (HlsMediaPlaylist.Segment segment : playlist.segments) {
+      DrmInitData drmInitData = segment.drmInitData;
+      if (drmInitData != null && prefetchedDrmInitDatas.add(drmInitData)) {
+        drmSessionManager.prefetchLicense(Looper.myLooper(), drmInitData);
+      }
+    }
+  }
+
+  /**
+   * Requests the licenses of the alternate audio renditions, whose media playlists are loaded by
+   * the periods rather than reported as the primary playlist.
+   */
+  private final class LicensePrefetchingPlaylistListener
+      implements HlsPlaylistTracker.PlaylistEventListener {
+
+    @Override
+    public void onPlaylistChanged() {
+      HlsMasterPlaylist masterPlaylist = playlistTracker.getMasterPlaylist();
+      if (masterPlaylist == null) {
+        return;
+      }
+      for (HlsUrl audio : masterPlaylist.audios) {
+        prefetchLicenses(playlistTracker.getPlaylistSnapshot(audio));
+      }
+    }
+
+    @Override
+    public boolean onPlaylistError(HlsUrl url, long blacklistDurationMs) {
+      return true;
+    }
+  }
 }
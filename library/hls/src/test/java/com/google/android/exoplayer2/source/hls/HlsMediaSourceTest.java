@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.net.Uri;
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.source.DefaultMediaSourceEventListener;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.hls.playlist.DefaultHlsPlaylistTracker;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.MediaSourceTestRunner;
+import com.google.android.exoplayer2.testutil.RobolectricUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Unit tests for {@link HlsMediaSource}. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {RobolectricUtil.CustomLooper.class, RobolectricUtil.CustomMessageQueue.class})
+public final class HlsMediaSourceTest {
+
+  private static final String MASTER_PLAYLIST_URI = "http://example.com/master.m3u8";
+  private static final String VIDEO_PLAYLIST_URI = "http://example.com/video.m3u8";
+  private static final String AUDIO_PLAYLIST_URI = "http://example.com/audio.m3u8";
+  private static final String MASTER_PLAYLIST =
+      "#EXTM3U\n"
+          + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio\",NAME=\"English\",URI=\"audio.m3u8\"\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1000000,AUDIO=\"audio\"\n"
+          + "video.m3u8\n";
+
+  private FakeDataSet fakeDataSet;
+  private DefaultDrmSessionManager<?> drmSessionManager;
+  private HlsPlaylistTracker playlistTracker;
+  private ConditionVariable audioPlaylistLoaded;
+  private MediaSourceTestRunner testRunner;
+
+  @Before
+  public void setUp() {
+    fakeDataSet =
+        new FakeDataSet()
+            .setData(MASTER_PLAYLIST_URI, Util.getUtf8Bytes(MASTER_PLAYLIST))
+            .setData(VIDEO_PLAYLIST_URI, createMediaPlaylist(/* mediaSequence= */ 0, "video"))
+            .setData(AUDIO_PLAYLIST_URI, createMediaPlaylist(/* mediaSequence= */ 0, "audio"));
+    drmSessionManager = mock(DefaultDrmSessionManager.class);
+    HlsMediaSource mediaSource =
+        new HlsMediaSource.Factory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet))
+            .setPlaylistTrackerFactory(
+                (dataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory) -> {
+                  playlistTracker =
+                      DefaultHlsPlaylistTracker.FACTORY.createTracker(
+                          dataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory);
+                  return playlistTracker;
+                })
+            .setDrmSessionManager(drmSessionManager)
+            .createMediaSource(Uri.parse(MASTER_PLAYLIST_URI));
+    testRunner =
+        new MediaSourceTestRunner(
+            mediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+    audioPlaylistLoaded = new ConditionVariable();
+    testRunner.runOnPlaybackThread(
+        () ->
+            mediaSource.addEventListener(
+                new Handler(),
+                new DefaultMediaSourceEventListener() {
+                  @Override
+                  public void onLoadCompleted(
+                      int windowIndex,
+                      @Nullable MediaPeriodId mediaPeriodId,
+                      LoadEventInfo loadEventInfo,
+                      MediaLoadData mediaLoadData) {
+                    if (AUDIO_PLAYLIST_URI.equals(loadEventInfo.uri.toString())) {
+                      audioPlaylistLoaded.open();
+                    }
+                  }
+                }));
+  }
+
+  @After
+  public void tearDown() {
+    testRunner.release();
+  }
+
+  @Test
+  public void testPrefetchLicensesRequestsEachLicenseOnce() throws Exception {
+    testRunner.prepareSource();
+    HlsMasterPlaylist masterPlaylist = playlistTracker.getMasterPlaylist();
+    verify(drmSessionManager).prefetchLicense(any(Looper.class), any(DrmInitData.class));
+
+    // A newer primary playlist with the same key doesn't request its license again.
+    fakeDataSet.setData(VIDEO_PLAYLIST_URI, createMediaPlaylist(/* mediaSequence= */ 1, "video"));
+    testRunner.runOnPlaybackThread(
+        () -> playlistTracker.refreshPlaylist(masterPlaylist.variants.get(0)));
+    testRunner.assertTimelineChangeBlocking();
+    verify(drmSessionManager).prefetchLicense(any(Looper.class), any(DrmInitData.class));
+
+    // The license of the alternate audio rendition is requested once its playlist is loaded.
+    refreshAudioPlaylist(masterPlaylist, /* mediaSequence= */ 0);
+    ArgumentCaptor<DrmInitData> drmInitDatas = ArgumentCaptor.forClass(DrmInitData.class);
+    verify(drmSessionManager, times(2)).prefetchLicense(any(Looper.class), drmInitDatas.capture());
+    assertThat(drmInitDatas.getAllValues()).containsNoDuplicates();
+
+    // A newer audio playlist with the same key doesn't request its license again.
+    refreshAudioPlaylist(masterPlaylist, /* mediaSequence= */ 1);
+    verify(drmSessionManager, times(2)).prefetchLicense(any(Looper.class), any(DrmInitData.class));
+
+    testRunner.releaseSource();
+  }
+
+  private void refreshAudioPlaylist(HlsMasterPlaylist masterPlaylist, int mediaSequence) {
+    fakeDataSet.setData(AUDIO_PLAYLIST_URI, createMediaPlaylist(mediaSequence, "audio"));
+    audioPlaylistLoaded.close();
+    testRunner.runOnPlaybackThread(
+        () -> playlistTracker.refreshPlaylist(masterPlaylist.audios.get(0)));
+    assertThat(audioPlaylistLoaded.block(MediaSourceTestRunner.TIMEOUT_MS)).isTrue();
+  }
+
+  /**
+   * Returns a VOD media playlist whose segments are protected by a Widevine key that depends only
+   * on {@code keyId}.
+   */
+  private static byte[] createMediaPlaylist(int mediaSequence, String keyId) {
+    return Util.getUtf8Bytes(
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:10\n"
+            + "#EXT-X-MEDIA-SEQUENCE:"
+            + mediaSequence
+            + "\n"
+            + "#EXT-X-KEY:METHOD=SAMPLE-AES-CTR,KEYFORMAT=\"com.widevine\","
+            + "URI=\"https://example.com/"
+            + keyId
+            + ".key\"\n"
+            + "#EXTINF:10,\n"
+            + "segment"
+            + mediaSequence
+            + ".ts\n"
+            + "#EXTINF:10,\n"
+            + "segment"
+            + (mediaSequence + 1)
+            + ".ts\n"
+            + "#EXT-X-ENDLIST\n");
+  }
+}
@@ -17,13 +17,17 @@ package com.google.android.exoplayer2.source.smoothstreaming;
 
 import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.source.BaseMediaSource;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoaderFactory;
 import com.google.android.exoplayer2.source.DefaultCompositeSequenceableLoaderFactory;
@@ -50,6 +54,7 @@ import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /** A SmoothStreaming {@link MediaSource}. */
 public final class SsMediaSource extends BaseMediaSource
@@ -71,6 +76,7 @@ public final class SsMediaSource extends BaseMediaSource
     private long livePresentationDelayMs;
     private boolean isCreateCalled;
     private @Nullable Object tag;
+    private @Nullable DefaultDrmSessionManager<?> drmSessionManager;
 
     /**
      * Creates a new factory for {@link SsMediaSource}s.
@@ -197,6 +203,27 @@ public final class SsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link DefaultDrmSessionManager} to request the licenses of protected content as soon
+     * as the manifest is parsed, rather than when the renderers read the first protected samples.
+     * Licenses are requested for the {@code ProtectionHeader} of the manifest, and are held in idle
+     * sessions until they're used. See {@link
+     * DefaultDrmSessionManager#prefetchLicense(Looper, DrmInitData)}.
+     *
+     * <p>The manager must be the one used by the player's renderers, and must keep idle sessions.
+     * See {@link DefaultDrmSessionManager#setMaxIdleSessionCount(int)}. The default is {@code
+     * null}, meaning that licenses are requested by the renderers.
+     *
+     * @param drmSessionManager The {@link DefaultDrmSessionManager}, or {@code null}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If one of the {@code create} methods has already been called.
+     */
+    public Factory setDrmSessionManager(@Nullable DefaultDrmSessionManager<?> drmSessionManager) {
+      Assertions.checkState(!isCreateCalled);
+      this.drmSessionManager = drmSessionManager;
+      return this;
+    }
+
     /**
      * Returns a new {@link SsMediaSource} using the current parameters and the specified sideloaded
      * manifest.
@@ -217,7 +244,8 @@ public final class SsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
-          tag);
+          tag,
+          drmSessionManager);
     }
 
     /**
@@ -257,7 +285,8 @@ public final class SsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
-          tag);
+          tag,
+          drmSessionManager);
     }
 
     /**
@@ -309,6 +338,8 @@ public final class SsMediaSource extends BaseMediaSource
   private final ParsingLoadable.Parser<? extends SsManifest> manifestParser;
   private final ArrayList<SsMediaPeriod> mediaPeriods;
   private final @Nullable Object tag;
+  private final @Nullable DefaultDrmSessionManager<?> drmSessionManager;
+  private final HashSet<DrmInitData> prefetchedDrmInitDatas;
 
   private DataSource manifestDataSource;
   private Loader manifestLoader;
@@ -370,7 +401,8 @@ public final class SsMediaSource extends BaseMediaSource
         new DefaultCompositeSequenceableLoaderFactory(),
         new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
         DEFAULT_LIVE_PRESENTATION_DELAY_MS,
-        /* tag= */ null);
+        /* tag= */ null,
+        /* drmSessionManager= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
     }
@@ -470,7 +502,8 @@ public final class SsMediaSource extends BaseMediaSource
         new DefaultCompositeSequenceableLoaderFactory(),
         new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
         livePresentationDelayMs,
-        /* tag= */ null);
+        /* tag= */ null,
+        /* drmSessionManager= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
     }
@@ -485,7 +518,8 @@ public final class SsMediaSource extends BaseMediaSource
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       long livePresentationDelayMs,
-      @Nullable Object tag) {
+      @Nullable Object tag,
+      @Nullable DefaultDrmSessionManager<?> drmSessionManager) {
     Assertions.checkState(manifest == null || !manifest.isLive);
     this.manifest = manifest;
     this.manifestUri = manifestUri == null ? null : SsUtil.fixManifestUri(manifestUri);
@@ -497,8 +531,10 @@ public final class SsMediaSource extends BaseMediaSource
     this.livePresentationDelayMs = livePresentationDelayMs;
     this.manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     this.tag = tag;
+    this.drmSessionManager = drmSessionManager;
     sideloadedManifest = manifest != null;
     mediaPeriods = new ArrayList<>();
+    prefetchedDrmInitDatas = new HashSet<>();
   }
 
   // MediaSource implementation.
@@ -511,6 +547,7 @@ public final class SsMediaSource extends BaseMediaSource
     this.mediaTransferListener = mediaTransferListener;
     if (sideloadedManifest) {
       manifestLoaderErrorThrower = new LoaderErrorThrower.Dummy();
+      prefetchLicenses();
       processManifest();
     } else {
       manifestDataSource = manifestDataSourceFactory.createDataSource();
@@ -562,6 +599,7 @@ public final class SsMediaSource extends BaseMediaSource
       manifestRefreshHandler.removeCallbacksAndMessages(null);
       manifestRefreshHandler = null;
     }
+    prefetchedDrmInitDatas.clear();
   }
 
   // Loader.Callback implementation
@@ -579,6 +617,7 @@ public final class SsMediaSource extends BaseMediaSource
         loadable.bytesLoaded());
     manifest = loadable.getResult();
     manifestLoadStartTimestamp = elapsedRealtimeMs - loadDurationMs;
+    prefetchLicenses();
     processManifest();
     scheduleManifestRefresh();
   }
@@ -619,6 +658,21 @@ public final class SsMediaSource extends BaseMediaSource
 
   // Internal methods
 
+  private void prefetchLicenses() {
+    if (drmSessionManager == null || manifest.protectionElement == null) {
+      return;
+    }
+    // Each license is requested once, so that manifest refreshes don't request it again.
+    for (StreamElement element : manifest.streamElements) {
+      for (Format format : element.formats) {
+        DrmInitData drmInitData = format.drmInitData;
+        if (drmInitData != null && prefetchedDrmInitDatas.add(drmInitData)) {
+          drmSessionManager.prefetchLicense(Looper.myLooper(), drmInitData);
+        }
+      }
+    }
+  }
+
   private void processManifest() {
     for (int i = 0; i < mediaPeriods.size(); i++) {
       mediaPeriods.get(i).updateManifest(manifest);
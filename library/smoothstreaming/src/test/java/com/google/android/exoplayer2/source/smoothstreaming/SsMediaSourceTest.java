@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.smoothstreaming;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import android.net.Uri;
+import android.os.Looper;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.source.MediaSource.SourceInfoRefreshListener;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.MediaSourceTestRunner;
+import com.google.android.exoplayer2.testutil.RobolectricUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Util;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Unit tests for {@link SsMediaSource}. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {RobolectricUtil.CustomLooper.class, RobolectricUtil.CustomMessageQueue.class})
+public final class SsMediaSourceTest {
+
+  private static final String MANIFEST_URI = "http://example.com/Manifest";
+  /** A live manifest whose video and audio stream elements are protected by the same header. */
+  private static final String LIVE_MANIFEST =
+      "<SmoothStreamingMedia MajorVersion=\"2\" MinorVersion=\"0\" Duration=\"0\""
+          + " TimeScale=\"10000000\" IsLive=\"TRUE\">"
+          + "<Protection>"
+          + "<ProtectionHeader SystemID=\"9A04F079-9840-4286-AB92-E65BE0885F95\">"
+          + "VGhpcyBpcyBhbiBlYXN0ZXIgZWdn"
+          + "</ProtectionHeader>"
+          + "</Protection>"
+          + "<StreamIndex Type=\"video\" Name=\"video\""
+          + " Url=\"QualityLevels({bitrate})/Fragments(video={start_time})\">"
+          + "<QualityLevel Index=\"0\" Bitrate=\"1536000\" FourCC=\"H264\" MaxWidth=\"1280\""
+          + " MaxHeight=\"720\" CodecPrivateData=\"00000001674D401F\"/>"
+          + "<QualityLevel Index=\"1\" Bitrate=\"307200\" FourCC=\"H264\" MaxWidth=\"640\""
+          + " MaxHeight=\"360\" CodecPrivateData=\"00000001674D401E\"/>"
+          + "<c t=\"0\" d=\"20000000\"/>"
+          + "<c d=\"20000000\"/>"
+          + "</StreamIndex>"
+          + "<StreamIndex Type=\"audio\" Name=\"audio\""
+          + " Url=\"QualityLevels({bitrate})/Fragments(audio={start_time})\">"
+          + "<QualityLevel Index=\"0\" Bitrate=\"128000\" FourCC=\"AACL\" Channels=\"2\""
+          + " SamplingRate=\"48000\" CodecPrivateData=\"1190\"/>"
+          + "<c t=\"0\" d=\"20000000\"/>"
+          + "<c d=\"20000000\"/>"
+          + "</StreamIndex>"
+          + "</SmoothStreamingMedia>";
+
+  private DefaultDrmSessionManager<?> drmSessionManager;
+  private SsMediaSource mediaSource;
+  private MediaSourceTestRunner testRunner;
+
+  @Before
+  public void setUp() {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet().setData(MANIFEST_URI, Util.getUtf8Bytes(LIVE_MANIFEST));
+    drmSessionManager = mock(DefaultDrmSessionManager.class);
+    mediaSource =
+        new SsMediaSource.Factory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet))
+            .setDrmSessionManager(drmSessionManager)
+            .createMediaSource(Uri.parse(MANIFEST_URI));
+    testRunner =
+        new MediaSourceTestRunner(
+            mediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+  }
+
+  @After
+  public void tearDown() {
+    testRunner.release();
+  }
+
+  @Test
+  public void testPrefetchLicensesRequestsLicenseOnceAcrossManifestRefreshes() throws Exception {
+    // The live manifest keeps being refreshed, so the source is prepared directly rather than
+    // through the test runner, which expects the timeline to settle.
+    ExoPlayer player = mock(ExoPlayer.class);
+    Semaphore sourceInfoRefreshes = new Semaphore(/* permits= */ 0);
+    SourceInfoRefreshListener listener =
+        (source, timeline, manifest) -> sourceInfoRefreshes.release();
+    testRunner.runOnPlaybackThread(
+        () ->
+            mediaSource.prepareSource(
+                player, /* isTopLevelSource= */ true, listener, /* mediaTransferListener= */ null));
+
+    assertThat(
+            sourceInfoRefreshes.tryAcquire(
+                /* permits= */ 3, MediaSourceTestRunner.TIMEOUT_MS, TimeUnit.MILLISECONDS))
+        .isTrue();
+    testRunner.runOnPlaybackThread(() -> mediaSource.releaseSource(listener));
+
+    // The stream elements share the license, and the refreshes don't request it again.
+    verify(drmSessionManager).prefetchLicense(any(Looper.class), any(DrmInitData.class));
+  }
+}
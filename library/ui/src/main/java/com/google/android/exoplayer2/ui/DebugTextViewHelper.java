@@ -166,7 +166,8 @@ public class DebugTextViewHelper implements Player.EventListener, Runnable {
         + " rb:" + counters.renderedOutputBufferCount
         + " db:" + counters.droppedBufferCount
         + " mcdb:" + counters.maxConsecutiveDroppedBufferCount
-        + " dk:" + counters.droppedToKeyframeCount;
+        + " dk:" + counters.droppedToKeyframeCount
+        + " sk:" + counters.skippedInputToKeyframeCount;
   }
 
   private static String getPixelAspectRatioString(float pixelAspectRatio) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Utility methods for benchmarks. Benchmarks are ignored tests that report their results on the
+ * standard output. Remove the {@code Ignore} annotation of a benchmark to run it.
+ */
+public final class BenchmarkUtil {
+
+  /** An operation whose cost is measured. */
+  public interface Operation {
+
+    /** Performs the operation once. */
+    void run() throws Exception;
+  }
+
+  /** The number of times an operation is performed before it's measured. */
+  public static final int WARM_UP_ITERATIONS = 3;
+  /** The number of times an operation is performed while it's measured. */
+  public static final int MEASURED_ITERATIONS = 10;
+
+  private BenchmarkUtil() {}
+
+  /**
+   * Performs an operation {@link #WARM_UP_ITERATIONS} times, and then {@link #MEASURED_ITERATIONS}
+   * times while measuring the CPU time used by all threads, including any threads the operation
+   * hands work to.
+   *
+   * @param operation The operation to measure.
+   * @return The average CPU time used each time the operation was measured, in nanoseconds.
+   * @throws Exception If the operation failed.
+   */
+  public static double measureCpuTimeNs(Operation operation) throws Exception {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+      operation.run();
+    }
+    long startCpuTimeNs = getTotalCpuTimeNs(threadMXBean);
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      operation.run();
+    }
+    return (double) (getTotalCpuTimeNs(threadMXBean) - startCpuTimeNs) / MEASURED_ITERATIONS;
+  }
+
+  /**
+   * Reports a result of a benchmark.
+   *
+   * @param format A format string, which is formatted with the US locale.
+   * @param args The arguments referenced by {@code format}.
+   */
+  public static void report(String format, Object... args) {
+    System.out.println(String.format(Locale.US, format, args));
+  }
+
+  private static long getTotalCpuTimeNs(ThreadMXBean threadMXBean) {
+    long totalCpuTimeNs = 0;
+    for (long threadId : threadMXBean.getAllThreadIds()) {
+      // Returns -1 if the thread is no longer alive.
+      totalCpuTimeNs += Math.max(0, threadMXBean.getThreadCpuTime(threadId));
+    }
+    return totalCpuTimeNs;
+  }
+}
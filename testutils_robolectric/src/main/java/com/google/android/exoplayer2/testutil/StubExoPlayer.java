@@ -169,6 +169,11 @@ public abstract class StubExoPlayer implements ExoPlayer {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void setParallelRenderingEnabled(boolean parallelRenderingEnabled) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public @Nullable Object getCurrentTag() {
     throw new UnsupportedOperationException();